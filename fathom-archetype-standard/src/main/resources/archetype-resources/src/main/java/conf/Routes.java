@@ -12,6 +12,7 @@ import fathom.rest.security.CSRFHandler;
 import fathom.rest.security.FormAuthenticationGuard;
 import fathom.rest.security.FormAuthenticationHandler;
 import fathom.rest.security.LogoutHandler;
+import fathom.rest.security.SessionTokens;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,6 +23,15 @@ public class Routes extends RoutesModule {
     @Inject
     FormAuthenticationHandler formAuthenticationHandler;
 
+    @Inject
+    LogoutHandler logoutHandler;
+
+    @Inject
+    SessionTokens sessionTokens;
+
+    @Inject
+    FormAuthenticationGuard guard;
+
     @Inject
     ItemDao dao;
 
@@ -44,6 +54,11 @@ public class Routes extends RoutesModule {
          */
         final String appFilter = getResourceExclusionExpression();
 
+        /*
+         * Restore the Account from a signed session token, if enabled
+         */
+        ALL(appFilter, sessionTokens).named("session tokens");
+
         /*
          * Register a handler that binds some values to use on GET requests
          */
@@ -71,7 +86,7 @@ public class Routes extends RoutesModule {
          * Create a form authentication handler and guard for the "secure" routes
          */
         ALL("/login", formAuthenticationHandler);
-        ALL("/logout", new LogoutHandler());
+        ALL("/logout", logoutHandler);
 
          /*
          * Register an CSRF token generator and validator.
@@ -83,7 +98,6 @@ public class Routes extends RoutesModule {
          * In the absence of an authenticated session, the browser is redirected
          * to the login url.
          */
-        FormAuthenticationGuard guard = new FormAuthenticationGuard("/login");
         GET("/ui/?.*", guard);
         POST("/ui/?.*", guard);
 
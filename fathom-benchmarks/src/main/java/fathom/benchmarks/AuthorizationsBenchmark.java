@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.benchmarks;
+
+import fathom.authz.Authorizations;
+import fathom.authz.Role;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures permission checks against accounts with growing permission sets.
+ *
+ * @author James Moger
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthorizationsBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int permissionCount;
+
+    private Authorizations authorizations;
+
+    @Setup
+    public void setup() {
+        authorizations = new Authorizations();
+        Role role = new Role("editor");
+        for (int i = 0; i < permissionCount; i++) {
+            role.addPermission("document" + i + ":read,write:" + i);
+        }
+        authorizations.addRole(role);
+        authorizations.addPermissions("report:*", "admin:users:view");
+    }
+
+    @Benchmark
+    public boolean permittedByWildcard() {
+        return authorizations.isPermitted("report:export:pdf");
+    }
+
+    @Benchmark
+    public boolean permittedByLastPermission() {
+        return authorizations.isPermitted("document" + (permissionCount - 1) + ":write:" + (permissionCount - 1));
+    }
+
+    @Benchmark
+    public boolean denied() {
+        return authorizations.isPermitted("billing:delete");
+    }
+
+    @Benchmark
+    public boolean hasRole() {
+        return authorizations.hasRole("editor");
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares two JMH CSV result files (`-rf csv`) and fails if any benchmark
+ * regressed by more than the threshold.
+ * <pre>
+ * java -cp benchmarks.jar fathom.benchmarks.BaselineCompare baseline.csv current.csv [threshold%]
+ * </pre>
+ * Scores are interpreted by their unit: time-per-operation units regress when
+ * they increase, throughput units (ops/time) regress when they decrease.
+ *
+ * @author James Moger
+ */
+public class BaselineCompare {
+
+    public static void main(String... args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: BaselineCompare baseline.csv current.csv [threshold%]");
+            System.exit(2);
+        }
+
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10d;
+        Map<String, Result> baseline = read(args[0]);
+        Map<String, Result> current = read(args[1]);
+
+        int regressions = 0;
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result now = entry.getValue();
+            Result then = baseline.get(entry.getKey());
+            if (then == null) {
+                System.out.println(String.format("%-80s %14.3f %-10s (new)", entry.getKey(), now.score, now.unit));
+                continue;
+            }
+
+            double delta = change(then, now);
+            boolean regressed = delta > threshold;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.println(String.format("%-80s %14.3f %-10s %+7.2f%%%s",
+                    entry.getKey(), now.score, now.unit, delta, regressed ? "  REGRESSION" : ""));
+        }
+
+        if (regressions > 0) {
+            System.out.println(String.format("%d benchmark(s) regressed by more than %.1f%%", regressions, threshold));
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns the regression of the current score relative to the baseline as a
+     * percentage.  Positive values are regressions, negative values improvements.
+     */
+    static double change(Result baseline, Result current) {
+        if (baseline.score == 0) {
+            return 0;
+        }
+        double delta = (current.score - baseline.score) / baseline.score * 100d;
+        return isThroughput(current.unit) ? -delta : delta;
+    }
+
+    static boolean isThroughput(String unit) {
+        return unit.startsWith("ops/");
+    }
+
+    static Map<String, Result> read(String file) throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8);
+        Map<String, Result> results = new LinkedHashMap<>();
+        if (lines.isEmpty()) {
+            return results;
+        }
+
+        List<String> header = split(lines.get(0));
+        int benchmarkIndex = header.indexOf("Benchmark");
+        int modeIndex = header.indexOf("Mode");
+        int scoreIndex = header.indexOf("Score");
+        int unitIndex = header.indexOf("Unit");
+        if (benchmarkIndex < 0 || scoreIndex < 0 || unitIndex < 0) {
+            throw new IOException(file + " is not a JMH CSV result file");
+        }
+
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            List<String> columns = split(line);
+
+            // the benchmark key includes the mode and every parameter column
+            StringBuilder key = new StringBuilder(columns.get(benchmarkIndex));
+            if (modeIndex >= 0 && modeIndex < columns.size()) {
+                key.append(' ').append(columns.get(modeIndex));
+            }
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).startsWith("Param: ") && i < columns.size() && !columns.get(i).isEmpty()) {
+                    key.append(' ').append(header.get(i).substring("Param: ".length())).append('=').append(columns.get(i));
+                }
+            }
+
+            Result result = new Result();
+            result.score = Double.parseDouble(columns.get(scoreIndex));
+            result.unit = columns.get(unitIndex);
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+
+    private static List<String> split(String line) {
+        List<String> columns = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    sb.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                columns.add(sb.toString());
+                sb.setLength(0);
+            } else {
+                sb.append(c);
+            }
+        }
+        columns.add(sb.toString());
+        return columns;
+    }
+
+    static class Result {
+        double score;
+        String unit;
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.benchmarks;
+
+import fathom.rest.controller.GET;
+import fathom.rest.controller.HttpMethod;
+import fathom.rest.controller.Param;
+import fathom.rest.controller.Path;
+import fathom.rest.controller.Produces;
+import fathom.rest.controller.Return;
+import fathom.utils.ClassUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the annotation lookups performed when controllers are registered and invoked.
+ *
+ * @author James Moger
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClassUtilBenchmark {
+
+    @Path("/items")
+    @Produces(Produces.JSON)
+    public static class AnnotatedController {
+
+        @GET("/{id}")
+        @Return(code = 200, onResult = String.class)
+        @Return(code = 404, onResult = Void.class)
+        public String get(@Param("id") int id) {
+            return null;
+        }
+    }
+
+    private Method method;
+
+    private Parameter parameter;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        method = AnnotatedController.class.getMethod("get", int.class);
+        parameter = method.getParameters()[0];
+    }
+
+    @Benchmark
+    public GET methodAnnotation() {
+        return ClassUtil.getAnnotation(method, GET.class);
+    }
+
+    @Benchmark
+    public Produces inheritedMethodAnnotation() {
+        return ClassUtil.getAnnotation(method, Produces.class);
+    }
+
+    @Benchmark
+    public Param parameterAnnotation() {
+        return ClassUtil.getAnnotation(parameter, Param.class);
+    }
+
+    @Benchmark
+    public Path classAnnotation() {
+        return ClassUtil.getAnnotation(AnnotatedController.class, Path.class);
+    }
+
+    @Benchmark
+    public List<HttpMethod> nestedAnnotations() {
+        return ClassUtil.collectNestedAnnotation(method, HttpMethod.class);
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.benchmarks;
+
+import fathom.rest.Context;
+import fathom.rest.controller.Controller;
+import fathom.rest.controller.ControllerHandler;
+import fathom.rest.controller.GET;
+import fathom.rest.controller.Param;
+import fathom.rest.controller.Produces;
+import fathom.rest.controller.Return;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ro.pippo.core.route.Route;
+import ro.pippo.core.route.RouteMatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the dispatch of a request through a ControllerHandler: argument extraction,
+ * validation, invocation and content negotiation.
+ * <p>
+ * Guice generates classes through reflection on {@code ClassLoader} so the fork opens
+ * {@code java.lang} on Java 9+; older JVMs ignore the option.
+ * </p>
+ *
+ * @author James Moger
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-XX:+IgnoreUnrecognizedVMOptions", "--add-opens=java.base/java.lang=ALL-UNNAMED"})
+@State(Scope.Benchmark)
+public class ControllerHandlerBenchmark {
+
+    public static class ItemController extends Controller {
+
+        @GET("/items/{id}")
+        @Produces(Produces.TEXT)
+        @Return(code = 200, description = "Item", onResult = String.class)
+        public String get(@Param("id") int id, @Param("name") String name) {
+            return name + id;
+        }
+    }
+
+    private RestFixture fixture;
+
+    private List<RouteMatch> routeMatches;
+
+    private Map<String, String[]> parameters;
+
+    private Map<String, String> headers;
+
+    @Setup
+    public void setup() {
+        fixture = new RestFixture();
+
+        ControllerHandler handler = new ControllerHandler(fixture.injector, ItemController.class, "get");
+        Route route = new Route("GET", "/items/{id}", handler);
+        routeMatches = Collections.singletonList(new RouteMatch(route, Collections.singletonMap("id", "42")));
+
+        parameters = new HashMap<>();
+        parameters.put("name", new String[]{"item"});
+
+        headers = new HashMap<>();
+        headers.put("Accept", "text/plain");
+    }
+
+    @Benchmark
+    public int handle() {
+        Context context = fixture.context(fixture.request("GET", "/items/42", parameters, headers), new ArrayList<>(routeMatches));
+        context.next();
+        return context.getResponse().getStatus();
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.benchmarks;
+
+import fathom.test.TestBoot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures end-to-end request throughput against an embedded Undertow server.
+ * <p>
+ * The application is discovered from the classpath, so this benchmark must be
+ * packaged with the integration test application:
+ * </p>
+ * <pre>
+ * mvn -pl fathom-benchmarks -am -Pintegration-test package
+ * </pre>
+ *
+ * @author James Moger
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EmbeddedServerBenchmark {
+
+    @Param({"/static", "/instance", "/annotated"})
+    public String path;
+
+    private TestBoot boot;
+
+    private URL url;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        boot = new TestBoot();
+        boot.start();
+
+        String baseUrl = boot.getSettings().getFathomUrl();
+        if (baseUrl.endsWith("/")) {
+            baseUrl = baseUrl.substring(0, baseUrl.length() - 1);
+        }
+        url = new URL(baseUrl + path);
+
+        if (request() >= 500) {
+            throw new IllegalStateException("Request to " + url + " failed");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        if (boot != null) {
+            boot.stop();
+        }
+    }
+
+    @Benchmark
+    public int request() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        int status = connection.getResponseCode();
+        InputStream is = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        if (is != null) {
+            // drain and close the body, without disconnecting, so the keep-alive connection is reused
+            byte[] buffer = new byte[8192];
+            try {
+                while (is.read(buffer) != -1) {
+                }
+            } finally {
+                is.close();
+            }
+        }
+        return status;
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.benchmarks;
+
+import fathom.rest.Context;
+import fathom.rest.controller.extractors.BeanBinder;
+import fathom.rest.controller.extractors.ParamExtractor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ro.pippo.core.Request;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures request parameter extraction for controller arguments and @Bean forms.
+ *
+ * @author James Moger
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParamExtractorBenchmark {
+
+    public static class Form {
+        String name;
+        int count;
+        long id;
+        boolean active;
+        double amount;
+        String email;
+        List<Integer> numbers;
+        TreeSet<String> tags;
+    }
+
+    private Context context;
+
+    private Request request;
+
+    private ParamExtractor intExtractor;
+
+    private ParamExtractor stringExtractor;
+
+    private ParamExtractor suffixExtractor;
+
+    private ParamExtractor listExtractor;
+
+    private BeanBinder<Form> binder;
+
+    @Setup
+    public void setup() {
+        Map<String, String[]> parameters = new LinkedHashMap<>();
+        parameters.put("name", new String[]{"fathom"});
+        parameters.put("count", new String[]{"12"});
+        parameters.put("id", new String[]{"42"});
+        parameters.put("active", new String[]{"true"});
+        parameters.put("amount", new String[]{"1234.56"});
+        parameters.put("email", new String[]{"james@gitblit.com"});
+        parameters.put("file", new String[]{"report.json"});
+        parameters.put("numbers", new String[]{"3", "1", "2"});
+        parameters.put("tags", new String[]{"b", "a"});
+
+        RestFixture fixture = new RestFixture();
+        request = fixture.request("GET", "/form", parameters, Collections.emptyMap());
+        context = fixture.context(request);
+
+        intExtractor = extractor("count", int.class);
+        stringExtractor = extractor("name", String.class);
+
+        suffixExtractor = extractor("file", String.class);
+        suffixExtractor.setSuffixes(new HashSet<>(Arrays.asList("json", "xml")));
+
+        listExtractor = extractor("numbers", Integer.class);
+        listExtractor.setCollectionType(List.class);
+
+        binder = BeanBinder.of(Form.class);
+    }
+
+    private static ParamExtractor extractor(String name, Class<?> type) {
+        ParamExtractor extractor = new ParamExtractor();
+        extractor.setName(name);
+        extractor.setPattern("");
+        extractor.setObjectType(type);
+        return extractor;
+    }
+
+    @Benchmark
+    public Object extractInt() {
+        return intExtractor.extract(context);
+    }
+
+    @Benchmark
+    public Object extractString() {
+        return stringExtractor.extract(context);
+    }
+
+    @Benchmark
+    public Object extractWithSuffix() {
+        return suffixExtractor.extract(context);
+    }
+
+    @Benchmark
+    public Object extractList() {
+        return listExtractor.extract(context);
+    }
+
+    /**
+     * Binds a form with the precomputed BeanBinder used by the BeanExtractor.
+     */
+    @Benchmark
+    public Form bindBean() {
+        return binder.bind(request.getParameters());
+    }
+
+    /**
+     * Binds the same form with Pippo's reflective binding, for comparison.
+     */
+    @Benchmark
+    public Form bindBeanReflective() {
+        return request.createEntityFromParameters(Form.class);
+    }
+
+}
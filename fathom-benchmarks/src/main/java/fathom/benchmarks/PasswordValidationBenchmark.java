@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.benchmarks;
+
+import fathom.authc.StandardCredentials;
+import fathom.realm.MemoryRealm;
+import fathom.utils.CryptoUtil;
+import org.mindrot.jbcrypt.BCrypt;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures StandardCredentialsRealm password validation for each supported storage format.
+ *
+ * @author James Moger
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasswordValidationBenchmark {
+
+    private static final String USERNAME = "james";
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Param({"BF", "SHA256", "SHA1", "MD5", "CMD5", "PLAIN"})
+    public String format;
+
+    private ValidatingRealm realm;
+
+    private StandardCredentials request;
+
+    private StandardCredentials stored;
+
+    /**
+     * Exposes the protected password validation.
+     */
+    static class ValidatingRealm extends MemoryRealm {
+        boolean validate(StandardCredentials requestCredentials, StandardCredentials storedCredentials) {
+            return validatePassword(requestCredentials, storedCredentials);
+        }
+    }
+
+    @Setup
+    public void setup() {
+        String storedPassword;
+        switch (format) {
+            case "BF":
+                storedPassword = "{BF}" + BCrypt.hashpw(PASSWORD, BCrypt.gensalt(10));
+                break;
+            case "SHA256":
+                storedPassword = "{SHA256}" + CryptoUtil.getHashSHA256(PASSWORD);
+                break;
+            case "SHA1":
+                storedPassword = "{SHA1}" + CryptoUtil.getHashSHA1(PASSWORD);
+                break;
+            case "MD5":
+                storedPassword = "{MD5}" + CryptoUtil.getHashMD5(PASSWORD);
+                break;
+            case "CMD5":
+                storedPassword = "{CMD5}" + CryptoUtil.getHashMD5(USERNAME + PASSWORD);
+                break;
+            default:
+                storedPassword = PASSWORD;
+        }
+
+        realm = new ValidatingRealm();
+        request = new StandardCredentials(USERNAME, PASSWORD);
+        stored = new StandardCredentials(USERNAME, storedPassword);
+        if (!realm.validate(request, stored)) {
+            throw new IllegalStateException("Password validation failed for " + format);
+        }
+    }
+
+    @Benchmark
+    public boolean validatePassword() {
+        return realm.validate(request, stored);
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.benchmarks;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import fathom.conf.Settings;
+import fathom.rest.Context;
+import fathom.rest.RestModule;
+import ro.pippo.core.Application;
+import ro.pippo.core.ContentTypeEngines;
+import ro.pippo.core.Messages;
+import ro.pippo.core.PippoSettings;
+import ro.pippo.core.Request;
+import ro.pippo.core.Response;
+import ro.pippo.core.route.RouteMatch;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A Pippo application and injector configured like RestModule, without a server.
+ *
+ * @author James Moger
+ */
+class RestFixture {
+
+    final Settings settings;
+
+    final Application application;
+
+    final Injector injector;
+
+    RestFixture() {
+        this.settings = new Settings();
+        PippoSettings pippoSettings = RestModule.getPippoSettings(settings);
+        this.application = new Application(pippoSettings);
+        this.application.init();
+
+        this.injector = Guice.createInjector(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(Settings.class).toInstance(settings);
+                bind(Application.class).toInstance(application);
+                bind(Messages.class).toInstance(application.getMessages());
+                bind(ContentTypeEngines.class).toInstance(application.getContentTypeEngines());
+            }
+        });
+    }
+
+    Request request(String method, String uri, Map<String, String[]> parameters, Map<String, String> headers) {
+        return new Request(ServletStubs.request(method, uri, parameters, headers), application);
+    }
+
+    Context context(Request request, List<RouteMatch> routeMatches) {
+        Response response = new Response(ServletStubs.response(), application);
+        return new Context(application, request, response, routeMatches);
+    }
+
+    Context context(Request request) {
+        return context(request, Collections.emptyList());
+    }
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.benchmarks;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Minimal servlet request and response stubs which let the benchmarks drive
+ * Pippo and Fathom without a container and without recording invocations.
+ *
+ * @author James Moger
+ */
+final class ServletStubs {
+
+    private ServletStubs() {
+    }
+
+    /**
+     * Creates a request stub.
+     *
+     * @param method     the HTTP method
+     * @param uri        the request uri
+     * @param parameters the request parameters
+     * @param headers    the request headers
+     * @return a request
+     */
+    static HttpServletRequest request(String method, String uri, Map<String, String[]> parameters, Map<String, String> headers) {
+        final Map<String, String> headerMap = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headerMap.putAll(headers);
+        final Map<String, Object> attributes = new HashMap<>();
+        final Map<String, String[]> parameterMap = Collections.unmodifiableMap(parameters);
+
+        return (HttpServletRequest) Proxy.newProxyInstance(ServletStubs.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "getMethod":
+                            return method;
+                        case "getRequestURI":
+                        case "getPathInfo":
+                            return uri;
+                        case "getRequestURL":
+                            return new StringBuffer("http://localhost:8080").append(uri);
+                        case "getContextPath":
+                        case "getServletPath":
+                            return "";
+                        case "getScheme":
+                            return "http";
+                        case "getServerName":
+                        case "getRemoteAddr":
+                        case "getRemoteHost":
+                            return "localhost";
+                        case "getServerPort":
+                            return 8080;
+                        case "getCharacterEncoding":
+                            return "UTF-8";
+                        case "getContentType":
+                            return headerMap.get("Content-Type");
+                        case "getLocale":
+                            return Locale.US;
+                        case "getLocales":
+                            return Collections.enumeration(Collections.singletonList(Locale.US));
+                        case "getParameterMap":
+                            return parameterMap;
+                        case "getParameterNames":
+                            return Collections.enumeration(parameterMap.keySet());
+                        case "getParameterValues":
+                            return parameterMap.get(args[0]);
+                        case "getParameter": {
+                            String[] values = parameterMap.get(args[0]);
+                            return values == null ? null : values[0];
+                        }
+                        case "getHeader":
+                            return headerMap.get(args[0]);
+                        case "getHeaders": {
+                            String value = headerMap.get(args[0]);
+                            return Collections.enumeration(value == null ? Collections.emptyList() : Collections.singletonList(value));
+                        }
+                        case "getHeaderNames":
+                            return Collections.enumeration(headerMap.keySet());
+                        case "getAttribute":
+                            return attributes.get(args[0]);
+                        case "setAttribute":
+                            attributes.put((String) args[0], args[1]);
+                            return null;
+                        case "removeAttribute":
+                            attributes.remove(args[0]);
+                            return null;
+                        case "getAttributeNames":
+                            return Collections.enumeration(attributes.keySet());
+                        default:
+                            return defaultValue(m);
+                    }
+                });
+    }
+
+    /**
+     * Creates a response stub which discards the response body.
+     *
+     * @return a response
+     */
+    static HttpServletResponse response() {
+        final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        final int[] status = {HttpServletResponse.SC_OK};
+        final boolean[] committed = {false};
+        final String[] contentType = {null};
+        final ServletOutputStream outputStream = new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int b) {
+                committed[0] = true;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                committed[0] = true;
+            }
+        };
+        final PrintWriter writer = new PrintWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+
+        return (HttpServletResponse) Proxy.newProxyInstance(ServletStubs.class.getClassLoader(),
+                new Class<?>[]{HttpServletResponse.class}, (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "setStatus":
+                        case "sendError":
+                            status[0] = (Integer) args[0];
+                            return null;
+                        case "getStatus":
+                            return status[0];
+                        case "setHeader":
+                        case "addHeader":
+                            headers.put((String) args[0], String.valueOf(args[1]));
+                            return null;
+                        case "setDateHeader":
+                        case "addDateHeader":
+                        case "setIntHeader":
+                        case "addIntHeader":
+                            headers.put((String) args[0], String.valueOf(args[1]));
+                            return null;
+                        case "getHeader":
+                            return headers.get(args[0]);
+                        case "containsHeader":
+                            return headers.containsKey(args[0]);
+                        case "getHeaderNames":
+                            return headers.keySet();
+                        case "setContentType":
+                            contentType[0] = (String) args[0];
+                            return null;
+                        case "getContentType":
+                            return contentType[0];
+                        case "getCharacterEncoding":
+                            return "UTF-8";
+                        case "getOutputStream":
+                            return outputStream;
+                        case "getWriter":
+                            return writer;
+                        case "flushBuffer":
+                            committed[0] = true;
+                            return null;
+                        case "isCommitted":
+                            return committed[0];
+                        case "getLocale":
+                            return Locale.US;
+                        default:
+                            return defaultValue(m);
+                    }
+                });
+    }
+
+    private static Object defaultValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (boolean.class == type) {
+            return false;
+        } else if (int.class == type) {
+            return 0;
+        } else if (long.class == type) {
+            return -1L;
+        }
+        return null;
+    }
+
+}
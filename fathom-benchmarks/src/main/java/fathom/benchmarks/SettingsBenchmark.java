@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.benchmarks;
+
+import fathom.conf.Settings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the Settings accessors which are read on request paths.
+ *
+ * @author James Moger
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SettingsBenchmark {
+
+    private Settings settings;
+
+    @Setup
+    public void setup() {
+        settings = new Settings();
+        settings.overrideSetting("benchmark.string", "value");
+        settings.overrideSetting("benchmark.integer", 42);
+        settings.overrideSetting("benchmark.boolean", true);
+        settings.overrideSetting("benchmark.bytes", "64k");
+        settings.overrideSetting("benchmark.duration", "30 seconds");
+    }
+
+    @Benchmark
+    public String getString() {
+        return settings.getString("benchmark.string", null);
+    }
+
+    @Benchmark
+    public String getMissingString() {
+        return settings.getString("benchmark.missing", "default");
+    }
+
+    @Benchmark
+    public int getInteger() {
+        return settings.getInteger("benchmark.integer", 0);
+    }
+
+    @Benchmark
+    public boolean getBoolean() {
+        return settings.getBoolean("benchmark.boolean", false);
+    }
+
+    @Benchmark
+    public long getBytes() {
+        return settings.getBytes("benchmark.bytes", null);
+    }
+
+    @Benchmark
+    public long getDuration() {
+        return settings.getDuration("benchmark.duration", TimeUnit.MILLISECONDS, 0);
+    }
+
+    @Benchmark
+    public String getContextPath() {
+        return settings.getContextPath();
+    }
+
+}
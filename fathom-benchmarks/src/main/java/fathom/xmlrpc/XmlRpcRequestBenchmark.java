@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.xmlrpc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing of an XML-RPC method call.  This benchmark lives in the
+ * fathom.xmlrpc package because XmlRpcRequest is package-private.
+ *
+ * @author James Moger
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class XmlRpcRequestBenchmark {
+
+    private byte[] methodCall;
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\"?>\n<methodCall><methodName>examples.update</methodName><params>");
+        sb.append("<param><value><string>fathom</string></value></param>");
+        sb.append("<param><value><int>42</int></value></param>");
+        sb.append("<param><value><boolean>1</boolean></value></param>");
+        sb.append("<param><value><double>3.14159</double></value></param>");
+        sb.append("<param><value><dateTime.iso8601>20160127T14:08:55</dateTime.iso8601></value></param>");
+        sb.append("<param><value><base64>ZmF0aG9tIG1pY3Jvc2VydmljZXM=</base64></value></param>");
+        sb.append("<param><value><struct>");
+        for (int i = 0; i < 10; i++) {
+            sb.append("<member><name>key").append(i).append("</name><value><i4>").append(i).append("</i4></value></member>");
+        }
+        sb.append("</struct></value></param>");
+        sb.append("<param><value><array><data>");
+        for (int i = 0; i < 20; i++) {
+            sb.append("<value><string>item").append(i).append("</string></value>");
+        }
+        sb.append("</data></array></value></param>");
+        sb.append("</params></methodCall>");
+        methodCall = sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<Object> parse() {
+        XmlRpcRequest request = new XmlRpcRequest();
+        request.parse(new ByteArrayInputStream(methodCall));
+        if (request.isParsingError()) {
+            throw new IllegalStateException(request.getErrorMessage());
+        }
+        return request.getMethodArguments();
+    }
+
+}
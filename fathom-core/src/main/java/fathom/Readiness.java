@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom;
+
+import com.google.inject.Singleton;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Readiness reports whether Fathom is ready to serve traffic, e.g. for a health
+ * check of a load balancer, and the outcome of the warm-up phase.
+ *
+ * @author James Moger
+ */
+@Singleton
+public class Readiness {
+
+    public enum State {
+        STARTING, WARMING_UP, READY, STOPPING
+    }
+
+    private final List<WarmUpResult> results = new CopyOnWriteArrayList<>();
+
+    private volatile State state = State.STARTING;
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isReady() {
+        return state == State.READY;
+    }
+
+    void setState(State state) {
+        this.state = state;
+    }
+
+    void addResult(WarmUpResult result) {
+        results.add(result);
+    }
+
+    /**
+     * Returns the results of the warm-up phase.
+     *
+     * @return the warm-up results
+     */
+    public List<WarmUpResult> getWarmUpResults() {
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * Returns the duration of the warm-up phase.
+     *
+     * @param unit
+     * @return the warm-up duration
+     */
+    public long getWarmUpDuration(TimeUnit unit) {
+        long nanos = 0;
+        for (WarmUpResult result : results) {
+            nanos += result.getDuration(TimeUnit.NANOSECONDS);
+        }
+        return unit.convert(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The outcome of one WarmUp.
+     */
+    public static class WarmUpResult {
+
+        private final String name;
+
+        private final int iterations;
+
+        private final int failures;
+
+        private final long durationNanos;
+
+        private final long firstNanos;
+
+        private final long lastNanos;
+
+        WarmUpResult(String name, int iterations, int failures, long durationNanos, long firstNanos, long lastNanos) {
+            this.name = name;
+            this.iterations = iterations;
+            this.failures = failures;
+            this.durationNanos = durationNanos;
+            this.firstNanos = firstNanos;
+            this.lastNanos = lastNanos;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getIterations() {
+            return iterations;
+        }
+
+        public int getFailures() {
+            return failures;
+        }
+
+        public long getDuration(TimeUnit unit) {
+            return unit.convert(durationNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Returns the duration of the first iteration.
+         *
+         * @param unit
+         * @return the first iteration duration
+         */
+        public long getFirstIteration(TimeUnit unit) {
+            return unit.convert(firstNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Returns the duration of the last iteration.
+         *
+         * @param unit
+         * @return the last iteration duration
+         */
+        public long getLastIteration(TimeUnit unit) {
+            return unit.convert(lastNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d iterations (%d failed) in %d ms, first %.3f ms, last %.3f ms", name,
+                    iterations, failures, getDuration(TimeUnit.MILLISECONDS), firstNanos / 1e6d, lastNanos / 1e6d);
+        }
+    }
+
+}
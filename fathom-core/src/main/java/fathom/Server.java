@@ -21,6 +21,9 @@ import com.google.inject.Injector;
 import com.google.inject.servlet.GuiceFilter;
 import fathom.conf.Settings;
 import fathom.exception.FathomException;
+import fathom.session.SessionStore;
+import fathom.session.StoreSessionManager;
+import fathom.utils.ClassUtil;
 import io.undertow.Handlers;
 import io.undertow.Undertow;
 import io.undertow.Undertow.Builder;
@@ -98,6 +101,13 @@ public class Server {
             fathomDeploymentManager = createFathomDeploymentManager();
             HttpHandler fathomHandler = fathomDeploymentManager.start();
 
+            Injector injector = getInjector();
+            Readiness readiness = injector.getInstance(Readiness.class);
+            if (settings.getBoolean(Settings.Setting.warmup_enabled, false)) {
+                // warm-up before the listeners accept connections
+                new WarmUpRunner(settings, injector, readiness).run();
+            }
+
             String contextPath = settings.getContextPath();
 
             // create a handler than redirects non-context requests to the context
@@ -113,6 +123,8 @@ public class Server {
             log.info("Starting Undertow {}", version);
 
             server.start();
+
+            readiness.setState(Readiness.State.READY);
         } catch (Exception e) {
             throw new FathomException(e);
         }
@@ -139,6 +151,11 @@ public class Server {
     protected void stopImpl() {
         if (server != null) {
             try {
+                Injector injector = getInjector();
+                if (injector != null) {
+                    injector.getInstance(Readiness.class).setState(Readiness.State.STOPPING);
+                }
+
                 String version = server.getClass().getPackage().getImplementationVersion();
                 log.info("Stopping Undertow {}", version);
                 server.stop();
@@ -231,11 +248,21 @@ public class Server {
         defaultServlet.setAsyncSupported(true);
         defaultServlet.addMapping("/");
 
+        String sessionStoreClass = settings.getString(Settings.Setting.undertow_sessionStore, null);
+        if (!Strings.isNullOrEmpty(sessionStoreClass)) {
+            // keep sessions in an external store rather than in the heap
+            SessionStore sessionStore = createSessionStore(sessionStoreClass);
+            info.setSessionManagerFactory(deployment ->
+                    new StoreSessionManager(deployment.getDeploymentInfo().getDeploymentName(), sessionStore));
+            logSetting(Settings.Setting.undertow_sessionStore, sessionStoreClass);
+        }
+
         ServletContextListener fathomListener = new ServletContextListener(settings);
 
         info.addListeners(new ListenerInfo(ServletContextListener.class, new ImmediateInstanceFactory<>(fathomListener)));
 
-        MultipartConfigElement multipartConfig = new MultipartConfigElement(settings.getUploadFilesLocation(), settings.getUploadFilesMaxSize(), -1L, 0);
+        MultipartConfigElement multipartConfig = new MultipartConfigElement(settings.getUploadFilesLocation(),
+                settings.getUploadFilesMaxSize(), settings.getUploadRequestMaxSize(), settings.getUploadMemoryThreshold());
         defaultServlet.setMultipartConfig(multipartConfig);
         info.addServlets(defaultServlet);
 
@@ -245,6 +272,14 @@ public class Server {
         return deploymentManager;
     }
 
+    protected SessionStore createSessionStore(String className) {
+        if (!ClassUtil.doesClassExist(className)) {
+            throw new FathomException("Unknown session store '{}'!", className);
+        }
+        Class<? extends SessionStore> storeClass = ClassUtil.getClass(className);
+        return ClassUtil.newInstance(storeClass, settings);
+    }
+
     private SSLContext createSSLContext(final KeyStore keyStore, final KeyStore trustStore) throws Exception {
         KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
         keyManagerFactory.init(keyStore, settings.getKeystorePassword().toCharArray());
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom;
+
+/**
+ * A WarmUp exercises the application before Fathom reports that it is ready.
+ * <p>
+ * WarmUps are registered with {@code multibind(WarmUp.class, MyWarmUp.class)} in
+ * a Module and run when {@code warmup.enabled = true}, after all services have
+ * started and before the server accepts connections.
+ * </p>
+ *
+ * @author James Moger
+ */
+public interface WarmUp {
+
+    /**
+     * Performs one iteration of the warm-up.
+     *
+     * @throws Exception
+     */
+    void warmUp() throws Exception;
+
+    /**
+     * Returns true if the warm-up should be repeated to let the JIT compile the
+     * exercised code.  A warm-up which only primes caches or connections should
+     * return false to run once.
+     *
+     * @return true if the warm-up is repeated
+     */
+    default boolean isRepeated() {
+        return true;
+    }
+
+}
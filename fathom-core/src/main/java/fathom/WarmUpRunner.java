@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom;
+
+import com.google.common.base.Strings;
+import com.google.inject.Binding;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
+import fathom.conf.Settings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the registered WarmUps within the configured iteration and time budget.
+ *
+ * @author James Moger
+ */
+class WarmUpRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(WarmUpRunner.class);
+
+    private static final Key<Set<WarmUp>> WARMUPS_KEY = Key.get(new TypeLiteral<Set<WarmUp>>() {
+    });
+
+    private final Settings settings;
+
+    private final Injector injector;
+
+    private final Readiness readiness;
+
+    WarmUpRunner(Settings settings, Injector injector, Readiness readiness) {
+        this.settings = settings;
+        this.injector = injector;
+        this.readiness = readiness;
+    }
+
+    void run() {
+        Binding<Set<WarmUp>> binding = injector.getExistingBinding(WARMUPS_KEY);
+        if (binding == null) {
+            log.debug("No warm-ups registered");
+            return;
+        }
+
+        List<WarmUp> warmUps = new ArrayList<>(binding.getProvider().get());
+        warmUps.sort(Comparator.comparing(warmUp -> warmUp.getClass().getName()));
+
+        int iterations = settings.getInteger(Settings.Setting.warmup_iterations, 1000);
+        long duration = settings.getDuration(Settings.Setting.warmup_duration.toString(), TimeUnit.NANOSECONDS,
+                TimeUnit.SECONDS.toNanos(30));
+
+        String border = Strings.padEnd("", Constants.MIN_BORDER_LENGTH, '-');
+        log.info(border);
+        log.info("Warming up ({} iterations, at most {} seconds)", iterations, TimeUnit.NANOSECONDS.toSeconds(duration));
+        log.info(border);
+
+        readiness.setState(Readiness.State.WARMING_UP);
+        long deadline = System.nanoTime() + duration;
+        for (WarmUp warmUp : warmUps) {
+            Readiness.WarmUpResult result = run(warmUp, warmUp.isRepeated() ? iterations : 1, deadline);
+            readiness.addResult(result);
+            log.info("{}", result);
+        }
+    }
+
+    private Readiness.WarmUpResult run(WarmUp warmUp, int iterations, long deadline) {
+        String name = warmUp.getClass().getName();
+        int count = 0;
+        int failures = 0;
+        long first = 0;
+        long last = 0;
+        long start = System.nanoTime();
+
+        while (count < iterations && (count == 0 || System.nanoTime() < deadline)) {
+            long iterationStart = System.nanoTime();
+            try {
+                warmUp.warmUp();
+            } catch (Exception e) {
+                if (failures == 0) {
+                    log.warn("Warm-up '{}' failed", name, e);
+                }
+                failures++;
+            }
+            last = System.nanoTime() - iterationStart;
+            if (count == 0) {
+                first = last;
+            }
+            count++;
+        }
+
+        return new Readiness.WarmUpResult(name, count, failures, System.nanoTime() - start, first, last);
+    }
+
+}
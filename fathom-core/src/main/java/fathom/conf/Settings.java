@@ -58,6 +58,7 @@ public class Settings {
     private final String defaultListenAddress = "0.0.0.0";
     private final String defaultUploadFilesLocation = System.getProperty("java.io.tmpdir");
     private final long defaultUploadFilesMaxSize = -1L;
+    private final long defaultUploadRequestMaxSize = -1L;
     private Config config;
     private String profile = "default";
     private Constants.Mode mode;
@@ -450,6 +451,37 @@ public class Settings {
         return this;
     }
 
+    /**
+     * Returns the maximum size of a multipart request.  A value of -1 means no limit.
+     *
+     * @return the maximum request size in bytes
+     */
+    public long getUploadRequestMaxSize() {
+        return getLong(Setting.application_uploadMaxRequestSize, defaultUploadRequestMaxSize);
+    }
+
+    public Settings uploadRequestMaxSize(long uploadRequestMaxSize) {
+        this.overrideSetting(Setting.application_uploadMaxRequestSize, uploadRequestMaxSize);
+
+        return this;
+    }
+
+    /**
+     * Returns the size threshold after which an uploaded file is written to disk.
+     * A value of 0 writes all uploaded files to disk.
+     *
+     * @return the memory threshold in bytes
+     */
+    public int getUploadMemoryThreshold() {
+        return (int) getBytes(Setting.application_uploadMemoryThreshold, null);
+    }
+
+    public Settings uploadMemoryThreshold(int uploadMemoryThreshold) {
+        this.overrideSetting(Setting.application_uploadMemoryThreshold, uploadMemoryThreshold);
+
+        return this;
+    }
+
     public String getKeystoreFile() {
         return getString(Setting.undertow_keystoreFile, null);
     }
@@ -1028,6 +1060,8 @@ public class Settings {
         application_controllersPackage,
         application_uploadLocation,
         application_uploadMaxSize,
+        application_uploadMaxRequestSize,
+        application_uploadMemoryThreshold,
         application_url,
         jcache_preferredProvider,
         jmx_port,
@@ -1046,7 +1080,11 @@ public class Settings {
         undertow_truststorePassword,
         undertow_ioThreads,
         undertow_workerThreads,
-        undertow_bufferSize;
+        undertow_bufferSize,
+        undertow_sessionStore,
+        warmup_enabled,
+        warmup_iterations,
+        warmup_duration;
 
         @Override
         public String toString() {
@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.session;
+
+import fathom.conf.Settings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OffHeapSessionStore keeps serialized sessions in direct memory so that idle sessions
+ * do not occupy the old generation of the heap.
+ * <p>
+ * Direct memory is reserved in slabs of 1MB, up to the configured size, and divided into
+ * fixed size blocks.  A session occupies as many blocks as it needs; when it grows or
+ * shrinks on a later save blocks are taken from or returned to a free list, so saving
+ * a session does not allocate direct memory once the slabs exist.  The slabs are reused
+ * for the lifetime of the store and released when it stops.
+ * </p>
+ * <p>
+ * The least recently used sessions are evicted when either the number of sessions exceeds
+ * the configured limit or there are not enough free blocks.  The slabs count against the
+ * JVM's {@code -XX:MaxDirectMemorySize}.  Sessions do not survive a restart of the JVM.
+ * </p>
+ * <pre>
+ * sessions.offHeap {
+ *   maxEntries = 100000
+ *   maxSize = 256MB
+ *   blockSize = 1KB
+ * }
+ * </pre>
+ *
+ * @author James Moger
+ */
+public class OffHeapSessionStore implements SessionStore {
+
+    private static final Logger log = LoggerFactory.getLogger(OffHeapSessionStore.class);
+
+    private static final int SLAB_SIZE = 1024 * 1024;
+
+    private final int maxEntries;
+
+    private final int blockSize;
+
+    private final int blocksPerSlab;
+
+    private final int maxBlocks;
+
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final List<ByteBuffer> slabs;
+
+    private int[] freeBlocks;
+
+    private int freeCount;
+
+    private int allocatedBlocks;
+
+    private int usedBlocks;
+
+    public OffHeapSessionStore(Settings settings) {
+        this(settings.getInteger("sessions.offHeap.maxEntries", 100000),
+                settings.getBytes("sessions.offHeap.maxSize", "256MB"),
+                (int) settings.getBytes("sessions.offHeap.blockSize", "1KB"));
+    }
+
+    public OffHeapSessionStore(int maxEntries, long maxBytes, int blockSize) {
+        this.maxEntries = maxEntries;
+        this.blockSize = blockSize;
+        this.blocksPerSlab = Math.max(1, SLAB_SIZE / blockSize);
+        this.maxBlocks = (int) Math.min(Integer.MAX_VALUE, maxBytes / blockSize);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.slabs = new ArrayList<>();
+        this.freeBlocks = new int[0];
+    }
+
+    @Override
+    public void start() {
+        log.debug("Storing up to {} sessions in {} blocks of {} bytes of direct memory", maxEntries, maxBlocks, blockSize);
+    }
+
+    @Override
+    public synchronized void stop() {
+        entries.clear();
+        slabs.clear();
+        freeBlocks = new int[0];
+        freeCount = 0;
+        allocatedBlocks = 0;
+        usedBlocks = 0;
+    }
+
+    @Override
+    public synchronized byte[] get(String id) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.isExpired(System.nanoTime())) {
+            remove(id);
+            return null;
+        }
+
+        byte[] data = new byte[entry.length];
+        int offset = 0;
+        for (int block : entry.blocks) {
+            int length = Math.min(blockSize, data.length - offset);
+            ByteBuffer slab = slab(block);
+            slab.position(position(block));
+            slab.get(data, offset, length);
+            offset += length;
+        }
+        return data;
+    }
+
+    @Override
+    public synchronized void put(String id, byte[] data, int ttlSeconds) {
+        boolean expiring = ttlSeconds > 0;
+        long expires = expiring ? System.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSeconds) : 0;
+        int needed = (data.length + blockSize - 1) / blockSize;
+
+        // return the blocks of the previous version, most are taken again below
+        remove(id);
+        if (needed > maxBlocks) {
+            log.warn("Session {} of {} bytes exceeds the off-heap session store", id, data.length);
+            return;
+        }
+
+        reserve(needed);
+        int[] blocks = new int[needed];
+        int offset = 0;
+        for (int i = 0; i < needed; i++) {
+            int block = acquire();
+            int length = Math.min(blockSize, data.length - offset);
+            ByteBuffer slab = slab(block);
+            slab.position(position(block));
+            slab.put(data, offset, length);
+            offset += length;
+            blocks[i] = block;
+        }
+        entries.put(id, new Entry(blocks, data.length, expiring, expires));
+
+        if (entries.size() > maxEntries) {
+            purgeExpired();
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (entries.size() > maxEntries && iterator.hasNext()) {
+                evict(iterator);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void remove(String id) {
+        Entry entry = entries.remove(id);
+        if (entry != null) {
+            release(entry.blocks);
+        }
+    }
+
+    @Override
+    public synchronized Set<String> getIds() {
+        purgeExpired();
+        return new HashSet<>(entries.keySet());
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of bytes in the blocks occupied by sessions.
+     *
+     * @return the used bytes
+     */
+    public synchronized long getUsedBytes() {
+        return (long) usedBlocks * blockSize;
+    }
+
+    /**
+     * Returns the number of bytes of direct memory reserved by the slabs.
+     *
+     * @return the allocated bytes
+     */
+    public synchronized long getAllocatedBytes() {
+        long bytes = 0;
+        for (ByteBuffer slab : slabs) {
+            bytes += slab.capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * Evicts sessions until the blocks can be acquired.
+     */
+    private void reserve(int needed) {
+        if (freeCount + (maxBlocks - allocatedBlocks) >= needed) {
+            return;
+        }
+
+        // prefer discarding expired sessions before live ones
+        purgeExpired();
+
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (freeCount + (maxBlocks - allocatedBlocks) < needed && iterator.hasNext()) {
+            evict(iterator);
+        }
+    }
+
+    private void evict(Iterator<Map.Entry<String, Entry>> iterator) {
+        Map.Entry<String, Entry> eldest = iterator.next();
+        iterator.remove();
+        release(eldest.getValue().blocks);
+        log.debug("Evicted session {}", eldest.getKey());
+    }
+
+    private int acquire() {
+        usedBlocks++;
+        if (freeCount > 0) {
+            return freeBlocks[--freeCount];
+        }
+
+        int block = allocatedBlocks++;
+        if (block % blocksPerSlab == 0) {
+            int blocks = Math.min(blocksPerSlab, maxBlocks - block);
+            slabs.add(ByteBuffer.allocateDirect(blocks * blockSize));
+        }
+        return block;
+    }
+
+    private void release(int[] blocks) {
+        if (freeBlocks.length < freeCount + blocks.length) {
+            freeBlocks = Arrays.copyOf(freeBlocks, Math.max(freeCount + blocks.length, freeBlocks.length * 2));
+        }
+        // push in reverse so that a session saved again takes back the same blocks
+        for (int i = blocks.length - 1; i >= 0; i--) {
+            freeBlocks[freeCount++] = blocks[i];
+        }
+        usedBlocks -= blocks.length;
+    }
+
+    private ByteBuffer slab(int block) {
+        return slabs.get(block / blocksPerSlab);
+    }
+
+    private int position(int block) {
+        return (block % blocksPerSlab) * blockSize;
+    }
+
+    private void purgeExpired() {
+        long now = System.nanoTime();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.isExpired(now)) {
+                iterator.remove();
+                release(entry.blocks);
+            }
+        }
+    }
+
+    private static class Entry {
+
+        final int[] blocks;
+
+        final int length;
+
+        final boolean expiring;
+
+        final long expires;
+
+        Entry(int[] blocks, int length, boolean expiring, long expires) {
+            this.blocks = blocks;
+            this.length = length;
+            this.expiring = expiring;
+            this.expires = expires;
+        }
+
+        boolean isExpired(long now) {
+            return expiring && expires - now < 0;
+        }
+    }
+
+}
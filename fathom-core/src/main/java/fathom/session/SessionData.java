@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The serializable state of a stored session.
+ *
+ * @author James Moger
+ */
+final class SessionData implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger log = LoggerFactory.getLogger(SessionData.class);
+
+    final String id;
+
+    final long creationTime;
+
+    long lastAccessedTime;
+
+    int maxInactiveInterval;
+
+    final HashMap<String, Object> attributes;
+
+    SessionData(String id, long creationTime, int maxInactiveInterval) {
+        this(id, creationTime, creationTime, maxInactiveInterval, new HashMap<>());
+    }
+
+    SessionData(String id, long creationTime, long lastAccessedTime, int maxInactiveInterval, Map<String, Object> attributes) {
+        this.id = id;
+        this.creationTime = creationTime;
+        this.lastAccessedTime = lastAccessedTime;
+        this.maxInactiveInterval = maxInactiveInterval;
+        this.attributes = new HashMap<>(attributes);
+    }
+
+    boolean isExpired(long now) {
+        return maxInactiveInterval > 0 && lastAccessedTime + maxInactiveInterval * 1000L < now;
+    }
+
+    SessionData copy(String newId) {
+        return new SessionData(newId, creationTime, lastAccessedTime, maxInactiveInterval, attributes);
+    }
+
+    byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(this);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to serialize session " + id, e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static SessionData fromBytes(byte[] data) {
+        try (ObjectInputStream in = new ContextObjectInputStream(new ByteArrayInputStream(data))) {
+            return (SessionData) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            log.warn("Failed to deserialize a stored session, discarding it", e);
+            return null;
+        }
+    }
+
+    /**
+     * Resolves session attribute classes from the application class loader.
+     */
+    private static class ContextObjectInputStream extends ObjectInputStream {
+
+        ContextObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            if (classLoader != null) {
+                try {
+                    return Class.forName(desc.getName(), false, classLoader);
+                } catch (ClassNotFoundException e) {
+                    // fall back to the default resolution
+                }
+            }
+            return super.resolveClass(desc);
+        }
+    }
+
+}
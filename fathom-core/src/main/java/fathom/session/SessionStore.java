@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.session;
+
+import java.util.Set;
+
+/**
+ * A SessionStore keeps serialized HTTP sessions outside of the servlet container's heap.
+ * <p>
+ * Implementations must have a public constructor which accepts {@link fathom.conf.Settings}
+ * and are selected with the {@code undertow.sessionStore} setting.
+ * </p>
+ *
+ * @author James Moger
+ */
+public interface SessionStore {
+
+    void start();
+
+    void stop();
+
+    /**
+     * Returns the serialized session.
+     *
+     * @param id
+     * @return the serialized session or null if the session does not exist or has expired
+     */
+    byte[] get(String id);
+
+    /**
+     * Stores the serialized session, replacing any previous value.
+     *
+     * @param id
+     * @param data
+     * @param ttlSeconds the number of seconds after which the session expires, 0 if it does not expire
+     */
+    void put(String id, byte[] data, int ttlSeconds);
+
+    void remove(String id);
+
+    /**
+     * Returns the ids of the stored sessions.
+     *
+     * @return the session ids
+     */
+    Set<String> getIds();
+
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.session;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.session.SecureRandomSessionIdGenerator;
+import io.undertow.server.session.Session;
+import io.undertow.server.session.SessionConfig;
+import io.undertow.server.session.SessionIdGenerator;
+import io.undertow.server.session.SessionListener;
+import io.undertow.server.session.SessionListeners;
+import io.undertow.server.session.SessionManager;
+import io.undertow.server.session.SessionManagerStatistics;
+import io.undertow.util.AttachmentKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An Undertow SessionManager which keeps no sessions on the heap between requests.
+ * <p>
+ * A session is deserialized from the {@link SessionStore} when it is first accessed by a
+ * request and is written back when the request completes if its attributes have changed
+ * or if its last access time must be refreshed.  Concurrent requests of the same session
+ * each work on their own copy and the last request to complete wins.
+ * </p>
+ * <p>
+ * Session listeners are notified of sessions which expire only if the expired session is
+ * requested before the store discards it.
+ * </p>
+ *
+ * @author James Moger
+ */
+public class StoreSessionManager implements SessionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(StoreSessionManager.class);
+
+    private static final long MAX_TOUCH_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    private final AttachmentKey<StoredSession> attachmentKey = AttachmentKey.create(StoredSession.class);
+
+    private final String deploymentName;
+
+    private final SessionStore store;
+
+    private final SessionListeners listeners;
+
+    private final SessionIdGenerator idGenerator;
+
+    private volatile int defaultSessionTimeout;
+
+    public StoreSessionManager(String deploymentName, SessionStore store) {
+        this.deploymentName = deploymentName;
+        this.store = store;
+        this.listeners = new SessionListeners();
+        this.idGenerator = new SecureRandomSessionIdGenerator();
+        this.defaultSessionTimeout = (int) TimeUnit.MINUTES.toSeconds(30);
+    }
+
+    public SessionStore getStore() {
+        return store;
+    }
+
+    @Override
+    public String getDeploymentName() {
+        return deploymentName;
+    }
+
+    @Override
+    public void start() {
+        log.debug("Starting {} for '{}'", store.getClass().getSimpleName(), deploymentName);
+        store.start();
+    }
+
+    @Override
+    public void stop() {
+        log.debug("Stopping {} for '{}'", store.getClass().getSimpleName(), deploymentName);
+        store.stop();
+    }
+
+    @Override
+    public Session createSession(HttpServerExchange exchange, SessionConfig config) {
+        String id = config.findSessionId(exchange);
+        if (id != null && store.get(id) != null) {
+            throw new IllegalStateException("Session " + id + " already exists");
+        } else if (id == null) {
+            id = idGenerator.createSessionId();
+        }
+        config.setSessionId(exchange, id);
+
+        StoredSession session = new StoredSession(new SessionData(id, System.currentTimeMillis(), defaultSessionTimeout),
+                null, exchange);
+        session.dirty = true;
+        exchange.putAttachment(attachmentKey, session);
+        listeners.sessionCreated(session, exchange);
+        return session;
+    }
+
+    @Override
+    public Session getSession(HttpServerExchange exchange, SessionConfig config) {
+        if (exchange != null) {
+            StoredSession attached = exchange.getAttachment(attachmentKey);
+            if (attached != null && !attached.invalid) {
+                return attached;
+            }
+        }
+
+        String id = config.findSessionId(exchange);
+        if (id == null) {
+            return null;
+        }
+
+        StoredSession session = load(id, exchange);
+        if (session != null && exchange != null) {
+            exchange.putAttachment(attachmentKey, session);
+        }
+        return session;
+    }
+
+    @Override
+    public Session getSession(String id) {
+        return load(id, null);
+    }
+
+    private StoredSession load(String id, HttpServerExchange exchange) {
+        byte[] bytes = store.get(id);
+        if (bytes == null) {
+            return null;
+        }
+
+        SessionData data = SessionData.fromBytes(bytes);
+        if (data == null || !id.equals(data.id)) {
+            store.remove(id);
+            return null;
+        }
+
+        if (data.isExpired(System.currentTimeMillis())) {
+            store.remove(id);
+            StoredSession expired = new StoredSession(data, bytes, null);
+            expired.invalid = true;
+            listeners.sessionDestroyed(expired, exchange, SessionListener.SessionDestroyedReason.TIMEOUT);
+            return null;
+        }
+
+        return new StoredSession(data, bytes, exchange);
+    }
+
+    @Override
+    public void registerSessionListener(SessionListener listener) {
+        listeners.addSessionListener(listener);
+    }
+
+    @Override
+    public void removeSessionListener(SessionListener listener) {
+        listeners.removeSessionListener(listener);
+    }
+
+    @Override
+    public void setDefaultSessionTimeout(int timeout) {
+        this.defaultSessionTimeout = timeout;
+    }
+
+    @Override
+    public Set<String> getTransientSessions() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public Set<String> getActiveSessions() {
+        return store.getIds();
+    }
+
+    @Override
+    public Set<String> getAllSessions() {
+        return store.getIds();
+    }
+
+    @Override
+    public SessionManagerStatistics getStatistics() {
+        return null;
+    }
+
+    /**
+     * The request-scoped copy of a stored session.  Sessions which are not bound to
+     * a request are written through to the store on every change.
+     */
+    private class StoredSession implements Session {
+
+        private final HttpServerExchange exchange;
+
+        private SessionData data;
+
+        private byte[] stored;
+
+        private boolean dirty;
+
+        private boolean invalid;
+
+        StoredSession(SessionData data, byte[] stored, HttpServerExchange exchange) {
+            this.data = data;
+            this.stored = stored;
+            this.exchange = exchange;
+        }
+
+        @Override
+        public synchronized String getId() {
+            return data.id;
+        }
+
+        @Override
+        public synchronized void requestDone(HttpServerExchange exchange) {
+            if (invalid) {
+                return;
+            }
+            try {
+                save();
+            } catch (RuntimeException e) {
+                log.error("Failed to store session {}", data.id, e);
+            }
+        }
+
+        /**
+         * Writes the session to the store if it has been changed or if the last access
+         * time must be refreshed.  Attributes which are mutated in place are detected by
+         * comparing the serialized form with the form which was loaded.
+         */
+        private void save() {
+            long now = System.currentTimeMillis();
+            long touchInterval = data.maxInactiveInterval > 0
+                    ? Math.min(MAX_TOUCH_INTERVAL, TimeUnit.SECONDS.toMillis(data.maxInactiveInterval) / 4)
+                    : MAX_TOUCH_INTERVAL;
+            if (!dirty && stored != null && now - data.lastAccessedTime < touchInterval
+                    && Arrays.equals(stored, data.toBytes())) {
+                return;
+            }
+
+            data.lastAccessedTime = now;
+            byte[] bytes = data.toBytes();
+            store.put(data.id, bytes, Math.max(0, data.maxInactiveInterval));
+            stored = bytes;
+            dirty = false;
+        }
+
+        private void changed() {
+            dirty = true;
+            if (exchange == null) {
+                save();
+            }
+        }
+
+        @Override
+        public synchronized long getCreationTime() {
+            return data.creationTime;
+        }
+
+        @Override
+        public synchronized long getLastAccessedTime() {
+            return data.lastAccessedTime;
+        }
+
+        @Override
+        public synchronized void setMaxInactiveInterval(int interval) {
+            data.maxInactiveInterval = interval;
+            changed();
+        }
+
+        @Override
+        public synchronized int getMaxInactiveInterval() {
+            return data.maxInactiveInterval;
+        }
+
+        @Override
+        public synchronized Object getAttribute(String name) {
+            return data.attributes.get(name);
+        }
+
+        @Override
+        public synchronized Set<String> getAttributeNames() {
+            return new HashSet<>(data.attributes.keySet());
+        }
+
+        @Override
+        public synchronized Object setAttribute(String name, Object value) {
+            if (value == null) {
+                return removeAttribute(name);
+            }
+
+            Object previous = data.attributes.put(name, value);
+            changed();
+            if (previous == null) {
+                listeners.attributeAdded(this, name, value);
+            } else {
+                listeners.attributeUpdated(this, name, value, previous);
+            }
+            return previous;
+        }
+
+        @Override
+        public synchronized Object removeAttribute(String name) {
+            Object previous = data.attributes.remove(name);
+            if (previous != null) {
+                changed();
+                listeners.attributeRemoved(this, name, previous);
+            }
+            return previous;
+        }
+
+        @Override
+        public synchronized void invalidate(HttpServerExchange exchange) {
+            if (invalid) {
+                throw new IllegalStateException("Session " + data.id + " has already been invalidated");
+            }
+
+            listeners.sessionDestroyed(this, exchange, SessionListener.SessionDestroyedReason.INVALIDATED);
+            invalid = true;
+            store.remove(data.id);
+
+            if (exchange != null) {
+                exchange.removeAttachment(attachmentKey);
+                SessionConfig config = exchange.getAttachment(SessionConfig.ATTACHMENT_KEY);
+                if (config != null) {
+                    config.clearSession(exchange, data.id);
+                }
+            }
+        }
+
+        @Override
+        public SessionManager getSessionManager() {
+            return StoreSessionManager.this;
+        }
+
+        @Override
+        public synchronized String changeSessionId(HttpServerExchange exchange, SessionConfig config) {
+            String previousId = data.id;
+            String id = idGenerator.createSessionId();
+            data = data.copy(id);
+            store.remove(previousId);
+            dirty = true;
+            save();
+            config.setSessionId(exchange, id);
+            listeners.sessionIdChanged(this, previousId);
+            return id;
+        }
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.utils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * AnnotationCache memoizes annotation lookups per class, method and parameter.
+ * <p>
+ * The metadata of a class is held by a {@link ClassValue} of the class which
+ * declares the annotated element so it is discarded when that class is unloaded.
+ * Lookups which find nothing are cached too.
+ * </p>
+ *
+ * @author James Moger
+ */
+final class AnnotationCache {
+
+    private static final Object NONE = new Object();
+
+    private static final ClassValue<ClassMetadata> metadata = new ClassValue<ClassMetadata>() {
+        @Override
+        protected ClassMetadata computeValue(Class<?> type) {
+            return new ClassMetadata();
+        }
+    };
+
+    private AnnotationCache() {
+    }
+
+    /**
+     * Returns the annotation of the class or of the nearest superclass.
+     */
+    static <T extends Annotation> T getAnnotation(Class<?> objectClass, Class<T> annotationClass) {
+        if (objectClass == null || Object.class == objectClass) {
+            return null;
+        }
+        return unwrap(metadata.get(objectClass).annotations.computeIfAbsent(annotationClass, key -> {
+            T annotation = objectClass.getAnnotation(annotationClass);
+            if (annotation == null) {
+                annotation = getAnnotation(objectClass.getSuperclass(), annotationClass);
+            }
+            return wrap(annotation);
+        }));
+    }
+
+    /**
+     * Returns the annotation of the method or of the declaring class.
+     */
+    static <T extends Annotation> T getAnnotation(Method method, Class<T> annotationClass) {
+        return unwrap(of(method).annotations.computeIfAbsent(annotationClass, key -> {
+            T annotation = method.getAnnotation(annotationClass);
+            if (annotation == null) {
+                annotation = getAnnotation(method.getDeclaringClass(), annotationClass);
+            }
+            return wrap(annotation);
+        }));
+    }
+
+    /**
+     * Returns the annotation of the method, ignoring the declaring class.
+     */
+    static <T extends Annotation> T getDeclaredAnnotation(Method method, Class<T> annotationClass) {
+        return unwrap(of(method).declaredAnnotations.computeIfAbsent(annotationClass,
+                key -> wrap(method.getAnnotation(annotationClass))));
+    }
+
+    static Annotation[] getAnnotations(Parameter parameter) {
+        Class<?> declaringClass = parameter.getDeclaringExecutable().getDeclaringClass();
+        return metadata.get(declaringClass).parameters.computeIfAbsent(parameter, Parameter::getAnnotations);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T extends Annotation> List<T> collectNestedAnnotation(Class<?> objectClass, Class<T> annotationClass) {
+        if (objectClass == null || objectClass == Object.class) {
+            return Collections.emptyList();
+        }
+
+        return (List<T>) metadata.get(objectClass).nestedAnnotations.computeIfAbsent(annotationClass, key -> {
+            List<T> list = new ArrayList<>();
+            collectNestedAnnotation(objectClass.getDeclaredAnnotations(), annotationClass, list);
+            list.addAll(collectNestedAnnotation(objectClass.getSuperclass(), annotationClass));
+            return Collections.unmodifiableList(list);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T extends Annotation> List<T> collectNestedAnnotation(Method method, Class<T> annotationClass) {
+        return (List<T>) of(method).nestedAnnotations.computeIfAbsent(annotationClass, key -> {
+            List<T> list = new ArrayList<>();
+            collectNestedAnnotation(method.getDeclaredAnnotations(), annotationClass, list);
+            list.addAll(collectNestedAnnotation(method.getDeclaringClass(), annotationClass));
+            return Collections.unmodifiableList(list);
+        });
+    }
+
+    /**
+     * Returns a value derived from the method.  The loader function identifies
+     * the value and it is invoked once per method.
+     */
+    @SuppressWarnings("unchecked")
+    static <V> V getMetadata(Method method, Function<Method, V> loader) {
+        return unwrap(of(method).values.computeIfAbsent(loader, key -> wrap(loader.apply(method))));
+    }
+
+    private static <T extends Annotation> void collectNestedAnnotation(Annotation[] annotations, Class<T> annotationClass, List<T> list) {
+        for (Annotation annotation : annotations) {
+            T nestedAnnotation = annotation.annotationType().getAnnotation(annotationClass);
+            if (nestedAnnotation != null) {
+                list.add(nestedAnnotation);
+            }
+        }
+    }
+
+    private static MethodMetadata of(Method method) {
+        return metadata.get(method.getDeclaringClass()).methods.computeIfAbsent(method, key -> new MethodMetadata());
+    }
+
+    private static Object wrap(Object value) {
+        return value == null ? NONE : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T unwrap(Object value) {
+        return value == NONE ? null : (T) value;
+    }
+
+    private static class ClassMetadata {
+
+        final ConcurrentMap<Class<?>, Object> annotations = new ConcurrentHashMap<>();
+
+        final ConcurrentMap<Class<?>, List<?>> nestedAnnotations = new ConcurrentHashMap<>();
+
+        final ConcurrentMap<Method, MethodMetadata> methods = new ConcurrentHashMap<>();
+
+        final ConcurrentMap<Parameter, Annotation[]> parameters = new ConcurrentHashMap<>();
+    }
+
+    private static class MethodMetadata {
+
+        final ConcurrentMap<Class<?>, Object> annotations = new ConcurrentHashMap<>();
+
+        final ConcurrentMap<Class<?>, Object> declaredAnnotations = new ConcurrentHashMap<>();
+
+        final ConcurrentMap<Class<?>, List<?>> nestedAnnotations = new ConcurrentHashMap<>();
+
+        final ConcurrentMap<Object, Object> values = new ConcurrentHashMap<>();
+    }
+
+}
@@ -46,6 +46,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.function.Function;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
 import java.util.stream.Collectors;
@@ -171,6 +172,7 @@ public class ClassUtil {
 
     /**
      * Extract the annotation from the method or the declaring class.
+     * The result is cached per method.
      *
      * @param method
      * @param annotationClass
@@ -178,15 +180,24 @@ public class ClassUtil {
      * @return the annotation or null
      */
     public static <T extends Annotation> T getAnnotation(Method method, Class<T> annotationClass) {
-        T t = method.getAnnotation(annotationClass);
-        if (t == null) {
-            t = getAnnotation(method.getDeclaringClass(), annotationClass);
-        }
-        return t;
+        return AnnotationCache.getAnnotation(method, annotationClass);
+    }
+
+    /**
+     * Extract the annotation from the method only.
+     * The result is cached per method.
+     *
+     * @param method
+     * @param annotationClass
+     * @param <T>
+     * @return the annotation or null
+     */
+    public static <T extends Annotation> T getDeclaredAnnotation(Method method, Class<T> annotationClass) {
+        return AnnotationCache.getDeclaredAnnotation(method, annotationClass);
     }
 
     public static <T extends Annotation> T getAnnotation(Parameter parameter, Class<T> annotationClass) {
-        for (Annotation annotation : parameter.getAnnotations()) {
+        for (Annotation annotation : AnnotationCache.getAnnotations(parameter)) {
             if (annotation.annotationType() == annotationClass) {
                 return (T) annotation;
             }
@@ -194,45 +205,57 @@ public class ClassUtil {
         return null;
     }
 
+    /**
+     * Extract the annotation from the class or the nearest superclass.
+     * The result is cached per class.
+     *
+     * @param objectClass
+     * @param annotationClass
+     * @param <T>
+     * @return the annotation or null
+     */
     public static <T extends Annotation> T getAnnotation(Class<?> objectClass, Class<T> annotationClass) {
-        if (objectClass == null || Object.class == objectClass) {
-            return null;
-        }
-
-        T annotation = objectClass.getAnnotation(annotationClass);
-        if (annotation != null) {
-            return annotation;
-        }
-
-        return getAnnotation(objectClass.getSuperclass(), annotationClass);
+        return AnnotationCache.getAnnotation(objectClass, annotationClass);
     }
 
+    /**
+     * Collects the annotations of the given type which annotate the annotations of
+     * the method, the declaring class and its superclasses.
+     *
+     * @param method
+     * @param annotationClass
+     * @param <T>
+     * @return an unmodifiable list of the meta-annotations
+     */
     public static <T extends Annotation> List<T> collectNestedAnnotation(Method method, Class<T> annotationClass) {
-        List<T> list = new ArrayList<>();
-        for (Annotation annotation : method.getDeclaredAnnotations()) {
-            if (annotation.annotationType().isAnnotationPresent(annotationClass)) {
-                T nestedAnnotation = annotation.annotationType().getAnnotation(annotationClass);
-                list.add(nestedAnnotation);
-            }
-        }
-        list.addAll(collectNestedAnnotation(method.getDeclaringClass(), annotationClass));
-        return list;
+        return AnnotationCache.collectNestedAnnotation(method, annotationClass);
     }
 
+    /**
+     * Collects the annotations of the given type which annotate the annotations of
+     * the class and its superclasses.
+     *
+     * @param objectClass
+     * @param annotationClass
+     * @param <T>
+     * @return an unmodifiable list of the meta-annotations
+     */
     public static <T extends Annotation> List<T> collectNestedAnnotation(Class<?> objectClass, Class<T> annotationClass) {
-        if (objectClass == null || objectClass == Object.class) {
-            return Collections.emptyList();
-        }
+        return AnnotationCache.collectNestedAnnotation(objectClass, annotationClass);
+    }
 
-        List<T> list = new ArrayList<>();
-        for (Annotation annotation : objectClass.getDeclaredAnnotations()) {
-            if (annotation.annotationType().isAnnotationPresent(annotationClass)) {
-                T nestedAnnotation = annotation.annotationType().getAnnotation(annotationClass);
-                list.add(nestedAnnotation);
-            }
-        }
-        list.addAll(collectNestedAnnotation(objectClass.getSuperclass(), annotationClass));
-        return list;
+    /**
+     * Returns a value derived from the annotations of a method, e.g. the required roles.
+     * The loader is invoked once per method and it identifies the cached value so it
+     * should be a constant.
+     *
+     * @param method
+     * @param loader
+     * @param <V>
+     * @return the cached value
+     */
+    public static <V> V getMethodMetadata(Method method, Function<Method, V> loader) {
+        return AnnotationCache.getMetadata(method, loader);
     }
 
     public static <T> T newInstance(Class<T> classOfT) {
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.session;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the eviction, expiration, and block accounting of the OffHeapSessionStore.
+ *
+ * @author James Moger
+ */
+public class OffHeapSessionStoreTest extends Assert {
+
+    private static byte[] bytes(int length, int value) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) value;
+        }
+        return data;
+    }
+
+    @Test
+    public void testPutAndGet() {
+        OffHeapSessionStore store = new OffHeapSessionStore(10, 1024, 10);
+        store.put("a", bytes(10, 1), 0);
+        assertArrayEquals(bytes(10, 1), store.get("a"));
+        assertNull(store.get("b"));
+
+        store.remove("a");
+        assertNull(store.get("a"));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        OffHeapSessionStore store = new OffHeapSessionStore(2, 1024, 10);
+        store.put("a", bytes(10, 1), 0);
+        store.put("b", bytes(10, 2), 0);
+
+        // reading "a" makes "b" the least recently used session
+        assertNotNull(store.get("a"));
+        store.put("c", bytes(10, 3), 0);
+
+        assertEquals(2, store.size());
+        assertNotNull(store.get("a"));
+        assertNull(store.get("b"));
+        assertNotNull(store.get("c"));
+        assertEquals(20, store.getUsedBytes());
+    }
+
+    @Test
+    public void testByteBoundEviction() {
+        OffHeapSessionStore store = new OffHeapSessionStore(100, 100, 10);
+        store.put("a", bytes(40, 1), 0);
+        store.put("b", bytes(40, 2), 0);
+        assertEquals(80, store.getUsedBytes());
+
+        store.put("c", bytes(40, 3), 0);
+        assertEquals(2, store.size());
+        assertNull(store.get("a"));
+        assertEquals(80, store.getUsedBytes());
+
+        // a single session larger than the store is not retained and evicts nothing
+        store.put("d", bytes(101, 4), 0);
+        assertNull(store.get("d"));
+        assertEquals(2, store.size());
+        assertEquals(80, store.getUsedBytes());
+        assertEquals(100, store.getAllocatedBytes());
+    }
+
+    @Test
+    public void testExpiration() throws InterruptedException {
+        OffHeapSessionStore store = new OffHeapSessionStore(10, 1024, 10);
+        store.put("a", bytes(10, 1), 1);
+        store.put("b", bytes(10, 2), 0);
+        store.put("c", bytes(10, 3), 1);
+        assertEquals(3, store.getIds().size());
+
+        Thread.sleep(1100);
+        assertNull(store.get("a"));
+        assertEquals(1, store.getIds().size());
+        assertTrue(store.getIds().contains("b"));
+        assertEquals(10, store.getUsedBytes());
+    }
+
+    @Test
+    public void testExpiredSessionsAreEvictedFirst() throws InterruptedException {
+        OffHeapSessionStore store = new OffHeapSessionStore(2, 1024, 10);
+        store.put("a", bytes(10, 1), 0);
+        store.put("b", bytes(10, 2), 1);
+
+        Thread.sleep(1100);
+        store.put("c", bytes(10, 3), 0);
+        assertNotNull(store.get("a"));
+        assertNotNull(store.get("c"));
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    public void testBlockAccounting() {
+        OffHeapSessionStore store = new OffHeapSessionStore(10, 1024, 10);
+        store.put("a", bytes(50, 1), 0);
+        assertEquals(50, store.getUsedBytes());
+        assertEquals(1020, store.getAllocatedBytes());
+
+        // a smaller session returns its surplus blocks
+        store.put("a", bytes(20, 2), 0);
+        assertEquals(20, store.getUsedBytes());
+        assertArrayEquals(bytes(20, 2), store.get("a"));
+
+        // a larger session takes blocks from the free list
+        store.put("a", bytes(75, 3), 0);
+        assertEquals(80, store.getUsedBytes());
+        assertArrayEquals(bytes(75, 3), store.get("a"));
+
+        store.put("b", bytes(30, 5), 0);
+        assertEquals(110, store.getUsedBytes());
+        assertArrayEquals(bytes(75, 3), store.get("a"));
+        assertArrayEquals(bytes(30, 5), store.get("b"));
+
+        store.remove("a");
+        assertEquals(30, store.getUsedBytes());
+
+        // saving sessions reuses the reserved direct memory
+        for (int i = 0; i < 100; i++) {
+            store.put("c" + (i % 5), bytes(10 + i, i), 0);
+        }
+        assertEquals(1020, store.getAllocatedBytes());
+        assertArrayEquals(bytes(109, 99), store.get("c4"));
+
+        store.stop();
+        assertEquals(0, store.getUsedBytes());
+        assertEquals(0, store.getAllocatedBytes());
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testSlabs() {
+        OffHeapSessionStore store = new OffHeapSessionStore(10, 3 * 1024 * 1024 / 2, 1024);
+        store.put("a", bytes(1024 * 1024, 1), 0);
+        assertEquals(1024 * 1024, store.getAllocatedBytes());
+
+        // a session which spans both slabs, the last slab is limited by the maximum size
+        store.put("b", bytes(300 * 1024, 2), 0);
+        assertEquals(3 * 1024 * 1024 / 2, store.getAllocatedBytes());
+        assertArrayEquals(bytes(300 * 1024, 2), store.get("b"));
+
+        // "a" is evicted to make room, its blocks are reused
+        store.put("c", bytes(512 * 1024, 3), 0);
+        assertNull(store.get("a"));
+        assertArrayEquals(bytes(512 * 1024, 3), store.get("c"));
+        assertArrayEquals(bytes(300 * 1024, 2), store.get("b"));
+        assertEquals(3 * 1024 * 1024 / 2, store.getAllocatedBytes());
+    }
+
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.session;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.session.Session;
+import io.undertow.server.session.SessionConfig;
+import io.undertow.server.session.SessionListener;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the change detection, touch interval, expiration and id changes of the StoreSessionManager.
+ *
+ * @author James Moger
+ */
+public class StoreSessionManagerTest extends Assert {
+
+    /**
+     * A store which counts the writes and ignores the ttl so that the manager detects expiration.
+     */
+    static class CountingStore implements SessionStore {
+
+        final Map<String, byte[]> sessions = new ConcurrentHashMap<>();
+
+        final AtomicInteger puts = new AtomicInteger();
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public byte[] get(String id) {
+            return sessions.get(id);
+        }
+
+        @Override
+        public void put(String id, byte[] data, int ttlSeconds) {
+            puts.incrementAndGet();
+            sessions.put(id, data);
+        }
+
+        @Override
+        public void remove(String id) {
+            sessions.remove(id);
+        }
+
+        @Override
+        public Set<String> getIds() {
+            return new HashSet<>(sessions.keySet());
+        }
+    }
+
+    private CountingStore store;
+
+    private StoreSessionManager manager;
+
+    private SessionListener listener;
+
+    @Before
+    public void setup() {
+        store = new CountingStore();
+        manager = new StoreSessionManager("test", store);
+        listener = mock(SessionListener.class);
+        manager.registerSessionListener(listener);
+        manager.start();
+    }
+
+    private static SessionConfig config(String id) {
+        SessionConfig config = mock(SessionConfig.class);
+        when(config.findSessionId(any(HttpServerExchange.class))).thenReturn(id);
+        return config;
+    }
+
+    /**
+     * Creates a session within a request and completes the request.
+     */
+    private String create(String name, Object value) {
+        HttpServerExchange exchange = new HttpServerExchange(null);
+        Session session = manager.createSession(exchange, config(null));
+        session.setAttribute(name, value);
+        session.requestDone(exchange);
+        return session.getId();
+    }
+
+    /**
+     * Loads a session within a new request.
+     */
+    private Session load(HttpServerExchange exchange, String id) {
+        return manager.getSession(exchange, config(id));
+    }
+
+    @Test
+    public void testCreateAndLoad() {
+        String id = create("name", "james");
+        assertEquals(1, store.puts.get());
+        verify(listener).sessionCreated(any(Session.class), any(HttpServerExchange.class));
+
+        HttpServerExchange exchange = new HttpServerExchange(null);
+        Session session = load(exchange, id);
+        assertEquals("james", session.getAttribute("name"));
+
+        // the session is attached to the request
+        assertSame(session, load(exchange, id));
+        assertNull(load(new HttpServerExchange(null), "unknown"));
+    }
+
+    @Test
+    public void testUnchangedSessionIsNotWritten() {
+        String id = create("name", "james");
+
+        HttpServerExchange exchange = new HttpServerExchange(null);
+        Session session = load(exchange, id);
+        assertEquals("james", session.getAttribute("name"));
+        session.requestDone(exchange);
+        assertEquals(1, store.puts.get());
+    }
+
+    @Test
+    public void testChangedSessionIsWritten() {
+        String id = create("name", "james");
+
+        HttpServerExchange exchange = new HttpServerExchange(null);
+        Session session = load(exchange, id);
+        session.setAttribute("name", "frank");
+        session.requestDone(exchange);
+        assertEquals(2, store.puts.get());
+        assertEquals("frank", load(new HttpServerExchange(null), id).getAttribute("name"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testInPlaceMutationIsWritten() {
+        String id = create("items", new ArrayList<>());
+
+        HttpServerExchange exchange = new HttpServerExchange(null);
+        Session session = load(exchange, id);
+        ((List<String>) session.getAttribute("items")).add("a");
+        session.requestDone(exchange);
+        assertEquals(2, store.puts.get());
+
+        List<String> items = (List<String>) load(new HttpServerExchange(null), id).getAttribute("items");
+        assertEquals(1, items.size());
+        assertEquals("a", items.get(0));
+    }
+
+    @Test
+    public void testTouchInterval() throws InterruptedException {
+        // a one second timeout refreshes the last access time every 250ms
+        manager.setDefaultSessionTimeout(1);
+        String id = create("name", "james");
+
+        HttpServerExchange exchange = new HttpServerExchange(null);
+        Session session = load(exchange, id);
+        long lastAccessedTime = session.getLastAccessedTime();
+        session.requestDone(exchange);
+        assertEquals(1, store.puts.get());
+
+        Thread.sleep(300);
+        exchange = new HttpServerExchange(null);
+        session = load(exchange, id);
+        session.requestDone(exchange);
+        assertEquals(2, store.puts.get());
+        assertTrue(load(new HttpServerExchange(null), id).getLastAccessedTime() > lastAccessedTime);
+    }
+
+    @Test
+    public void testExpiration() throws InterruptedException {
+        manager.setDefaultSessionTimeout(1);
+        String id = create("name", "james");
+
+        Thread.sleep(1100);
+        assertNull(load(new HttpServerExchange(null), id));
+        assertFalse(store.sessions.containsKey(id));
+        verify(listener).sessionDestroyed(any(Session.class), any(HttpServerExchange.class),
+                eq(SessionListener.SessionDestroyedReason.TIMEOUT));
+    }
+
+    @Test
+    public void testInvalidate() {
+        String id = create("name", "james");
+
+        HttpServerExchange exchange = new HttpServerExchange(null);
+        load(exchange, id).invalidate(exchange);
+        assertFalse(store.sessions.containsKey(id));
+        verify(listener).sessionDestroyed(any(Session.class), any(HttpServerExchange.class),
+                eq(SessionListener.SessionDestroyedReason.INVALIDATED));
+        verify(listener, never()).sessionDestroyed(any(Session.class), any(HttpServerExchange.class),
+                eq(SessionListener.SessionDestroyedReason.TIMEOUT));
+    }
+
+    @Test
+    public void testChangeSessionId() {
+        String id = create("name", "james");
+
+        HttpServerExchange exchange = new HttpServerExchange(null);
+        SessionConfig config = config(id);
+        Session session = manager.getSession(exchange, config);
+        String newId = session.changeSessionId(exchange, config);
+
+        assertFalse(id.equals(newId));
+        assertEquals(newId, session.getId());
+        assertFalse(store.sessions.containsKey(id));
+        assertEquals("james", load(new HttpServerExchange(null), newId).getAttribute("name"));
+        verify(config).setSessionId(exchange, newId);
+        verify(listener).sessionIdChanged(session, id);
+    }
+
+}
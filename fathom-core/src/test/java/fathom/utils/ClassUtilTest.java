@@ -0,0 +1,291 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Tests that the cached annotation lookups of ClassUtil match uncached reflection.
+ *
+ * @author James Moger
+ */
+public class ClassUtilTest extends Assert {
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target({ElementType.TYPE, ElementType.METHOD, ElementType.PARAMETER})
+    public @interface Marker {
+        String value();
+    }
+
+    @Inherited
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target({ElementType.TYPE, ElementType.METHOD})
+    public @interface InheritedMarker {
+        String value();
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.ANNOTATION_TYPE)
+    public @interface Role {
+        String value();
+    }
+
+    @Role("admin")
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target({ElementType.TYPE, ElementType.METHOD})
+    public @interface Admin {
+    }
+
+    @Role("user")
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target({ElementType.TYPE, ElementType.METHOD})
+    public @interface User {
+    }
+
+    @Marker("base")
+    @InheritedMarker("base")
+    @Admin
+    public static class Base {
+
+        @Marker("method")
+        @User
+        public void annotated(@Marker("parameter") String value) {
+        }
+
+        public void plain() {
+        }
+    }
+
+    public static class Child extends Base {
+
+        @Override
+        public void annotated(String value) {
+        }
+
+        @InheritedMarker("child")
+        public void child() {
+        }
+    }
+
+    @User
+    @Marker("grandchild")
+    public static class GrandChild extends Child {
+
+        @Admin
+        public void grandChild() {
+        }
+    }
+
+    private static final List<Class<?>> CLASSES = Arrays.asList(Base.class, Child.class, GrandChild.class, Object.class);
+
+    private static final List<Class<? extends Annotation>> ANNOTATIONS = Arrays.asList(Marker.class,
+            InheritedMarker.class, Admin.class, User.class, Role.class, Deprecated.class);
+
+    private static List<Method> methods() throws NoSuchMethodException {
+        return Arrays.asList(
+                Base.class.getMethod("annotated", String.class),
+                Base.class.getMethod("plain"),
+                Child.class.getMethod("annotated", String.class),
+                Child.class.getMethod("child"),
+                GrandChild.class.getMethod("grandChild"));
+    }
+
+    // the uncached lookups
+
+    private static <T extends Annotation> T getAnnotation(Class<?> objectClass, Class<T> annotationClass) {
+        if (objectClass == null || Object.class == objectClass) {
+            return null;
+        }
+        T annotation = objectClass.getAnnotation(annotationClass);
+        return annotation != null ? annotation : getAnnotation(objectClass.getSuperclass(), annotationClass);
+    }
+
+    private static <T extends Annotation> T getAnnotation(Method method, Class<T> annotationClass) {
+        T annotation = method.getAnnotation(annotationClass);
+        return annotation != null ? annotation : getAnnotation(method.getDeclaringClass(), annotationClass);
+    }
+
+    private static <T extends Annotation> List<T> collectNestedAnnotation(Annotation[] annotations, Class<T> annotationClass) {
+        List<T> list = new ArrayList<>();
+        for (Annotation annotation : annotations) {
+            if (annotation.annotationType().isAnnotationPresent(annotationClass)) {
+                list.add(annotation.annotationType().getAnnotation(annotationClass));
+            }
+        }
+        return list;
+    }
+
+    private static <T extends Annotation> List<T> collectNestedAnnotation(Class<?> objectClass, Class<T> annotationClass) {
+        if (objectClass == null || objectClass == Object.class) {
+            return Collections.emptyList();
+        }
+        List<T> list = collectNestedAnnotation(objectClass.getDeclaredAnnotations(), annotationClass);
+        list.addAll(collectNestedAnnotation(objectClass.getSuperclass(), annotationClass));
+        return list;
+    }
+
+    private static <T extends Annotation> List<T> collectNestedAnnotation(Method method, Class<T> annotationClass) {
+        List<T> list = collectNestedAnnotation(method.getDeclaredAnnotations(), annotationClass);
+        list.addAll(collectNestedAnnotation(method.getDeclaringClass(), annotationClass));
+        return list;
+    }
+
+    @Test
+    public void testClassAnnotations() {
+        for (int i = 0; i < 2; i++) {
+            for (Class<?> objectClass : CLASSES) {
+                for (Class<? extends Annotation> annotationClass : ANNOTATIONS) {
+                    String message = objectClass.getSimpleName() + " @" + annotationClass.getSimpleName();
+                    assertEquals(message, getAnnotation(objectClass, annotationClass),
+                            ClassUtil.getAnnotation(objectClass, annotationClass));
+                }
+            }
+        }
+
+        // inherited from the superclass
+        assertEquals("base", ClassUtil.getAnnotation(Child.class, Marker.class).value());
+        assertEquals("grandchild", ClassUtil.getAnnotation(GrandChild.class, Marker.class).value());
+        assertEquals("base", ClassUtil.getAnnotation(GrandChild.class, InheritedMarker.class).value());
+        assertNull(ClassUtil.getAnnotation(Child.class, User.class));
+        assertSame(ClassUtil.getAnnotation(Child.class, Marker.class), ClassUtil.getAnnotation(Child.class, Marker.class));
+    }
+
+    @Test
+    public void testMethodAnnotations() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            for (Method method : methods()) {
+                for (Class<? extends Annotation> annotationClass : ANNOTATIONS) {
+                    String message = method + " @" + annotationClass.getSimpleName();
+                    assertEquals(message, getAnnotation(method, annotationClass),
+                            ClassUtil.getAnnotation(method, annotationClass));
+                    assertEquals(message, method.getAnnotation(annotationClass),
+                            ClassUtil.getDeclaredAnnotation(method, annotationClass));
+                }
+            }
+        }
+
+        // method-level annotations take precedence over class-level annotations
+        Method annotated = Base.class.getMethod("annotated", String.class);
+        assertEquals("method", ClassUtil.getAnnotation(annotated, Marker.class).value());
+        assertEquals("method", ClassUtil.getDeclaredAnnotation(annotated, Marker.class).value());
+
+        // an overriding method does not inherit the annotations of the overridden method
+        Method overridden = Child.class.getMethod("annotated", String.class);
+        assertEquals("base", ClassUtil.getAnnotation(overridden, Marker.class).value());
+        assertNull(ClassUtil.getDeclaredAnnotation(overridden, Marker.class));
+        assertNull(ClassUtil.getAnnotation(overridden, User.class));
+
+        Method child = Child.class.getMethod("child");
+        assertEquals("child", ClassUtil.getAnnotation(child, InheritedMarker.class).value());
+        assertNull(ClassUtil.getDeclaredAnnotation(child, Admin.class));
+        assertNotNull(ClassUtil.getAnnotation(child, Admin.class));
+    }
+
+    @Test
+    public void testParameterAnnotations() throws Exception {
+        Parameter parameter = Base.class.getMethod("annotated", String.class).getParameters()[0];
+        assertEquals("parameter", ClassUtil.getAnnotation(parameter, Marker.class).value());
+        assertNull(ClassUtil.getAnnotation(parameter, User.class));
+
+        Parameter overridden = Child.class.getMethod("annotated", String.class).getParameters()[0];
+        assertNull(ClassUtil.getAnnotation(overridden, Marker.class));
+    }
+
+    @Test
+    public void testNestedAnnotations() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            for (Class<?> objectClass : CLASSES) {
+                assertEquals(objectClass.getSimpleName(), collectNestedAnnotation(objectClass, Role.class),
+                        ClassUtil.collectNestedAnnotation(objectClass, Role.class));
+            }
+            for (Method method : methods()) {
+                assertEquals(method.toString(), collectNestedAnnotation(method, Role.class),
+                        ClassUtil.collectNestedAnnotation(method, Role.class));
+            }
+        }
+
+        List<Role> roles = ClassUtil.collectNestedAnnotation(GrandChild.class.getMethod("grandChild"), Role.class);
+        assertEquals(3, roles.size());
+        assertEquals("admin", roles.get(0).value());
+        assertEquals("user", roles.get(1).value());
+        assertEquals("admin", roles.get(2).value());
+        assertTrue(ClassUtil.collectNestedAnnotation(Child.class.getMethod("child"), Marker.class).isEmpty());
+    }
+
+    @Test
+    public void testNestedAnnotationsAreImmutable() throws Exception {
+        List<List<Role>> lists = Arrays.asList(
+                ClassUtil.collectNestedAnnotation(Base.class, Role.class),
+                ClassUtil.collectNestedAnnotation(Object.class, Role.class),
+                ClassUtil.collectNestedAnnotation(Base.class.getMethod("plain"), Role.class));
+        for (List<Role> list : lists) {
+            try {
+                list.add(null);
+                fail("Expected an immutable list");
+            } catch (UnsupportedOperationException e) {
+                // expected
+            }
+        }
+
+        // the cached list is unaffected
+        assertEquals(1, ClassUtil.collectNestedAnnotation(Base.class, Role.class).size());
+    }
+
+    @Test
+    public void testMethodMetadata() throws Exception {
+        Method method = Base.class.getMethod("plain");
+        AtomicInteger loads = new AtomicInteger();
+        Function<Method, String> name = m -> {
+            loads.incrementAndGet();
+            return m.getName();
+        };
+        Function<Method, String> nothing = m -> {
+            loads.incrementAndGet();
+            return null;
+        };
+
+        assertEquals("plain", ClassUtil.getMethodMetadata(method, name));
+        assertEquals("plain", ClassUtil.getMethodMetadata(method, name));
+        assertEquals(1, loads.get());
+
+        // missing values are remembered
+        assertNull(ClassUtil.getMethodMetadata(method, nothing));
+        assertNull(ClassUtil.getMethodMetadata(method, nothing));
+        assertEquals(2, loads.get());
+
+        // the value is derived for each method
+        assertEquals("child", ClassUtil.getMethodMetadata(Child.class.getMethod("child"), name));
+        assertEquals(3, loads.get());
+    }
+
+}
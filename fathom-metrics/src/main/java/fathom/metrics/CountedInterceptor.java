@@ -19,6 +19,7 @@ import com.codahale.metrics.Counter;
 import com.codahale.metrics.MetricRegistry;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
+import fathom.utils.ClassUtil;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 
@@ -37,7 +38,7 @@ public class CountedInterceptor implements MethodInterceptor {
     @Override
     public Object invoke(MethodInvocation invocation) throws Throwable {
 
-        Counted counted = invocation.getMethod().getAnnotation(Counted.class);
+        Counted counted = ClassUtil.getDeclaredAnnotation(invocation.getMethod(), Counted.class);
         String counterName = counted.value();
 
         if (counterName.isEmpty()) {
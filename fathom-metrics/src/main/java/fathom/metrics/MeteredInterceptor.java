@@ -18,6 +18,7 @@ package fathom.metrics;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.google.inject.Provider;
+import fathom.utils.ClassUtil;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 
@@ -35,7 +36,7 @@ public class MeteredInterceptor implements MethodInterceptor {
     @Override
     public Object invoke(MethodInvocation invocation) throws Throwable {
 
-        String timerName = invocation.getMethod().getAnnotation(Metered.class).value();
+        String timerName = ClassUtil.getDeclaredAnnotation(invocation.getMethod(), Metered.class).value();
         if (timerName.isEmpty()) {
             timerName = MetricRegistry.name(invocation.getThis().getClass().getSuperclass(), invocation.getMethod().getName());
         }
@@ -15,6 +15,7 @@
  */
 package fathom.metrics;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.JmxReporter;
 import com.codahale.metrics.Metric;
 import com.codahale.metrics.MetricRegistry;
@@ -25,6 +26,7 @@ import com.codahale.metrics.jvm.MemoryUsageGaugeSet;
 import com.codahale.metrics.jvm.ThreadStatesGaugeSet;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import fathom.Readiness;
 import fathom.Service;
 import fathom.conf.Settings;
 import fathom.utils.RequireUtil;
@@ -37,6 +39,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Implementation of the Metrics service.
@@ -50,13 +53,15 @@ public class Metrics implements Service {
 
     private final Settings settings;
     private final MetricRegistry metricRegistry;
+    private final Readiness readiness;
     private final List<Closeable> reporters;
 
     @Inject
-    public Metrics(MetricRegistry appMetrics, Settings settings) {
+    public Metrics(MetricRegistry appMetrics, Settings settings, Readiness readiness) {
 
         this.settings = settings;
         this.metricRegistry = appMetrics;
+        this.readiness = readiness;
         this.reporters = new ArrayList<>();
 
     }
@@ -71,6 +76,10 @@ public class Metrics implements Service {
 
         String applicationName = settings.getApplicationName();
 
+        // Readiness and the outcome of the warm-up phase
+        metricRegistry.register("fathom.readiness.ready", (Gauge<Integer>) () -> readiness.isReady() ? 1 : 0);
+        metricRegistry.register("fathom.warmup.duration", (Gauge<Long>) () -> readiness.getWarmUpDuration(TimeUnit.MILLISECONDS));
+
         // Register optional metrics
         if (settings.getBoolean(Settings.Setting.metrics_jvm_enabled, false)) {
             registerAll("jvm.gc", new GarbageCollectorMetricSet());
@@ -45,7 +45,7 @@ public class BasicTokenAuthenticationHandler extends StandardCredentialsHandler
     public void handle(Context context) {
         if (isAuthenticated(context)) {
             // already authenticated
-            if (isCreateSessions()) {
+            if (isCreateSessions() && !isSessionTokens()) {
                 // touch the session to prolong it's life
                 context.touchSession();
             }
@@ -74,7 +74,7 @@ public class BasicTokenAuthenticationHandler extends StandardCredentialsHandler
             String packet = authorization.substring("token".length()).trim();
             TokenCredentials tokenCredentials = new TokenCredentials(packet);
 
-            Account account = securityManager.authenticate(tokenCredentials);
+            Account account = ContextAuthentication.authenticate(securityManager, context, tokenCredentials);
             if (setupContext(context, account)) {
                 // continue the chain
                 context.next();
@@ -91,7 +91,7 @@ public class BasicTokenAuthenticationHandler extends StandardCredentialsHandler
             String username = values[0];
             String password = values[1];
 
-            Account account = this.authenticate(username, password);
+            Account account = this.authenticate(context, username, password);
             if (setupContext(context, account)) {
                 context.next();
             } else {
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest.security;
+
+import fathom.authc.AuthenticationThrottledException;
+import fathom.authc.AuthenticationToken;
+import fathom.authc.AuthenticationUnavailableException;
+import fathom.realm.Account;
+import fathom.rest.Context;
+import fathom.security.SecurityManager;
+
+/**
+ * Authenticates tokens on behalf of a request so that failures are throttled by client address.
+ *
+ * @author James Moger
+ */
+public final class ContextAuthentication {
+
+    private ContextAuthentication() {
+    }
+
+    /**
+     * Authenticates the token for the client of the Context.  If the attempt is throttled,
+     * or rejected because password hashing is saturated, a {@code Retry-After} header is
+     * set before the exception is rethrown.
+     *
+     * @param securityManager
+     * @param context
+     * @param authenticationToken
+     * @return the account or null if authentication failed
+     */
+    public static Account authenticate(SecurityManager securityManager, Context context, AuthenticationToken authenticationToken) {
+        try {
+            return securityManager.authenticate(authenticationToken, context.getRequest().getClientIp());
+        } catch (AuthenticationThrottledException e) {
+            context.setHeader("Retry-After", String.valueOf(e.getRetryAfter()));
+            throw e;
+        } catch (AuthenticationUnavailableException e) {
+            context.setHeader("Retry-After", String.valueOf(e.getRetryAfter()));
+            throw e;
+        }
+    }
+
+}
@@ -40,6 +40,9 @@ public class FormAuthenticationGuard implements RouteHandler<Context> {
 
     protected final String loginPath;
 
+    @Inject
+    protected SessionTokens sessionTokens;
+
     @Inject
     public FormAuthenticationGuard(Settings settings) {
         this.loginPath = settings.getString("fathom.formLoginPath", "/login");
@@ -49,10 +52,15 @@ public class FormAuthenticationGuard implements RouteHandler<Context> {
         this.loginPath = loginPath;
     }
 
+    public FormAuthenticationGuard(String loginPath, SessionTokens sessionTokens) {
+        this.loginPath = loginPath;
+        this.sessionTokens = sessionTokens;
+    }
+
     @Override
     public void handle(Context context) {
 
-        if (context.getSession(AuthConstants.ACCOUNT_ATTRIBUTE) == null) {
+        if (!isAuthenticated(context)) {
             // unauthenticated session, save request & redirect to login url
             String requestUri = context.getRequest().getApplicationUriWithQuery();
             context.setSession(AuthConstants.DESTINATION_ATTRIBUTE, requestUri);
@@ -64,4 +72,15 @@ public class FormAuthenticationGuard implements RouteHandler<Context> {
         }
 
     }
+
+    protected boolean isAuthenticated(Context context) {
+        if (context.getSession(AuthConstants.ACCOUNT_ATTRIBUTE) != null) {
+            return true;
+        }
+        if (context.getLocal(AuthConstants.ACCOUNT_ATTRIBUTE) != null) {
+            // restored by an upstream handler, e.g. SessionTokens
+            return true;
+        }
+        return sessionTokens != null && sessionTokens.isEnabled() && sessionTokens.authenticate(context) != null;
+    }
 }
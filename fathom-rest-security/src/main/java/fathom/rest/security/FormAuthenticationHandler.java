@@ -56,8 +56,10 @@ public final class FormAuthenticationHandler extends StandardCredentialsHandler
 
         // redirect if already authenticated
         if (isAuthenticated(context)) {
-            // touch the session to prolong it's life
-            context.touchSession();
+            if (!isSessionTokens()) {
+                // touch the session to prolong it's life
+                context.touchSession();
+            }
             redirectRequest(context);
             return;
         }
@@ -72,11 +74,13 @@ public final class FormAuthenticationHandler extends StandardCredentialsHandler
             String password = context.getParameter(AuthConstants.PASSWORD_PARAMETER).toString();
             boolean rememberMe = context.getParameter(AuthConstants.REMEMBER_ME_PARAMETER).toBoolean(false);
 
-            Account account = authenticate(username, password);
+            Account account = authenticate(context, username, password);
 
             if (account != null) {
-                // Recreate the session to prevent session fixation
-                context.recreateSession();
+                if (!isSessionTokens()) {
+                    // Recreate the session to prevent session fixation
+                    context.recreateSession();
+                }
 
                 Cookie c = new Cookie("fsession", username);
                 c.setHttpOnly(true);
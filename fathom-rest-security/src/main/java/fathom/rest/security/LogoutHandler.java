@@ -16,6 +16,7 @@
 
 package fathom.rest.security;
 
+import com.google.inject.Inject;
 import fathom.rest.Context;
 import ro.pippo.core.route.RouteHandler;
 
@@ -24,8 +25,21 @@ import ro.pippo.core.route.RouteHandler;
  */
 public class LogoutHandler implements RouteHandler<Context> {
 
+    @Inject
+    protected SessionTokens sessionTokens;
+
+    public LogoutHandler() {
+    }
+
+    public LogoutHandler(SessionTokens sessionTokens) {
+        this.sessionTokens = sessionTokens;
+    }
+
     @Override
     public void handle(Context context) {
+        if (sessionTokens != null && sessionTokens.isEnabled()) {
+            sessionTokens.clear(context);
+        }
         context.removeSession(AuthConstants.ACCOUNT_ATTRIBUTE);
         context.invalidateSession();
         context.redirect("/");
@@ -50,6 +50,7 @@ public class SecurityModule extends Module {
 
         bind(BasicAuthenticationHandler.class);
         bind(FormAuthenticationHandler.class);
+        bind(SessionTokens.class);
 
         Matcher<Class> controllers = subclassesOf(Controller.class);
         Matcher<Class> notControllers = not(controllers);
@@ -0,0 +1,399 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest.security;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import fathom.authz.Permission;
+import fathom.authz.Role;
+import fathom.conf.Settings;
+import fathom.realm.Account;
+import fathom.rest.Context;
+import fathom.security.Invalidation;
+import fathom.security.SecurityManager;
+import fathom.utils.CryptoUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ro.pippo.core.route.RouteHandler;
+
+import javax.servlet.http.Cookie;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SessionTokens is a stateless alternative to storing the authenticated Account in the servlet session.
+ * <p>
+ * After authentication a compact, HMAC-SHA256 signed token is issued as a cookie and as a
+ * response header.  The token carries the username, an expiration, and a digest of the roles
+ * and permissions at the time of issue.  On each request the token is verified and the Account
+ * is restored from a local cache or from the {@link SecurityManager}.  A token is rejected if the
+ * authorizations of the account have changed since it was issued.  Cached Accounts are evicted
+ * when they are invalidated through the {@link SecurityManager}.
+ * </p>
+ * <p>
+ * Tokens are signed with the first configured key and verified with any configured key which
+ * allows keys to be rotated without invalidating the tokens signed by the previous key.
+ * Keys are specified as {@code id:secret} pairs.
+ * </p>
+ * <pre>
+ * security.sessionTokens {
+ *   enabled = true
+ *   keys = [ "2016b:newsecret", "2016a:oldsecret" ]
+ *   ttl = 30 minutes
+ *   cookie = FathomToken
+ *   header = X-Session-Token
+ *   cacheTtl = 1 minute
+ *   cacheMax = 10000
+ * }
+ * </pre>
+ * <p>
+ * Register SessionTokens as a route handler to restore the Account for all matching requests.
+ * Because no state is kept on the server, logging out only removes the cookie; a copied token
+ * remains valid until it expires or the authorizations of the account change.
+ * </p>
+ *
+ * @author James Moger
+ */
+@Singleton
+public class SessionTokens implements RouteHandler<Context> {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionTokens.class);
+
+    public static final String SETTING_PREFIX = "security.sessionTokens";
+
+    private final SecurityManager securityManager;
+
+    private final boolean enabled;
+
+    private final String signingKeyId;
+
+    private final Map<String, String> keys;
+
+    private final long ttlSeconds;
+
+    private final String cookieName;
+
+    private final String headerName;
+
+    private final Cache<String, CachedAccount> accounts;
+
+    @Inject
+    public SessionTokens(SecurityManager securityManager, Settings settings) {
+        this(securityManager,
+                settings.getBoolean(SETTING_PREFIX + ".enabled", false),
+                getKeys(settings),
+                settings.getDuration(SETTING_PREFIX + ".ttl", TimeUnit.SECONDS, TimeUnit.MINUTES.toSeconds(30)),
+                settings.getString(SETTING_PREFIX + ".cookie", "FathomToken"),
+                settings.getString(SETTING_PREFIX + ".header", "X-Session-Token"),
+                settings.getDuration(SETTING_PREFIX + ".cacheTtl", TimeUnit.SECONDS, TimeUnit.MINUTES.toSeconds(1)),
+                settings.getInteger(SETTING_PREFIX + ".cacheMax", 10000));
+    }
+
+    public SessionTokens(SecurityManager securityManager, boolean enabled, List<String> keys, long ttlSeconds,
+                         String cookieName, String headerName, long cacheTtlSeconds, int cacheMax) {
+        Preconditions.checkArgument(!keys.isEmpty(), "At least one session token key is required");
+        Preconditions.checkArgument(ttlSeconds > 0, "The session token ttl must be positive");
+
+        this.securityManager = securityManager;
+        this.enabled = enabled;
+        this.keys = new LinkedHashMap<>();
+        for (String key : keys) {
+            int colon = key.indexOf(':');
+            Preconditions.checkArgument(colon > 0 && colon < key.length() - 1 && key.lastIndexOf('.', colon) < 0,
+                    "Session token keys must be specified as 'id:secret'");
+            this.keys.put(key.substring(0, colon), key.substring(colon + 1));
+        }
+        this.signingKeyId = this.keys.keySet().iterator().next();
+        this.ttlSeconds = ttlSeconds;
+        this.cookieName = cookieName;
+        this.headerName = headerName;
+        this.accounts = CacheBuilder.newBuilder()
+                .expireAfterWrite(Math.max(0, cacheTtlSeconds), TimeUnit.SECONDS)
+                .maximumSize(cacheMax)
+                .build();
+
+        // evict restored accounts when they are invalidated on this or another node
+        securityManager.addInvalidationListener(invalidation -> {
+            if (invalidation.getType() == Invalidation.Type.ACCOUNT) {
+                invalidate(invalidation.getName());
+            } else if (invalidation.getType() == Invalidation.Type.ROLE) {
+                Role role = new Role(invalidation.getName());
+                accounts.asMap().values().removeIf(cached -> cached.account.getAuthorizations().getRoles().contains(role));
+            } else {
+                invalidateAll();
+            }
+        });
+    }
+
+    private static List<String> getKeys(Settings settings) {
+        List<String> keys = settings.getStrings(SETTING_PREFIX + ".keys");
+        if (keys.isEmpty()) {
+            if (settings.getBoolean(SETTING_PREFIX + ".enabled", false)) {
+                log.warn("'{}.keys' is not specified, session tokens will be signed with a random key", SETTING_PREFIX);
+            }
+            keys = Collections.singletonList("random:" + CryptoUtil.generateSecretKey());
+        }
+        return keys;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Restores the Account of the request token, if there is one, and continues the chain.
+     *
+     * @param context
+     */
+    @Override
+    public void handle(Context context) {
+        if (enabled) {
+            authenticate(context);
+        }
+        context.next();
+    }
+
+    /**
+     * Restores the Account from the token of the request header or cookie and stores it in the
+     * local Context.  A cookie which is more than half-way to expiration is re-issued.
+     *
+     * @param context
+     * @return the account or null if the request has no valid token
+     */
+    public Account authenticate(Context context) {
+        Account local = context.getLocal(AuthConstants.ACCOUNT_ATTRIBUTE);
+        if (local != null) {
+            return local;
+        }
+
+        String token = context.getRequest().getHeader(headerName);
+        boolean fromCookie = false;
+        if (Strings.isNullOrEmpty(token)) {
+            Cookie cookie = context.getRequest().getCookie(cookieName);
+            token = cookie == null ? null : cookie.getValue();
+            fromCookie = true;
+        }
+
+        if (Strings.isNullOrEmpty(token)) {
+            return null;
+        }
+
+        VerifiedToken verified = verify(token);
+        if (verified == null) {
+            if (fromCookie) {
+                clear(context);
+            }
+            return null;
+        }
+
+        context.setLocal(AuthConstants.ACCOUNT_ATTRIBUTE, verified.account);
+
+        long remaining = verified.expires - currentSeconds();
+        if (fromCookie && remaining < ttlSeconds / 2) {
+            write(context, verified.account);
+        }
+
+        return verified.account;
+    }
+
+    /**
+     * Issues a token for the Account and sets it as a cookie and as a response header.
+     *
+     * @param context
+     * @param account
+     */
+    public void write(Context context, Account account) {
+        String token = issue(account);
+
+        Cookie cookie = new Cookie(cookieName, token);
+        cookie.setHttpOnly(true);
+        cookie.setPath("/");
+        cookie.setSecure(context.getRequest().isSecure());
+        cookie.setMaxAge((int) ttlSeconds);
+        context.getResponse().cookie(cookie);
+        context.setHeader(headerName, token);
+    }
+
+    /**
+     * Removes the token cookie.
+     *
+     * @param context
+     */
+    public void clear(Context context) {
+        Cookie cookie = new Cookie(cookieName, "");
+        cookie.setHttpOnly(true);
+        cookie.setPath("/");
+        cookie.setMaxAge(0);
+        context.getResponse().cookie(cookie);
+    }
+
+    /**
+     * Issues a signed token for the Account.
+     *
+     * @param account
+     * @return a signed token
+     */
+    public String issue(Account account) {
+        String username = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(account.getUsername().getBytes(StandardCharsets.UTF_8));
+        String expires = Long.toString(currentSeconds() + ttlSeconds, Character.MAX_RADIX);
+        String unsigned = signingKeyId + "." + username + "." + expires + "." + digest(account);
+        return unsigned + "." + sign(unsigned, keys.get(signingKeyId));
+    }
+
+    /**
+     * Verifies a token and restores the Account.
+     *
+     * @param token
+     * @return the account or null if the token is invalid, expired, or no longer matches the account
+     */
+    public Account verifyToken(String token) {
+        VerifiedToken verified = verify(token);
+        return verified == null ? null : verified.account;
+    }
+
+    /**
+     * Discards the locally cached Account of the username.
+     *
+     * @param username
+     */
+    public void invalidate(String username) {
+        accounts.invalidate(username);
+    }
+
+    /**
+     * Discards all locally cached Accounts.
+     */
+    public void invalidateAll() {
+        accounts.invalidateAll();
+    }
+
+    private VerifiedToken verify(String token) {
+        String[] parts = token.split("\\.");
+        if (parts.length != 5) {
+            log.debug("Malformed session token");
+            return null;
+        }
+
+        String secret = keys.get(parts[0]);
+        if (secret == null) {
+            log.debug("Session token signed with unknown key '{}'", parts[0]);
+            return null;
+        }
+
+        String unsigned = parts[0] + "." + parts[1] + "." + parts[2] + "." + parts[3];
+        byte[] expected = sign(unsigned, secret).getBytes(StandardCharsets.UTF_8);
+        if (!MessageDigest.isEqual(expected, parts[4].getBytes(StandardCharsets.UTF_8))) {
+            log.debug("Invalid session token signature");
+            return null;
+        }
+
+        String username;
+        long expires;
+        try {
+            username = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+            expires = Long.parseLong(parts[2], Character.MAX_RADIX);
+        } catch (IllegalArgumentException e) {
+            log.debug("Malformed session token", e);
+            return null;
+        }
+
+        if (expires <= currentSeconds()) {
+            log.debug("Expired session token for '{}'", username);
+            return null;
+        }
+
+        CachedAccount cached = accounts.getIfPresent(username);
+        if (cached == null) {
+            Account account = securityManager.getAccount(username);
+            if (account == null) {
+                log.debug("Session token for unknown or disabled account '{}'", username);
+                return null;
+            }
+            cached = new CachedAccount(account, digest(account));
+            accounts.put(username, cached);
+        }
+
+        if (!cached.digest.equals(parts[3])) {
+            log.debug("Authorizations of '{}' have changed since the session token was issued", username);
+            return null;
+        }
+
+        return new VerifiedToken(cached.account, expires);
+    }
+
+    private String sign(String unsigned, String secret) {
+        return CryptoUtil.hmacDigest(unsigned, secret, CryptoUtil.HMAC_SHA256);
+    }
+
+    /**
+     * Returns a short digest of the roles and permissions of the account.
+     */
+    private String digest(Account account) {
+        TreeSet<String> authorizations = new TreeSet<>();
+        for (Role role : account.getAuthorizations().getRoles()) {
+            authorizations.add("r:" + role.getName());
+            for (Permission permission : role.getPermissions()) {
+                authorizations.add("r:" + role.getName() + ":" + permission);
+            }
+        }
+        for (Permission permission : account.getAuthorizations().getPermissions()) {
+            authorizations.add("p:" + permission);
+        }
+        return CryptoUtil.getHashSHA256(String.join("\n", authorizations)).substring(0, 16);
+    }
+
+    private long currentSeconds() {
+        return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    }
+
+    private static class CachedAccount {
+
+        final Account account;
+
+        final String digest;
+
+        CachedAccount(Account account, String digest) {
+            this.account = account;
+            this.digest = digest;
+        }
+    }
+
+    private static class VerifiedToken {
+
+        final Account account;
+
+        final long expires;
+
+        VerifiedToken(Account account, long expires) {
+            this.account = account;
+            this.expires = expires;
+        }
+    }
+
+}
@@ -16,6 +16,7 @@
 
 package fathom.rest.security;
 
+import com.google.inject.Inject;
 import fathom.authc.StandardCredentials;
 import fathom.realm.Account;
 import fathom.rest.Context;
@@ -31,6 +32,9 @@ public abstract class StandardCredentialsHandler {
 
     protected final SecurityManager securityManager;
 
+    @Inject
+    protected SessionTokens sessionTokens;
+
     protected StandardCredentialsHandler(SecurityManager securityManager) {
         this.securityManager = securityManager;
     }
@@ -46,9 +50,22 @@ public abstract class StandardCredentialsHandler {
         if (account == null) {
             account = context.getLocal(AuthConstants.ACCOUNT_ATTRIBUTE);
         }
+        if (account == null && isSessionTokens()) {
+            account = sessionTokens.authenticate(context);
+        }
         return account != null && account.isAuthenticated();
     }
 
+    /**
+     * Determines if authenticated Accounts are kept in signed session tokens
+     * rather than in the servlet session.
+     *
+     * @return true if session tokens are enabled
+     */
+    protected final boolean isSessionTokens() {
+        return sessionTokens != null && sessionTokens.isEnabled();
+    }
+
     /**
      * Authenticate the supplied credentials and setup the Context.
      *
@@ -62,14 +79,33 @@ public abstract class StandardCredentialsHandler {
         return account;
     }
 
+    /**
+     * Authenticate the supplied credentials of the client of the Context.
+     *
+     * @param context
+     * @param username
+     * @param password
+     * @return an account if the authentication is successful
+     */
+    protected Account authenticate(Context context, String username, String password) {
+        StandardCredentials authenticationToken = new StandardCredentials(username, password);
+        Account account = ContextAuthentication.authenticate(securityManager, context, authenticationToken);
+        return account;
+    }
+
     protected boolean setupContext(Context context, Account account) {
         if (account != null) {
             // store the Account in the local Context
             context.setLocal(AuthConstants.ACCOUNT_ATTRIBUTE, account);
 
             if (isCreateSessions()) {
-                // store the Account in a Session
-                context.setSession(AuthConstants.ACCOUNT_ATTRIBUTE, account);
+                if (isSessionTokens()) {
+                    // issue a signed token for the Account
+                    sessionTokens.write(context, account);
+                } else {
+                    // store the Account in a Session
+                    context.setSession(AuthConstants.ACCOUNT_ATTRIBUTE, account);
+                }
             }
 
             return true;
@@ -24,6 +24,7 @@ import fathom.authz.AuthorizationException;
 import fathom.realm.Account;
 import fathom.rest.Context;
 import fathom.rest.security.AuthConstants;
+import fathom.rest.security.ContextAuthentication;
 import fathom.security.SecurityManager;
 import fathom.utils.ClassUtil;
 import org.aopalliance.intercept.MethodInvocation;
@@ -85,7 +86,7 @@ public class ControllerInterceptor extends SecurityInterceptor {
             if (account.isGuest()) {
                 // authenticate by token
                 TokenCredentials credentials = new TokenCredentials(token);
-                account = securityManager.get().authenticate(credentials);
+                account = ContextAuthentication.authenticate(securityManager.get(), context, credentials);
                 if (account == null) {
                     throw new AuthorizationException("Invalid '{}' value '{}'", tokenName, token);
                 }
@@ -15,18 +15,47 @@
  */
 package fathom.rest.security.aop;
 
+import fathom.utils.ClassUtil;
+
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Function;
 
 /**
  * @author James Moger
  */
 public class SecurityUtil {
 
+    private static final Function<Method, Collection<String>> PERMISSIONS = SecurityUtil::loadPermissions;
+
+    private static final Function<Method, Collection<String>> ROLES = SecurityUtil::loadRoles;
+
+    /**
+     * Returns the required permissions of the method and the declaring class.
+     * The result is cached per method.
+     *
+     * @param method
+     * @return an unmodifiable collection of permissions
+     */
     public static Collection<String> collectPermissions(Method method) {
+        return ClassUtil.getMethodMetadata(method, PERMISSIONS);
+    }
+
+    /**
+     * Returns the required roles of the method and the declaring class.
+     * The result is cached per method.
+     *
+     * @param method
+     * @return an unmodifiable collection of roles
+     */
+    public static Collection<String> collectRoles(Method method) {
+        return ClassUtil.getMethodMetadata(method, ROLES);
+    }
+
+    private static Collection<String> loadPermissions(Method method) {
         List<String> permissions = new ArrayList<>();
         permissions.addAll(collectPermissions(method.getAnnotation(RequirePermissions.class)));
         if (method.isAnnotationPresent(RequirePermission.class)) {
@@ -38,7 +67,7 @@ public class SecurityUtil {
             permissions.add(method.getDeclaringClass().getAnnotation(RequirePermission.class).value());
         }
 
-        return permissions;
+        return Collections.unmodifiableList(permissions);
     }
 
     private static Collection<String> collectPermissions(RequirePermissions requirePermissions) {
@@ -53,7 +82,7 @@ public class SecurityUtil {
         return permissions;
     }
 
-    public static Collection<String> collectRoles(Method method) {
+    private static Collection<String> loadRoles(Method method) {
         List<String> roles = new ArrayList<>();
         roles.addAll(collectRoles(method.getAnnotation(RequireRoles.class)));
         if (method.isAnnotationPresent(RequireRole.class)) {
@@ -64,7 +93,7 @@ public class SecurityUtil {
         if (method.getDeclaringClass().isAnnotationPresent(RequireRole.class)) {
             roles.add(method.getDeclaringClass().getAnnotation(RequireRole.class).value());
         }
-        return roles;
+        return Collections.unmodifiableList(roles);
     }
 
     private static Collection<String> collectRoles(RequireRoles requireRoles) {
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest.security;
+
+import fathom.authc.StandardCredentials;
+import fathom.realm.Account;
+import fathom.security.SecurityManager;
+import fathom.utils.CryptoUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the signing, verification, key rotation, and invalidation of session tokens.
+ *
+ * @author James Moger
+ */
+public class SessionTokensTest extends Assert {
+
+    /**
+     * A SecurityManager which restores accounts from a map.
+     */
+    static class TestSecurityManager extends SecurityManager {
+
+        final Map<String, Account> accounts = new ConcurrentHashMap<>();
+
+        final AtomicInteger lookups = new AtomicInteger();
+
+        @Override
+        public Account getAccount(String username) {
+            lookups.incrementAndGet();
+            return accounts.get(username);
+        }
+
+        @Override
+        public <X> List<X> getRealms(Class<X> realmClass) {
+            return new ArrayList<>();
+        }
+
+        void put(String username, String... roles) {
+            Account account = new Account(username, new StandardCredentials(username, "secret"));
+            account.getAuthorizations().addRoles(roles);
+            accounts.put(username, account);
+        }
+    }
+
+    private static SessionTokens create(TestSecurityManager securityManager, String... keys) {
+        return new SessionTokens(securityManager, true, Arrays.asList(keys), TimeUnit.MINUTES.toSeconds(30),
+                "FathomToken", "X-Session-Token", TimeUnit.MINUTES.toSeconds(1), 100);
+    }
+
+    @Test
+    public void testSignAndVerify() {
+        TestSecurityManager securityManager = new TestSecurityManager();
+        securityManager.put("james", "admin");
+        SessionTokens tokens = create(securityManager, "a:secret");
+
+        String token = tokens.issue(securityManager.getAccount("james"));
+        assertTrue(token, token.startsWith("a."));
+        assertEquals(5, token.split("\\.").length);
+
+        Account account = tokens.verifyToken(token);
+        assertNotNull(account);
+        assertEquals("james", account.getUsername());
+        assertTrue(account.hasRole("admin"));
+
+        assertNull(tokens.verifyToken("garbage"));
+    }
+
+    @Test
+    public void testTamperedSignature() {
+        TestSecurityManager securityManager = new TestSecurityManager();
+        securityManager.put("james", "admin");
+        SessionTokens tokens = create(securityManager, "a:secret");
+
+        String token = tokens.issue(securityManager.getAccount("james"));
+        char last = token.charAt(token.length() - 1);
+        String tampered = token.substring(0, token.length() - 1) + (last == '0' ? '1' : '0');
+        assertNull(tokens.verifyToken(tampered));
+
+        // a token signed with a different secret for the same key id
+        SessionTokens forger = create(securityManager, "a:guessed");
+        assertNull(tokens.verifyToken(forger.issue(securityManager.getAccount("james"))));
+    }
+
+    @Test
+    public void testExpiredToken() {
+        TestSecurityManager securityManager = new TestSecurityManager();
+        securityManager.put("james", "admin");
+        SessionTokens tokens = create(securityManager, "a:secret");
+
+        // re-sign a valid token with an expiration in the past
+        String[] parts = tokens.issue(securityManager.getAccount("james")).split("\\.");
+        long expired = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) - 1;
+        String unsigned = parts[0] + "." + parts[1] + "." + Long.toString(expired, Character.MAX_RADIX) + "." + parts[3];
+        String token = unsigned + "." + CryptoUtil.hmacDigest(unsigned, "secret", CryptoUtil.HMAC_SHA256);
+
+        assertNull(tokens.verifyToken(token));
+    }
+
+    @Test
+    public void testKeyRotation() {
+        TestSecurityManager securityManager = new TestSecurityManager();
+        securityManager.put("james", "admin");
+        Account james = securityManager.getAccount("james");
+
+        String oldToken = create(securityManager, "a:old").issue(james);
+
+        // the new key signs, the old key still verifies
+        SessionTokens rotated = create(securityManager, "b:new", "a:old");
+        assertNotNull(rotated.verifyToken(oldToken));
+        String newToken = rotated.issue(james);
+        assertTrue(newToken, newToken.startsWith("b."));
+        assertNotNull(rotated.verifyToken(newToken));
+
+        // the old key is retired
+        SessionTokens retired = create(securityManager, "b:new");
+        assertNull(retired.verifyToken(oldToken));
+        assertNotNull(retired.verifyToken(newToken));
+    }
+
+    @Test
+    public void testUnknownKeyId() {
+        TestSecurityManager securityManager = new TestSecurityManager();
+        securityManager.put("james", "admin");
+        SessionTokens tokens = create(securityManager, "a:secret");
+
+        // same secret, different key id
+        String token = create(securityManager, "z:secret").issue(securityManager.getAccount("james"));
+        assertNull(tokens.verifyToken(token));
+        assertEquals(1, securityManager.lookups.get());
+    }
+
+    @Test
+    public void testChangedRolesAreRejected() {
+        TestSecurityManager securityManager = new TestSecurityManager();
+        securityManager.put("james", "admin");
+        SessionTokens tokens = create(securityManager, "a:secret");
+
+        String token = tokens.issue(securityManager.getAccount("james"));
+        assertNotNull(tokens.verifyToken(token));
+
+        // the administrator role is revoked
+        securityManager.put("james", "user");
+        tokens.invalidate("james");
+        assertNull(tokens.verifyToken(token));
+
+        // a fresh token reflects the current roles
+        Account account = tokens.verifyToken(tokens.issue(securityManager.getAccount("james")));
+        assertNotNull(account);
+        assertTrue(account.hasRole("user"));
+        assertFalse(account.hasRole("admin"));
+    }
+
+    @Test
+    public void testInvalidationListenerEvictsAccounts() {
+        TestSecurityManager securityManager = new TestSecurityManager();
+        securityManager.put("james", "admin");
+        securityManager.put("frank", "user");
+        SessionTokens tokens = create(securityManager, "a:secret");
+
+        String james = tokens.issue(securityManager.getAccount("james"));
+        String frank = tokens.issue(securityManager.getAccount("frank"));
+        assertNotNull(tokens.verifyToken(james));
+        assertNotNull(tokens.verifyToken(frank));
+        int lookups = securityManager.lookups.get();
+
+        // cached accounts are served without a lookup
+        assertNotNull(tokens.verifyToken(james));
+        assertEquals(lookups, securityManager.lookups.get());
+
+        // the account is changed and invalidated through the SecurityManager
+        securityManager.put("james", "user");
+        securityManager.invalidateAccount("james");
+        assertNull(tokens.verifyToken(james));
+        assertNotNull(tokens.verifyToken(frank));
+
+        // role invalidation evicts the accounts which have the role
+        lookups = securityManager.lookups.get();
+        securityManager.invalidateRole("user");
+        assertNotNull(tokens.verifyToken(frank));
+        assertEquals(lookups + 1, securityManager.lookups.get());
+    }
+
+}
@@ -22,6 +22,7 @@ import com.google.common.base.Optional;
 import com.google.common.base.Strings;
 import fathom.conf.Settings;
 import fathom.rest.RestServlet;
+import fathom.rest.RouteRegistration;
 import fathom.rest.controller.Auth;
 import fathom.rest.controller.BasicAuth;
 import fathom.rest.controller.Body;
@@ -38,6 +39,7 @@ import fathom.rest.controller.Required;
 import fathom.rest.controller.Return;
 import fathom.rest.controller.ReturnHeader;
 import fathom.rest.controller.Session;
+import fathom.rest.paging.PageRequest;
 import fathom.rest.security.aop.RequireToken;
 import fathom.utils.ClassUtil;
 import fathom.utils.Util;
@@ -252,8 +254,8 @@ public class SwaggerBuilder {
 
         // register each valid RESTful route
         for (Route route : routes) {
-            if (route.getRouteHandler() instanceof ControllerHandler) {
-                ControllerHandler handler = (ControllerHandler) route.getRouteHandler();
+            if (RouteRegistration.getRegisteredHandler(route) instanceof ControllerHandler) {
+                ControllerHandler handler = (ControllerHandler) RouteRegistration.getRegisteredHandler(route);
                 if (canRegister(route, handler)) {
                     registerOperation(swagger, route, handler);
                 }
@@ -701,6 +703,23 @@ public class SwaggerBuilder {
                 continue;
             }
 
+            if (PageRequest.class == methodParameter.getType()) {
+                // keyset paging is driven by the cursor & limit query parameters
+                QueryParameter cursorParameter = new QueryParameter();
+                cursorParameter.setName(PageRequest.CURSOR_PARAMETER);
+                cursorParameter.setDescription("Opaque cursor from the Link header of a previous page");
+                cursorParameter.setType("string");
+                operation.addParameter(cursorParameter);
+
+                QueryParameter limitParameter = new QueryParameter();
+                limitParameter.setName(PageRequest.LIMIT_PARAMETER);
+                limitParameter.setDescription("Maximum number of items to return");
+                limitParameter.setType("integer");
+                limitParameter.setFormat("int32");
+                operation.addParameter(limitParameter);
+                continue;
+            }
+
             if (methodParameter.isAnnotationPresent(Body.class)) {
 
                 // BODY
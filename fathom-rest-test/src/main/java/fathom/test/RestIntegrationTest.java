@@ -20,6 +20,7 @@ import com.jayway.restassured.mapper.ObjectMapper;
 import com.jayway.restassured.mapper.ObjectMapperDeserializationContext;
 import com.jayway.restassured.mapper.ObjectMapperSerializationContext;
 import fathom.exception.FathomException;
+import fathom.test.load.LoadGenerator;
 import org.junit.Before;
 import ro.pippo.core.ContentTypeEngine;
 import ro.pippo.core.ContentTypeEngines;
@@ -62,4 +63,13 @@ public class RestIntegrationTest extends FathomIntegrationTest {
         };
     }
 
+    /**
+     * Creates a LoadGenerator for the test instance.
+     *
+     * @return a LoadGenerator
+     */
+    protected LoadGenerator getLoadGenerator() {
+        return new LoadGenerator(getTestBoot().getSettings().getFathomUrl());
+    }
+
 }
\ No newline at end of file
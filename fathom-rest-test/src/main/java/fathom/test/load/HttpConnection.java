@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.test.load;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A minimal persistent HTTP/1.1 connection.
+ * <p>
+ * Each load worker owns one connection so the number of workers is exactly the
+ * number of concurrent connections to the server.  Response bodies are read and
+ * discarded.
+ * </p>
+ *
+ * @author James Moger
+ */
+class HttpConnection implements Closeable {
+
+    private static final Set<String> IDEMPOTENT_METHODS = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList("GET", "HEAD", "PUT", "DELETE", "OPTIONS", "TRACE")));
+
+    private final String host;
+
+    private final int port;
+
+    private final int timeoutMillis;
+
+    private final String hostHeader;
+
+    private final byte[] buffer = new byte[8192];
+
+    private final StringBuilder line = new StringBuilder();
+
+    private Socket socket;
+
+    private InputStream in;
+
+    private OutputStream out;
+
+    private boolean sent;
+
+    HttpConnection(String host, int port, int timeoutMillis) {
+        this.host = host;
+        this.port = port;
+        this.timeoutMillis = timeoutMillis;
+        this.hostHeader = host + ":" + port;
+    }
+
+    /**
+     * Sends the request and reads the complete response.
+     * <p>
+     * If a reused connection fails the request is retried once on a new connection,
+     * but only if the method is idempotent or the request was never sent.  A
+     * non-idempotent request which may have reached the server is not repeated.
+     * </p>
+     *
+     * @param request
+     * @param uri     the request uri including the context path
+     * @return the response status
+     * @throws IOException
+     */
+    int execute(LoadRequest request, String uri) throws IOException {
+        boolean reused = socket != null;
+        sent = false;
+        try {
+            return exchange(request, uri);
+        } catch (IOException e) {
+            close();
+            if (!reused || (sent && !IDEMPOTENT_METHODS.contains(request.getMethod()))) {
+                throw e;
+            }
+            // the server may have closed an idle keep-alive connection, retry once
+            return exchange(request, uri);
+        }
+    }
+
+    private int exchange(LoadRequest request, String uri) throws IOException {
+        if (socket == null) {
+            connect();
+        }
+
+        writeRequest(request, uri);
+
+        String statusLine = readLine();
+        if (statusLine == null) {
+            throw new EOFException("Connection closed by server");
+        }
+        int status = parseStatus(statusLine);
+
+        long contentLength = -1;
+        boolean chunked = false;
+        boolean keepAlive = statusLine.startsWith("HTTP/1.1");
+        String header;
+        while ((header = readLine()) != null && !header.isEmpty()) {
+            int colon = header.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String name = header.substring(0, colon).trim();
+            String value = header.substring(colon + 1).trim();
+            if ("Content-Length".equalsIgnoreCase(name)) {
+                contentLength = Long.parseLong(value);
+            } else if ("Transfer-Encoding".equalsIgnoreCase(name)) {
+                chunked = value.toLowerCase().contains("chunked");
+            } else if ("Connection".equalsIgnoreCase(name)) {
+                keepAlive = !"close".equalsIgnoreCase(value);
+            }
+        }
+
+        boolean hasBody = !"HEAD".equals(request.getMethod()) && status >= 200 && status != 204 && status != 304;
+        if (hasBody) {
+            if (chunked) {
+                skipChunks();
+            } else if (contentLength >= 0) {
+                skip(contentLength);
+            } else {
+                // body is delimited by the end of the connection
+                while (in.read(buffer) != -1) {
+                }
+                keepAlive = false;
+            }
+        }
+
+        if (!keepAlive) {
+            close();
+        }
+
+        return status;
+    }
+
+    private void connect() throws IOException {
+        socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout(timeoutMillis);
+        socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+        in = new BufferedInputStream(socket.getInputStream(), buffer.length);
+        out = new BufferedOutputStream(socket.getOutputStream(), buffer.length);
+    }
+
+    private void writeRequest(LoadRequest request, String uri) throws IOException {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append(request.getMethod()).append(' ').append(uri).append(" HTTP/1.1\r\n");
+        sb.append("Host: ").append(hostHeader).append("\r\n");
+        for (Map.Entry<String, String> entry : request.getHeaders().entrySet()) {
+            sb.append(entry.getKey()).append(": ").append(entry.getValue()).append("\r\n");
+        }
+        byte[] body = request.getBody();
+        if (body != null) {
+            sb.append("Content-Length: ").append(body.length).append("\r\n");
+        }
+        sb.append("\r\n");
+
+        out.write(sb.toString().getBytes(StandardCharsets.ISO_8859_1));
+        if (body != null) {
+            out.write(body);
+        }
+        out.flush();
+        sent = true;
+    }
+
+    private int parseStatus(String statusLine) throws IOException {
+        int start = statusLine.indexOf(' ');
+        if (start < 0 || statusLine.length() < start + 4) {
+            throw new IOException("Invalid status line: " + statusLine);
+        }
+        try {
+            return Integer.parseInt(statusLine.substring(start + 1, start + 4));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid status line: " + statusLine);
+        }
+    }
+
+    private void skipChunks() throws IOException {
+        while (true) {
+            String size = readLine();
+            if (size == null) {
+                throw new EOFException("Connection closed while reading chunked body");
+            }
+            int semicolon = size.indexOf(';');
+            long length = Long.parseLong((semicolon < 0 ? size : size.substring(0, semicolon)).trim(), 16);
+            if (length == 0) {
+                // skip trailers
+                String trailer;
+                while ((trailer = readLine()) != null && !trailer.isEmpty()) {
+                }
+                return;
+            }
+            skip(length);
+            readLine();
+        }
+    }
+
+    private void skip(long length) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read == -1) {
+                throw new EOFException("Connection closed with " + remaining + " bytes of body remaining");
+            }
+            remaining -= read;
+        }
+    }
+
+    private String readLine() throws IOException {
+        line.setLength(0);
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                return line.toString();
+            }
+            line.append((char) c);
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+
+    @Override
+    public void close() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            socket = null;
+            in = null;
+            out = null;
+        }
+    }
+
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.test.load;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import fathom.exception.FathomException;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * LoadGenerator drives a running Fathom server with a closed or an open workload
+ * model and records the latency distribution.
+ * <p>
+ * In the <em>closed</em> model a fixed number of connections issue requests back to
+ * back, so the offered load depends on how fast the server responds.
+ * </p>
+ * <p>
+ * In the <em>open</em> model requests are scheduled at a fixed rate regardless of
+ * how fast the server responds.  Latency is measured from the time a request was
+ * scheduled to be sent, not from the time it was actually sent, so requests which
+ * were delayed by a stalled server are accounted for (coordinated omission
+ * correction).  The uncorrected service time is recorded separately.
+ * </p>
+ * <pre>
+ * LoadResult result = new LoadGenerator("http://localhost:8080")
+ *     .openModel(2000)
+ *     .concurrency(64)
+ *     .warmup(2, TimeUnit.SECONDS)
+ *     .duration(10, TimeUnit.SECONDS)
+ *     .run(LoadRequest.get("/api/items"));
+ *
+ * result.assertLatency(99, 20, TimeUnit.MILLISECONDS).assertThroughput(1950);
+ * </pre>
+ *
+ * @author James Moger
+ */
+public class LoadGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadGenerator.class);
+
+    /**
+     * Latencies are recorded in microseconds, up to one hour.
+     */
+    static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    private final String host;
+
+    private final int port;
+
+    private final String contextPath;
+
+    private boolean openModel;
+
+    private double rate;
+
+    private int concurrency;
+
+    private long warmupNanos;
+
+    private long durationNanos;
+
+    private int timeoutMillis;
+
+    /**
+     * Creates a LoadGenerator for the server at the specified url.
+     *
+     * @param baseUrl e.g. http://localhost:8080/context
+     */
+    public LoadGenerator(String baseUrl) {
+        URI uri = URI.create(baseUrl);
+        if (!"http".equalsIgnoreCase(uri.getScheme())) {
+            throw new FathomException("LoadGenerator only supports http urls, not '{}'", baseUrl);
+        }
+        this.host = uri.getHost();
+        this.port = uri.getPort() > 0 ? uri.getPort() : 80;
+
+        String path = uri.getRawPath() == null ? "" : uri.getRawPath();
+        this.contextPath = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+
+        this.concurrency = 1;
+        this.durationNanos = TimeUnit.SECONDS.toNanos(10);
+        this.timeoutMillis = (int) TimeUnit.SECONDS.toMillis(30);
+    }
+
+    /**
+     * Configures a closed workload of concurrent connections which send requests back to back.
+     *
+     * @param concurrency the number of connections
+     * @return the generator
+     */
+    public LoadGenerator closedModel(int concurrency) {
+        this.openModel = false;
+        this.rate = 0;
+        return concurrency(concurrency);
+    }
+
+    /**
+     * Configures an open workload with a constant arrival rate.  The default concurrency
+     * is raised so that a server with 50ms response times could sustain the rate.
+     *
+     * @param requestsPerSecond the target arrival rate
+     * @return the generator
+     */
+    public LoadGenerator openModel(double requestsPerSecond) {
+        Preconditions.checkArgument(requestsPerSecond > 0, "The request rate must be positive");
+        this.openModel = true;
+        this.rate = requestsPerSecond;
+        this.concurrency = Math.max(concurrency, (int) Math.min(256, Math.ceil(requestsPerSecond / 20)));
+        return this;
+    }
+
+    /**
+     * Sets the number of concurrent connections.  In the open model this bounds the
+     * number of requests which can be in flight at once.
+     *
+     * @param concurrency
+     * @return the generator
+     */
+    public LoadGenerator concurrency(int concurrency) {
+        Preconditions.checkArgument(concurrency > 0, "The concurrency must be positive");
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * Sets the warmup period during which requests are sent but not recorded.
+     *
+     * @param warmup
+     * @param unit
+     * @return the generator
+     */
+    public LoadGenerator warmup(long warmup, TimeUnit unit) {
+        Preconditions.checkArgument(warmup >= 0, "The warmup must not be negative");
+        this.warmupNanos = unit.toNanos(warmup);
+        return this;
+    }
+
+    /**
+     * Sets the measured duration, excluding the warmup.
+     *
+     * @param duration
+     * @param unit
+     * @return the generator
+     */
+    public LoadGenerator duration(long duration, TimeUnit unit) {
+        Preconditions.checkArgument(duration > 0, "The duration must be positive");
+        this.durationNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    /**
+     * Sets the connect and read timeout of a request.
+     *
+     * @param timeout
+     * @param unit
+     * @return the generator
+     */
+    public LoadGenerator timeout(long timeout, TimeUnit unit) {
+        Preconditions.checkArgument(timeout > 0, "The timeout must be positive");
+        this.timeoutMillis = (int) Math.max(1, unit.toMillis(timeout));
+        return this;
+    }
+
+    /**
+     * Runs the workload.  If several requests are specified they are issued in turn.
+     *
+     * @param requests
+     * @return the result
+     */
+    public LoadResult run(LoadRequest... requests) {
+        Preconditions.checkArgument(requests.length > 0, "At least one request must be specified");
+
+        Run run = new Run(requests);
+        log.debug("Starting {} model load of {} with {} connections{}", openModel ? "open" : "closed",
+                requests.length == 1 ? requests[0] : requests.length + " requests", concurrency,
+                openModel ? " at " + rate + " req/s" : "");
+
+        ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("fathom-load-%d").setDaemon(true).build();
+        List<Thread> threads = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            final int worker = i;
+            Thread thread = threadFactory.newThread(() -> run.work(worker));
+            threads.add(thread);
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        try {
+            long deadline = run.end + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) * 2;
+            for (Thread thread : threads) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                thread.join(Math.max(1, remaining));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FathomException(e, "Interrupted while waiting for the load to complete");
+        } finally {
+            run.stopped = true;
+        }
+
+        LoadResult result = new LoadResult(openModel, rate, concurrency, durationNanos,
+                run.completed.sum(), run.errors.sum(), run.statusCounts(),
+                run.latency.getIntervalHistogram(), run.serviceTime.getIntervalHistogram(), run.lastError.get());
+        log.debug("{}", result);
+        return result;
+    }
+
+    /**
+     * The state of one execution of the workload.
+     */
+    private class Run {
+
+        final LoadRequest[] requests;
+
+        final String[] uris;
+
+        final long start;
+
+        final long measureStart;
+
+        final long end;
+
+        final Recorder latency = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+
+        final Recorder serviceTime = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+
+        final LongAdder completed = new LongAdder();
+
+        final LongAdder errors = new LongAdder();
+
+        final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+        final AtomicReference<Throwable> lastError = new AtomicReference<>();
+
+        volatile boolean stopped;
+
+        Run(LoadRequest[] requests) {
+            this.requests = requests;
+            this.uris = new String[requests.length];
+            for (int i = 0; i < requests.length; i++) {
+                uris[i] = contextPath + requests[i].getPath();
+            }
+            this.start = System.nanoTime();
+            this.measureStart = start + warmupNanos;
+            this.end = measureStart + durationNanos;
+        }
+
+        void work(int worker) {
+            try (HttpConnection connection = new HttpConnection(host, port, timeoutMillis)) {
+                if (openModel) {
+                    workOpen(worker, connection);
+                } else {
+                    workClosed(worker, connection);
+                }
+            }
+        }
+
+        /**
+         * Each worker handles every n-th slot of the global schedule.  A worker which
+         * falls behind sends immediately, the delay is part of the recorded latency.
+         */
+        private void workOpen(int worker, HttpConnection connection) {
+            double intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+            for (long slot = worker; !stopped; slot += concurrency) {
+                long intended = start + (long) (slot * intervalNanos);
+                if (intended >= end) {
+                    break;
+                }
+
+                long now;
+                while ((now = System.nanoTime()) < intended) {
+                    LockSupport.parkNanos(intended - now);
+                }
+
+                send(connection, (int) (slot % requests.length), intended, now);
+            }
+        }
+
+        private void workClosed(int worker, HttpConnection connection) {
+            int index = worker % requests.length;
+            long now;
+            while (!stopped && (now = System.nanoTime()) < end) {
+                send(connection, index, now, now);
+                index = (index + 1) % requests.length;
+            }
+        }
+
+        private void send(HttpConnection connection, int index, long intended, long sent) {
+            LoadRequest request = requests[index];
+            int status = 0;
+            try {
+                status = connection.execute(request, uris[index]);
+            } catch (IOException | RuntimeException e) {
+                lastError.set(e);
+            }
+            long received = System.nanoTime();
+
+            if (intended < measureStart) {
+                return;
+            }
+
+            latency.recordValue(toMicros(received - intended));
+            serviceTime.recordValue(toMicros(received - sent));
+            completed.increment();
+            statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+            if (!request.isSuccess(status)) {
+                errors.increment();
+            }
+        }
+
+        private long toMicros(long nanos) {
+            return Math.min(HIGHEST_TRACKABLE_MICROS, Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos)));
+        }
+
+        Map<Integer, Long> statusCounts() {
+            Map<Integer, Long> counts = new TreeMap<>();
+            for (Map.Entry<Integer, LongAdder> entry : statuses.entrySet()) {
+                counts.put(entry.getKey(), entry.getValue().sum());
+            }
+            return counts;
+        }
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.test.load;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Describes a request issued by the LoadGenerator.
+ *
+ * @author James Moger
+ */
+public class LoadRequest {
+
+    private final String method;
+
+    private final String path;
+
+    private final Map<String, String> headers;
+
+    private byte[] body;
+
+    private int expectedStatus;
+
+    public static LoadRequest get(String path) {
+        return new LoadRequest("GET", path);
+    }
+
+    public static LoadRequest head(String path) {
+        return new LoadRequest("HEAD", path);
+    }
+
+    public static LoadRequest post(String path) {
+        return new LoadRequest("POST", path);
+    }
+
+    public static LoadRequest put(String path) {
+        return new LoadRequest("PUT", path);
+    }
+
+    public static LoadRequest delete(String path) {
+        return new LoadRequest("DELETE", path);
+    }
+
+    public LoadRequest(String method, String path) {
+        this.method = method.toUpperCase();
+        this.path = path.startsWith("/") ? path : "/" + path;
+        this.headers = new LinkedHashMap<>();
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public Map<String, String> getHeaders() {
+        return Collections.unmodifiableMap(headers);
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * Returns the expected response status or 0 if any status below 400 is a success.
+     *
+     * @return the expected status
+     */
+    public int getExpectedStatus() {
+        return expectedStatus;
+    }
+
+    public LoadRequest header(String name, String value) {
+        headers.put(name, value);
+        return this;
+    }
+
+    public LoadRequest accept(String contentType) {
+        return header("Accept", contentType);
+    }
+
+    public LoadRequest body(String contentType, String content) {
+        return body(contentType, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public LoadRequest body(String contentType, byte[] content) {
+        header("Content-Type", contentType);
+        this.body = content;
+        return this;
+    }
+
+    /**
+     * Sets the response status which identifies a successful request.
+     *
+     * @param status
+     * @return the request
+     */
+    public LoadRequest expect(int status) {
+        this.expectedStatus = status;
+        return this;
+    }
+
+    boolean isSuccess(int status) {
+        return expectedStatus == 0 ? status > 0 && status < 400 : status == expectedStatus;
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + path;
+    }
+
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.test.load;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of a LoadGenerator run with assertions for service level objectives.
+ * <p>
+ * Latencies are recorded in microseconds.  For an open workload the latency is
+ * corrected for coordinated omission, for a closed workload latency and service
+ * time are identical.
+ * </p>
+ *
+ * @author James Moger
+ */
+public class LoadResult {
+
+    private final boolean openModel;
+
+    private final double targetRate;
+
+    private final int concurrency;
+
+    private final long durationNanos;
+
+    private final long requests;
+
+    private final long errors;
+
+    private final Map<Integer, Long> statusCounts;
+
+    private final Histogram latency;
+
+    private final Histogram serviceTime;
+
+    private final Throwable lastError;
+
+    LoadResult(boolean openModel, double targetRate, int concurrency, long durationNanos, long requests, long errors,
+               Map<Integer, Long> statusCounts, Histogram latency, Histogram serviceTime, Throwable lastError) {
+        this.openModel = openModel;
+        this.targetRate = targetRate;
+        this.concurrency = concurrency;
+        this.durationNanos = durationNanos;
+        this.requests = requests;
+        this.errors = errors;
+        this.statusCounts = Collections.unmodifiableMap(statusCounts);
+        this.latency = latency;
+        this.serviceTime = serviceTime;
+        this.lastError = lastError;
+    }
+
+    public boolean isOpenModel() {
+        return openModel;
+    }
+
+    /**
+     * Returns the target arrival rate of an open workload, 0 for a closed workload.
+     *
+     * @return the target rate in requests per second
+     */
+    public double getTargetRate() {
+        return targetRate;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public double getErrorRate() {
+        return requests == 0 ? 0 : (double) errors / requests;
+    }
+
+    /**
+     * Returns the number of responses per status code.  Requests which failed without
+     * a response are counted as status 0.
+     *
+     * @return the status counts
+     */
+    public Map<Integer, Long> getStatusCounts() {
+        return statusCounts;
+    }
+
+    /**
+     * Returns the last transport error, if any.
+     *
+     * @return the last error or null
+     */
+    public Throwable getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Returns the achieved throughput over the measured duration.
+     *
+     * @return requests per second
+     */
+    public double getThroughput() {
+        return requests * (double) TimeUnit.SECONDS.toNanos(1) / durationNanos;
+    }
+
+    /**
+     * Returns the latency histogram in microseconds.
+     *
+     * @return the latency histogram
+     */
+    public Histogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Returns the service time histogram in microseconds, measured from the time a
+     * request was actually sent.
+     *
+     * @return the service time histogram
+     */
+    public Histogram getServiceTime() {
+        return serviceTime;
+    }
+
+    /**
+     * Returns the latency at the percentile.
+     *
+     * @param percentile e.g. 99.9
+     * @param unit
+     * @return the latency in the unit
+     */
+    public long getLatency(double percentile, TimeUnit unit) {
+        return unit.convert(latency.getValueAtPercentile(percentile), TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * Returns the service time at the percentile.
+     *
+     * @param percentile e.g. 99.9
+     * @param unit
+     * @return the service time in the unit
+     */
+    public long getServiceTime(double percentile, TimeUnit unit) {
+        return unit.convert(serviceTime.getValueAtPercentile(percentile), TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * Asserts that the latency at the percentile does not exceed the limit.
+     *
+     * @param percentile e.g. 99
+     * @param limit
+     * @param unit
+     * @return the result
+     */
+    public LoadResult assertLatency(double percentile, long limit, TimeUnit unit) {
+        assertRequests();
+        long limitMicros = unit.toMicros(limit);
+        long actualMicros = latency.getValueAtPercentile(percentile);
+        if (actualMicros > limitMicros) {
+            fail(String.format("p%s latency of %.3f ms exceeds %.3f ms", formatPercentile(percentile),
+                    actualMicros / 1000d, limitMicros / 1000d));
+        }
+        return this;
+    }
+
+    /**
+     * Asserts that the achieved throughput is at least the specified rate.
+     *
+     * @param requestsPerSecond
+     * @return the result
+     */
+    public LoadResult assertThroughput(double requestsPerSecond) {
+        assertRequests();
+        double throughput = getThroughput();
+        if (throughput < requestsPerSecond) {
+            fail(String.format("Throughput of %.1f req/s is below %.1f req/s", throughput, requestsPerSecond));
+        }
+        return this;
+    }
+
+    /**
+     * Asserts that the error rate does not exceed the specified fraction.
+     *
+     * @param maxErrorRate e.g. 0.001 for 0.1%
+     * @return the result
+     */
+    public LoadResult assertErrorRate(double maxErrorRate) {
+        assertRequests();
+        double errorRate = getErrorRate();
+        if (errorRate > maxErrorRate) {
+            fail(String.format("Error rate of %.3f%% exceeds %.3f%%", errorRate * 100, maxErrorRate * 100));
+        }
+        return this;
+    }
+
+    /**
+     * Asserts that no request failed.
+     *
+     * @return the result
+     */
+    public LoadResult assertNoErrors() {
+        return assertErrorRate(0);
+    }
+
+    private void assertRequests() {
+        if (requests == 0) {
+            fail("No requests were completed");
+        }
+    }
+
+    private void fail(String message) {
+        AssertionError error = new AssertionError(message + "\n" + this);
+        if (lastError != null) {
+            error.initCause(lastError);
+        }
+        throw error;
+    }
+
+    private String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+
+    /**
+     * Returns the latency distribution in the HdrHistogram percentile format which
+     * can be plotted with the HdrHistogram plotter.
+     *
+     * @return the percentile distribution in milliseconds
+     */
+    public String getPercentileDistribution() {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (PrintStream ps = new PrintStream(os, false, StandardCharsets.UTF_8.name())) {
+            latency.outputPercentileDistribution(ps, 1000d);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return new String(os.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        if (openModel) {
+            sb.append(String.format("open model, %.1f req/s target, %d connections", targetRate, concurrency));
+        } else {
+            sb.append(String.format("closed model, %d connections", concurrency));
+        }
+        sb.append(String.format("%n%d requests in %.1fs, %.1f req/s, %d errors %s",
+                requests, durationNanos / 1e9d, getThroughput(), errors, statusCounts));
+        sb.append(String.format("%n%-14s %10s %10s %10s %10s %10s %10s", "", "p50", "p90", "p99", "p99.9", "max", "mean"));
+        append(sb, "latency (ms)", latency);
+        if (openModel) {
+            append(sb, "service (ms)", serviceTime);
+        }
+        return sb.toString();
+    }
+
+    private void append(StringBuilder sb, String label, Histogram histogram) {
+        sb.append(String.format("%n%-14s %10.3f %10.3f %10.3f %10.3f %10.3f %10.3f", label,
+                histogram.getValueAtPercentile(50) / 1000d,
+                histogram.getValueAtPercentile(90) / 1000d,
+                histogram.getValueAtPercentile(99) / 1000d,
+                histogram.getValueAtPercentile(99.9) / 1000d,
+                histogram.getMaxValue() / 1000d,
+                histogram.getMean() / 1000d));
+    }
+
+}
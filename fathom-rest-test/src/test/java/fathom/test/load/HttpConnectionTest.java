@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.test.load;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the retry of requests on a stale keep-alive connection.
+ *
+ * @author James Moger
+ */
+public class HttpConnectionTest extends Assert {
+
+    private ServerSocket serverSocket;
+
+    private Thread serverThread;
+
+    private final AtomicInteger received = new AtomicInteger();
+
+    /**
+     * Starts a server which drops the connection instead of answering the second request.
+     */
+    @Before
+    public void startServer() throws IOException {
+        serverSocket = new ServerSocket(0);
+        serverThread = new Thread(() -> {
+            while (!serverSocket.isClosed()) {
+                try (Socket socket = serverSocket.accept()) {
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+                    OutputStream out = socket.getOutputStream();
+                    String requestLine;
+                    while ((requestLine = reader.readLine()) != null) {
+                        int contentLength = 0;
+                        String header;
+                        while ((header = reader.readLine()) != null && !header.isEmpty()) {
+                            if (header.toLowerCase().startsWith("content-length:")) {
+                                contentLength = Integer.parseInt(header.substring(15).trim());
+                            }
+                        }
+                        reader.skip(contentLength);
+                        if (received.incrementAndGet() == 2) {
+                            break;
+                        }
+                        out.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok".getBytes(StandardCharsets.ISO_8859_1));
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        });
+        serverThread.setDaemon(true);
+        serverThread.start();
+    }
+
+    @After
+    public void stopServer() throws Exception {
+        serverSocket.close();
+        serverThread.join(5000);
+    }
+
+    @Test
+    public void testIdempotentRequestIsRetried() throws IOException {
+        try (HttpConnection connection = new HttpConnection("localhost", serverSocket.getLocalPort(), 5000)) {
+            assertEquals(200, connection.execute(LoadRequest.get("/items"), "/items"));
+            assertEquals(200, connection.execute(LoadRequest.get("/items"), "/items"));
+        }
+        assertEquals(3, received.get());
+    }
+
+    @Test
+    public void testPostIsNotRetried() throws IOException {
+        try (HttpConnection connection = new HttpConnection("localhost", serverSocket.getLocalPort(), 5000)) {
+            assertEquals(200, connection.execute(LoadRequest.post("/items"), "/items"));
+            try {
+                connection.execute(LoadRequest.post("/items"), "/items");
+                fail("Expected the dropped request to fail");
+            } catch (IOException e) {
+                // the request reached the server and must not be repeated
+            }
+        }
+        assertEquals(2, received.get());
+    }
+
+}
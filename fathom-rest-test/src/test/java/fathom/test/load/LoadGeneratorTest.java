@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.test.load;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tests the LoadGenerator against an embedded JDK http server.
+ *
+ * @author James Moger
+ */
+public class LoadGeneratorTest extends Assert {
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    private String baseUrl;
+
+    private final AtomicBoolean stall = new AtomicBoolean();
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/ctx/fixed", exchange -> respond(exchange, 200, "fixed length", false));
+        server.createContext("/ctx/chunked", exchange -> respond(exchange, 200, "chunked", true));
+        server.createContext("/ctx/error", exchange -> respond(exchange, 500, "error", false));
+        server.createContext("/ctx/stall", exchange -> {
+            if (stall.compareAndSet(true, false)) {
+                sleep(250);
+            }
+            respond(exchange, 200, "ok", false);
+        });
+        executor = Executors.newFixedThreadPool(8);
+        server.setExecutor(executor);
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort() + "/ctx/";
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void respond(HttpExchange exchange, int status, String body, boolean chunked) throws IOException {
+        try (InputStream is = exchange.getRequestBody()) {
+            while (is.read() != -1) {
+            }
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, chunked ? 0 : bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void testClosedModel() {
+        LoadResult result = new LoadGenerator(baseUrl)
+                .closedModel(4)
+                .warmup(100, TimeUnit.MILLISECONDS)
+                .duration(500, TimeUnit.MILLISECONDS)
+                .run(LoadRequest.get("fixed"), LoadRequest.get("chunked"), LoadRequest.post("fixed").body("text/plain", "payload"));
+
+        assertFalse(result.isOpenModel());
+        assertTrue(result.getRequests() > 0);
+        assertEquals(result.getRequests(), result.getStatusCounts().get(200).longValue());
+        assertEquals(result.getRequests(), result.getLatency().getTotalCount());
+        result.assertNoErrors().assertLatency(50, 1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testOpenModel() {
+        LoadResult result = new LoadGenerator(baseUrl)
+                .openModel(200)
+                .duration(1, TimeUnit.SECONDS)
+                .run(LoadRequest.get("fixed"));
+
+        assertTrue(result.isOpenModel());
+        // the schedule is fixed, so the number of requests is known
+        assertEquals(200, result.getRequests(), 2);
+        result.assertNoErrors().assertThroughput(190);
+    }
+
+    @Test
+    public void testCoordinatedOmissionCorrection() {
+        stall.set(true);
+        LoadResult result = new LoadGenerator(baseUrl)
+                .openModel(100)
+                .concurrency(1)
+                .duration(1, TimeUnit.SECONDS)
+                .run(LoadRequest.get("stall"));
+
+        result.assertNoErrors();
+
+        // the requests scheduled during the stall are delayed although they are served quickly
+        assertTrue(result.getLatency(95, TimeUnit.MILLISECONDS) >= 100);
+        assertTrue(result.getServiceTime(95, TimeUnit.MILLISECONDS) < 100);
+        assertTrue(result.getServiceTime().getMaxValue() >= TimeUnit.MILLISECONDS.toMicros(250));
+    }
+
+    @Test
+    public void testErrors() {
+        LoadResult result = new LoadGenerator(baseUrl)
+                .closedModel(2)
+                .duration(200, TimeUnit.MILLISECONDS)
+                .run(LoadRequest.get("error"));
+
+        assertEquals(result.getRequests(), result.getErrors());
+        assertEquals(1d, result.getErrorRate(), 0d);
+
+        try {
+            result.assertErrorRate(0.01);
+            fail("Expected an AssertionError");
+        } catch (AssertionError e) {
+            assertTrue(e.getMessage().startsWith("Error rate"));
+        }
+
+        LoadResult expected = new LoadGenerator(baseUrl)
+                .closedModel(1)
+                .duration(100, TimeUnit.MILLISECONDS)
+                .run(LoadRequest.get("error").expect(500));
+        expected.assertNoErrors();
+    }
+
+    @Test
+    public void testConnectionRefused() throws IOException {
+        server.stop(0);
+
+        LoadResult result = new LoadGenerator(baseUrl)
+                .closedModel(1)
+                .duration(100, TimeUnit.MILLISECONDS)
+                .run(LoadRequest.get("fixed"));
+
+        assertEquals(result.getRequests(), result.getErrors());
+        assertEquals(result.getRequests(), result.getStatusCounts().get(0).longValue());
+        assertNotNull(result.getLastError());
+    }
+
+}
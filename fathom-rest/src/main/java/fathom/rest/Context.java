@@ -35,12 +35,28 @@ import java.util.Set;
  */
 public class Context extends DefaultRouteContext {
 
+    private RequestTimeline timeline;
+
     public Context(Application application, Request request, Response response, List<RouteMatch> routeMatches) {
         super(application, request, response, routeMatches);
     }
 
     public Context(Context context, List<RouteMatch> routeMatches) {
         this(context.getApplication(), context.getRequest(), context.getResponse(), routeMatches);
+        this.timeline = context.timeline;
+    }
+
+    /**
+     * Returns the phase timeline of this request or null if timelines are disabled.
+     *
+     * @return the request timeline
+     */
+    public RequestTimeline getTimeline() {
+        return timeline;
+    }
+
+    void setTimeline(RequestTimeline timeline) {
+        this.timeline = timeline;
     }
 
     public Set<String> getAcceptTypes() {
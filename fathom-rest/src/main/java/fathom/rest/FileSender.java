@@ -0,0 +1,342 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest;
+
+import com.google.common.base.Strings;
+import io.undertow.servlet.spec.ServletOutputStreamImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ro.pippo.core.HttpConstants;
+import ro.pippo.core.Response;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * FileSender serves a file resource with support for HTTP Range requests.
+ * <p>
+ * Single and multiple byte ranges of GET requests are supported, as are conditional
+ * ranges through {@code If-Range}.  Other methods are always served the complete file.
+ * Content which extends to the end of the file, i.e. the complete file or a resumed
+ * download, is handed to Undertow as a {@link FileChannel} so that it can use sendfile.
+ * Other ranges are copied with {@link FileChannel#transferTo(long, long, WritableByteChannel)}.
+ * </p>
+ *
+ * @author James Moger
+ */
+public class FileSender {
+
+    private static final Logger log = LoggerFactory.getLogger(FileSender.class);
+
+    public static final String HEADER_ACCEPT_RANGES = "Accept-Ranges";
+
+    public static final String HEADER_CONTENT_RANGE = "Content-Range";
+
+    public static final String HEADER_RANGE = "Range";
+
+    public static final String HEADER_IF_RANGE = "If-Range";
+
+    public static final String HEADER_ETAG = "ETag";
+
+    public static final String HEADER_LAST_MODIFIED = "Last-Modified";
+
+    /**
+     * Requests with more ranges than this are served the complete file.
+     */
+    public static final int MAX_RANGES = 16;
+
+    private static final String BYTES_UNIT = "bytes";
+
+    private FileSender() {
+    }
+
+    /**
+     * Sends the file, honoring the Range headers of a GET request.
+     *
+     * @param context
+     * @param file
+     * @throws IOException
+     */
+    public static void send(Context context, File file) throws IOException {
+        if (!file.isFile() || !file.canRead()) {
+            throw new FileNotFoundException(file.getPath());
+        }
+
+        Response response = context.getResponse();
+        HttpServletRequest request = context.getRequest().getHttpServletRequest();
+
+        long length = file.length();
+        long lastModified = file.lastModified();
+        String etag = getETag(length, lastModified);
+
+        if (Strings.isNullOrEmpty(response.getContentType())) {
+            response.contentType(context.getApplication().getMimeTypes().getContentType(file.getName(), HttpConstants.ContentType.APPLICATION_OCTET_STREAM));
+        }
+        if (Strings.isNullOrEmpty(response.getHeader(HttpConstants.Header.CONTENT_DISPOSITION))) {
+            response.filenameHeader(file.getName());
+        }
+        response.header(HEADER_ACCEPT_RANGES, BYTES_UNIT);
+        response.header(HEADER_ETAG, etag);
+        response.getHttpServletResponse().setDateHeader(HEADER_LAST_MODIFIED, lastModified);
+
+        List<ByteRange> ranges = null;
+        String rangeHeader = request.getHeader(HEADER_RANGE);
+        if (rangeHeader != null && HttpConstants.Method.GET.equals(request.getMethod())
+                && isRangeApplicable(request, etag, lastModified)) {
+            ranges = parseRanges(rangeHeader, length);
+            if (ranges != null && ranges.isEmpty()) {
+                log.debug("Range '{}' of '{}' is not satisfiable", rangeHeader, file);
+                response.status(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.header(HEADER_CONTENT_RANGE, BYTES_UNIT + " */" + length);
+                response.contentLength(0);
+                response.commit();
+                return;
+            }
+        }
+
+        boolean isHead = HttpConstants.Method.HEAD.equals(request.getMethod());
+
+        try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+            if (ranges == null) {
+                response.contentLength(length);
+                if (isHead) {
+                    response.commit();
+                } else {
+                    transfer(channel, 0, length, response.getOutputStream());
+                }
+            } else if (ranges.size() == 1) {
+                ByteRange range = ranges.get(0);
+                response.status(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.header(HEADER_CONTENT_RANGE, range.getContentRange(length));
+                response.contentLength(range.length());
+                transfer(channel, range.start, range.length(), response.getOutputStream());
+            } else {
+                sendMultipleRanges(response, channel, ranges, length);
+            }
+        }
+
+        response.getHttpServletResponse().flushBuffer();
+    }
+
+    private static void sendMultipleRanges(Response response, FileChannel channel, List<ByteRange> ranges,
+                                           long length) throws IOException {
+        String contentType = response.getContentType();
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (ByteRange range : ranges) {
+            String partHeader = "\r\n--" + boundary + "\r\n"
+                    + HttpConstants.Header.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HEADER_CONTENT_RANGE + ": " + range.getContentRange(length) + "\r\n\r\n";
+            byte[] bytes = partHeader.getBytes(StandardCharsets.ISO_8859_1);
+            partHeaders.add(bytes);
+            contentLength += bytes.length + range.length();
+        }
+        byte[] closeDelimiter = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        contentLength += closeDelimiter.length;
+
+        response.status(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.contentType("multipart/byteranges; boundary=" + boundary);
+        response.contentLength(contentLength);
+
+        OutputStream outputStream = response.getOutputStream();
+        for (int i = 0; i < ranges.size(); i++) {
+            ByteRange range = ranges.get(i);
+            outputStream.write(partHeaders.get(i));
+            transfer(channel, range.start, range.length(), outputStream);
+        }
+        outputStream.write(closeDelimiter);
+    }
+
+    /**
+     * Transfers a region of the file to the output stream.
+     */
+    private static void transfer(FileChannel channel, long position, long count, OutputStream outputStream) throws IOException {
+        if (outputStream instanceof ServletOutputStreamImpl && position + count == channel.size()) {
+            // zero-copy transfer of the remainder of the file
+            channel.position(position);
+            ((ServletOutputStreamImpl) outputStream).transferFrom(channel);
+            return;
+        }
+
+        outputStream.flush();
+        WritableByteChannel target = Channels.newChannel(outputStream);
+        long transferred = 0;
+        while (transferred < count) {
+            long n = channel.transferTo(position + transferred, count - transferred, target);
+            if (n <= 0) {
+                throw new IOException("Failed to transfer file content");
+            }
+            transferred += n;
+        }
+    }
+
+    /**
+     * Determines if the Range header applies, considering a conditional If-Range header.
+     */
+    static boolean isRangeApplicable(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HEADER_IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // weak validators never match
+            return ifRange.equals(etag);
+        }
+
+        try {
+            long date = request.getDateHeader(HEADER_IF_RANGE);
+            return date / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Parses a Range header.
+     *
+     * @param header
+     * @param length the length of the file
+     * @return null if the header is invalid or should be ignored, an empty list if no range is satisfiable
+     */
+    static List<ByteRange> parseRanges(String header, long length) {
+        String value = header.trim();
+        if (!value.regionMatches(true, 0, BYTES_UNIT + "=", 0, BYTES_UNIT.length() + 1)) {
+            return null;
+        }
+
+        String[] specs = value.substring(BYTES_UNIT.length() + 1).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        for (String spec : specs) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+
+            long start;
+            long end;
+            try {
+                if (dash == 0) {
+                    // suffix range, e.g. -500
+                    long suffix = Long.parseLong(spec.substring(1));
+                    if (suffix <= 0) {
+                        continue;
+                    }
+                    start = Math.max(0, length - suffix);
+                    end = length - 1;
+                } else {
+                    start = Long.parseLong(spec.substring(0, dash));
+                    if (dash == spec.length() - 1) {
+                        // open-ended range, e.g. 500-
+                        end = length - 1;
+                    } else {
+                        end = Long.parseLong(spec.substring(dash + 1));
+                        if (end < start) {
+                            return null;
+                        }
+                        end = Math.min(end, length - 1);
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+
+            if (start < length) {
+                ranges.add(new ByteRange(start, end));
+            }
+        }
+
+        return coalesce(ranges);
+    }
+
+    /**
+     * Merges overlapping and adjacent ranges.
+     */
+    private static List<ByteRange> coalesce(List<ByteRange> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+
+        List<ByteRange> sorted = new ArrayList<>(ranges);
+        Collections.sort(sorted, (a, b) -> Long.compare(a.start, b.start));
+
+        List<ByteRange> merged = new ArrayList<>(sorted.size());
+        ByteRange current = sorted.get(0);
+        for (int i = 1; i < sorted.size(); i++) {
+            ByteRange next = sorted.get(i);
+            if (next.start <= current.end + 1) {
+                current = new ByteRange(current.start, Math.max(current.end, next.end));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+
+    private static String getETag(long length, long lastModified) {
+        return "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    static class ByteRange {
+
+        final long start;
+
+        final long end;
+
+        ByteRange(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        long length() {
+            return end - start + 1;
+        }
+
+        String getContentRange(long length) {
+            return BYTES_UNIT + " " + start + "-" + end + "/" + length;
+        }
+
+        @Override
+        public String toString() {
+            return start + "-" + end;
+        }
+    }
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An ObjectWriter serializes values of one declared type directly to a stream.
+ * <p>
+ * ObjectWriters are resolved once per route and are shared by concurrent requests
+ * so implementations must be thread-safe.
+ *
+ * @author James Moger
+ * @see StreamingContentTypeEngine
+ */
+public interface ObjectWriter {
+
+    void write(Object value, OutputStream outputStream) throws IOException;
+
+}
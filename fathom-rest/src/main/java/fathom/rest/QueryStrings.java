@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes url-encoded query strings into servlet-style parameter maps.
+ *
+ * @author James Moger
+ */
+final class QueryStrings {
+
+    private QueryStrings() {
+    }
+
+    /**
+     * Parses a query string like "page=2&amp;tag=a&amp;tag=b".  Parameters keep the order of
+     * their first occurrence and a name without a value maps to an empty string.
+     *
+     * @param queryString may be null
+     * @param encoding    the character encoding, UTF-8 if null
+     * @return the parameters
+     */
+    static Map<String, String[]> parse(String queryString, String encoding) {
+        Map<String, List<String>> values = new LinkedHashMap<>();
+        if (queryString != null) {
+            for (String pair : queryString.split("&")) {
+                if (pair.isEmpty()) {
+                    continue;
+                }
+                int equals = pair.indexOf('=');
+                String name = decode(equals < 0 ? pair : pair.substring(0, equals), encoding);
+                String value = equals < 0 ? "" : decode(pair.substring(equals + 1), encoding);
+                values.computeIfAbsent(name, k -> new ArrayList<>()).add(value);
+            }
+        }
+
+        Map<String, String[]> parameters = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : values.entrySet()) {
+            parameters.put(entry.getKey(), entry.getValue().toArray(new String[entry.getValue().size()]));
+        }
+        return parameters;
+    }
+
+    private static String decode(String value, String encoding) {
+        try {
+            return URLDecoder.decode(value, encoding == null ? "UTF-8" : encoding);
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return value;
+        }
+    }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest;
+
+import ro.pippo.core.route.Route;
+
+/**
+ * RequestTimeline records the time spent in the phases of a single request.
+ * <p>
+ * A phase is marked when it completes and its duration is measured from the
+ * previous mark.  Timelines are reused per thread so recording does not allocate.
+ * </p>
+ *
+ * @author James Moger
+ */
+public final class RequestTimeline {
+
+    /**
+     * The request phases in the order they occur.
+     */
+    public enum Phase {
+        ROUTING("route"),
+        FILTERS("filter"),
+        EXTRACTION("extract"),
+        INVOKE("invoke"),
+        SERIALIZE("serialize"),
+        WRITE("write");
+
+        final String metricName;
+
+        Phase(String metricName) {
+            this.metricName = metricName;
+        }
+
+        public String getMetricName() {
+            return metricName;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final long[] marks;
+
+    private long start;
+
+    private long end;
+
+    private Route route;
+
+    private boolean serverTimingSent;
+
+    RequestTimeline() {
+        this.marks = new long[PHASES.length];
+    }
+
+    void reset() {
+        for (int i = 0; i < marks.length; i++) {
+            marks[i] = 0;
+        }
+        start = System.nanoTime();
+        end = 0;
+        route = null;
+        serverTimingSent = false;
+    }
+
+    void finish() {
+        end = System.nanoTime();
+    }
+
+    /**
+     * Marks the completion of a phase.
+     *
+     * @param phase
+     */
+    public void mark(Phase phase) {
+        marks[phase.ordinal()] = System.nanoTime();
+    }
+
+    public Route getRoute() {
+        return route;
+    }
+
+    /**
+     * Sets the route which handled the request.
+     *
+     * @param route
+     */
+    public void setRoute(Route route) {
+        this.route = route;
+    }
+
+    /**
+     * Returns the duration of a phase in nanoseconds or -1 if the phase was not reached.
+     *
+     * @param phase
+     * @return the phase duration in nanoseconds
+     */
+    public long getDuration(Phase phase) {
+        int index = phase.ordinal();
+        if (marks[index] == 0) {
+            return -1;
+        }
+        long previous = start;
+        for (int i = index - 1; i >= 0; i--) {
+            if (marks[i] != 0) {
+                previous = marks[i];
+                break;
+            }
+        }
+        return marks[index] - previous;
+    }
+
+    /**
+     * Returns the total duration of the request in nanoseconds, or the time elapsed so far.
+     *
+     * @return the request duration in nanoseconds
+     */
+    public long getTotal() {
+        return (end == 0 ? System.nanoTime() : end) - start;
+    }
+
+    boolean isServerTimingSent() {
+        return serverTimingSent;
+    }
+
+    void setServerTimingSent() {
+        this.serverTimingSent = true;
+    }
+
+    /**
+     * Formats the completed phases as a Server-Timing header value.
+     *
+     * @return the Server-Timing value
+     */
+    public String toServerTiming() {
+        StringBuilder sb = new StringBuilder(128);
+        for (Phase phase : PHASES) {
+            long duration = getDuration(phase);
+            if (duration >= 0) {
+                appendMetric(sb, phase.metricName, duration);
+            }
+        }
+        appendMetric(sb, "total", getTotal());
+        return sb.toString();
+    }
+
+    private static void appendMetric(StringBuilder sb, String name, long nanos) {
+        if (sb.length() > 0) {
+            sb.append(", ");
+        }
+        // milliseconds with microsecond precision
+        long micros = nanos / 1000;
+        sb.append(name).append(";dur=").append(micros / 1000).append('.');
+        long fraction = micros % 1000;
+        if (fraction < 100) {
+            sb.append('0');
+        }
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        sb.append(fraction);
+    }
+
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.google.common.base.Strings;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import fathom.conf.Settings;
+import ro.pippo.core.route.Route;
+import ro.pippo.core.route.RouteHandler;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RequestTimings aggregates {@link RequestTimeline}s into per-route phase histograms.
+ * <p>
+ * Timelines are disabled by default and cost a single branch per phase when disabled.
+ * </p>
+ * <pre>
+ * rest.timeline.enabled = true
+ * rest.timeline.serverTiming = true
+ * rest.timeline.route = /_timeline
+ * </pre>
+ *
+ * @author James Moger
+ */
+@Singleton
+public class RequestTimings implements RouteHandler<Context> {
+
+    public static final String SETTING_ENABLED = "rest.timeline.enabled";
+
+    public static final String SETTING_SERVER_TIMING = "rest.timeline.serverTiming";
+
+    public static final String SETTING_ROUTE = "rest.timeline.route";
+
+    public static final String HEADER_SERVER_TIMING = "Server-Timing";
+
+    private static final String METRIC_PREFIX = "fathom.rest.timeline";
+
+    private static final RequestTimeline.Phase[] PHASES = RequestTimeline.Phase.values();
+
+    private final MetricRegistry metricRegistry;
+
+    private final boolean enabled;
+
+    private final boolean serverTiming;
+
+    private final String diagnosticsPath;
+
+    private final ThreadLocal<RequestTimeline> timelines;
+
+    private final Map<Route, RouteHistograms> histograms;
+
+    @Inject
+    public RequestTimings(Settings settings, MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+        this.enabled = settings.getBoolean(SETTING_ENABLED, false);
+        this.serverTiming = enabled && settings.getBoolean(SETTING_SERVER_TIMING, false);
+        this.diagnosticsPath = Strings.emptyToNull(settings.getString(SETTING_ROUTE, null));
+        this.timelines = ThreadLocal.withInitial(RequestTimeline::new);
+        this.histograms = new ConcurrentHashMap<>();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isServerTiming() {
+        return serverTiming;
+    }
+
+    /**
+     * Returns the path of the diagnostics route or null if it is not registered.
+     *
+     * @return the diagnostics path
+     */
+    public String getDiagnosticsPath() {
+        return enabled ? diagnosticsPath : null;
+    }
+
+    /**
+     * Starts the timeline of the current request.
+     *
+     * @return the timeline
+     */
+    RequestTimeline begin() {
+        RequestTimeline timeline = timelines.get();
+        timeline.reset();
+        return timeline;
+    }
+
+    /**
+     * Returns the timeline of the request on the current thread.
+     *
+     * @return the timeline
+     */
+    RequestTimeline current() {
+        return timelines.get();
+    }
+
+    /**
+     * Adds the Server-Timing header to the response, if enabled and not yet committed.
+     *
+     * @param context
+     */
+    public void specifyServerTiming(Context context) {
+        RequestTimeline timeline = context.getTimeline();
+        if (serverTiming && timeline != null && !timeline.isServerTimingSent() && !context.getResponse().isCommitted()) {
+            context.getResponse().header(HEADER_SERVER_TIMING, timeline.toServerTiming());
+            timeline.setServerTimingSent();
+        }
+    }
+
+    /**
+     * Completes the timeline and records it in the histograms of its route.
+     *
+     * @param timeline
+     */
+    void record(RequestTimeline timeline) {
+        timeline.finish();
+        Route route = timeline.getRoute();
+        if (route == null) {
+            return;
+        }
+
+        RouteHistograms routeHistograms = histograms.computeIfAbsent(route, this::createHistograms);
+        for (int i = 0; i < PHASES.length; i++) {
+            long duration = timeline.getDuration(PHASES[i]);
+            if (duration >= 0) {
+                routeHistograms.phases[i].update(duration);
+            }
+        }
+        routeHistograms.total.update(timeline.getTotal());
+    }
+
+    private RouteHistograms createHistograms(Route route) {
+        String routeName = route.getRequestMethod() + " " + route.getUriPattern();
+        Histogram[] phases = new Histogram[PHASES.length];
+        for (int i = 0; i < PHASES.length; i++) {
+            phases[i] = metricRegistry.histogram(MetricRegistry.name(METRIC_PREFIX, routeName, PHASES[i].getMetricName()));
+        }
+        Histogram total = metricRegistry.histogram(MetricRegistry.name(METRIC_PREFIX, routeName, "total"));
+        return new RouteHistograms(routeName, phases, total);
+    }
+
+    /**
+     * Renders the per-route phase statistics, in milliseconds, as plain text.
+     *
+     * @param context
+     */
+    @Override
+    public void handle(Context context) {
+        List<RouteHistograms> list = new ArrayList<>(histograms.values());
+        list.sort(Comparator.comparing(h -> h.routeName));
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-10s %10s %10s %10s %10s %10s%n", "phase", "count", "mean", "p50", "p95", "p99"));
+        for (RouteHistograms routeHistograms : list) {
+            sb.append('\n').append(routeHistograms.routeName).append('\n');
+            for (int i = 0; i < PHASES.length; i++) {
+                appendStatistics(sb, PHASES[i].getMetricName(), routeHistograms.phases[i]);
+            }
+            appendStatistics(sb, "total", routeHistograms.total);
+        }
+
+        context.getResponse().noCache();
+        context.text().send(sb.toString());
+    }
+
+    private static void appendStatistics(StringBuilder sb, String name, Histogram histogram) {
+        if (histogram.getCount() == 0) {
+            return;
+        }
+        Snapshot snapshot = histogram.getSnapshot();
+        sb.append(String.format("%-10s %10d %10.3f %10.3f %10.3f %10.3f%n", name, histogram.getCount(),
+                toMillis(snapshot.getMean()), toMillis(snapshot.getMedian()),
+                toMillis(snapshot.get95thPercentile()), toMillis(snapshot.get99thPercentile())));
+    }
+
+    private static double toMillis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static class RouteHistograms {
+
+        final String routeName;
+
+        final Histogram[] phases;
+
+        final Histogram total;
+
+        RouteHistograms(String routeName, Histogram[] phases, Histogram total) {
+            this.routeName = routeName;
+            this.phases = phases;
+            this.total = total;
+        }
+    }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.rest;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.servlet.GuiceFilter;
+import fathom.WarmUp;
+import fathom.conf.Settings;
+import fathom.exception.FathomException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * RequestWarmUp replays synthetic requests through the GuiceFilter pipeline so that
+ * the Guice filters, routing, extraction, controllers, their interceptors (e.g. JCache
+ * annotations) and serialization are compiled and primed before real traffic arrives.
+ * <p>
+ * Requests are specified as request lines, either in the settings or in a file.
+ * A file may be an access log: the quoted request line of each entry is replayed.
+ * Request paths include the servlet path of the RestServlet, like the paths of real requests.
+ * </p>
+ * <p>
+ * The requests are dispatched in-process, so Undertow handlers and the container's session
+ * manager are not exercised.  A session is created in memory if a route asks for one.
+ * </p>
+ * <p>
+ * Warm-up requests are executed against the real handlers and data, so only GET, HEAD
+ * and OPTIONS requests are replayed unless {@code rest.warmup.unsafeMethods} is enabled.
+ * </p>
+ * <pre>
+ * warmup.enabled = true
+ * rest.warmup.requests = [ "GET /api/items", "GET /api/items/1?expand=true" ]
+ * rest.warmup.file = conf/warmup.log
+ * rest.warmup.accept = application/json
+ * rest.warmup.unsafeMethods = false
+ * </pre>
+ * Warm-up requests are recorded by the metrics, timelines and access log like any other request.
+ *
+ * @author James Moger
+ */
+@Singleton
+public class RequestWarmUp implements WarmUp {
+
+    public static final String SETTING_REQUESTS = "rest.warmup.requests";
+
+    public static final String SETTING_FILE = "rest.warmup.file";
+
+    public static final String SETTING_ACCEPT = "rest.warmup.accept";
+
+    public static final String SETTING_UNSAFE_METHODS = "rest.warmup.unsafeMethods";
+
+    private static final Set<String> SAFE_METHODS = ImmutableSet.of("GET", "HEAD", "OPTIONS");
+
+    private static final Logger log = LoggerFactory.getLogger(RequestWarmUp.class);
+
+    private final GuiceFilter guiceFilter;
+
+    private final String contextPath;
+
+    private final Map<String, String> headers;
+
+    private final List<SyntheticRequest> requests;
+
+    @Inject
+    public RequestWarmUp(Settings settings, GuiceFilter guiceFilter) {
+        this.guiceFilter = guiceFilter;
+
+        String path = Strings.nullToEmpty(settings.getContextPath());
+        this.contextPath = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+
+        Map<String, String> headerMap = new LinkedHashMap<>();
+        headerMap.put("Accept", settings.getString(SETTING_ACCEPT, "*/*"));
+        this.headers = Collections.unmodifiableMap(headerMap);
+
+        List<String> lines = new ArrayList<>();
+        if (settings.hasSetting(SETTING_REQUESTS)) {
+            lines.addAll(settings.getStrings(SETTING_REQUESTS));
+        }
+        String file = settings.getString(SETTING_FILE, null);
+        if (!Strings.isNullOrEmpty(file)) {
+            try {
+                lines.addAll(Files.readAllLines(new File(file).toPath(), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new FathomException(e, "Failed to read warm-up requests from '{}'", file);
+            }
+        }
+
+        boolean unsafeMethods = settings.getBoolean(SETTING_UNSAFE_METHODS, false);
+        int skipped = 0;
+        this.requests = new ArrayList<>();
+        for (String line : lines) {
+            SyntheticRequest request = parse(line);
+            if (request == null) {
+                continue;
+            }
+            if (!unsafeMethods && !SAFE_METHODS.contains(request.method)) {
+                skipped++;
+                continue;
+            }
+            requests.add(request);
+        }
+        if (skipped > 0) {
+            log.info("Skipped {} warm-up requests with unsafe methods, set '{}' to replay them",
+                    skipped, SETTING_UNSAFE_METHODS);
+        }
+        log.debug("Prepared {} warm-up requests", requests.size());
+    }
+
+    public int getRequestCount() {
+        return requests.size();
+    }
+
+    @Override
+    public void warmUp() throws ServletException, IOException {
+        if (requests.isEmpty()) {
+            return;
+        }
+
+        for (SyntheticRequest request : requests) {
+            guiceFilter.doFilter(
+                    WarmUpExchange.request(request.method, contextPath, request.uri, request.parameters, headers),
+                    WarmUpExchange.response(),
+                    (servletRequest, servletResponse) -> log.warn("Warm-up request '{}' is not served by a Guice servlet",
+                            servletRequest));
+        }
+    }
+
+    /**
+     * Parses a request line like "GET /api/items?page=2" or an access log entry
+     * which contains a quoted request line.
+     *
+     * @param line
+     * @return the request or null if the line does not specify a request
+     */
+    static SyntheticRequest parse(String line) {
+        String text = line.trim();
+        if (text.isEmpty() || text.startsWith("#")) {
+            return null;
+        }
+
+        int quote = text.indexOf('"');
+        if (quote >= 0) {
+            int end = text.indexOf('"', quote + 1);
+            if (end < 0) {
+                return null;
+            }
+            text = text.substring(quote + 1, end);
+        }
+
+        String[] parts = text.split("\\s+");
+        if (parts.length < 2 || !parts[1].startsWith("/")) {
+            log.warn("Ignoring invalid warm-up request '{}'", line);
+            return null;
+        }
+
+        String method = parts[0].toUpperCase();
+        String uri = parts[1];
+        Map<String, String[]> parameters = new LinkedHashMap<>();
+        int question = uri.indexOf('?');
+        if (question >= 0) {
+            parameters = QueryStrings.parse(uri.substring(question + 1), null);
+            uri = uri.substring(0, question);
+        }
+
+        return new SyntheticRequest(method, uri, parameters);
+    }
+
+    static class SyntheticRequest {
+
+        final String method;
+
+        final String uri;
+
+        final Map<String, String[]> parameters;
+
+        SyntheticRequest(String method, String uri, Map<String, String[]> parameters) {
+            this.method = method;
+            this.uri = uri;
+            this.parameters = parameters;
+        }
+    }
+
+}
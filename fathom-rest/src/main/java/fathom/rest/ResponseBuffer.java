@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.rest;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * A per-thread, reusable buffer for serializing a response body before it is
+ * written to the servlet output stream.
+ * <p>
+ * Buffers which have grown beyond {@link #MAX_RETAINED_SIZE} are discarded after use
+ * so that a single large response does not pin memory to a worker thread.
+ *
+ * @author James Moger
+ */
+public class ResponseBuffer extends ByteArrayOutputStream {
+
+    public static final int INITIAL_SIZE = 8 * 1024;
+
+    public static final int MAX_RETAINED_SIZE = 256 * 1024;
+
+    private static final ThreadLocal<ResponseBuffer> buffers = ThreadLocal.withInitial(ResponseBuffer::new);
+
+    private boolean inUse;
+
+    private ResponseBuffer() {
+        super(INITIAL_SIZE);
+    }
+
+    /**
+     * Acquires the buffer of the current thread.  If the buffer of the current thread is
+     * already in use, for example by a nested dispatch, a temporary buffer is returned.
+     *
+     * @return an empty buffer
+     */
+    public static ResponseBuffer acquire() {
+        ResponseBuffer buffer = buffers.get();
+        if (buffer.inUse) {
+            buffer = new ResponseBuffer();
+        }
+        buffer.inUse = true;
+        buffer.reset();
+        return buffer;
+    }
+
+    /**
+     * Releases the buffer so that it may be reused by the next response on this thread.
+     */
+    public void release() {
+        inUse = false;
+        if (buf.length > MAX_RETAINED_SIZE && buffers.get() == this) {
+            buffers.remove();
+        }
+    }
+
+}
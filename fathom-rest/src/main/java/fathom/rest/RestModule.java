@@ -19,7 +19,12 @@ package fathom.rest;
 import com.google.common.base.Optional;
 import com.google.common.base.Strings;
 import fathom.ServletsModule;
+import fathom.WarmUp;
 import fathom.conf.Settings;
+import fathom.rest.idempotency.IdempotencyStore;
+import fathom.rest.idempotency.IdempotentRouteHandler;
+import fathom.rest.idempotency.MemoryIdempotencyStore;
+import fathom.utils.ClassUtil;
 import org.kohsuke.MetaInfServices;
 import ro.pippo.core.Application;
 import ro.pippo.core.ContentTypeEngines;
@@ -75,6 +80,12 @@ public class RestModule extends ServletsModule {
 
         bind(RestService.class);
 
+        String storeClassName = getSettings().getString(IdempotentRouteHandler.SETTING_STORE, MemoryIdempotencyStore.class.getName());
+        Class<? extends IdempotencyStore> storeClass = ClassUtil.getClass(storeClassName);
+        bind(IdempotencyStore.class).to(storeClass);
+
+        multibind(WarmUp.class, RequestWarmUp.class);
+
     }
 
     /**
@@ -23,12 +23,16 @@ import com.google.inject.Inject;
 import com.google.inject.Injector;
 import com.google.inject.Singleton;
 import fathom.Constants;
+import fathom.Readiness;
 import fathom.Service;
 import fathom.conf.Settings;
 import fathom.exception.FathomException;
 import fathom.exception.RedirectException;
 import fathom.exception.StatusCodeException;
+import fathom.rest.accesslog.AccessLog;
+import fathom.rest.bulkhead.Bulkheads;
 import fathom.rest.controller.ControllerHandler;
+import fathom.rest.controller.HttpMethod;
 import fathom.utils.ClassUtil;
 import fathom.utils.Util;
 import org.slf4j.Logger;
@@ -38,6 +42,7 @@ import ro.pippo.core.ContentTypeEngine;
 import ro.pippo.core.ContentTypeEngines;
 import ro.pippo.core.TemplateEngine;
 import ro.pippo.core.route.Route;
+import ro.pippo.core.route.RouteHandler;
 import ro.pippo.core.route.Router;
 import ro.pippo.metrics.MetricsDispatchListener;
 
@@ -63,6 +68,8 @@ class RestService implements Service {
 
     private static final String REST_ROUTES_LOG_HANDLERS = "rest.routes.logHandlers";
 
+    private static final String SETTING_READINESS_ROUTE = "rest.readiness.route";
+
     @Inject
     Injector injector;
 
@@ -78,6 +85,18 @@ class RestService implements Service {
     @Inject
     MetricRegistry metricRegistry;
 
+    @Inject
+    RequestTimings requestTimings;
+
+    @Inject
+    AccessLog accessLog;
+
+    @Inject
+    Readiness readiness;
+
+    @Inject
+    Bulkheads bulkheads;
+
     private boolean isRunning;
 
     @Override
@@ -111,6 +130,8 @@ class RestService implements Service {
         log.info(border);
         logRoutes(router);
 
+        accessLog.start();
+
         isRunning = true;
     }
 
@@ -121,6 +142,8 @@ class RestService implements Service {
 
     @Override
     public void stop() {
+        bulkheads.shutdown();
+        accessLog.stop();
         application.destroy();
     }
 
@@ -205,6 +228,21 @@ class RestService implements Service {
         } else {
             log.debug("Did not find '{}' in your application!", routesClassName);
         }
+
+        String timelinePath = requestTimings.getDiagnosticsPath();
+        if (timelinePath != null) {
+            router.addRoute(new Route(HttpMethod.GET, timelinePath, requestTimings));
+            log.debug("Request timelines served on '{}'", timelinePath);
+        }
+
+        String readinessPath = Strings.emptyToNull(settings.getString(SETTING_READINESS_ROUTE, null));
+        if (readinessPath != null) {
+            router.addRoute(new Route(HttpMethod.GET, readinessPath, (RouteHandler<Context>) context -> {
+                Readiness.State state = readiness.getState();
+                context.getResponse().noCache().status(state == Readiness.State.READY ? 200 : 503).text().send(state.name());
+            }));
+            log.debug("Readiness served on '{}'", readinessPath);
+        }
     }
 
     private void logRoutes(Router router) {
@@ -227,9 +265,9 @@ class RestService implements Service {
             maxMethodLen = Math.max(maxMethodLen, route.getRequestMethod().length());
             maxPathLen = Math.max(maxPathLen, route.getUriPattern().length());
 
-            if (route.getRouteHandler() instanceof ControllerHandler) {
+            if (RouteRegistration.getRegisteredHandler(route) instanceof ControllerHandler) {
 
-                ControllerHandler handler = (ControllerHandler) route.getRouteHandler();
+                ControllerHandler handler = (ControllerHandler) RouteRegistration.getRegisteredHandler(route);
                 int controllerLen = Util.toString(handler.getControllerMethod()).length();
                 maxControllerLen = Math.max(maxControllerLen, controllerLen);
 
@@ -248,9 +286,9 @@ class RestService implements Service {
         }
 
         for (Route route : router.getRoutes()) {
-            if (route.getRouteHandler() instanceof ControllerHandler) {
+            if (RouteRegistration.getRegisteredHandler(route) instanceof ControllerHandler) {
 
-                ControllerHandler handler = (ControllerHandler) route.getRouteHandler();
+                ControllerHandler handler = (ControllerHandler) RouteRegistration.getRegisteredHandler(route);
                 if (oneLine) {
                     if (logHandlers) {
                         log.info("{} {}  =>  {}()",
@@ -16,22 +16,40 @@
 package fathom.rest;
 
 import com.google.inject.Inject;
+import com.google.inject.OutOfScopeException;
 import com.google.inject.Singleton;
+import com.google.inject.servlet.ServletScopes;
+import fathom.rest.accesslog.AccessLog;
+import fathom.rest.bulkhead.Bulkhead;
+import fathom.rest.bulkhead.Bulkheads;
+import fathom.rest.controller.ControllerHandler;
+import fathom.rest.idempotency.CapturingResponse;
+import fathom.rest.idempotency.IdempotentRouteHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import ro.pippo.core.Application;
 import ro.pippo.core.Request;
 import ro.pippo.core.Response;
+import ro.pippo.core.route.Route;
 import ro.pippo.core.route.RouteContextFactory;
 import ro.pippo.core.route.RouteDispatcher;
+import ro.pippo.core.route.RouteHandler;
 import ro.pippo.core.route.RouteMatch;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 /**
  * RestServlet must be registered in your Servlets class.
@@ -43,21 +61,52 @@ public class RestServlet extends HttpServlet {
 
     public static String SETTING_URL = "servlets." + RestServlet.class.getName();
 
+    /**
+     * Request attribute set by a handler which keeps the response open after it returns.
+     * The handler is then responsible for completing the asynchronous processing.
+     */
+    public static final String ASYNC_OWNER_ATTRIBUTE = "fathom.asyncOwner";
+
     private static final long serialVersionUID = 1L;
 
+    private static final Logger log = LoggerFactory.getLogger(RestServlet.class);
+
     private final Application application;
 
     private final RouteDispatcher routeDispatcher;
 
+    private final RequestTimings timings;
+
+    private final AccessLog accessLog;
+
+    private volatile Boolean hasStreamingRoutes;
+
+    private volatile Boolean hasIdempotentRoutes;
+
+    private volatile Boolean hasBulkheads;
+
+    private boolean initialized;
+
     @Inject
-    public RestServlet(Application application) {
+    public RestServlet(Application application, RequestTimings timings, AccessLog accessLog) {
         this.application = application;
+        this.timings = timings;
+        this.accessLog = accessLog;
         this.routeDispatcher = new RouteDispatcher(application) {
             protected RouteContextFactory<?> getRouteContextFactory() {
                 return new RouteContextFactory<Context>() {
                     @Override
                     public Context createRouteContext(Application application, Request request, Response response, List<RouteMatch> list) {
-                        return new Context(application, request, response, list);
+                        Context context = new Context(application, request, response, list);
+                        if (timings.isEnabled()) {
+                            RequestTimeline timeline = timings.current();
+                            timeline.mark(RequestTimeline.Phase.ROUTING);
+                            if (!list.isEmpty()) {
+                                timeline.setRoute(list.get(list.size() - 1).getRoute());
+                            }
+                            context.setTimeline(timeline);
+                        }
+                        return context;
                     }
 
                     @Override
@@ -72,9 +121,16 @@ public class RestServlet extends HttpServlet {
         };
     }
 
+    /**
+     * Initializes the dispatcher.  The servlet may be initialized by the warm-up
+     * before the container initializes it.
+     */
     @Override
-    public void init() {
-        routeDispatcher.init();
+    public synchronized void init() {
+        if (!initialized) {
+            routeDispatcher.init();
+            initialized = true;
+        }
     }
 
     @Override
@@ -83,11 +139,264 @@ public class RestServlet extends HttpServlet {
         HttpServletRequest httpRequest = (HttpServletRequest) req;
         HttpServletResponse httpResponse = (HttpServletResponse) resp;
 
-        Request request = new Request(httpRequest, application);
-        Response response = new Response(httpResponse, application);
+        long startMillis = 0;
+        long startNanos = 0;
+        if (accessLog.isEnabled()) {
+            startMillis = System.currentTimeMillis();
+            startNanos = System.nanoTime();
+        }
+
+        Bulkhead bulkhead = null;
+        if (httpRequest.isAsyncSupported() && hasBulkheads()) {
+            bulkhead = findBulkhead(httpRequest);
+        }
+
+        if (bulkhead == null) {
+            dispatch(httpRequest, httpResponse, startMillis, startNanos);
+        } else {
+            dispatch(bulkhead, httpRequest, httpResponse, startMillis, startNanos);
+        }
+
+    }
+
+    private void dispatch(HttpServletRequest httpRequest, HttpServletResponse httpResponse,
+                          long startMillis, long startNanos) throws IOException, ServletException {
+
+        RequestTimeline timeline = timings.isEnabled() ? timings.begin() : null;
+
+        Request request;
+        if (isMultipart(httpRequest) && hasStreamingRoutes()) {
+            // do not let the container parse the body before we know the route
+            request = new Request(new QueryParametersRequest(httpRequest), application);
+            if (!isStreamingRoute(request)) {
+                request = new Request(httpRequest, application);
+            }
+        } else {
+            request = new Request(httpRequest, application);
+        }
+        Response response;
+        if (httpRequest.getHeader(IdempotentRouteHandler.HEADER) != null && hasIdempotentRoutes()) {
+            // the response may be stored for replay to duplicate requests
+            response = new Response(new CapturingResponse(httpResponse), application);
+        } else {
+            response = new Response(httpResponse, application);
+        }
+
+        try {
+            routeDispatcher.dispatch(request, response);
+        } finally {
+            if (timeline != null) {
+                timings.record(timeline);
+            }
+            if (accessLog.isEnabled()) {
+                accessLog.log(httpRequest, httpResponse, startMillis, startNanos);
+            }
+        }
+
+    }
+
+    /**
+     * Hands the request off to the worker pool of the bulkhead which releases the
+     * server worker thread until the request completes.
+     */
+    private void dispatch(Bulkhead bulkhead, HttpServletRequest httpRequest, HttpServletResponse httpResponse,
+                          long startMillis, long startNanos) throws IOException, ServletException {
+
+        AsyncContext asyncContext = httpRequest.startAsync();
+        asyncContext.setTimeout(0);
+
+        Callable<Void> task = () -> {
+            dispatch(httpRequest, httpResponse, startMillis, startNanos);
+            return null;
+        };
+        try {
+            // make request scoped bindings available to the worker thread
+            task = ServletScopes.transferRequest(task);
+        } catch (OutOfScopeException e) {
+            // not dispatched through the GuiceFilter
+        }
+
+        final Callable<Void> scopedTask = task;
+        boolean accepted = bulkhead.execute(() -> {
+            try {
+                scopedTask.call();
+            } catch (Exception e) {
+                log.error("Failed to dispatch {} '{}' on bulkhead '{}'",
+                        httpRequest.getMethod(), httpRequest.getRequestURI(), bulkhead.getName(), e);
+                sendError(httpResponse, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            } finally {
+                complete(httpRequest, asyncContext);
+            }
+        });
+
+        if (accepted) {
+            return;
+        }
+
+        try {
+            if (Bulkhead.RejectionPolicy.CALLER_RUNS == bulkhead.getRejectionPolicy()) {
+                dispatch(httpRequest, httpResponse, startMillis, startNanos);
+            } else {
+                log.debug("Bulkhead '{}' rejected {} '{}'", bulkhead.getName(), httpRequest.getMethod(), httpRequest.getRequestURI());
+                httpResponse.setHeader("Retry-After", "1");
+                sendError(httpResponse, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                if (accessLog.isEnabled()) {
+                    accessLog.log(httpRequest, httpResponse, startMillis, startNanos);
+                }
+            }
+        } finally {
+            complete(httpRequest, asyncContext);
+        }
+    }
+
+    /**
+     * Starts asynchronous processing of the request or returns the asynchronous context
+     * of a request which has been handed off to a bulkhead.
+     *
+     * @param httpRequest
+     * @return the asynchronous context
+     */
+    public static AsyncContext startAsync(HttpServletRequest httpRequest) {
+        if (httpRequest.isAsyncStarted()) {
+            return httpRequest.getAsyncContext();
+        }
+        return httpRequest.startAsync();
+    }
+
+    /**
+     * Completes the request unless the handler took ownership of the asynchronous processing.
+     */
+    private void complete(HttpServletRequest httpRequest, AsyncContext asyncContext) {
+        if (httpRequest.getAttribute(ASYNC_OWNER_ATTRIBUTE) == null) {
+            asyncContext.complete();
+        }
+    }
+
+    private void sendError(HttpServletResponse httpResponse, int status) {
+        if (!httpResponse.isCommitted()) {
+            try {
+                httpResponse.sendError(status);
+            } catch (IOException e) {
+                log.debug("Failed to send {}", status, e);
+            }
+        }
+    }
+
+    /**
+     * Routes are registered after the servlet is created so this is determined on first use.
+     */
+    private boolean hasBulkheads() {
+        if (hasBulkheads == null) {
+            boolean bulkheads = false;
+            for (Route route : application.getRouter().getRoutes()) {
+                if (route.getAttribute(Bulkheads.ATTRIBUTE) != null) {
+                    bulkheads = true;
+                    break;
+                }
+            }
+            hasBulkheads = bulkheads;
+        }
+        return hasBulkheads;
+    }
+
+    /**
+     * Finds the bulkhead of the first matching route which specifies one.  Only the
+     * query string is parsed so that the body remains available to the dispatch.
+     */
+    private Bulkhead findBulkhead(HttpServletRequest httpRequest) {
+        Request request = new Request(new QueryParametersRequest(httpRequest), application);
+        for (RouteMatch routeMatch : application.getRouter().findRoutes(request.getMethod(), request.getApplicationUri())) {
+            Bulkhead bulkhead = routeMatch.getRoute().getAttribute(Bulkheads.ATTRIBUTE);
+            if (bulkhead != null) {
+                return bulkhead;
+            }
+        }
+        return null;
+    }
+
+    private boolean isMultipart(HttpServletRequest httpRequest) {
+        String contentType = httpRequest.getContentType();
+        return contentType != null && contentType.toLowerCase().startsWith("multipart/");
+    }
+
+    /**
+     * Routes are registered after the servlet is created so this is determined on first use.
+     */
+    private boolean hasStreamingRoutes() {
+        if (hasStreamingRoutes == null) {
+            boolean streaming = false;
+            for (Route route : application.getRouter().getRoutes()) {
+                RouteHandler handler = RouteRegistration.getRegisteredHandler(route);
+                if (handler instanceof ControllerHandler && ((ControllerHandler) handler).isStreamingMultipart()) {
+                    streaming = true;
+                    break;
+                }
+            }
+            hasStreamingRoutes = streaming;
+        }
+        return hasStreamingRoutes;
+    }
+
+    /**
+     * Routes are registered after the servlet is created so this is determined on first use.
+     */
+    private boolean hasIdempotentRoutes() {
+        if (hasIdempotentRoutes == null) {
+            boolean idempotent = false;
+            for (Route route : application.getRouter().getRoutes()) {
+                if (route.getRouteHandler() instanceof IdempotentRouteHandler) {
+                    idempotent = true;
+                    break;
+                }
+            }
+            hasIdempotentRoutes = idempotent;
+        }
+        return hasIdempotentRoutes;
+    }
+
+    private boolean isStreamingRoute(Request request) {
+        for (RouteMatch routeMatch : application.getRouter().findRoutes(request.getMethod(), request.getApplicationUri())) {
+            RouteHandler handler = RouteRegistration.getRegisteredHandler(routeMatch.getRoute());
+            if (handler instanceof ControllerHandler && ((ControllerHandler) handler).isStreamingMultipart()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Exposes only the query string parameters of a request so that the body of a
+     * multipart request remains unread for a streaming controller.
+     */
+    private static class QueryParametersRequest extends HttpServletRequestWrapper {
+
+        private final Map<String, String[]> parameters;
+
+        QueryParametersRequest(HttpServletRequest request) {
+            super(request);
+            this.parameters = Collections.unmodifiableMap(QueryStrings.parse(request.getQueryString(), request.getCharacterEncoding()));
+        }
+
+        @Override
+        public String getParameter(String name) {
+            String[] values = parameters.get(name);
+            return values == null ? null : values[0];
+        }
+
+        @Override
+        public Map<String, String[]> getParameterMap() {
+            return parameters;
+        }
 
-        routeDispatcher.dispatch(request, response);
+        @Override
+        public Enumeration<String> getParameterNames() {
+            return Collections.enumeration(parameters.keySet());
+        }
 
+        @Override
+        public String[] getParameterValues(String name) {
+            return parameters.get(name);
+        }
     }
 
 }
@@ -37,6 +37,7 @@ public class RouteGroup {
     private RoutesModule routesModule;
     private RouteGroup parentRouteGroup;
     private String routeGroupUriPattern;
+    private String bulkhead;
 
     RouteGroup(RoutesModule routesModule, String uriPattern) {
         this.routesModule = routesModule;
@@ -57,6 +58,26 @@ public class RouteGroup {
         return parentRouteGroup;
     }
 
+    /**
+     * Execute the routes of this group, and of nested groups, on the named worker pool
+     * unless a route specifies its own.
+     *
+     * @param name
+     * @see fathom.rest.bulkhead.Bulkheads
+     */
+    public RouteGroup bulkhead(String name) {
+        this.bulkhead = name;
+
+        return this;
+    }
+
+    public String getBulkhead() {
+        if (bulkhead == null && parentRouteGroup != null) {
+            return parentRouteGroup.getBulkhead();
+        }
+        return bulkhead;
+    }
+
     public RouteRegistration ALL(String uriPattern, Class<? extends Controller> controllerClass, String methodName) {
         return registerRoute(uriPattern, HttpMethod.ALL, controllerClass, methodName);
     }
@@ -22,6 +22,8 @@ import fathom.Constants;
 import fathom.metrics.Counted;
 import fathom.metrics.Metered;
 import fathom.metrics.Timed;
+import fathom.rest.idempotency.IdempotentRouteHandler;
+import ro.pippo.core.route.Route;
 import ro.pippo.core.route.RouteHandler;
 import ro.pippo.core.util.StringUtils;
 
@@ -36,11 +38,19 @@ import java.util.Set;
  */
 public class RouteRegistration {
 
+    /**
+     * Route attribute which holds the registered handler, before any metrics or
+     * idempotency wrapper was applied.
+     */
+    public static final String ROUTE_HANDLER_ATTRIBUTE = "fathom.routeHandler";
+
     private RouteGroup routeGroup;
     private String requestMethod;
     private String uriPattern;
     private RouteHandler routeHandler;
     private boolean runAsFinally;
+    private boolean idempotent;
+    private String bulkhead;
     private String name;
 
     private Class<? extends Annotation> metricClass;
@@ -82,6 +92,21 @@ public class RouteRegistration {
         return routeHandler;
     }
 
+    /**
+     * Returns the registered handler of a route, unwrapped from any metrics or
+     * idempotency handler.
+     *
+     * @param route
+     * @return the registered route handler
+     */
+    public static RouteHandler getRegisteredHandler(Route route) {
+        RouteHandler routeHandler = route.getAttribute(ROUTE_HANDLER_ATTRIBUTE);
+        if (routeHandler == null) {
+            routeHandler = IdempotentRouteHandler.unwrap(route.getRouteHandler());
+        }
+        return routeHandler;
+    }
+
     public boolean isRunAsFinally() {
         return runAsFinally;
     }
@@ -94,6 +119,45 @@ public class RouteRegistration {
         runAsFinally = true;
     }
 
+    public boolean isIdempotent() {
+        return idempotent;
+    }
+
+    /**
+     * Mark this route to be executed once per Idempotency-Key header value.
+     * Duplicate requests receive the stored response of the first execution.
+     * This flag make sense only for POST, PUT and PATCH routes.
+     */
+    public RouteRegistration idempotent() {
+        idempotent = true;
+
+        return this;
+    }
+
+    /**
+     * Execute this route on the named worker pool instead of the server worker pool.
+     *
+     * @param name
+     * @see fathom.rest.bulkhead.Bulkheads
+     */
+    public RouteRegistration bulkhead(String name) {
+        this.bulkhead = name;
+
+        return this;
+    }
+
+    /**
+     * Returns the worker pool of this route or of its route group.
+     *
+     * @return the bulkhead name or null
+     */
+    public String getBulkhead() {
+        if (bulkhead == null && routeGroup != null) {
+            return routeGroup.getBulkhead();
+        }
+        return bulkhead;
+    }
+
     public String getName() {
         return name;
     }
@@ -21,11 +21,17 @@ import com.google.common.base.Strings;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
 import fathom.conf.Settings;
+import fathom.rest.bulkhead.Bulkheads;
 import fathom.rest.controller.Controller;
+import fathom.rest.controller.Bulkhead;
 import fathom.rest.controller.ControllerHandler;
 import fathom.rest.controller.ControllerRegistrar;
 import fathom.rest.controller.HttpMethod;
+import fathom.rest.controller.Idempotent;
+import fathom.rest.idempotency.IdempotencyStore;
+import fathom.rest.idempotency.IdempotentRouteHandler;
 import fathom.rest.route.LanguageHandler;
+import fathom.utils.ClassUtil;
 import fathom.utils.RequireUtil;
 import fathom.utils.Util;
 import org.slf4j.Logger;
@@ -369,6 +375,15 @@ public abstract class RoutesModule {
                 if (Strings.isNullOrEmpty(routeRegistration.getName())) {
                     routeRegistration.setName(Util.toString(controllerHandler.getControllerMethod()));
                 }
+
+                if (ClassUtil.getAnnotation(controllerHandler.getControllerMethod(), Idempotent.class) != null) {
+                    routeRegistration.idempotent();
+                }
+
+                Bulkhead bulkhead = ClassUtil.getAnnotation(controllerHandler.getControllerMethod(), Bulkhead.class);
+                if (bulkhead != null && routeRegistration.getBulkhead() == null) {
+                    routeRegistration.bulkhead(bulkhead.value());
+                }
             }
             //
             // Automatically name Route if name is not specified
@@ -405,11 +420,32 @@ public abstract class RoutesModule {
                 routeHandler = routeRegistration.getRouteHandler();
             }
 
+            //
+            // Wrap any Route designated to be idempotent, outside of the Metrics handlers
+            // so that replayed responses are not measured
+            //
+            if (routeRegistration.isIdempotent()) {
+                String requestMethod = routeRegistration.getRequestMethod();
+                if (HttpMethod.POST.equals(requestMethod) || HttpMethod.PUT.equals(requestMethod)
+                        || HttpMethod.PATCH.equals(requestMethod)) {
+                    log.debug("Wrapping {} '{}' handler with {}", requestMethod, routeRegistration.getUriPattern(),
+                            IdempotentRouteHandler.class.getSimpleName());
+                    routeHandler = new IdempotentRouteHandler(routeHandler, injector.getInstance(IdempotencyStore.class), settings);
+                } else {
+                    log.warn("Ignoring idempotent flag of {} '{}', only POST, PUT and PATCH routes may be idempotent",
+                            requestMethod, routeRegistration.getUriPattern());
+                }
+            }
+
             Route route = new Route(routeRegistration.getRequestMethod(), routeRegistration.getUriPattern(), routeHandler);
             route.setName(routeRegistration.getName());
+            route.bind(RouteRegistration.ROUTE_HANDLER_ATTRIBUTE, routeRegistration.getRouteHandler());
             if (routeRegistration.isRunAsFinally()) {
                 route.runAsFinally();
             }
+            if (routeRegistration.getBulkhead() != null) {
+                route.bind(Bulkheads.ATTRIBUTE, injector.getInstance(Bulkheads.class).get(routeRegistration.getBulkhead()));
+            }
 
             router.addRoute(route);
         }
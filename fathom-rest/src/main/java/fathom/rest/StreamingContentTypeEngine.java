@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.rest;
+
+import ro.pippo.core.ContentTypeEngine;
+
+import java.lang.reflect.Type;
+
+/**
+ * A ContentTypeEngine which can prepare a reusable {@link ObjectWriter} for a declared type.
+ * <p>
+ * Controller methods resolve their writers when the route is registered, using the generic
+ * return type of the method, and the writer streams each result into a pooled
+ * {@link ResponseBuffer} rather than building an intermediate String.
+ * <p>
+ * Engines which do not implement this interface are used through {@link ContentTypeEngine#toString(Object)}.
+ *
+ * @author James Moger
+ */
+public interface StreamingContentTypeEngine extends ContentTypeEngine {
+
+    /**
+     * Returns a writer for values of the specified type.
+     *
+     * @param type the declared (possibly generic) type of the values
+     * @return a writer or null if the engine can not prepare a writer for the type
+     */
+    ObjectWriter getObjectWriter(Type type);
+
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.rest;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Synthetic servlet requests and responses which let the warm-up dispatch requests
+ * in-process, before the server accepts connections.  Response bodies are discarded
+ * and a session, if requested, lives in memory for the duration of one request.
+ *
+ * @author James Moger
+ */
+final class WarmUpExchange {
+
+    private static final ServletInputStream EMPTY_INPUT = new ServletInputStream() {
+        @Override
+        public boolean isFinished() {
+            return true;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+        }
+
+        @Override
+        public int read() {
+            return -1;
+        }
+    };
+
+    private WarmUpExchange() {
+    }
+
+    static HttpServletRequest request(String method, String contextPath, String uri, Map<String, String[]> parameters,
+                                      Map<String, String> headers) {
+        final Map<String, String> headerMap = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headerMap.putAll(headers);
+        final Map<String, Object> attributes = new HashMap<>();
+        final Map<String, String[]> parameterMap = Collections.unmodifiableMap(parameters);
+        final String requestUri = contextPath + uri;
+        final HttpSession[] session = {null};
+
+        return (HttpServletRequest) Proxy.newProxyInstance(WarmUpExchange.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "getMethod":
+                            return method;
+                        case "getRequestURI":
+                            return requestUri;
+                        case "getPathInfo":
+                            return uri;
+                        case "getRequestURL":
+                            return new StringBuffer("http://localhost").append(requestUri);
+                        case "getContextPath":
+                            return contextPath;
+                        case "getServletPath":
+                            return "";
+                        case "getProtocol":
+                            return "HTTP/1.1";
+                        case "getScheme":
+                            return "http";
+                        case "getServerName":
+                        case "getRemoteAddr":
+                        case "getRemoteHost":
+                            return "localhost";
+                        case "getServerPort":
+                            return 80;
+                        case "getCharacterEncoding":
+                            return "UTF-8";
+                        case "getContentType":
+                            return headerMap.get("Content-Type");
+                        case "getContentLength":
+                            return 0;
+                        case "getContentLengthLong":
+                            return 0L;
+                        case "getInputStream":
+                            return EMPTY_INPUT;
+                        case "getLocale":
+                            return Locale.getDefault();
+                        case "getLocales":
+                            return Collections.enumeration(Collections.singletonList(Locale.getDefault()));
+                        case "getParameterMap":
+                            return parameterMap;
+                        case "getParameterNames":
+                            return Collections.enumeration(parameterMap.keySet());
+                        case "getParameterValues":
+                            return parameterMap.get(args[0]);
+                        case "getParameter": {
+                            String[] values = parameterMap.get(args[0]);
+                            return values == null ? null : values[0];
+                        }
+                        case "getHeader":
+                            return headerMap.get(args[0]);
+                        case "getHeaders": {
+                            String value = headerMap.get(args[0]);
+                            return Collections.enumeration(value == null ? Collections.emptyList() : Collections.singletonList(value));
+                        }
+                        case "getHeaderNames":
+                            return Collections.enumeration(headerMap.keySet());
+                        case "getIntHeader":
+                            return -1;
+                        case "getDateHeader":
+                            return -1L;
+                        case "getSession":
+                            if (session[0] == null && (args == null || (Boolean) args[0])) {
+                                session[0] = session();
+                            }
+                            return session[0];
+                        case "getAttribute":
+                            return attributes.get(args[0]);
+                        case "setAttribute":
+                            attributes.put((String) args[0], args[1]);
+                            return null;
+                        case "removeAttribute":
+                            attributes.remove(args[0]);
+                            return null;
+                        case "getAttributeNames":
+                            return Collections.enumeration(attributes.keySet());
+                        case "toString":
+                            return method + " " + requestUri;
+                        default:
+                            return defaultValue(m);
+                    }
+                });
+    }
+
+    static HttpSession session() {
+        final Map<String, Object> attributes = new HashMap<>();
+        final String id = UUID.randomUUID().toString();
+        final long creationTime = System.currentTimeMillis();
+        final int[] maxInactiveInterval = {0};
+
+        return (HttpSession) Proxy.newProxyInstance(WarmUpExchange.class.getClassLoader(),
+                new Class<?>[]{HttpSession.class}, (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "getId":
+                            return id;
+                        case "getCreationTime":
+                        case "getLastAccessedTime":
+                            return creationTime;
+                        case "isNew":
+                            return true;
+                        case "getMaxInactiveInterval":
+                            return maxInactiveInterval[0];
+                        case "setMaxInactiveInterval":
+                            maxInactiveInterval[0] = (Integer) args[0];
+                            return null;
+                        case "getAttribute":
+                        case "getValue":
+                            return attributes.get(args[0]);
+                        case "setAttribute":
+                        case "putValue":
+                            if (args[1] == null) {
+                                attributes.remove(args[0]);
+                            } else {
+                                attributes.put((String) args[0], args[1]);
+                            }
+                            return null;
+                        case "removeAttribute":
+                        case "removeValue":
+                            attributes.remove(args[0]);
+                            return null;
+                        case "getAttributeNames":
+                            return Collections.enumeration(attributes.keySet());
+                        case "getValueNames":
+                            return attributes.keySet().toArray(new String[attributes.size()]);
+                        case "invalidate":
+                            attributes.clear();
+                            return null;
+                        case "toString":
+                            return id;
+                        default:
+                            return defaultValue(m);
+                    }
+                });
+    }
+
+    static HttpServletResponse response() {
+        final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        final int[] status = {HttpServletResponse.SC_OK};
+        final boolean[] committed = {false};
+        final String[] contentType = {null};
+        final ServletOutputStream outputStream = new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int b) {
+                committed[0] = true;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                committed[0] = true;
+            }
+        };
+        final PrintWriter writer = new PrintWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+
+        return (HttpServletResponse) Proxy.newProxyInstance(WarmUpExchange.class.getClassLoader(),
+                new Class<?>[]{HttpServletResponse.class}, (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "setStatus":
+                        case "sendError":
+                            status[0] = (Integer) args[0];
+                            return null;
+                        case "sendRedirect":
+                            status[0] = HttpServletResponse.SC_FOUND;
+                            committed[0] = true;
+                            return null;
+                        case "getStatus":
+                            return status[0];
+                        case "setHeader":
+                        case "addHeader":
+                        case "setDateHeader":
+                        case "addDateHeader":
+                        case "setIntHeader":
+                        case "addIntHeader":
+                            headers.put((String) args[0], String.valueOf(args[1]));
+                            return null;
+                        case "getHeader":
+                            return headers.get(args[0]);
+                        case "containsHeader":
+                            return headers.containsKey(args[0]);
+                        case "getHeaderNames":
+                            return headers.keySet();
+                        case "setContentType":
+                            contentType[0] = (String) args[0];
+                            return null;
+                        case "getContentType":
+                            return contentType[0];
+                        case "getCharacterEncoding":
+                            return "UTF-8";
+                        case "getOutputStream":
+                            return outputStream;
+                        case "getWriter":
+                            return writer;
+                        case "flushBuffer":
+                            committed[0] = true;
+                            return null;
+                        case "isCommitted":
+                            return committed[0];
+                        case "getLocale":
+                            return Locale.getDefault();
+                        default:
+                            return defaultValue(m);
+                    }
+                });
+    }
+
+    private static Object defaultValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (boolean.class == type) {
+            return false;
+        } else if (int.class == type) {
+            return 0;
+        } else if (long.class == type) {
+            return -1L;
+        }
+        return null;
+    }
+
+}
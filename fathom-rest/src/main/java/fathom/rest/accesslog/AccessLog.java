@@ -0,0 +1,341 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.rest.accesslog;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import fathom.conf.Settings;
+import fathom.exception.FathomException;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.servlet.handlers.ServletRequestContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * AccessLog records one line per request without blocking the request thread.
+ * <p>
+ * Request values are captured into preallocated records which are handed to a
+ * background writer through a lock-free ring.  The writer formats the records
+ * and writes them in batches to a rolling file.  If the ring is full, because
+ * the writer can not keep up, records are dropped and counted instead of
+ * delaying requests.
+ * </p>
+ * <p>
+ * On Undertow the record is captured when the exchange completes so that the
+ * status, the number of bytes sent and the duration are final.
+ * </p>
+ * <pre>
+ * rest.accessLog.enabled = true
+ * rest.accessLog.file = logs/access.log
+ * rest.accessLog.format = combined
+ * rest.accessLog.bufferSize = 8192
+ * rest.accessLog.maxFileSize = 100 MB
+ * </pre>
+ *
+ * @author James Moger
+ */
+@Singleton
+public class AccessLog {
+
+    public static final String SETTING_ENABLED = "rest.accessLog.enabled";
+
+    public static final String SETTING_FILE = "rest.accessLog.file";
+
+    public static final String SETTING_FORMAT = "rest.accessLog.format";
+
+    public static final String SETTING_BUFFER_SIZE = "rest.accessLog.bufferSize";
+
+    public static final String SETTING_MAX_FILE_SIZE = "rest.accessLog.maxFileSize";
+
+    private static final String METRIC_PREFIX = "fathom.rest.accessLog";
+
+    private static final Logger log = LoggerFactory.getLogger(AccessLog.class);
+
+    private static final int BATCH_SIZE = 256;
+
+    private static final int CHUNK_SIZE = 32 * 1024;
+
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final boolean enabled;
+
+    private final File file;
+
+    private final long maxFileSize;
+
+    private final Clock clock;
+
+    private final AccessLogFormat format;
+
+    private final String[] headerNames;
+
+    private final RecordBuffer buffer;
+
+    private final AtomicLong written;
+
+    private volatile boolean running;
+
+    private Thread writer;
+
+    @Inject
+    public AccessLog(Settings settings, MetricRegistry metricRegistry) {
+        this(settings, metricRegistry, Clock.systemDefaultZone());
+    }
+
+    AccessLog(Settings settings, MetricRegistry metricRegistry, Clock clock) {
+        this.enabled = settings.getBoolean(SETTING_ENABLED, false);
+        this.file = new File(settings.getString(SETTING_FILE, "logs/access.log"));
+        this.maxFileSize = settings.getBytes(SETTING_MAX_FILE_SIZE, "0");
+        this.clock = clock;
+        this.format = new AccessLogFormat(settings.getString(SETTING_FORMAT, "combined"), clock.getZone());
+        this.headerNames = format.getHeaderNames();
+        this.buffer = enabled ? new RecordBuffer(settings.getInteger(SETTING_BUFFER_SIZE, 8192), headerNames.length) : null;
+        this.written = new AtomicLong();
+
+        if (enabled) {
+            metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "dropped"), (Gauge<Long>) this::getDroppedCount);
+            metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "written"), (Gauge<Long>) this::getWrittenCount);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the number of records which were dropped because the writer could not keep up.
+     *
+     * @return the dropped count
+     */
+    public long getDroppedCount() {
+        return buffer == null ? 0 : buffer.getDroppedCount();
+    }
+
+    /**
+     * Returns the number of records which were written.
+     *
+     * @return the written count
+     */
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    /**
+     * Records a request.  This method never blocks.
+     *
+     * @param request
+     * @param response
+     * @param startMillis the wall clock time at which the request was received
+     * @param startNanos  the {@link System#nanoTime()} at which the request was received
+     */
+    public void log(HttpServletRequest request, HttpServletResponse response, long startMillis, long startNanos) {
+        if (!enabled) {
+            return;
+        }
+
+        final String remoteUser = format.isRemoteUser() ? request.getRemoteUser() : null;
+        ServletRequestContext requestContext = ServletRequestContext.current();
+        if (requestContext != null) {
+            HttpServerExchange exchange = requestContext.getExchange();
+            if (!exchange.isComplete()) {
+                exchange.addExchangeCompleteListener((completed, nextListener) -> {
+                    try {
+                        long sequence = buffer.claim();
+                        if (sequence >= 0) {
+                            boolean captured = false;
+                            try {
+                                buffer.get(sequence).set(completed, headerNames, remoteUser, startMillis, System.nanoTime() - startNanos);
+                                captured = true;
+                            } finally {
+                                publish(sequence, captured);
+                            }
+                        }
+                    } finally {
+                        nextListener.proceed();
+                    }
+                });
+                return;
+            }
+        }
+
+        long sequence = buffer.claim();
+        if (sequence >= 0) {
+            boolean captured = false;
+            try {
+                buffer.get(sequence).set(request, response, headerNames, remoteUser, startMillis, System.nanoTime() - startNanos);
+                captured = true;
+            } finally {
+                publish(sequence, captured);
+            }
+        }
+    }
+
+    /**
+     * Publishes a claimed slot.  A slot whose record could not be captured is still
+     * published, as skipped, because the writer consumes the slots in order.
+     *
+     * @param sequence
+     * @param captured
+     */
+    private void publish(long sequence, boolean captured) {
+        if (captured) {
+            buffer.publish(sequence);
+        } else {
+            buffer.skip(sequence);
+        }
+    }
+
+    /**
+     * Starts the background writer.
+     */
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+
+        final RollingFile rollingFile;
+        try {
+            rollingFile = new RollingFile(file, maxFileSize, clock);
+        } catch (IOException e) {
+            throw new FathomException(e, "Failed to open access log '{}'", file);
+        }
+
+        running = true;
+        writer = new Thread(() -> write(rollingFile), "fathom-access-log");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Access log '{}' with a buffer of {} records", rollingFile.getFile(), buffer.getCapacity());
+    }
+
+    /**
+     * Stops the background writer after writing the pending records.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+
+        long dropped = getDroppedCount();
+        if (dropped > 0) {
+            log.warn("Access log dropped {} records because the writer could not keep up", dropped);
+        }
+    }
+
+    private void write(RollingFile rollingFile) {
+        StringBuilder sb = new StringBuilder(CHUNK_SIZE + 1024);
+        ByteBuffer bytes = ByteBuffer.allocateDirect(CHUNK_SIZE * 2);
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        String lineSeparator = System.lineSeparator();
+
+        try {
+            while (running || buffer.isPending()) {
+                int count = 0;
+                AccessLogRecord record;
+                while (count < BATCH_SIZE && (record = buffer.peek()) != null) {
+                    if (record.skipped) {
+                        buffer.release();
+                        continue;
+                    }
+                    format.format(record, sb);
+                    sb.append(lineSeparator);
+                    buffer.release();
+                    count++;
+
+                    if (sb.length() >= CHUNK_SIZE) {
+                        flush(sb, bytes, encoder, rollingFile);
+                    }
+                }
+
+                if (sb.length() > 0) {
+                    flush(sb, bytes, encoder, rollingFile);
+                }
+                written.addAndGet(count);
+
+                if (count == 0) {
+                    // nothing published yet, either idle or a producer is filling its record
+                    LockSupport.parkNanos(running ? IDLE_NANOS : TimeUnit.MILLISECONDS.toNanos(1));
+                    if (!running && buffer.peek() == null) {
+                        // a claimed record may never be published if its producer failed
+                        break;
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Access log writer failed, records will be dropped", e);
+        } finally {
+            // allow the access log to be restarted if the writer died
+            running = false;
+            try {
+                rollingFile.close();
+            } catch (IOException e) {
+                log.error("Failed to close access log '{}'", rollingFile.getFile(), e);
+            }
+        }
+    }
+
+    private void flush(StringBuilder sb, ByteBuffer bytes, CharsetEncoder encoder, RollingFile rollingFile) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(sb);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, true);
+            if (result.isOverflow()) {
+                bytes.flip();
+                rollingFile.write(bytes);
+                bytes.clear();
+                continue;
+            }
+            encoder.flush(bytes);
+            break;
+        }
+        bytes.flip();
+        rollingFile.write(bytes);
+        bytes.clear();
+        sb.setLength(0);
+    }
+
+}
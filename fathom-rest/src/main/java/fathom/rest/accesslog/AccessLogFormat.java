@@ -0,0 +1,291 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.rest.accesslog;
+
+import fathom.exception.FathomException;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A compiled access log format using a subset of the Apache mod_log_config directives.
+ * <pre>
+ * %h, %a       remote address
+ * %l           remote logname, always -
+ * %u           remote user
+ * %t           request time [dd/MMM/yyyy:HH:mm:ss Z], %{pattern}t for a custom pattern
+ * %r           request line
+ * %m %U %q %H  method, uri, query string (with ?), protocol
+ * %s, %&gt;s      status
+ * %b, %B       response bytes, - or 0 when none were sent
+ * %D, %T       duration in microseconds, seconds
+ * %{Name}i     request header
+ * %%           percent sign
+ * </pre>
+ * Formatting is not thread-safe and is only performed by the access log writer.
+ *
+ * @author James Moger
+ */
+class AccessLogFormat {
+
+    static final String COMMON = "%h %l %u %t \"%r\" %>s %b";
+
+    static final String COMBINED = COMMON + " \"%{Referer}i\" \"%{User-Agent}i\"";
+
+    private static final String DEFAULT_TIME_PATTERN = "dd/MMM/yyyy:HH:mm:ss Z";
+
+    private final Field[] fields;
+
+    private final String[] headerNames;
+
+    private final boolean remoteUser;
+
+    /**
+     * Compiles a format pattern or one of the named formats "common" and "combined".
+     *
+     * @param pattern
+     * @param zoneId  the zone of formatted times
+     */
+    AccessLogFormat(String pattern, ZoneId zoneId) {
+        if ("common".equalsIgnoreCase(pattern)) {
+            pattern = COMMON;
+        } else if ("combined".equalsIgnoreCase(pattern)) {
+            pattern = COMBINED;
+        }
+
+        List<Field> list = new ArrayList<>();
+        List<String> headers = new ArrayList<>();
+        boolean user = false;
+        StringBuilder literal = new StringBuilder();
+
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i++);
+            if (c != '%') {
+                literal.append(c);
+                continue;
+            }
+            if (i >= pattern.length()) {
+                throw new FathomException("Access log format '{}' ends with '%'", pattern);
+            }
+
+            String parameter = null;
+            char directive = pattern.charAt(i++);
+            if (directive == '>' || directive == '<') {
+                directive = i < pattern.length() ? pattern.charAt(i++) : directive;
+            } else if (directive == '{') {
+                int close = pattern.indexOf('}', i);
+                if (close < 0 || close + 1 >= pattern.length()) {
+                    throw new FathomException("Unterminated parameter in access log format '{}'", pattern);
+                }
+                parameter = pattern.substring(i, close);
+                directive = pattern.charAt(close + 1);
+                i = close + 2;
+            }
+
+            if (directive == '%') {
+                literal.append('%');
+                continue;
+            }
+
+            if (literal.length() > 0) {
+                final String text = literal.toString();
+                list.add((record, sb) -> sb.append(text));
+                literal.setLength(0);
+            }
+
+            switch (directive) {
+                case 'h':
+                case 'a':
+                    list.add((record, sb) -> appendValue(sb, record.remoteAddr));
+                    break;
+                case 'l':
+                    list.add((record, sb) -> sb.append('-'));
+                    break;
+                case 'u':
+                    user = true;
+                    list.add((record, sb) -> appendEscaped(sb, record.remoteUser));
+                    break;
+                case 't':
+                    list.add(new TimeField(parameter, zoneId));
+                    break;
+                case 'r':
+                    list.add((record, sb) -> {
+                        sb.append(record.method).append(' ');
+                        appendEscaped(sb, record.uri);
+                        if (record.query != null && !record.query.isEmpty()) {
+                            sb.append('?');
+                            appendEscaped(sb, record.query);
+                        }
+                        sb.append(' ').append(record.protocol);
+                    });
+                    break;
+                case 'm':
+                    list.add((record, sb) -> appendValue(sb, record.method));
+                    break;
+                case 'U':
+                    list.add((record, sb) -> appendEscaped(sb, record.uri));
+                    break;
+                case 'q':
+                    list.add((record, sb) -> {
+                        if (record.query != null && !record.query.isEmpty()) {
+                            sb.append('?');
+                            appendEscaped(sb, record.query);
+                        }
+                    });
+                    break;
+                case 'H':
+                    list.add((record, sb) -> appendValue(sb, record.protocol));
+                    break;
+                case 's':
+                    list.add((record, sb) -> sb.append(record.status));
+                    break;
+                case 'b':
+                    list.add((record, sb) -> {
+                        if (record.bytes > 0) {
+                            sb.append(record.bytes);
+                        } else {
+                            sb.append('-');
+                        }
+                    });
+                    break;
+                case 'B':
+                    list.add((record, sb) -> sb.append(Math.max(0, record.bytes)));
+                    break;
+                case 'D':
+                    list.add((record, sb) -> sb.append(TimeUnit.NANOSECONDS.toMicros(record.durationNanos)));
+                    break;
+                case 'T':
+                    list.add((record, sb) -> sb.append(TimeUnit.NANOSECONDS.toSeconds(record.durationNanos)));
+                    break;
+                case 'i':
+                    if (parameter == null || parameter.isEmpty()) {
+                        throw new FathomException("%i requires a header name in access log format '{}'", pattern);
+                    }
+                    final int index = headers.size();
+                    headers.add(parameter);
+                    list.add((record, sb) -> appendEscaped(sb, record.headers[index]));
+                    break;
+                default:
+                    throw new FathomException("Unsupported directive '%{}' in access log format '{}'", directive, pattern);
+            }
+        }
+
+        if (literal.length() > 0) {
+            final String text = literal.toString();
+            list.add((record, sb) -> sb.append(text));
+        }
+
+        this.fields = list.toArray(new Field[list.size()]);
+        this.headerNames = headers.toArray(new String[headers.size()]);
+        this.remoteUser = user;
+    }
+
+    /**
+     * Returns the names of the request headers which must be captured.
+     *
+     * @return the header names
+     */
+    String[] getHeaderNames() {
+        return headerNames;
+    }
+
+    /**
+     * Returns true if the format includes the remote user.
+     *
+     * @return true if the remote user must be captured
+     */
+    boolean isRemoteUser() {
+        return remoteUser;
+    }
+
+    void format(AccessLogRecord record, StringBuilder sb) {
+        for (Field field : fields) {
+            field.append(record, sb);
+        }
+    }
+
+    private static void appendValue(StringBuilder sb, String value) {
+        if (value == null || value.isEmpty()) {
+            sb.append('-');
+        } else {
+            sb.append(value);
+        }
+    }
+
+    /**
+     * Appends a client supplied value, escaping quotes, backslashes and control
+     * characters so that a request can not forge log lines.
+     */
+    private static void appendEscaped(StringBuilder sb, String value) {
+        if (value == null || value.isEmpty()) {
+            sb.append('-');
+            return;
+        }
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20 || c == 0x7f) {
+                sb.append("\\x").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xf, 16));
+            } else {
+                sb.append(c);
+            }
+        }
+    }
+
+    private interface Field {
+        void append(AccessLogRecord record, StringBuilder sb);
+    }
+
+    /**
+     * Formats the request time, reusing the text of the previous record within the same second
+     * unless the pattern includes fractions of a second.
+     */
+    private static class TimeField implements Field {
+
+        private final DateTimeFormatter formatter;
+
+        private final boolean cacheable;
+
+        private long second = Long.MIN_VALUE;
+
+        private String text;
+
+        TimeField(String pattern, ZoneId zoneId) {
+            this.formatter = DateTimeFormatter.ofPattern(pattern == null ? DEFAULT_TIME_PATTERN : pattern, Locale.US)
+                    .withZone(zoneId);
+            this.cacheable = pattern == null || pattern.indexOf('S') < 0;
+        }
+
+        @Override
+        public void append(AccessLogRecord record, StringBuilder sb) {
+            long currentSecond = record.startMillis / 1000;
+            if (currentSecond != second || !cacheable) {
+                second = currentSecond;
+                text = formatter.format(Instant.ofEpochMilli(record.startMillis));
+            }
+            sb.append('[').append(text).append(']');
+        }
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.rest.accesslog;
+
+import io.undertow.server.HttpServerExchange;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.net.InetSocketAddress;
+
+/**
+ * A preallocated, reusable access log entry.  Request values are captured by
+ * reference and are only formatted by the writer thread.
+ *
+ * @author James Moger
+ */
+class AccessLogRecord {
+
+    long startMillis;
+
+    long durationNanos;
+
+    String method;
+
+    String uri;
+
+    String query;
+
+    String protocol;
+
+    String remoteAddr;
+
+    String remoteUser;
+
+    int status;
+
+    long bytes;
+
+    final String[] headers;
+
+    boolean skipped;
+
+    AccessLogRecord(int headerCount) {
+        this.headers = new String[headerCount];
+    }
+
+    void set(HttpServerExchange exchange, String[] headerNames, String remoteUser, long startMillis, long durationNanos) {
+        this.startMillis = startMillis;
+        this.durationNanos = durationNanos;
+        this.method = exchange.getRequestMethod().toString();
+        this.uri = exchange.getRequestURI();
+        this.query = exchange.getQueryString();
+        this.protocol = exchange.getProtocol().toString();
+        InetSocketAddress sourceAddress = exchange.getSourceAddress();
+        this.remoteAddr = sourceAddress == null || sourceAddress.getAddress() == null ? null
+                : sourceAddress.getAddress().getHostAddress();
+        this.remoteUser = remoteUser;
+        this.status = exchange.getStatusCode();
+        this.bytes = exchange.getResponseBytesSent();
+        for (int i = 0; i < headerNames.length; i++) {
+            headers[i] = exchange.getRequestHeaders().getFirst(headerNames[i]);
+        }
+    }
+
+    void set(HttpServletRequest request, HttpServletResponse response, String[] headerNames, String remoteUser,
+             long startMillis, long durationNanos) {
+        this.startMillis = startMillis;
+        this.durationNanos = durationNanos;
+        this.method = request.getMethod();
+        this.uri = request.getRequestURI();
+        this.query = request.getQueryString();
+        this.protocol = request.getProtocol();
+        this.remoteAddr = request.getRemoteAddr();
+        this.remoteUser = remoteUser;
+        this.status = response.getStatus();
+        this.bytes = parseContentLength(response.getHeader("Content-Length"));
+        for (int i = 0; i < headerNames.length; i++) {
+            headers[i] = request.getHeader(headerNames[i]);
+        }
+    }
+
+    private static long parseContentLength(String contentLength) {
+        if (contentLength == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentLength.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Releases the captured references.
+     */
+    void clear() {
+        skipped = false;
+        method = null;
+        uri = null;
+        query = null;
+        protocol = null;
+        remoteAddr = null;
+        remoteUser = null;
+        for (int i = 0; i < headers.length; i++) {
+            headers[i] = null;
+        }
+    }
+
+}
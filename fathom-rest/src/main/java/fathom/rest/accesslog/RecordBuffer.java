@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.rest.accesslog;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded multi-producer, single-consumer ring of preallocated records.
+ * <p>
+ * Producers claim a slot with a CAS on the tail sequence, fill the record and
+ * publish it.  A producer never waits: if the ring is full the record is dropped
+ * and counted.  The single consumer reads published records in order.
+ * </p>
+ *
+ * @author James Moger
+ */
+class RecordBuffer {
+
+    private final AccessLogRecord[] records;
+
+    private final AtomicLongArray published;
+
+    private final int mask;
+
+    private final AtomicLong tail;
+
+    private final AtomicLong head;
+
+    private final LongAdder dropped;
+
+    RecordBuffer(int capacity, int headerCount) {
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.records = new AccessLogRecord[size];
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            records[i] = new AccessLogRecord(headerCount);
+            published.set(i, i - size);
+        }
+        this.mask = size - 1;
+        this.tail = new AtomicLong();
+        this.head = new AtomicLong();
+        this.dropped = new LongAdder();
+    }
+
+    int getCapacity() {
+        return records.length;
+    }
+
+    /**
+     * Claims the next slot.
+     *
+     * @return the sequence of the slot or -1 if the ring is full
+     */
+    long claim() {
+        while (true) {
+            long sequence = tail.get();
+            if (sequence - head.get() >= records.length) {
+                dropped.increment();
+                return -1;
+            }
+            if (tail.compareAndSet(sequence, sequence + 1)) {
+                return sequence;
+            }
+        }
+    }
+
+    AccessLogRecord get(long sequence) {
+        return records[(int) sequence & mask];
+    }
+
+    void publish(long sequence) {
+        published.lazySet((int) sequence & mask, sequence);
+    }
+
+    /**
+     * Publishes a claimed slot whose record could not be captured so that the
+     * consumer moves past it instead of waiting for it forever.
+     *
+     * @param sequence
+     */
+    void skip(long sequence) {
+        AccessLogRecord record = get(sequence);
+        record.clear();
+        record.skipped = true;
+        publish(sequence);
+    }
+
+    /**
+     * Returns the next published record without consuming it.  Only the consumer
+     * thread may call this method.
+     *
+     * @return the next record or null
+     */
+    AccessLogRecord peek() {
+        long sequence = head.get();
+        int index = (int) sequence & mask;
+        return published.get(index) == sequence ? records[index] : null;
+    }
+
+    /**
+     * Consumes the record returned by {@link #peek()} and releases its slot.
+     */
+    void release() {
+        long sequence = head.get();
+        records[(int) sequence & mask].clear();
+        head.lazySet(sequence + 1);
+    }
+
+    /**
+     * Returns true if slots were claimed that have not been consumed.
+     *
+     * @return true if records are pending
+     */
+    boolean isPending() {
+        return tail.get() != head.get();
+    }
+
+    long getDroppedCount() {
+        return dropped.sum();
+    }
+
+}
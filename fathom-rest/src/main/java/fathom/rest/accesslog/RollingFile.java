@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.rest.accesslog;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * An append-only file which is rolled over daily and, optionally, when it exceeds
+ * a maximum size.  Rolled files are named after the day they cover, e.g.
+ * access-2016-01-27.log, access-2016-01-27.1.log.
+ *
+ * @author James Moger
+ */
+class RollingFile implements Closeable {
+
+    private final File file;
+
+    private final long maxFileSize;
+
+    private final Clock clock;
+
+    private final String baseName;
+
+    private final String extension;
+
+    private FileChannel channel;
+
+    private LocalDate day;
+
+    private long size;
+
+    RollingFile(File file, long maxFileSize, Clock clock) throws IOException {
+        this.file = file.getAbsoluteFile();
+        this.maxFileSize = maxFileSize;
+        this.clock = clock;
+
+        String name = this.file.getName();
+        int dot = name.lastIndexOf('.');
+        this.baseName = dot > 0 ? name.substring(0, dot) : name;
+        this.extension = dot > 0 ? name.substring(dot) : "";
+
+        File parent = this.file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Failed to create directory " + parent);
+        }
+
+        // a file left by a previous run belongs to the day it was last written
+        day = this.file.exists()
+                ? Instant.ofEpochMilli(this.file.lastModified()).atZone(clock.getZone()).toLocalDate()
+                : LocalDate.now(clock);
+        open();
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Writes the buffer, rolling the file over first if necessary.
+     *
+     * @param buffer
+     * @throws IOException
+     */
+    void write(ByteBuffer buffer) throws IOException {
+        LocalDate today = LocalDate.now(clock);
+        if (!today.equals(day) || (maxFileSize > 0 && size > 0 && size + buffer.remaining() > maxFileSize)) {
+            roll(today);
+        }
+
+        while (buffer.hasRemaining()) {
+            size += channel.write(buffer);
+        }
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        size = channel.size();
+    }
+
+    private void roll(LocalDate today) throws IOException {
+        channel.close();
+
+        File target = new File(file.getParentFile(), baseName + "-" + day + extension);
+        for (int i = 1; target.exists(); i++) {
+            target = new File(file.getParentFile(), baseName + "-" + day + "." + i + extension);
+        }
+        Files.move(file.toPath(), target.toPath());
+
+        day = today;
+        open();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.rest.bulkhead;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A Bulkhead is a bounded worker pool which executes the requests of a group of
+ * routes so that slow routes can not exhaust the worker threads of the server.
+ *
+ * @author James Moger
+ */
+public class Bulkhead {
+
+    /**
+     * What to do with a request when all threads are busy and the queue is full.
+     */
+    public enum RejectionPolicy {
+        /**
+         * Respond with 503 Service Unavailable.
+         */
+        REJECT,
+
+        /**
+         * Execute the request on the server worker thread.
+         */
+        CALLER_RUNS
+    }
+
+    private final String name;
+
+    private final int threads;
+
+    private final int queueSize;
+
+    private final RejectionPolicy rejectionPolicy;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Meter rejected;
+
+    private final Timer wait;
+
+    Bulkhead(String name, int threads, int queueSize, RejectionPolicy rejectionPolicy, Meter rejected, Timer wait) {
+        this.name = name;
+        this.threads = threads;
+        this.queueSize = queueSize;
+        this.rejectionPolicy = rejectionPolicy;
+        this.rejected = rejected;
+        this.wait = wait;
+
+        BlockingQueue<Runnable> queue = queueSize > 0 ? new ArrayBlockingQueue<>(queueSize) : new SynchronousQueue<>();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, queue, new WorkerThreadFactory(name));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public RejectionPolicy getRejectionPolicy() {
+        return rejectionPolicy;
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    public long getRejectedCount() {
+        return rejected.getCount();
+    }
+
+    /**
+     * Submits a task to the pool.
+     *
+     * @param task
+     * @return true if the task was accepted, false if the pool is saturated
+     */
+    public boolean execute(Runnable task) {
+        final long submitted = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                wait.update(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+                task.run();
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejected.mark();
+            return false;
+        }
+    }
+
+    void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public String toString() {
+        return "Bulkhead{" + name + ", threads=" + threads + ", queueSize=" + queueSize + ", " + rejectionPolicy + "}";
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        WorkerThreadFactory(String name) {
+            this.prefix = "bulkhead-" + name + "-";
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
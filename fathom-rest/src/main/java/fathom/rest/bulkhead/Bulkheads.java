@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.rest.bulkhead;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.CaseFormat;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import fathom.conf.Settings;
+import fathom.exception.FatalException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulkheads creates and holds the named worker pools which are declared by routes.
+ * <p>
+ * Each pool is configured by settings and reports its saturation to the
+ * MetricRegistry as {@code fathom.rest.bulkhead.<name>.active}, {@code queued},
+ * {@code utilization}, {@code rejected} and {@code wait}.
+ * </p>
+ * <pre>
+ * rest.bulkheads.reports.threads = 4
+ * rest.bulkheads.reports.queueSize = 16
+ * rest.bulkheads.reports.rejection = reject | callerRuns
+ * </pre>
+ *
+ * @author James Moger
+ */
+@Singleton
+public class Bulkheads {
+
+    /**
+     * The route attribute which holds the Bulkhead of a route.
+     */
+    public static final String ATTRIBUTE = "fathom.bulkhead";
+
+    private static final String SETTING_PREFIX = "rest.bulkheads.";
+
+    private static final String METRIC_PREFIX = "fathom.rest.bulkhead.";
+
+    private static final Logger log = LoggerFactory.getLogger(Bulkheads.class);
+
+    private final Settings settings;
+
+    private final MetricRegistry metricRegistry;
+
+    private final Map<String, Bulkhead> bulkheads;
+
+    @Inject
+    public Bulkheads(Settings settings, MetricRegistry metricRegistry) {
+        this.settings = settings;
+        this.metricRegistry = metricRegistry;
+        this.bulkheads = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns the named Bulkhead, creating it if necessary.
+     *
+     * @param name
+     * @return the bulkhead
+     */
+    public Bulkhead get(String name) {
+        return bulkheads.computeIfAbsent(name, this::create);
+    }
+
+    public Collection<Bulkhead> getBulkheads() {
+        return Collections.unmodifiableCollection(bulkheads.values());
+    }
+
+    private Bulkhead create(String name) {
+        int threads = settings.getInteger(SETTING_PREFIX + name + ".threads", 10);
+        int queueSize = settings.getInteger(SETTING_PREFIX + name + ".queueSize", 100);
+        String rejection = settings.getString(SETTING_PREFIX + name + ".rejection", "reject");
+        if (threads < 1) {
+            throw new FatalException("Bulkhead '{}' must have at least one thread", name);
+        }
+
+        Bulkhead.RejectionPolicy rejectionPolicy;
+        try {
+            rejectionPolicy = Bulkhead.RejectionPolicy.valueOf(CaseFormat.LOWER_CAMEL.to(CaseFormat.UPPER_UNDERSCORE, rejection.trim()));
+        } catch (IllegalArgumentException e) {
+            throw new FatalException("Unsupported rejection policy '{}' for bulkhead '{}'", rejection, name);
+        }
+
+        String prefix = METRIC_PREFIX + name;
+        Bulkhead bulkhead = new Bulkhead(name, threads, queueSize, rejectionPolicy,
+                metricRegistry.meter(prefix + ".rejected"), metricRegistry.timer(prefix + ".wait"));
+        metricRegistry.register(prefix + ".active", (Gauge<Integer>) bulkhead::getActiveCount);
+        metricRegistry.register(prefix + ".queued", (Gauge<Integer>) bulkhead::getQueuedCount);
+        metricRegistry.register(prefix + ".utilization",
+                (Gauge<Double>) () -> bulkhead.getActiveCount() / (double) bulkhead.getThreads());
+
+        log.debug("Created {}", bulkhead);
+        return bulkhead;
+    }
+
+    /**
+     * Stops all Bulkheads, waiting briefly for executing requests.
+     */
+    public void shutdown() {
+        for (Bulkhead bulkhead : bulkheads.values()) {
+            try {
+                bulkhead.shutdown(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+}
@@ -23,40 +23,59 @@ import com.google.inject.Singleton;
 import fathom.exception.FatalException;
 import fathom.exception.FathomException;
 import fathom.rest.Context;
+import fathom.rest.FileSender;
+import fathom.rest.ObjectWriter;
+import fathom.rest.RequestTimeline;
+import fathom.rest.RequestTimings;
+import fathom.rest.ResponseBuffer;
+import fathom.rest.StreamingContentTypeEngine;
 import fathom.rest.controller.exceptions.RangeException;
 import fathom.rest.controller.exceptions.RequiredException;
 import fathom.rest.controller.extractors.ArgumentExtractor;
 import fathom.rest.controller.extractors.CollectionExtractor;
 import fathom.rest.controller.extractors.ConfigurableExtractor;
 import fathom.rest.controller.extractors.FileItemExtractor;
+import fathom.rest.controller.extractors.MultipartStreamExtractor;
 import fathom.rest.controller.extractors.NamedExtractor;
+import fathom.rest.controller.extractors.PageRequestExtractor;
 import fathom.rest.controller.extractors.SuffixExtractor;
 import fathom.rest.controller.extractors.TypedExtractor;
+import fathom.rest.multipart.MultipartStream;
+import fathom.rest.paging.Page;
+import fathom.rest.paging.PageRequest;
 import fathom.utils.ClassUtil;
 import fathom.utils.Util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import ro.pippo.core.ContentTypeEngine;
 import ro.pippo.core.ContentTypeEngines;
 import ro.pippo.core.FileItem;
 import ro.pippo.core.HttpConstants;
 import ro.pippo.core.Messages;
+import ro.pippo.core.Response;
 import ro.pippo.core.route.Route;
 import ro.pippo.core.route.RouteHandler;
 import ro.pippo.core.route.RouteMatch;
 import ro.pippo.core.util.StringUtils;
 
+import javax.servlet.http.HttpServletRequest;
 import java.io.File;
+import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.regex.Matcher;
@@ -81,12 +100,15 @@ public class ControllerHandler implements RouteHandler<Context> {
     protected final Provider<? extends Controller> controllerProvider;
     protected final Method method;
     protected final Messages messages;
+    protected final RequestTimings timings;
     protected final List<RouteHandler<Context>> routeInterceptors;
     protected final List<String> declaredConsumes;
     protected final List<String> declaredProduces;
     protected final Collection<Return> declaredReturns;
     protected final Set<String> contentTypeSuffixes;
+    protected final Map<String, ObjectWriter> objectWriters;
     protected final boolean isNoCache;
+    protected boolean isStreamingMultipart;
     protected ArgumentExtractor[] extractors;
     protected String[] patterns;
 
@@ -100,6 +122,7 @@ public class ControllerHandler implements RouteHandler<Context> {
         this.controllerProvider = injector.getProvider(controllerClass);
         this.method = findMethod(controllerClass, methodName);
         this.messages = injector.getInstance(Messages.class);
+        this.timings = injector.getInstance(RequestTimings.class);
 
         Preconditions.checkNotNull(method, "Failed to find method '%s'", Util.toString(controllerClass, methodName));
         log.trace("Obtained method for '{}'", Util.toString(method));
@@ -122,6 +145,7 @@ public class ControllerHandler implements RouteHandler<Context> {
         validateDeclaredReturns();
 
         this.contentTypeSuffixes = configureContentTypeSuffixes(engines);
+        this.objectWriters = configureObjectWriters(engines);
         configureMethodArgs(injector);
 
         this.isNoCache = ClassUtil.getAnnotation(method, NoCache.class) != null;
@@ -147,18 +171,37 @@ public class ControllerHandler implements RouteHandler<Context> {
         return declaredReturns;
     }
 
+    /**
+     * Returns true if this handler reads the multipart request body as a stream.
+     * The servlet container must not parse the body of these requests.
+     *
+     * @return true if the handler streams multipart requests
+     */
+    public boolean isStreamingMultipart() {
+        return isStreamingMultipart;
+    }
+
     @Override
     public void handle(Context context) {
+        Object[] args = null;
         try {
             if (!canConsume(context)) {
                 context.next();
                 return;
             }
 
+            RequestTimeline timeline = context.getTimeline();
+            if (timeline != null) {
+                timeline.setRoute(context.getRoute());
+            }
+
             log.trace("Processing '{}' RouteInterceptors", Util.toString(method));
             int preInterceptStatus = context.getResponse().getStatus();
             processRouteInterceptors(context);
             int postInterceptStatus = context.getResponse().getStatus();
+            if (timeline != null) {
+                timeline.mark(RequestTimeline.Phase.FILTERS);
+            }
             if (context.getResponse().isCommitted()) {
                 log.debug("Response committed by RouteInterceptor");
                 context.next();
@@ -172,7 +215,10 @@ public class ControllerHandler implements RouteHandler<Context> {
             }
 
             log.trace("Preparing '{}' arguments from request", Util.toString(method));
-            Object[] args = prepareMethodArgs(context);
+            args = prepareMethodArgs(context);
+            if (timeline != null) {
+                timeline.mark(RequestTimeline.Phase.EXTRACTION);
+            }
 
             log.trace("Invoking '{}'", Util.toString(method));
             Controller controller = controllerProvider.get();
@@ -182,11 +228,15 @@ public class ControllerHandler implements RouteHandler<Context> {
             specifyContentType(context);
 
             Object result = method.invoke(controller, args);
+            if (timeline != null) {
+                timeline.mark(RequestTimeline.Phase.INVOKE);
+            }
 
             if (context.getResponse().isCommitted()) {
                 log.debug("Response committed in {}", Util.toString(method));
             } else {
                 if (Void.class == method.getReturnType()) {
+                    timings.specifyServerTiming(context);
                     // nothing to return, prepare declared Return for Void type
                     for (Return declaredReturn : declaredReturns) {
                         if (Void.class == declaredReturn.onResult()) {
@@ -200,6 +250,7 @@ public class ControllerHandler implements RouteHandler<Context> {
                     if (result == null) {
                         // Null Result, prepare a NOT FOUND (404)
                         context.getResponse().notFound();
+                        timings.specifyServerTiming(context);
 
                         for (Return declaredReturn : declaredReturns) {
                             if (declaredReturn.code() == HttpConstants.StatusCode.NOT_FOUND) {
@@ -230,17 +281,31 @@ public class ControllerHandler implements RouteHandler<Context> {
                             }
                         }
 
+                        if (result instanceof Page) {
+                            specifyPageLinks(context, (Page<?>) result);
+                        }
+
                         if (result instanceof CharSequence) {
                             // send a charsequence (e.g. pre-formatted JSON, XML, YAML, etc)
                             CharSequence charSequence = (CharSequence) result;
+                            timings.specifyServerTiming(context);
                             context.send(charSequence);
                         } else if (result instanceof File) {
                             // stream a File resource
                             File file = (File) result;
-                            context.send(file);
+                            timings.specifyServerTiming(context);
+                            sendFile(context, file);
+                        } else if (result instanceof Path && FileSystems.getDefault() == ((Path) result).getFileSystem()) {
+                            // stream a Path resource
+                            Path path = (Path) result;
+                            timings.specifyServerTiming(context);
+                            sendFile(context, path.toFile());
                         } else {
                             // send an object using a ContentTypeEngine
-                            context.send(result);
+                            sendObject(context, result);
+                        }
+                        if (timeline != null) {
+                            timeline.mark(RequestTimeline.Phase.WRITE);
                         }
                     }
                 }
@@ -262,6 +327,15 @@ public class ControllerHandler implements RouteHandler<Context> {
         } catch (Exception e) {
             // handles exceptions thrown within this handle() method
             handleDeclaredThrownException(e, method, context);
+        } finally {
+            if (isStreamingMultipart && args != null) {
+                // delete the temporary files of spooled parts
+                for (Object arg : args) {
+                    if (arg instanceof MultipartStream) {
+                        ((MultipartStream) arg).close();
+                    }
+                }
+            }
         }
     }
 
@@ -310,6 +384,45 @@ public class ControllerHandler implements RouteHandler<Context> {
         return suffixes;
     }
 
+    /**
+     * Sends a file resource with support for Range requests.
+     *
+     * @param context
+     * @param file
+     * @throws IOException
+     */
+    protected void sendFile(Context context, File file) throws IOException {
+        FileSender.send(context, file);
+    }
+
+    /**
+     * Configures the reusable object writers for the declared return type of the controller method.
+     *
+     * @param engines
+     * @return object writers mapped by content-type
+     */
+    protected Map<String, ObjectWriter> configureObjectWriters(ContentTypeEngines engines) {
+        Class<?> returnType = method.getReturnType();
+        if (void.class == returnType || Void.class == returnType
+                || CharSequence.class.isAssignableFrom(returnType) || File.class.isAssignableFrom(returnType)
+                || Path.class.isAssignableFrom(returnType)) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, ObjectWriter> writers = new HashMap<>();
+        for (String contentType : declaredProduces) {
+            ContentTypeEngine engine = engines.getContentTypeEngine(contentType);
+            if (engine instanceof StreamingContentTypeEngine) {
+                ObjectWriter writer = ((StreamingContentTypeEngine) engine).getObjectWriter(method.getGenericReturnType());
+                if (writer != null) {
+                    log.trace("Prepared '{}' writer for '{}'", contentType, Util.toString(method));
+                    writers.put(contentType, writer);
+                }
+            }
+        }
+        return writers.isEmpty() ? Collections.emptyMap() : writers;
+    }
+
     /**
      * Configures the controller method arguments.
      *
@@ -336,6 +449,11 @@ public class ControllerHandler implements RouteHandler<Context> {
             Class<? extends ArgumentExtractor> extractorType;
             if (FileItem.class == objectType) {
                 extractorType = FileItemExtractor.class;
+            } else if (MultipartStream.class == objectType) {
+                extractorType = MultipartStreamExtractor.class;
+                isStreamingMultipart = true;
+            } else if (PageRequest.class == objectType) {
+                extractorType = PageRequestExtractor.class;
             } else {
                 extractorType = ControllerUtil.getArgumentExtractor(parameter);
             }
@@ -628,31 +746,31 @@ public class ControllerHandler implements RouteHandler<Context> {
     }
 
     protected void validateParameterValue(Parameter parameter, Object value) {
-        if (value == null && parameter.isAnnotationPresent(Required.class)) {
+        if (value == null && ClassUtil.getAnnotation(parameter, Required.class) != null) {
             throw new RequiredException("'{}' is a required parameter!", ControllerUtil.getParameterName(parameter));
         }
 
         if (value != null && value instanceof Number) {
             Number number = (Number) value;
 
-            if (parameter.isAnnotationPresent(Min.class)) {
+            Min min = ClassUtil.getAnnotation(parameter, Min.class);
+            if (min != null) {
                 // validate required minimum value
-                Min min = parameter.getAnnotation(Min.class);
                 if (number.longValue() < min.value()) {
                     throw new RangeException("'{}' must be >= {}", ControllerUtil.getParameterName(parameter), min.value());
                 }
             }
 
-            if (parameter.isAnnotationPresent(Max.class)) {
+            Max max = ClassUtil.getAnnotation(parameter, Max.class);
+            if (max != null) {
                 // validate required maximum value
-                Max max = parameter.getAnnotation(Max.class);
                 if (number.longValue() > max.value()) {
                     throw new RangeException("'{}' must be <= {}", ControllerUtil.getParameterName(parameter), max.value());
                 }
             }
 
-            if (parameter.isAnnotationPresent(Range.class)) {
-                Range range = parameter.getAnnotation(Range.class);
+            Range range = ClassUtil.getAnnotation(parameter, Range.class);
+            if (range != null) {
                 if (number.longValue() < range.min()) {
                     throw new RangeException("'{}' must be >= {}", ControllerUtil.getParameterName(parameter), range.min());
                 }
@@ -680,6 +798,90 @@ public class ControllerHandler implements RouteHandler<Context> {
         }
     }
 
+    /**
+     * Sends an object result.  If a writer was prepared for the negotiated content-type the object
+     * is serialized into a pooled buffer and written directly to the response output stream,
+     * otherwise the object is sent using the registered ContentTypeEngine.
+     *
+     * @param context
+     * @param result
+     * @throws IOException
+     */
+    protected void sendObject(Context context, Object result) throws IOException {
+        Response response = context.getResponse();
+        ObjectWriter writer = getObjectWriter(response.getContentType());
+        if (writer == null) {
+            timings.specifyServerTiming(context);
+            context.send(result);
+            return;
+        }
+
+        ResponseBuffer buffer = ResponseBuffer.acquire();
+        try {
+            writer.write(result, buffer);
+            RequestTimeline timeline = context.getTimeline();
+            if (timeline != null) {
+                timeline.mark(RequestTimeline.Phase.SERIALIZE);
+                timings.specifyServerTiming(context);
+            }
+            response.contentLength(buffer.size());
+            buffer.writeTo(response.getOutputStream());
+            response.getHttpServletResponse().flushBuffer();
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Returns the prepared writer for the response content-type, ignoring parameters
+     * like "; charset=utf-8".
+     *
+     * @param contentType
+     * @return the writer or null
+     */
+    protected ObjectWriter getObjectWriter(String contentType) {
+        if (objectWriters.isEmpty() || contentType == null) {
+            return null;
+        }
+        int semicolon = contentType.indexOf(';');
+        String mediaType = semicolon < 0 ? contentType : contentType.substring(0, semicolon);
+        return objectWriters.get(mediaType.trim().toLowerCase());
+    }
+
+    /**
+     * Specify RFC 5988 Link headers for the next and previous pages of a keyset-paged result.
+     *
+     * @param context
+     * @param page
+     */
+    protected void specifyPageLinks(Context context, Page<?> page) {
+        if (page.getNext() == null && page.getPrev() == null) {
+            return;
+        }
+
+        HttpServletRequest request = context.getRequest().getHttpServletRequest();
+        StringBuilder base = new StringBuilder(request.getRequestURI()).append('?');
+        String query = request.getQueryString();
+        if (!Strings.isNullOrEmpty(query)) {
+            for (String pair : query.split("&")) {
+                if (!pair.isEmpty() && !pair.equals(PageRequest.CURSOR_PARAMETER)
+                        && !pair.startsWith(PageRequest.CURSOR_PARAMETER + "=")) {
+                    base.append(pair).append('&');
+                }
+            }
+        }
+        base.append(PageRequest.CURSOR_PARAMETER).append('=');
+
+        List<String> links = new ArrayList<>();
+        if (page.getNext() != null) {
+            links.add("<" + base + page.getNext() + ">; rel=\"next\"");
+        }
+        if (page.getPrev() != null) {
+            links.add("<" + base + page.getPrev() + ">; rel=\"prev\"");
+        }
+        context.setHeader("Link", String.join(", ", links));
+    }
+
     /**
      * Specify Response cache controls.
      *
@@ -83,23 +83,26 @@ public class ControllerUtil {
 
     public static Collection<Return> getReturns(Method method) {
         Map<Integer, Return> returns = new TreeMap<>();
-        if (method.getDeclaringClass().isAnnotationPresent(Returns.class)) {
-            for (Return aReturn : method.getDeclaringClass().getAnnotation(Returns.class).value()) {
+        Class<?> declaringClass = method.getDeclaringClass();
+        Returns classReturns = declaringClass.getAnnotation(Returns.class);
+        if (classReturns != null) {
+            for (Return aReturn : classReturns.value()) {
                 returns.put(aReturn.code(), aReturn);
             }
         }
-        if (method.getDeclaringClass().isAnnotationPresent(Return.class)) {
-            Return aReturn = method.getDeclaringClass().getAnnotation(Return.class);
-            returns.put(aReturn.code(), aReturn);
+        Return classReturn = declaringClass.getAnnotation(Return.class);
+        if (classReturn != null) {
+            returns.put(classReturn.code(), classReturn);
         }
-        if (method.isAnnotationPresent(Returns.class)) {
-            for (Return aReturn : method.getAnnotation(Returns.class).value()) {
+        Returns methodReturns = ClassUtil.getDeclaredAnnotation(method, Returns.class);
+        if (methodReturns != null) {
+            for (Return aReturn : methodReturns.value()) {
                 returns.put(aReturn.code(), aReturn);
             }
         }
-        if (method.isAnnotationPresent(Return.class)) {
-            Return aReturn = method.getAnnotation(Return.class);
-            returns.put(aReturn.code(), aReturn);
+        Return methodReturn = ClassUtil.getDeclaredAnnotation(method, Return.class);
+        if (methodReturn != null) {
+            returns.put(methodReturn.code(), methodReturn);
         }
         return returns.values();
     }
@@ -113,8 +116,8 @@ public class ControllerUtil {
     public static String getParameterName(Parameter parameter) {
         // identify parameter name and pattern from method signature
         String methodParameterName = parameter.getName();
-        if (parameter.isAnnotationPresent(Param.class)) {
-            Param param = parameter.getAnnotation(Param.class);
+        Param param = ClassUtil.getAnnotation(parameter, Param.class);
+        if (param != null) {
             if (!Strings.isNullOrEmpty(param.value())) {
                 methodParameterName = param.value();
             }
@@ -130,8 +133,8 @@ public class ControllerUtil {
      */
     public static Class<? extends ArgumentExtractor> getArgumentExtractor(Parameter parameter) {
         for (Annotation annotation : parameter.getAnnotations()) {
-            if (annotation.annotationType().isAnnotationPresent(ExtractWith.class)) {
-                ExtractWith with = annotation.annotationType().getAnnotation(ExtractWith.class);
+            ExtractWith with = ClassUtil.getAnnotation(annotation.annotationType(), ExtractWith.class);
+            if (with != null) {
                 Class<? extends ArgumentExtractor> extractorClass = with.value();
                 return extractorClass;
             }
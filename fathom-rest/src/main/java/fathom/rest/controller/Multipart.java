@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest.controller;
+
+import fathom.rest.controller.extractors.ExtractWith;
+import fathom.rest.controller.extractors.MultipartStreamExtractor;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation that identifies that a multipart request body should be streamed to a
+ * {@link fathom.rest.multipart.MultipartStream} controller argument.  Limits which are
+ * not specified default to the application upload settings.
+ *
+ * @author James Moger
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.PARAMETER})
+@ExtractWith(MultipartStreamExtractor.class)
+public @interface Multipart {
+
+    /**
+     * The maximum size of the request in bytes.
+     */
+    long maxRequestSize() default -1;
+
+    /**
+     * The maximum size of a single part in bytes.
+     */
+    long maxPartSize() default -1;
+
+    /**
+     * The number of bytes a spooled part may hold in memory before it is written to disk.
+     */
+    int memoryThreshold() default -1;
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest.controller.extractors;
+
+import fathom.exception.FatalException;
+import fathom.exception.FathomException;
+import fathom.utils.ClassUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ro.pippo.core.Param;
+import ro.pippo.core.ParamPattern;
+import ro.pippo.core.ParameterValue;
+import ro.pippo.core.PippoRuntimeException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * BeanBinder populates a bean from request parameters using a field table which
+ * is resolved once, when the binder is created.
+ * <p>
+ * The binding rules match Pippo's {@code Request.updateEntityFromParameters}: every
+ * field of the bean graph is bound by name (or by {@link Param}) using the
+ * conversions of {@link ParameterValue#to(Class, String)}.  Static and final fields
+ * are not bound.
+ * </p>
+ *
+ * @author James Moger
+ */
+public class BeanBinder<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(BeanBinder.class);
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    private static final Map<Class<?>, BeanBinder<?>> binders = new ConcurrentHashMap<>();
+
+    private final Class<T> beanType;
+
+    private final MethodHandle constructor;
+
+    private final FieldBinding[] bindings;
+
+    /**
+     * Returns the shared binder for the bean type, creating it if necessary.
+     *
+     * @param beanType
+     * @return the binder for the bean type
+     */
+    @SuppressWarnings("unchecked")
+    public static <X> BeanBinder<X> of(Class<X> beanType) {
+        return (BeanBinder<X>) binders.computeIfAbsent(beanType, type -> new BeanBinder<>(type));
+    }
+
+    BeanBinder(Class<T> beanType) {
+        this.beanType = beanType;
+
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            Constructor<T> defaultConstructor = beanType.getDeclaredConstructor();
+            defaultConstructor.setAccessible(true);
+            this.constructor = lookup.unreflectConstructor(defaultConstructor).asType(CONSTRUCTOR_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new FatalException(e, "Bean type '{}' must declare a default constructor!", beanType.getName());
+        }
+
+        List<FieldBinding> list = new ArrayList<>();
+        for (Field field : ClassUtil.getAllFields(beanType)) {
+            int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || field.isSynthetic()) {
+                continue;
+            }
+
+            Function<ParameterValue, Object> converter = getConverter(field);
+            if (converter == null) {
+                continue;
+            }
+
+            Param param = field.getAnnotation(Param.class);
+            String name = param == null ? field.getName() : param.value();
+
+            try {
+                field.setAccessible(true);
+                MethodHandle setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+                list.add(new FieldBinding(name, field.getName(), setter, converter));
+            } catch (IllegalAccessException e) {
+                throw new FatalException(e, "Failed to access field '{}' of bean type '{}'", field.getName(), beanType.getName());
+            }
+        }
+        this.bindings = list.toArray(new FieldBinding[list.size()]);
+
+        log.debug("Prepared binder for '{}' with {} fields", beanType.getName(), bindings.length);
+    }
+
+    public Class<T> getBeanType() {
+        return beanType;
+    }
+
+    /**
+     * Creates a new bean and populates it from the parameters.
+     *
+     * @param parameters
+     * @return a new bean
+     */
+    @SuppressWarnings("unchecked")
+    public T bind(Map<String, ParameterValue> parameters) {
+        T bean;
+        try {
+            Object o = constructor.invokeExact();
+            bean = (T) o;
+        } catch (Throwable t) {
+            throw new FathomException(t, "Cannot create new instance of class '{}'", beanType.getName());
+        }
+
+        return bind(bean, parameters);
+    }
+
+    /**
+     * Populates an existing bean from the parameters.
+     *
+     * @param bean
+     * @param parameters
+     * @return the bean
+     */
+    public T bind(T bean, Map<String, ParameterValue> parameters) {
+        for (FieldBinding binding : bindings) {
+            ParameterValue parameterValue = parameters.get(binding.parameterName);
+            if (parameterValue == null) {
+                continue;
+            }
+
+            Object value;
+            try {
+                value = binding.converter.apply(parameterValue);
+            } catch (PippoRuntimeException e) {
+                log.error(e.getMessage(), e);
+                continue;
+            }
+
+            try {
+                binding.setter.invokeExact((Object) bean, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new FathomException(t, "Cannot set value for field '{}' from parameter '{}'",
+                        binding.fieldName, binding.parameterName);
+            }
+        }
+
+        return bean;
+    }
+
+    /**
+     * Resolves the conversion function for a field.  Primitive and String fields are
+     * mapped directly to the matching {@link ParameterValue} method, everything else,
+     * including boxed types and fields with a {@link ParamPattern}, is delegated to
+     * {@link ParameterValue#to(Class, String)} so that patterns and empty values are
+     * handled exactly like {@code Request.updateEntityFromParameters}.
+     *
+     * @param field
+     * @return the converter or null if the field can not be bound
+     */
+    @SuppressWarnings("unchecked")
+    private Function<ParameterValue, Object> getConverter(Field field) {
+        ParamPattern paramPattern = field.getAnnotation(ParamPattern.class);
+        final String pattern = paramPattern == null ? null : paramPattern.value();
+        final Class<?> type = field.getType();
+
+        if (Collection.class.isAssignableFrom(type)) {
+            final Class<?> elementType;
+            try {
+                elementType = ClassUtil.getGenericType(field);
+            } catch (FathomException e) {
+                log.warn("Field '{}' of '{}' will not be bound: {}", field.getName(), beanType.getName(), e.getMessage());
+                return null;
+            }
+
+            if (Set.class == type) {
+                return pv -> pv.toSet(elementType, pattern);
+            } else if (List.class == type) {
+                return pv -> pv.toList(elementType, pattern);
+            } else if (type.isInterface()) {
+                log.warn("Field '{}' of '{}' will not be bound: collection '{}' is not a supported type!",
+                        field.getName(), beanType.getName(), type.getName());
+                return null;
+            }
+
+            final Class<? extends Collection> collectionType = (Class<? extends Collection>) type;
+            return pv -> pv.toCollection(collectionType, elementType, pattern);
+        }
+
+        if (pattern != null) {
+            return pv -> pv.to(type, pattern);
+        }
+
+        if (String.class == type) {
+            return ParameterValue::toString;
+        } else if (boolean.class == type) {
+            return ParameterValue::toBoolean;
+        } else if (byte.class == type) {
+            return ParameterValue::toByte;
+        } else if (short.class == type) {
+            return ParameterValue::toShort;
+        } else if (int.class == type) {
+            return ParameterValue::toInt;
+        } else if (long.class == type) {
+            return ParameterValue::toLong;
+        } else if (float.class == type) {
+            return ParameterValue::toFloat;
+        } else if (double.class == type) {
+            return ParameterValue::toDouble;
+        }
+
+        return pv -> pv.to(type, null);
+    }
+
+    private static class FieldBinding {
+
+        final String parameterName;
+
+        final String fieldName;
+
+        final MethodHandle setter;
+
+        final Function<ParameterValue, Object> converter;
+
+        FieldBinding(String parameterName, String fieldName, MethodHandle setter, Function<ParameterValue, Object> converter) {
+            this.parameterName = parameterName;
+            this.fieldName = fieldName;
+            this.setter = setter;
+            this.converter = converter;
+        }
+    }
+
+}
@@ -23,15 +23,15 @@ import fathom.rest.Context;
  */
 public class BeanExtractor implements TypedExtractor {
 
-    private Class<?> objectType;
+    private BeanBinder<?> binder;
 
     public void setObjectType(Class<?> objectType) {
-        this.objectType = objectType;
+        this.binder = BeanBinder.of(objectType);
     }
 
     @Override
     public Object extract(Context context) {
-        Object o = context.createEntityFromParameters(objectType);
+        Object o = binder.bind(context.getRequest().getParameters());
         return o;
     }
 }
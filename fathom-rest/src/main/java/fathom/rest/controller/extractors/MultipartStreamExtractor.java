@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest.controller.extractors;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.inject.Inject;
+import fathom.conf.Settings;
+import fathom.exception.FathomException;
+import fathom.exception.StatusCodeException;
+import fathom.rest.Context;
+import fathom.rest.controller.Multipart;
+import fathom.rest.multipart.MultipartStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Extracts a {@link MultipartStream} which reads the parts of the request body as they arrive.
+ * Spooled parts spill to the configured upload location and the stream is closed by the
+ * {@link fathom.rest.controller.ControllerHandler} after the controller method returns.
+ *
+ * @author James Moger
+ */
+public class MultipartStreamExtractor implements ConfigurableExtractor<Multipart>, TypedExtractor {
+
+    private long maxRequestSize;
+
+    private long maxPartSize;
+
+    private int memoryThreshold;
+
+    private final File uploadLocation;
+
+    @Inject
+    public MultipartStreamExtractor(Settings settings) {
+        this.maxRequestSize = settings.getUploadRequestMaxSize();
+        this.maxPartSize = settings.getUploadFilesMaxSize();
+        this.memoryThreshold = settings.getUploadMemoryThreshold();
+        String location = settings.getUploadFilesLocation();
+        this.uploadLocation = Strings.isNullOrEmpty(location) ? null : new File(location);
+    }
+
+    @Override
+    public Class<Multipart> getAnnotationClass() {
+        return Multipart.class;
+    }
+
+    @Override
+    public void configure(Multipart multipart) {
+        if (multipart.maxRequestSize() > -1) {
+            maxRequestSize = multipart.maxRequestSize();
+        }
+        if (multipart.maxPartSize() > -1) {
+            maxPartSize = multipart.maxPartSize();
+        }
+        if (multipart.memoryThreshold() > -1) {
+            memoryThreshold = multipart.memoryThreshold();
+        }
+    }
+
+    @Override
+    public void setObjectType(Class<?> objectType) {
+        Preconditions.checkArgument(MultipartStream.class == objectType, "'{}' is not a valid target type", objectType.getName());
+    }
+
+    @Override
+    public MultipartStream extract(Context context) {
+        HttpServletRequest request = context.getRequest().getHttpServletRequest();
+        String contentType = request.getContentType();
+        if (contentType == null || !contentType.toLowerCase().startsWith("multipart/")) {
+            throw new StatusCodeException(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE, "Expected a multipart request");
+        }
+
+        // reject declared oversized requests before reading the body
+        long contentLength = request.getContentLengthLong();
+        if (maxRequestSize > -1 && contentLength > maxRequestSize) {
+            throw new StatusCodeException(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+                    "Multipart request exceeds the maximum size of {} bytes", maxRequestSize);
+        }
+
+        try {
+            return new MultipartStream(request.getInputStream(), MultipartStream.getBoundary(contentType),
+                    maxRequestSize, maxPartSize, memoryThreshold, uploadLocation);
+        } catch (IOException e) {
+            throw new FathomException(e, "Failed to open the multipart request stream");
+        }
+    }
+}
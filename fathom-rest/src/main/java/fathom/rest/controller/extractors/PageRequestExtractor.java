@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest.controller.extractors;
+
+import com.google.inject.Inject;
+import fathom.conf.Settings;
+import fathom.exception.StatusCodeException;
+import fathom.rest.Context;
+import fathom.rest.paging.Cursor;
+import fathom.rest.paging.CursorCodec;
+import fathom.rest.paging.PageRequest;
+import ro.pippo.core.ParameterValue;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Extracts a {@link PageRequest} from the signed {@code cursor} and the {@code limit}
+ * request parameters.  The limit defaults to {@code rest.paging.defaultLimit} and
+ * is capped at {@code rest.paging.maxLimit}.
+ *
+ * @author James Moger
+ */
+public class PageRequestExtractor implements ArgumentExtractor {
+
+    public static final String SETTING_DEFAULT_LIMIT = "rest.paging.defaultLimit";
+
+    public static final String SETTING_MAX_LIMIT = "rest.paging.maxLimit";
+
+    private final CursorCodec codec;
+
+    private final int defaultLimit;
+
+    private final int maxLimit;
+
+    @Inject
+    public PageRequestExtractor(CursorCodec codec, Settings settings) {
+        this.codec = codec;
+        this.maxLimit = settings.getInteger(SETTING_MAX_LIMIT, 100);
+        this.defaultLimit = Math.min(settings.getInteger(SETTING_DEFAULT_LIMIT, 20), maxLimit);
+    }
+
+    @Override
+    public Object extract(Context context) {
+        ParameterValue cursorValue = context.getParameter(PageRequest.CURSOR_PARAMETER);
+        Cursor cursor = cursorValue.isEmpty() ? null : codec.decode(cursorValue.toString());
+
+        int limit = defaultLimit;
+        ParameterValue limitValue = context.getParameter(PageRequest.LIMIT_PARAMETER);
+        if (!limitValue.isEmpty()) {
+            try {
+                limit = Integer.parseInt(limitValue.toString());
+            } catch (NumberFormatException e) {
+                limit = 0;
+            }
+            if (limit < 1) {
+                throw new StatusCodeException(HttpServletResponse.SC_BAD_REQUEST,
+                        "Parameter '{}' must be a positive integer", PageRequest.LIMIT_PARAMETER);
+            }
+            limit = Math.min(limit, maxLimit);
+        }
+
+        return new PageRequest(cursor, limit, codec);
+    }
+
+}
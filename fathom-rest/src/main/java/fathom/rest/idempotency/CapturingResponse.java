@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.rest.idempotency;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+/**
+ * CapturingResponse copies the response body, up to a limit, while it is written
+ * to the client.  The response passes through unchanged until {@link #capture(int)}
+ * is called.
+ *
+ * @author James Moger
+ */
+public class CapturingResponse extends HttpServletResponseWrapper {
+
+    private int maxBodySize = -1;
+
+    private ByteArrayOutputStream body;
+
+    private boolean overflow;
+
+    private ServletOutputStream outputStream;
+
+    private PrintWriter writer;
+
+    public CapturingResponse(HttpServletResponse response) {
+        super(response);
+    }
+
+    /**
+     * Starts capturing the response body.
+     *
+     * @param maxBodySize the largest body which is captured
+     */
+    void capture(int maxBodySize) {
+        this.maxBodySize = maxBodySize;
+        this.body = new ByteArrayOutputStream(Math.min(maxBodySize, 8 * 1024));
+    }
+
+    /**
+     * @return true if the body exceeded the limit and was not captured
+     */
+    boolean isOverflow() {
+        return overflow;
+    }
+
+    byte[] getBody() {
+        if (writer != null) {
+            writer.flush();
+        }
+        return body.toByteArray();
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (maxBodySize < 0) {
+            return super.getOutputStream();
+        }
+        if (outputStream == null) {
+            outputStream = new TeeOutputStream(super.getOutputStream());
+        }
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (maxBodySize < 0) {
+            return super.getWriter();
+        }
+        if (writer == null) {
+            writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        super.flushBuffer();
+    }
+
+    private void copy(byte[] bytes, int offset, int length) {
+        if (overflow) {
+            return;
+        }
+        if (body.size() + length > maxBodySize) {
+            overflow = true;
+            body = new ByteArrayOutputStream(0);
+            return;
+        }
+        body.write(bytes, offset, length);
+    }
+
+    private class TeeOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream out;
+
+        private final byte[] single = new byte[1];
+
+        TeeOutputStream(ServletOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            single[0] = (byte) b;
+            copy(single, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            copy(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return out.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            out.setWriteListener(writeListener);
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.rest.idempotency;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IdempotencyStore holds the responses of requests which specified an idempotency key.
+ * <p>
+ * A key is first reserved by the request which executes the route.  That request
+ * either completes the key with its response or releases it on failure.  Duplicate
+ * requests await the response of the reservation.
+ * </p>
+ * <p>
+ * The store is selected by the {@code rest.idempotency.store} setting and it is
+ * created by the injector.  The default is {@link MemoryIdempotencyStore}.
+ * </p>
+ *
+ * @author James Moger
+ */
+public interface IdempotencyStore {
+
+    /**
+     * Reserves the key for the calling request.
+     *
+     * @param key
+     * @return true if the caller holds the reservation and must execute the request,
+     * false if the key is already reserved or completed
+     */
+    boolean reserve(String key);
+
+    /**
+     * Waits for the response of a reserved or completed key.
+     *
+     * @param key
+     * @param timeout
+     * @param unit
+     * @return the stored response or null if the key was released, has expired
+     * or the timeout elapsed
+     * @throws InterruptedException
+     */
+    StoredResponse await(String key, long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Stores the response of a reserved key and wakes up waiting duplicates.
+     *
+     * @param key
+     * @param response
+     */
+    void complete(String key, StoredResponse response);
+
+    /**
+     * Releases a reserved key without a response so that a later duplicate may execute.
+     *
+     * @param key
+     */
+    void release(String key);
+
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.rest.idempotency;
+
+import com.google.common.base.Strings;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import fathom.conf.Settings;
+import fathom.exception.StatusCodeException;
+import fathom.rest.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ro.pippo.core.HttpConstants;
+import ro.pippo.core.Request;
+import ro.pippo.core.Response;
+import ro.pippo.core.route.RouteHandler;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IdempotentRouteHandler executes a route once per {@value #HEADER} header value.
+ * <p>
+ * The first request with a key executes the wrapped handler and its status, headers
+ * and body are stored.  Concurrent duplicates wait for the original to complete and
+ * later duplicates receive the stored response, marked with the
+ * {@value #REPLAYED_HEADER} header, without executing the handler.
+ * </p>
+ * <p>
+ * Keys are scoped to the caller, identified by the remote user, the Authorization
+ * header or the session, so that one client can not replay the response of another.
+ * A duplicate whose parameters or body differ from the original request is rejected
+ * with 422 Unprocessable Entity.  Cookies are never replayed.
+ * </p>
+ * <p>
+ * Responses with a server error status, responses which exceed the body limit and
+ * requests which fail with an exception are not stored; the key is released so that
+ * a retry executes the handler again.  Requests without the header are not affected.
+ * </p>
+ * <pre>
+ * rest.idempotency.store = fathom.rest.idempotency.MemoryIdempotencyStore
+ * rest.idempotency.maxBodySize = 1 MB
+ * rest.idempotency.waitTimeout = 30 seconds
+ * </pre>
+ *
+ * @author James Moger
+ */
+public class IdempotentRouteHandler implements RouteHandler<Context> {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    public static final String SETTING_STORE = "rest.idempotency.store";
+
+    public static final String SETTING_MAX_BODY_SIZE = "rest.idempotency.maxBodySize";
+
+    public static final String SETTING_WAIT_TIMEOUT = "rest.idempotency.waitTimeout";
+
+    static final int MAX_KEY_LENGTH = 255;
+
+    static final int SC_UNPROCESSABLE_ENTITY = 422;
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotentRouteHandler.class);
+
+    private static final Set<String> EXCLUDED_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        EXCLUDED_HEADERS.add("Connection");
+        EXCLUDED_HEADERS.add("Content-Length");
+        EXCLUDED_HEADERS.add("Date");
+        EXCLUDED_HEADERS.add("Set-Cookie");
+        EXCLUDED_HEADERS.add("Transfer-Encoding");
+    }
+
+    private final RouteHandler<Context> routeHandler;
+
+    private final IdempotencyStore store;
+
+    private final int maxBodySize;
+
+    private final long waitTimeoutNanos;
+
+    public IdempotentRouteHandler(RouteHandler<Context> routeHandler, IdempotencyStore store, Settings settings) {
+        this(routeHandler, store, (int) settings.getBytes(SETTING_MAX_BODY_SIZE, "1 MB"),
+                settings.getDuration(SETTING_WAIT_TIMEOUT, TimeUnit.NANOSECONDS, TimeUnit.SECONDS.toNanos(30)));
+    }
+
+    IdempotentRouteHandler(RouteHandler<Context> routeHandler, IdempotencyStore store, int maxBodySize, long waitTimeoutNanos) {
+        this.routeHandler = routeHandler;
+        this.store = store;
+        this.maxBodySize = maxBodySize;
+        this.waitTimeoutNanos = waitTimeoutNanos;
+    }
+
+    public RouteHandler<Context> getRouteHandler() {
+        return routeHandler;
+    }
+
+    /**
+     * Returns the handler wrapped by an IdempotentRouteHandler or the handler itself.
+     *
+     * @param routeHandler
+     * @return the wrapped route handler
+     */
+    public static RouteHandler unwrap(RouteHandler routeHandler) {
+        if (routeHandler instanceof IdempotentRouteHandler) {
+            return ((IdempotentRouteHandler) routeHandler).getRouteHandler();
+        }
+        return routeHandler;
+    }
+
+    @Override
+    public void handle(Context context) {
+        String key = context.getRequest().getHeader(HEADER);
+        HttpServletResponse servletResponse = context.getResponse().getHttpServletResponse();
+        if (key == null || !(servletResponse instanceof CapturingResponse)) {
+            routeHandler.handle(context);
+            return;
+        }
+
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            throw new StatusCodeException(HttpServletResponse.SC_BAD_REQUEST, "Invalid {} header", HEADER);
+        }
+
+        String storeKey = getScope(context) + ' ' + context.getRequestMethod() + ' '
+                + context.getRequest().getApplicationUri() + ' ' + key;
+        String fingerprint = getFingerprint(context);
+        long deadline = System.nanoTime() + waitTimeoutNanos;
+        while (true) {
+            if (store.reserve(storeKey)) {
+                execute(context, (CapturingResponse) servletResponse, storeKey, fingerprint);
+                return;
+            }
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new StatusCodeException(HttpServletResponse.SC_CONFLICT,
+                        "A request with {} '{}' is still in progress", HEADER, key);
+            }
+
+            StoredResponse stored;
+            try {
+                stored = store.await(storeKey, remaining, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new StatusCodeException(HttpServletResponse.SC_SERVICE_UNAVAILABLE, e,
+                        "Interrupted while waiting for {} '{}'", HEADER, key);
+            }
+
+            if (stored != null) {
+                if (!fingerprint.equals(stored.getFingerprint())) {
+                    throw new StatusCodeException(SC_UNPROCESSABLE_ENTITY,
+                            "{} '{}' was used for a different request", HEADER, key);
+                }
+                log.debug("Replaying response for {} '{}'", HEADER, key);
+                replay(context, stored);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Identifies the caller by the remote user, the Authorization header or the session.
+     */
+    private String getScope(Context context) {
+        HttpServletRequest request = context.getRequest().getHttpServletRequest();
+        if (request.getRemoteUser() != null) {
+            return "user:" + request.getRemoteUser();
+        }
+        String authorization = request.getHeader(HttpConstants.Header.AUTHORIZATION);
+        if (authorization != null) {
+            return "authorization:" + Hashing.sha256().hashString(authorization, StandardCharsets.UTF_8);
+        }
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            return "session:" + session.getId();
+        }
+        return "anonymous";
+    }
+
+    /**
+     * Hashes the parameters and the body of the request.  A multipart body and a posted
+     * form are represented by their parameters so that the request stream is not read.
+     */
+    private String getFingerprint(Context context) {
+        Request request = context.getRequest();
+        Hasher hasher = Hashing.sha256().newHasher();
+        Map<String, String[]> parameters = new TreeMap<>(request.getHttpServletRequest().getParameterMap());
+        for (Map.Entry<String, String[]> parameter : parameters.entrySet()) {
+            hasher.putString(parameter.getKey(), StandardCharsets.UTF_8).putByte((byte) 0);
+            for (String value : parameter.getValue()) {
+                hasher.putString(value, StandardCharsets.UTF_8).putByte((byte) 0);
+            }
+            hasher.putByte((byte) 1);
+        }
+
+        String contentType = Strings.nullToEmpty(request.getContentType()).toLowerCase();
+        boolean form = HttpConstants.Method.POST.equals(request.getMethod())
+                && contentType.startsWith(HttpConstants.ContentType.APPLICATION_FORM_URLENCODED);
+        if (!form && !contentType.startsWith("multipart/")) {
+            hasher.putString(Strings.nullToEmpty(request.getBody()), StandardCharsets.UTF_8);
+        }
+        return hasher.hash().toString();
+    }
+
+    private void execute(Context context, CapturingResponse servletResponse, String storeKey, String fingerprint) {
+        boolean completed = false;
+        try {
+            servletResponse.capture(maxBodySize);
+            routeHandler.handle(context);
+
+            // commit now so that the stored status and headers are final
+            Response response = context.getResponse();
+            if (!response.isCommitted()) {
+                response.commit();
+            }
+
+            int status = servletResponse.getStatus();
+            if (status >= 500) {
+                log.debug("Not storing {} response for '{}'", status, storeKey);
+            } else if (servletResponse.isOverflow()) {
+                log.debug("Not storing response for '{}', the body exceeds {} bytes", storeKey, maxBodySize);
+            } else {
+                store.complete(storeKey, new StoredResponse(status, getHeaders(servletResponse),
+                        servletResponse.getBody(), fingerprint));
+                completed = true;
+            }
+        } finally {
+            if (!completed) {
+                store.release(storeKey);
+            }
+        }
+    }
+
+    private Map<String, List<String>> getHeaders(HttpServletResponse servletResponse) {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (String name : servletResponse.getHeaderNames()) {
+            if (!EXCLUDED_HEADERS.contains(name) && !headers.containsKey(name)) {
+                headers.put(name, new ArrayList<>(servletResponse.getHeaders(name)));
+            }
+        }
+        return headers;
+    }
+
+    private void replay(Context context, StoredResponse stored) {
+        Response response = context.getResponse();
+        HttpServletResponse servletResponse = response.getHttpServletResponse();
+        response.status(stored.getStatus());
+        for (Map.Entry<String, List<String>> header : stored.getHeaders().entrySet()) {
+            for (String value : header.getValue()) {
+                servletResponse.addHeader(header.getKey(), value);
+            }
+        }
+        response.header(REPLAYED_HEADER, "true");
+
+        byte[] body = stored.getBody();
+        if (body.length == 0) {
+            response.commit();
+            return;
+        }
+
+        response.contentLength(body.length);
+        try {
+            response.getOutputStream().write(body);
+            servletResponse.flushBuffer();
+        } catch (IOException e) {
+            throw new StatusCodeException(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e,
+                    "Failed to replay response for {} '{}'", HEADER, context.getRequest().getHeader(HEADER));
+        }
+    }
+
+}
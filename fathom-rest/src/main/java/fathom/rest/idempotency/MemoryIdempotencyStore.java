@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.rest.idempotency;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import fathom.conf.Settings;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MemoryIdempotencyStore keeps responses in a bounded, insertion ordered map.
+ * Entries expire after the configured time to live and the oldest entries are
+ * evicted when the map is full.
+ * <pre>
+ * rest.idempotency.ttl = 24 hours
+ * rest.idempotency.maxEntries = 10000
+ * </pre>
+ *
+ * @author James Moger
+ */
+@Singleton
+public class MemoryIdempotencyStore implements IdempotencyStore {
+
+    public static final String SETTING_TTL = "rest.idempotency.ttl";
+
+    public static final String SETTING_MAX_ENTRIES = "rest.idempotency.maxEntries";
+
+    private final long ttlNanos;
+
+    private final Map<String, Entry> entries;
+
+    @Inject
+    public MemoryIdempotencyStore(Settings settings) {
+        this(settings.getDuration(SETTING_TTL, TimeUnit.NANOSECONDS, TimeUnit.HOURS.toNanos(24)),
+                settings.getInteger(SETTING_MAX_ENTRIES, 10000));
+    }
+
+    MemoryIdempotencyStore(long ttlNanos, final int maxEntries) {
+        this.ttlNanos = ttlNanos;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, false) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxEntries) {
+                    // wake up any duplicates of an evicted reservation
+                    eldest.getValue().latch.countDown();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public boolean reserve(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && !entry.isExpired(System.nanoTime())) {
+                return false;
+            }
+            // re-insert so that the insertion order follows the reservation time
+            entries.remove(key);
+            entries.put(key, new Entry(System.nanoTime() + ttlNanos));
+            return true;
+        }
+    }
+
+    @Override
+    public StoredResponse await(String key, long timeout, TimeUnit unit) throws InterruptedException {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry == null || !entry.latch.await(timeout, unit)) {
+            return null;
+        }
+        return entry.isExpired(System.nanoTime()) ? null : entry.response;
+    }
+
+    @Override
+    public void complete(String key, StoredResponse response) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null) {
+            entry.response = response;
+            entry.latch.countDown();
+        }
+    }
+
+    @Override
+    public void release(String key) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.remove(key);
+        }
+        if (entry != null) {
+            entry.latch.countDown();
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static class Entry {
+
+        final long expires;
+
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        volatile StoredResponse response;
+
+        Entry(long expires) {
+            this.expires = expires;
+        }
+
+        boolean isExpired(long now) {
+            return now - expires > 0;
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.rest.idempotency;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The status, headers and body of a response which may be replayed together with
+ * the fingerprint of the request which produced it.
+ *
+ * @author James Moger
+ */
+public class StoredResponse implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    private final Map<String, List<String>> headers;
+
+    private final byte[] body;
+
+    private final String fingerprint;
+
+    public StoredResponse(int status, Map<String, List<String>> headers, byte[] body, String fingerprint) {
+        this.status = status;
+        this.headers = Collections.unmodifiableMap(headers);
+        this.body = body;
+        this.fingerprint = fingerprint;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * @return the fingerprint of the parameters and body of the original request
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+}
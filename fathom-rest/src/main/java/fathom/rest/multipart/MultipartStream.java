@@ -0,0 +1,457 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest.multipart;
+
+import com.google.common.base.Strings;
+import fathom.exception.StatusCodeException;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * MultipartStream reads the parts of a multipart/form-data request body as they arrive.
+ * <p>
+ * Parts are exposed in the order they were sent.  The content of a part can only be read
+ * until the next part is requested; unread content of the current part is skipped.
+ * Nothing is written to disk unless a part is explicitly spooled or transferred to a file.
+ * </p>
+ * <p>
+ * The maximum request size and the maximum part size are enforced while the body is read
+ * and violations are reported as a 413 {@link StatusCodeException}.
+ * </p>
+ * <p>
+ * Spooled parts which spill to disk are written to the upload location.  Their temporary
+ * files are deleted when the stream is closed, unless they were moved with
+ * {@link SpooledPart#write(String)}.
+ * </p>
+ *
+ * @author James Moger
+ */
+public class MultipartStream implements Iterator<StreamingPart>, Iterable<StreamingPart>, Closeable {
+
+    private static final int MIN_BUFFER_SIZE = 8 * 1024;
+
+    private static final int MAX_HEADER_SIZE = 16 * 1024;
+
+    private static final byte CR = '\r';
+
+    private static final byte LF = '\n';
+
+    private static final byte DASH = '-';
+
+    private final InputStream inputStream;
+
+    private final byte[] delimiter;
+
+    private final byte[] buffer;
+
+    private final long maxRequestSize;
+
+    private final long maxPartSize;
+
+    private final int memoryThreshold;
+
+    private final File uploadLocation;
+
+    private final List<SpooledPart> spooledParts;
+
+    private int head;
+
+    private int tail;
+
+    private boolean eof;
+
+    private long bytesRead;
+
+    private boolean finished;
+
+    private StreamingPart nextPart;
+
+    private PartInputStream currentPart;
+
+    /**
+     * Creates a stream of parts.
+     *
+     * @param inputStream     the request body
+     * @param boundary        the multipart boundary of the Content-Type header
+     * @param maxRequestSize  the maximum number of body bytes to read, -1 for unlimited
+     * @param maxPartSize     the maximum size of a single part, -1 for unlimited
+     * @param memoryThreshold the number of bytes a spooled part may hold in memory before it spills to disk
+     */
+    public MultipartStream(InputStream inputStream, String boundary, long maxRequestSize, long maxPartSize, int memoryThreshold) {
+        this(inputStream, boundary, maxRequestSize, maxPartSize, memoryThreshold, null);
+    }
+
+    /**
+     * Creates a stream of parts.
+     *
+     * @param inputStream     the request body
+     * @param boundary        the multipart boundary of the Content-Type header
+     * @param maxRequestSize  the maximum number of body bytes to read, -1 for unlimited
+     * @param maxPartSize     the maximum size of a single part, -1 for unlimited
+     * @param memoryThreshold the number of bytes a spooled part may hold in memory before it spills to disk
+     * @param uploadLocation  the directory of spilled parts, null for the system temporary directory
+     */
+    public MultipartStream(InputStream inputStream, String boundary, long maxRequestSize, long maxPartSize,
+                           int memoryThreshold, File uploadLocation) {
+        if (Strings.isNullOrEmpty(boundary)) {
+            throw new StatusCodeException(HttpServletResponse.SC_BAD_REQUEST, "Multipart boundary is not specified!");
+        }
+        this.inputStream = inputStream;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.buffer = new byte[Math.max(MIN_BUFFER_SIZE, delimiter.length * 2)];
+        this.maxRequestSize = maxRequestSize;
+        this.maxPartSize = maxPartSize;
+        this.memoryThreshold = memoryThreshold;
+        this.uploadLocation = uploadLocation;
+        this.spooledParts = new ArrayList<>();
+
+        // the first boundary is not preceded by a CRLF, pretend that it is
+        buffer[0] = CR;
+        buffer[1] = LF;
+        tail = 2;
+    }
+
+    /**
+     * Extracts the boundary parameter from a multipart Content-Type header value.
+     *
+     * @param contentType
+     * @return the boundary or null
+     */
+    public static String getBoundary(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        for (String parameter : contentType.split(";")) {
+            String value = parameter.trim();
+            if (value.regionMatches(true, 0, "boundary=", 0, "boundary=".length())) {
+                String boundary = value.substring("boundary=".length()).trim();
+                if (boundary.length() > 1 && boundary.startsWith("\"") && boundary.endsWith("\"")) {
+                    boundary = boundary.substring(1, boundary.length() - 1);
+                }
+                return boundary;
+            }
+        }
+        return null;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Deletes the temporary files of the spooled parts.
+     */
+    @Override
+    public void close() {
+        for (SpooledPart part : spooledParts) {
+            part.deleteTemporaryFile();
+        }
+        spooledParts.clear();
+    }
+
+    SpooledPart createSpooledPart(StreamingPart part) {
+        SpooledPart spooledPart = new SpooledPart(part, memoryThreshold, uploadLocation);
+        spooledParts.add(spooledPart);
+        return spooledPart;
+    }
+
+    @Override
+    public Iterator<StreamingPart> iterator() {
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextPart == null && !finished) {
+            try {
+                nextPart = readNextPart();
+            } catch (IOException e) {
+                throw new StatusCodeException(HttpServletResponse.SC_BAD_REQUEST, e, "Failed to read multipart request");
+            }
+        }
+        return nextPart != null;
+    }
+
+    @Override
+    public StreamingPart next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        StreamingPart part = nextPart;
+        nextPart = null;
+        return part;
+    }
+
+    private StreamingPart readNextPart() throws IOException {
+        if (currentPart == null) {
+            // skip the preamble
+            new PartInputStream(-1).skipAll();
+        } else {
+            currentPart.skipAll();
+        }
+
+        // consume the delimiter
+        head += delimiter.length;
+
+        if (!ensure(2)) {
+            throw new IOException("Unexpected end of multipart stream");
+        }
+        if (buffer[head] == DASH && buffer[head + 1] == DASH) {
+            // close delimiter, ignore the epilogue
+            finished = true;
+            currentPart = null;
+            return null;
+        }
+
+        // skip transport padding & the CRLF which terminates the delimiter line
+        readLine();
+
+        Map<String, String> headers = readHeaders();
+        currentPart = new PartInputStream(maxPartSize);
+        return new StreamingPart(headers, currentPart, this);
+    }
+
+    private Map<String, String> readHeaders() throws IOException {
+        Map<String, String> headers = new LinkedHashMap<>();
+        int headerBytes = 0;
+        String line;
+        while (!(line = readLine()).isEmpty()) {
+            headerBytes += line.length();
+            if (headerBytes > MAX_HEADER_SIZE) {
+                throw new IOException("Multipart part headers are too large");
+            }
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                String name = line.substring(0, colon).trim().toLowerCase();
+                String value = line.substring(colon + 1).trim();
+                headers.put(name, value);
+            }
+        }
+        return headers;
+    }
+
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        while (true) {
+            if (!ensure(1)) {
+                throw new IOException("Unexpected end of multipart stream");
+            }
+            byte b = buffer[head++];
+            if (b == LF) {
+                break;
+            } else if (b != CR) {
+                if (line.size() > MAX_HEADER_SIZE) {
+                    throw new IOException("Multipart line is too long");
+                }
+                line.write(b);
+            }
+        }
+        return new String(line.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Ensures that at least the specified number of bytes are buffered.
+     *
+     * @param count
+     * @return false if the end of the stream was reached before count bytes could be buffered
+     * @throws IOException
+     */
+    private boolean ensure(int count) throws IOException {
+        while (tail - head < count) {
+            if (eof) {
+                return false;
+            }
+            fill();
+        }
+        return true;
+    }
+
+    private void fill() throws IOException {
+        if (head > 0) {
+            System.arraycopy(buffer, head, buffer, 0, tail - head);
+            tail -= head;
+            head = 0;
+        }
+
+        int read = inputStream.read(buffer, tail, buffer.length - tail);
+        if (read < 0) {
+            eof = true;
+            return;
+        }
+
+        tail += read;
+        bytesRead += read;
+        if (maxRequestSize > -1 && getBytesRead() > maxRequestSize) {
+            throw new StatusCodeException(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+                    "Multipart request exceeds the maximum size of {} bytes", maxRequestSize);
+        }
+    }
+
+    /**
+     * Returns the index of the delimiter within the buffered bytes or -1.
+     */
+    private int findDelimiter() {
+        int last = tail - delimiter.length;
+        outer:
+        for (int i = head; i <= last; i++) {
+            for (int j = 0; j < delimiter.length; j++) {
+                if (buffer[i + j] != delimiter[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the content of a single part, up to the next delimiter.
+     */
+    class PartInputStream extends InputStream {
+
+        private final long maxSize;
+
+        private long size;
+
+        private boolean done;
+
+        private final byte[] single = new byte[1];
+
+        PartInputStream(long maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the number of bytes which can be read without crossing the delimiter.
+         */
+        private int available0() throws IOException {
+            if (done) {
+                return -1;
+            }
+
+            while (true) {
+                int index = findDelimiter();
+                if (index == head) {
+                    done = true;
+                    return -1;
+                } else if (index > head) {
+                    return index - head;
+                }
+
+                // the delimiter may start within the last (delimiter.length - 1) bytes
+                int safe = tail - head - (delimiter.length - 1);
+                if (safe > 0) {
+                    return safe;
+                }
+
+                if (eof) {
+                    throw new IOException("Unexpected end of multipart stream");
+                }
+                fill();
+            }
+        }
+
+        /**
+         * Advances past bytes of the part, enforcing the maximum part size.
+         */
+        private void consume(int count) {
+            head += count;
+            size += count;
+            if (maxSize > -1 && size > maxSize) {
+                throw new StatusCodeException(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+                        "Multipart part exceeds the maximum size of {} bytes", maxSize);
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = read(single, 0, 1);
+            return read < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int available = available0();
+            if (available < 0) {
+                return -1;
+            }
+            int count = Math.min(len, available);
+            System.arraycopy(buffer, head, b, off, count);
+            consume(count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = 0;
+            while (skipped < n) {
+                int available = available0();
+                if (available < 0) {
+                    break;
+                }
+                int count = (int) Math.min(n - skipped, available);
+                consume(count);
+                skipped += count;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            if (done) {
+                return 0;
+            }
+            int index = findDelimiter();
+            if (index >= head) {
+                return index - head;
+            }
+            return Math.max(0, tail - head - (delimiter.length - 1));
+        }
+
+        void skipAll() throws IOException {
+            int available;
+            while ((available = available0()) >= 0) {
+                consume(available);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            // the request stream is owned by the container
+        }
+    }
+
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest.multipart;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.Part;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * A part which has been read from the request.  The content is held in memory until
+ * it exceeds the memory threshold, after which it spills to a temporary file in the
+ * upload location.
+ *
+ * @author James Moger
+ */
+public class SpooledPart implements Part {
+
+    private static final Logger log = LoggerFactory.getLogger(SpooledPart.class);
+
+    private final StreamingPart part;
+
+    private final int memoryThreshold;
+
+    private final File uploadLocation;
+
+    private ByteArrayOutputStream memory;
+
+    private File file;
+
+    private boolean temporary;
+
+    private long size;
+
+    SpooledPart(StreamingPart part, int memoryThreshold, File uploadLocation) {
+        this.part = part;
+        this.memoryThreshold = memoryThreshold;
+        this.uploadLocation = uploadLocation;
+    }
+
+    OutputStream getOutputStream() {
+        memory = new ByteArrayOutputStream(Math.min(Math.max(memoryThreshold, 0), 8 * 1024));
+        return new OutputStream() {
+
+            private OutputStream fileStream;
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (fileStream == null && memory.size() + len > memoryThreshold) {
+                    if (uploadLocation != null) {
+                        Files.createDirectories(uploadLocation.toPath());
+                    }
+                    file = File.createTempFile("fathom-upload-", ".tmp", uploadLocation);
+                    temporary = true;
+                    fileStream = new FileOutputStream(file);
+                    memory.writeTo(fileStream);
+                    memory = null;
+                }
+
+                if (fileStream == null) {
+                    memory.write(b, off, len);
+                } else {
+                    fileStream.write(b, off, len);
+                }
+                size += len;
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (fileStream != null) {
+                    fileStream.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns true if the content spilled to a temporary file.
+     */
+    public boolean isInMemory() {
+        return file == null;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        if (file == null) {
+            return new ByteArrayInputStream(memory.toByteArray());
+        }
+        return new FileInputStream(file);
+    }
+
+    @Override
+    public String getContentType() {
+        return part.getContentType();
+    }
+
+    @Override
+    public String getName() {
+        return part.getName();
+    }
+
+    @Override
+    public String getSubmittedFileName() {
+        return part.getSubmittedFileName();
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Writes the part to a file, a relative file name is resolved against the upload location.
+     *
+     * @param fileName
+     * @throws IOException
+     */
+    @Override
+    public void write(String fileName) throws IOException {
+        File target = new File(fileName);
+        if (!target.isAbsolute() && uploadLocation != null) {
+            target = new File(uploadLocation, fileName);
+        }
+        if (file == null) {
+            try (OutputStream outputStream = new FileOutputStream(target)) {
+                memory.writeTo(outputStream);
+            }
+        } else {
+            Files.move(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            file = target;
+            temporary = false;
+        }
+    }
+
+    @Override
+    public void delete() throws IOException {
+        if (file != null) {
+            Files.deleteIfExists(file.toPath());
+            file = null;
+            temporary = false;
+        }
+        memory = new ByteArrayOutputStream(0);
+        size = 0;
+    }
+
+    /**
+     * Deletes the spilled content unless it has been moved with {@link #write(String)}.
+     */
+    void deleteTemporaryFile() {
+        if (temporary) {
+            try {
+                delete();
+            } catch (IOException e) {
+                log.warn("Failed to delete temporary upload '{}'", file, e);
+            }
+        }
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return part.getHeader(name);
+    }
+
+    @Override
+    public Collection<String> getHeaders(String name) {
+        String value = part.getHeader(name);
+        return value == null ? Collections.emptyList() : Collections.singletonList(value);
+    }
+
+    @Override
+    public Collection<String> getHeaderNames() {
+        return new ArrayList<>(part.getHeaders().keySet());
+    }
+
+}
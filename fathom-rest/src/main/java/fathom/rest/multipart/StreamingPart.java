@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest.multipart;
+
+import com.google.common.io.ByteStreams;
+import ro.pippo.core.FileItem;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A part of a streamed multipart request.
+ * <p>
+ * The content is read directly from the request body and is only available until the
+ * next part of the {@link MultipartStream} is requested.  Call {@link #spool()} to retain
+ * the content beyond that point.
+ * </p>
+ *
+ * @author James Moger
+ */
+public class StreamingPart {
+
+    private final Map<String, String> headers;
+
+    private final MultipartStream.PartInputStream inputStream;
+
+    private final MultipartStream multipartStream;
+
+    private final String name;
+
+    private final String fileName;
+
+    StreamingPart(Map<String, String> headers, MultipartStream.PartInputStream inputStream, MultipartStream multipartStream) {
+        this.headers = Collections.unmodifiableMap(headers);
+        this.inputStream = inputStream;
+        this.multipartStream = multipartStream;
+
+        String disposition = headers.get("content-disposition");
+        this.name = getDispositionParameter(disposition, "name");
+        this.fileName = getDispositionParameter(disposition, "filename");
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the file name submitted by the client or null if this part is a form field.
+     *
+     * @return the submitted file name
+     */
+    public String getSubmittedFileName() {
+        return fileName;
+    }
+
+    public boolean isFormField() {
+        return fileName == null;
+    }
+
+    public String getContentType() {
+        return headers.get("content-type");
+    }
+
+    /**
+     * Returns the value of a part header.
+     *
+     * @param name the case-insensitive header name
+     * @return the header value or null
+     */
+    public String getHeader(String name) {
+        return headers.get(name.toLowerCase());
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Returns the stream of the part content.  The stream reads directly from the request.
+     *
+     * @return the content stream
+     */
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    /**
+     * Reads the content of the part as a string.  Use this for form fields only.
+     *
+     * @return the part content
+     * @throws IOException
+     */
+    public String getString() throws IOException {
+        return new String(ByteStreams.toByteArray(inputStream), getCharset());
+    }
+
+    /**
+     * Copies the content of the part to the output stream.
+     *
+     * @param outputStream
+     * @return the number of bytes copied
+     * @throws IOException
+     */
+    public long transferTo(OutputStream outputStream) throws IOException {
+        return ByteStreams.copy(inputStream, outputStream);
+    }
+
+    /**
+     * Copies the content of the part to the file.
+     *
+     * @param file
+     * @return the number of bytes copied
+     * @throws IOException
+     */
+    public long transferTo(File file) throws IOException {
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            return transferTo(outputStream);
+        }
+    }
+
+    /**
+     * Reads the remaining content of the part into memory or, if it exceeds the
+     * memory threshold, into a temporary file in the upload location.  The temporary
+     * file is deleted if reading fails or when the {@link MultipartStream} is closed.
+     *
+     * @return the spooled part
+     * @throws IOException
+     */
+    public SpooledPart spool() throws IOException {
+        SpooledPart part = multipartStream.createSpooledPart(this);
+        boolean spooled = false;
+        try (OutputStream outputStream = part.getOutputStream()) {
+            transferTo(outputStream);
+            spooled = true;
+        } finally {
+            if (!spooled) {
+                part.deleteTemporaryFile();
+            }
+        }
+        return part;
+    }
+
+    /**
+     * Spools the part and wraps it as a Pippo FileItem.
+     *
+     * @return a FileItem
+     * @throws IOException
+     */
+    public FileItem toFileItem() throws IOException {
+        return new FileItem(spool());
+    }
+
+    long getBytesRead() {
+        return inputStream.getSize();
+    }
+
+    private Charset getCharset() {
+        String contentType = getContentType();
+        if (contentType != null) {
+            String charset = getParameter(contentType, "charset");
+            if (charset != null && Charset.isSupported(charset)) {
+                return Charset.forName(charset);
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static String getDispositionParameter(String disposition, String parameter) {
+        return disposition == null ? null : getParameter(disposition, parameter);
+    }
+
+    private static String getParameter(String headerValue, String parameter) {
+        for (String element : headerValue.split(";")) {
+            String value = element.trim();
+            int equals = value.indexOf('=');
+            if (equals > 0 && value.substring(0, equals).trim().equalsIgnoreCase(parameter)) {
+                value = value.substring(equals + 1).trim();
+                if (value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")) {
+                    value = value.substring(1, value.length() - 1);
+                }
+                return value;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "StreamingPart{" +
+                "name='" + name + '\'' +
+                ", fileName='" + fileName + '\'' +
+                ", contentType='" + getContentType() + '\'' +
+                '}';
+    }
+
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest.paging;
+
+import fathom.exception.StatusCodeException;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * A Cursor is the position of a page within an ordered result, expressed as the
+ * key values of the row at the page boundary and the direction to read from there.
+ * <p>
+ * Key values are typed so that they can be bound directly as query parameters.
+ * Supported types are String, Integer, Long, Double, BigDecimal, UUID, Date and Instant.
+ * </p>
+ *
+ * @author James Moger
+ */
+public class Cursor {
+
+    public enum Direction {
+        NEXT, PREV
+    }
+
+    private static final String ENCODING = "UTF-8";
+
+    private final Direction direction;
+
+    private final Object[] keys;
+
+    public Cursor(Direction direction, Object... keys) {
+        if (keys == null || keys.length == 0) {
+            throw new IllegalArgumentException("A cursor requires at least one key value!");
+        }
+        for (Object key : keys) {
+            if (key == null) {
+                throw new IllegalArgumentException("A cursor key value may not be null!");
+            }
+        }
+        this.direction = direction;
+        this.keys = keys.clone();
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    public boolean isBackward() {
+        return direction == Direction.PREV;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public Object getKey(int index) {
+        return keys[index];
+    }
+
+    public Object[] getKeys() {
+        return keys.clone();
+    }
+
+    /**
+     * Serializes the cursor to an unsigned payload.
+     *
+     * @return the payload
+     */
+    String toPayload() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(direction == Direction.NEXT ? 'n' : 'p');
+        for (Object key : keys) {
+            sb.append(',');
+            if (key instanceof String) {
+                sb.append('S').append(encode((String) key));
+            } else if (key instanceof Integer) {
+                sb.append('I').append(key);
+            } else if (key instanceof Long) {
+                sb.append('L').append(key);
+            } else if (key instanceof Double) {
+                sb.append('D').append(key);
+            } else if (key instanceof BigDecimal) {
+                sb.append('B').append(((BigDecimal) key).toPlainString());
+            } else if (key instanceof UUID) {
+                sb.append('U').append(key);
+            } else if (key instanceof Date) {
+                sb.append('T').append(((Date) key).getTime());
+            } else if (key instanceof Instant) {
+                sb.append('N').append(key);
+            } else {
+                throw new IllegalArgumentException("Unsupported cursor key type " + key.getClass().getName());
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Deserializes a cursor from a verified payload.
+     *
+     * @param payload
+     * @return the cursor
+     */
+    static Cursor fromPayload(String payload) {
+        String[] fields = payload.split(",", -1);
+        if (fields.length < 2 || !("n".equals(fields[0]) || "p".equals(fields[0]))) {
+            throw new StatusCodeException(HttpServletResponse.SC_BAD_REQUEST, "Malformed cursor");
+        }
+
+        Direction direction = "n".equals(fields[0]) ? Direction.NEXT : Direction.PREV;
+        Object[] keys = new Object[fields.length - 1];
+        try {
+            for (int i = 1; i < fields.length; i++) {
+                String field = fields[i];
+                if (field.isEmpty()) {
+                    throw new StatusCodeException(HttpServletResponse.SC_BAD_REQUEST, "Malformed cursor");
+                }
+                String value = field.substring(1);
+                switch (field.charAt(0)) {
+                    case 'S':
+                        keys[i - 1] = decode(value);
+                        break;
+                    case 'I':
+                        keys[i - 1] = Integer.valueOf(value);
+                        break;
+                    case 'L':
+                        keys[i - 1] = Long.valueOf(value);
+                        break;
+                    case 'D':
+                        keys[i - 1] = Double.valueOf(value);
+                        break;
+                    case 'B':
+                        keys[i - 1] = new BigDecimal(value);
+                        break;
+                    case 'U':
+                        keys[i - 1] = UUID.fromString(value);
+                        break;
+                    case 'T':
+                        keys[i - 1] = new Timestamp(Long.parseLong(value));
+                        break;
+                    case 'N':
+                        keys[i - 1] = Instant.parse(value);
+                        break;
+                    default:
+                        throw new StatusCodeException(HttpServletResponse.SC_BAD_REQUEST, "Malformed cursor");
+                }
+            }
+        } catch (RuntimeException e) {
+            if (e instanceof StatusCodeException) {
+                throw e;
+            }
+            throw new StatusCodeException(HttpServletResponse.SC_BAD_REQUEST, e, "Malformed cursor");
+        }
+
+        return new Cursor(direction, keys);
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        Cursor cursor = (Cursor) o;
+        return direction == cursor.direction && Arrays.equals(keys, cursor.keys);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * direction.hashCode() + Arrays.hashCode(keys);
+    }
+
+    @Override
+    public String toString() {
+        return direction + Arrays.toString(keys);
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest.paging;
+
+import com.google.common.base.Strings;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import fathom.conf.Settings;
+import fathom.exception.StatusCodeException;
+import fathom.utils.CryptoUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * CursorCodec converts cursors to and from opaque, HMAC-SHA256 signed tokens.
+ * <p>
+ * The signing secret is read from {@code rest.paging.secret}.  If it is not
+ * specified a random secret is generated which means that cursors will not
+ * survive a restart and will not be accepted by other nodes of a cluster.
+ * </p>
+ *
+ * @author James Moger
+ */
+@Singleton
+public class CursorCodec {
+
+    private static final Logger log = LoggerFactory.getLogger(CursorCodec.class);
+
+    public static final String SETTING_SECRET = "rest.paging.secret";
+
+    private final String secret;
+
+    @Inject
+    public CursorCodec(Settings settings) {
+        this(getSecret(settings));
+    }
+
+    public CursorCodec(String secret) {
+        this.secret = secret;
+    }
+
+    private static String getSecret(Settings settings) {
+        String secret = settings.getString(SETTING_SECRET, null);
+        if (Strings.isNullOrEmpty(secret)) {
+            log.warn("'{}' is not specified, paging cursors will be signed with a random secret", SETTING_SECRET);
+            secret = CryptoUtil.generateSecretKey();
+        }
+        return secret;
+    }
+
+    /**
+     * Returns the signed token for the cursor.
+     *
+     * @param cursor
+     * @return an opaque token
+     */
+    public String encode(Cursor cursor) {
+        String payload = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(cursor.toPayload().getBytes(StandardCharsets.UTF_8));
+        return payload + "." + sign(payload);
+    }
+
+    /**
+     * Verifies and decodes a token.
+     *
+     * @param token
+     * @return the cursor
+     * @throws StatusCodeException (400) if the token is malformed or the signature does not match
+     */
+    public Cursor decode(String token) {
+        int dot = token.lastIndexOf('.');
+        if (dot <= 0) {
+            throw new StatusCodeException(HttpServletResponse.SC_BAD_REQUEST, "Malformed cursor");
+        }
+
+        String payload = token.substring(0, dot);
+        byte[] signature = token.substring(dot + 1).getBytes(StandardCharsets.UTF_8);
+        byte[] expected = sign(payload).getBytes(StandardCharsets.UTF_8);
+        if (!MessageDigest.isEqual(expected, signature)) {
+            throw new StatusCodeException(HttpServletResponse.SC_BAD_REQUEST, "Invalid cursor signature");
+        }
+
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(payload), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new StatusCodeException(HttpServletResponse.SC_BAD_REQUEST, e, "Malformed cursor");
+        }
+
+        return Cursor.fromPayload(decoded);
+    }
+
+    private String sign(String payload) {
+        return CryptoUtil.hmacDigest(payload, secret, CryptoUtil.HMAC_SHA256);
+    }
+
+}
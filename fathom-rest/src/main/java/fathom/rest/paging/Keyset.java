@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest.paging;
+
+import fathom.exception.StatusCodeException;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Keyset builds the SQL ORDER BY and WHERE fragments which seek to a cursor.
+ * <p>
+ * Columns are listed in sort order, optionally suffixed with ASC or DESC, and the
+ * last column must be unique.  For example:
+ * </p>
+ * <pre>
+ * Keyset keyset = Keyset.of("created DESC", "id DESC");
+ * Keyset.Predicate where = keyset.where(pageRequest);
+ * String sql = "SELECT * FROM item" + (where.isEmpty() ? "" : " WHERE " + where.getSql())
+ *         + " ORDER BY " + keyset.orderBy(pageRequest) + " LIMIT " + pageRequest.getFetchSize();
+ * </pre>
+ * <p>
+ * The predicate is expanded to {@code a >= ? AND (a > ? OR b > ?)} so that it works
+ * with mixed sort directions and with databases which do not support row values.  The
+ * leading range condition on the first column lets the database seek the index rather
+ * than scan it.  If all columns are sorted in the same direction and the database
+ * supports row value comparisons, {@link #useRowValues()} emits {@code (a, b) > (?, ?)}
+ * instead.  The cost of reading a page is independent of its depth if there is an index
+ * on the keyset columns.
+ * </p>
+ *
+ * @author James Moger
+ */
+public class Keyset {
+
+    private static final Pattern COLUMN = Pattern.compile("[A-Za-z_][A-Za-z0-9_.]*");
+
+    private final String[] columns;
+
+    private final boolean[] descending;
+
+    private final boolean rowValues;
+
+    private Keyset(String[] columns, boolean[] descending, boolean rowValues) {
+        this.columns = columns;
+        this.descending = descending;
+        this.rowValues = rowValues;
+    }
+
+    /**
+     * Creates a keyset from column specifications like {@code "id"} or {@code "created DESC"}.
+     *
+     * @param specs
+     * @return a keyset
+     */
+    public static Keyset of(String... specs) {
+        if (specs == null || specs.length == 0) {
+            throw new IllegalArgumentException("A keyset requires at least one column!");
+        }
+
+        String[] columns = new String[specs.length];
+        boolean[] descending = new boolean[specs.length];
+        for (int i = 0; i < specs.length; i++) {
+            String[] parts = specs[i].trim().split("\\s+");
+            if (parts.length > 2 || !COLUMN.matcher(parts[0]).matches()) {
+                throw new IllegalArgumentException("Invalid keyset column '" + specs[i] + "'");
+            }
+            columns[i] = parts[0];
+            if (parts.length == 2) {
+                if ("DESC".equalsIgnoreCase(parts[1])) {
+                    descending[i] = true;
+                } else if (!"ASC".equalsIgnoreCase(parts[1])) {
+                    throw new IllegalArgumentException("Invalid keyset column '" + specs[i] + "'");
+                }
+            }
+        }
+        return new Keyset(columns, descending, false);
+    }
+
+    /**
+     * Returns a keyset which seeks with a row value comparison when all columns are
+     * sorted in the same direction.  Only use this if your database supports row values.
+     *
+     * @return a keyset
+     */
+    public Keyset useRowValues() {
+        return new Keyset(columns, descending, true);
+    }
+
+    public int size() {
+        return columns.length;
+    }
+
+    /**
+     * Returns the ORDER BY clause for reading the requested page.  Backward pages
+     * are read in reverse order.
+     *
+     * @param request
+     * @return the ORDER BY clause, without the keywords
+     */
+    public String orderBy(PageRequest request) {
+        boolean reverse = request.isBackward();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(columns[i]).append(descending[i] ^ reverse ? " DESC" : " ASC");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the WHERE predicate which seeks past the cursor of the request.
+     *
+     * @param request
+     * @return the predicate, empty for the first page
+     * @throws StatusCodeException (400) if the cursor does not match this keyset
+     */
+    public Predicate where(PageRequest request) {
+        Cursor cursor = request.getCursor();
+        if (cursor == null) {
+            return Predicate.EMPTY;
+        }
+
+        if (cursor.size() != columns.length) {
+            throw new StatusCodeException(HttpServletResponse.SC_BAD_REQUEST,
+                    "Cursor has {} keys, expected {}", cursor.size(), columns.length);
+        }
+
+        boolean reverse = cursor.isBackward();
+        List<Object> parameters = new ArrayList<>();
+        if (rowValues && isUniform()) {
+            StringBuilder values = new StringBuilder();
+            for (int i = 0; i < columns.length; i++) {
+                values.append(i == 0 ? "?" : ", ?");
+                parameters.add(cursor.getKey(i));
+            }
+            String sql = "(" + String.join(", ", columns) + ")" + compare(0, reverse, false) + "(" + values + ")";
+            return new Predicate(sql, parameters);
+        }
+
+        // (a >= ? AND (a > ? OR (b >= ? AND (b > ? OR c > ?))))
+        int last = columns.length - 1;
+        StringBuilder sb = new StringBuilder("(");
+        for (int i = 0; i < last; i++) {
+            if (i > 0) {
+                sb.append('(');
+            }
+            sb.append(columns[i]).append(compare(i, reverse, true)).append("? AND (");
+            sb.append(columns[i]).append(compare(i, reverse, false)).append("? OR ");
+            parameters.add(cursor.getKey(i));
+            parameters.add(cursor.getKey(i));
+        }
+        sb.append(columns[last]).append(compare(last, reverse, false)).append('?');
+        parameters.add(cursor.getKey(last));
+        for (int i = 0; i < last; i++) {
+            sb.append(i > 0 ? "))" : ")");
+        }
+        sb.append(')');
+
+        return new Predicate(sb.toString(), parameters);
+    }
+
+    private String compare(int column, boolean reverse, boolean inclusive) {
+        boolean lessThan = descending[column] ^ reverse;
+        if (inclusive) {
+            return lessThan ? " <= " : " >= ";
+        }
+        return lessThan ? " < " : " > ";
+    }
+
+    private boolean isUniform() {
+        for (boolean direction : descending) {
+            if (direction != descending[0]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A SQL predicate and its positional parameters.
+     */
+    public static class Predicate {
+
+        static final Predicate EMPTY = new Predicate("", Collections.emptyList());
+
+        private final String sql;
+
+        private final List<Object> parameters;
+
+        Predicate(String sql, List<Object> parameters) {
+            this.sql = sql;
+            this.parameters = Collections.unmodifiableList(parameters);
+        }
+
+        public boolean isEmpty() {
+            return sql.isEmpty();
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public List<Object> getParameters() {
+            return parameters;
+        }
+
+        @Override
+        public String toString() {
+            return sql;
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest.paging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A Page is one slice of a keyset-paged collection with the signed cursors of the
+ * adjacent pages.  Controller methods which return a Page also get RFC 5988
+ * {@code Link} headers for the next and previous pages.
+ *
+ * @author James Moger
+ */
+public class Page<T> {
+
+    private final List<T> items;
+
+    private final String next;
+
+    private final String prev;
+
+    public Page(List<T> items, String next, String prev) {
+        this.items = Collections.unmodifiableList(items);
+        this.next = next;
+        this.prev = prev;
+    }
+
+    static <T> Page<T> of(PageRequest request, List<T> rows, Function<T, Object[]> keys) {
+        boolean hasMore = rows.size() > request.getLimit();
+        List<T> items = new ArrayList<>(hasMore ? rows.subList(0, request.getLimit()) : rows);
+        if (items.isEmpty()) {
+            return new Page<>(items, null, null);
+        }
+
+        T first;
+        T last;
+        boolean hasNext;
+        boolean hasPrev;
+        if (request.isBackward()) {
+            // backward pages are read in reverse order
+            Collections.reverse(items);
+            hasNext = true;
+            hasPrev = hasMore;
+        } else {
+            hasNext = hasMore;
+            hasPrev = !request.isFirst();
+        }
+        first = items.get(0);
+        last = items.get(items.size() - 1);
+
+        String next = hasNext ? request.encode(new Cursor(Cursor.Direction.NEXT, keys.apply(last))) : null;
+        String prev = hasPrev ? request.encode(new Cursor(Cursor.Direction.PREV, keys.apply(first))) : null;
+        return new Page<>(items, next, prev);
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Returns the cursor of the next page or null if this is the last page.
+     *
+     * @return the next cursor
+     */
+    public String getNext() {
+        return next;
+    }
+
+    /**
+     * Returns the cursor of the previous page or null if this is the first page.
+     *
+     * @return the previous cursor
+     */
+    public String getPrev() {
+        return prev;
+    }
+
+}
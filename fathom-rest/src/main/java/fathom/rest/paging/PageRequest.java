@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest.paging;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * PageRequest is the decoded paging position of a collection request.
+ * <p>
+ * Controller methods declare a PageRequest parameter to receive the verified cursor
+ * and the page size.  Queries should read {@link #getFetchSize()} rows, one more
+ * than the limit, so that {@link #toPage(List, Function)} can tell if there is
+ * another page without counting.
+ * </p>
+ *
+ * @author James Moger
+ */
+public class PageRequest {
+
+    public static final String CURSOR_PARAMETER = "cursor";
+
+    public static final String LIMIT_PARAMETER = "limit";
+
+    private final Cursor cursor;
+
+    private final int limit;
+
+    private final transient CursorCodec codec;
+
+    public PageRequest(Cursor cursor, int limit, CursorCodec codec) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("The page limit must be positive!");
+        }
+        this.cursor = cursor;
+        this.limit = limit;
+        this.codec = codec;
+    }
+
+    /**
+     * Returns the cursor or null if this is a request for the first page.
+     *
+     * @return the cursor
+     */
+    public Cursor getCursor() {
+        return cursor;
+    }
+
+    public boolean isFirst() {
+        return cursor == null;
+    }
+
+    /**
+     * Returns true if the rows before the cursor are requested.  Backward pages must
+     * be read in reverse order; {@link #toPage(List, Function)} restores the natural order.
+     *
+     * @return true if reading backward
+     */
+    public boolean isBackward() {
+        return cursor != null && cursor.isBackward();
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns the number of rows to read, which is one more than the limit.
+     *
+     * @return the number of rows to read
+     */
+    public int getFetchSize() {
+        return limit + 1;
+    }
+
+    /**
+     * Creates a page from up to {@link #getFetchSize()} rows read in cursor order.
+     *
+     * @param rows the rows read for this request
+     * @param keys extracts the key values of a row, in keyset order
+     * @return the page
+     */
+    public <T> Page<T> toPage(List<T> rows, Function<T, Object[]> keys) {
+        return Page.of(this, rows, keys);
+    }
+
+    String encode(Cursor cursor) {
+        return codec.encode(cursor);
+    }
+
+}
@@ -17,8 +17,9 @@
 package fathom.rest.route;
 
 import com.google.common.base.Joiner;
-import com.google.common.base.Optional;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import fathom.rest.Context;
 import fathom.rest.controller.HttpMethod;
 import fathom.utils.Util;
@@ -71,6 +72,10 @@ public class CORSFilter implements RouteHandler<Context> {
 
     public final static String HEADER_REQUEST_HEADERS = "Access-Control-Request-Headers";
 
+    public final static String HEADER_CACHE_CONTROL = "Cache-Control";
+
+    public final static String HEADER_VARY = "Vary";
+
     private final Logger log = LoggerFactory.getLogger(CORSFilter.class);
 
     protected Set<String> allowOriginSet = new HashSet<>();
@@ -95,6 +100,16 @@ public class CORSFilter implements RouteHandler<Context> {
 
     protected int corsErrorStatus = 200;
 
+    protected boolean preflightCacheControl;
+
+    protected String maxAgeValue;
+
+    protected String allowCredentialsValue;
+
+    protected String preflightCacheControlValue;
+
+    protected Cache<String, Boolean> preflightDecisions = buildDecisionCache(1000);
+
     /**
      * Set the list of request origins that are permitted to access the protected routes.
      *
@@ -111,6 +126,7 @@ public class CORSFilter implements RouteHandler<Context> {
         allowOriginSet.clear();
         allowOriginSet.addAll(Arrays.asList(origin));
         allowOrigin = Joiner.on(",").join(origin);
+        preflightDecisions.invalidateAll();
     }
 
     /**
@@ -126,6 +142,7 @@ public class CORSFilter implements RouteHandler<Context> {
             allowMethodsSet.add(method.toUpperCase());
         }
         allowMethods = Joiner.on(",").join(allowMethodsSet);
+        preflightDecisions.invalidateAll();
     }
 
     /**
@@ -141,6 +158,7 @@ public class CORSFilter implements RouteHandler<Context> {
             allowHeadersSet.add(header.toLowerCase());
         }
         allowHeaders = Joiner.on(",").join(headers);
+        preflightDecisions.invalidateAll();
     }
 
     /**
@@ -170,6 +188,7 @@ public class CORSFilter implements RouteHandler<Context> {
      */
     public void setAllowCredentials(boolean value) {
         allowCredentials = value;
+        allowCredentialsValue = String.valueOf(value);
     }
 
     /**
@@ -179,6 +198,28 @@ public class CORSFilter implements RouteHandler<Context> {
      */
     public void setPreflightMaxAge(int seconds) {
         this.maxAge = seconds;
+        this.maxAgeValue = String.valueOf(seconds);
+        this.preflightCacheControlValue = "public, max-age=" + seconds;
+    }
+
+    /**
+     * Also send a Cache-Control header, derived from the preflight max age, with valid preflight
+     * responses so that intermediate caches may serve repeated preflight requests.
+     *
+     * @param value
+     */
+    public void setPreflightCacheControl(boolean value) {
+        this.preflightCacheControl = value;
+    }
+
+    /**
+     * Set the maximum number of preflight decisions (origin, method & request headers) to remember.
+     * The default is 1000 decisions.
+     *
+     * @param size
+     */
+    public void setPreflightCacheSize(int size) {
+        this.preflightDecisions = buildDecisionCache(size);
     }
 
     /**
@@ -197,13 +238,79 @@ public class CORSFilter implements RouteHandler<Context> {
         // A valid CORS request *always* contains an Origin header
         // A same-origin request may or may not contain an Origin, it depends on the browser
         final String origin = Strings.emptyToNull(context.getHeader(HEADER_ORIGIN));
-        final String preflightMethod = Strings.emptyToNull(context.getHeader(HEADER_REQUEST_METHOD));
+        final String method = context.getRequestMethod();
+
+        if (HttpMethod.OPTIONS.equals(method)) {
+            final String preflightMethod = Strings.emptyToNull(context.getHeader(HEADER_REQUEST_METHOD));
+            if (preflightMethod != null) {
+                handlePreflight(context, origin, preflightMethod);
+                return;
+            }
+        }
+
+        // Standard request
+        if (isValidRequest(context, origin, method, null)) {
 
-        if (HttpMethod.OPTIONS.equals(context.getRequestMethod()) && preflightMethod != null) {
+            // valid CORS request
+            setAllowOriginHeader(context, origin);
+            setHeader(context, HEADER_ALLOW_CREDENTIALS, allowCredentialsValue);
+            setHeader(context, HEADER_EXPOSE_HEADERS, exposeHeaders);
+
+            // next handler in chain
+            context.next();
+
+        } else {
+
+            // invalid CORS request, set the error status & break the chain
+            context.status(corsErrorStatus).getResponse().commit();
+
+        }
+    }
 
-            // Preflight request
+    /**
+     * Answers a preflight request and breaks the chain.
+     *
+     * @param context
+     * @param origin
+     * @param preflightMethod
+     */
+    protected void handlePreflight(Context context, String origin, String preflightMethod) {
+        final String headers = Strings.emptyToNull(context.getHeader(HEADER_REQUEST_HEADERS));
+
+        if (isValidPreflight(context, origin, preflightMethod, headers)) {
+            // Valid Preflight request
+            setAllowOriginHeader(context, origin);
+            setHeader(context, HEADER_ALLOW_METHODS, allowMethods);
+            setHeader(context, HEADER_ALLOW_HEADERS, allowHeaders);
+            setHeader(context, HEADER_ALLOW_CREDENTIALS, allowCredentialsValue);
+            setHeader(context, HEADER_MAX_AGE, maxAgeValue);
+            if (preflightCacheControl) {
+                setHeader(context, HEADER_CACHE_CONTROL, preflightCacheControlValue);
+            }
+
+            // Set OK & break the chain
+            context.status(200).getResponse().commit();
+        } else {
+            // Invalid Preflight request, set the error status & break the chain
+            context.status(corsErrorStatus).getResponse().commit();
+        }
+    }
+
+    /**
+     * Determines if a preflight request is valid.  Decisions are remembered by origin, method and
+     * the raw request headers value.
+     *
+     * @param context
+     * @param origin
+     * @param preflightMethod
+     * @param headers
+     * @return true if the preflight request is valid
+     */
+    protected boolean isValidPreflight(Context context, String origin, String preflightMethod, String headers) {
+        final String key = origin + '\n' + preflightMethod + '\n' + headers;
+        Boolean decision = preflightDecisions.getIfPresent(key);
+        if (decision == null) {
             Set<String> preflightHeaders = null;
-            String headers = Strings.emptyToNull(context.getHeader(HEADER_REQUEST_HEADERS));
             if (headers != null) {
                 preflightHeaders = Util.splitToSet(headers.toLowerCase(), ",");
                 preflightHeaders.remove("accept");
@@ -212,41 +319,19 @@ public class CORSFilter implements RouteHandler<Context> {
                 preflightHeaders.remove("content-type");
             }
 
-            if (isValidRequest(context, origin, preflightMethod, preflightHeaders)) {
-                // Valid Preflight request
-                setHeader(context, HEADER_ALLOW_ORIGIN, Optional.fromNullable(origin).or(allowOrigin));
-                setHeader(context, HEADER_ALLOW_METHODS, allowMethods);
-                setHeader(context, HEADER_ALLOW_HEADERS, allowHeaders);
-                setHeader(context, HEADER_ALLOW_CREDENTIALS, allowCredentials);
-                setHeader(context, HEADER_MAX_AGE, maxAge);
-
-                // Set OK & break the chain
-                context.status(200).getResponse().commit();
-            } else {
-                // Invalid Preflight request, set the error status & break the chain
-                context.status(corsErrorStatus).getResponse().commit();
-            }
+            decision = isValidRequest(context, origin, preflightMethod, preflightHeaders);
+            preflightDecisions.put(key, decision);
+        }
+        return decision;
+    }
 
+    protected void setAllowOriginHeader(Context context, String origin) {
+        if (origin == null) {
+            setHeader(context, HEADER_ALLOW_ORIGIN, allowOrigin);
         } else {
-
-            // Standard request
-            String method = context.getRequestMethod();
-            if (isValidRequest(context, origin, method, null)) {
-
-                // valid CORS request
-                setHeader(context, HEADER_ALLOW_ORIGIN, Optional.fromNullable(origin).or(allowOrigin));
-                setHeader(context, HEADER_ALLOW_CREDENTIALS, allowCredentials);
-                setHeader(context, HEADER_EXPOSE_HEADERS, exposeHeaders);
-
-                // next handler in chain
-                context.next();
-
-            } else {
-
-                // invalid CORS request, set the error status & break the chain
-                context.status(corsErrorStatus).getResponse().commit();
-
-            }
+            setHeader(context, HEADER_ALLOW_ORIGIN, origin);
+            // the response depends on the request Origin
+            setHeader(context, HEADER_VARY, HEADER_ORIGIN);
         }
     }
 
@@ -282,5 +367,8 @@ public class CORSFilter implements RouteHandler<Context> {
         return true;
     }
 
-}
+    private static Cache<String, Boolean> buildDecisionCache(int size) {
+        return CacheBuilder.newBuilder().maximumSize(size).build();
+    }
 
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest.sse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * A long-lived Server-Sent Events connection.
+ * <p>
+ * Frames are queued in a bounded queue and written with non-blocking servlet writes so
+ * that a slow client never blocks the publisher.  When the queue is full the
+ * {@link OverflowPolicy} decides whether frames are dropped or the client is disconnected.
+ * </p>
+ *
+ * @author James Moger
+ */
+public class EventStream implements WriteListener, AsyncListener {
+
+    /**
+     * What to do when a client does not keep up with the published events.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Discard the oldest queued frame to make room for the new frame.
+         */
+        DROP_OLDEST,
+
+        /**
+         * Discard the new frame.
+         */
+        DROP_NEWEST,
+
+        /**
+         * Close the connection. The client may reconnect and replay missed events.
+         */
+        DISCONNECT
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(EventStream.class);
+
+    private final EventStreamBroadcaster broadcaster;
+
+    private final AsyncContext asyncContext;
+
+    private final ServletOutputStream outputStream;
+
+    private final Predicate<ServerSentEvent> filter;
+
+    private final ArrayBlockingQueue<byte[]> queue;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final AtomicLong dropped;
+
+    private volatile boolean closed;
+
+    EventStream(EventStreamBroadcaster broadcaster, AsyncContext asyncContext, ServletOutputStream outputStream,
+                Predicate<ServerSentEvent> filter, int queueSize, OverflowPolicy overflowPolicy) {
+        this.broadcaster = broadcaster;
+        this.asyncContext = asyncContext;
+        this.outputStream = outputStream;
+        this.filter = filter;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.overflowPolicy = overflowPolicy;
+        this.dropped = new AtomicLong();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Returns the number of frames which were discarded because the client was too slow.
+     *
+     * @return the number of dropped frames
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    boolean accepts(ServerSentEvent event) {
+        return filter == null || filter.test(event);
+    }
+
+    /**
+     * Queues a frame and writes as much as the connection accepts without blocking.
+     *
+     * @param frame
+     */
+    void send(byte[] frame) {
+        if (closed) {
+            return;
+        }
+
+        if (!queue.offer(frame)) {
+            switch (overflowPolicy) {
+                case DROP_OLDEST:
+                    while (!queue.offer(frame)) {
+                        queue.poll();
+                        dropped.incrementAndGet();
+                    }
+                    break;
+                case DROP_NEWEST:
+                    dropped.incrementAndGet();
+                    break;
+                case DISCONNECT:
+                default:
+                    log.debug("Disconnecting slow event stream client after {} queued frames", queue.size());
+                    close();
+                    return;
+            }
+        }
+
+        drain();
+    }
+
+    /**
+     * Queues a heartbeat comment if the connection is otherwise idle.
+     *
+     * @param frame
+     */
+    void heartbeat(byte[] frame) {
+        if (queue.isEmpty()) {
+            send(frame);
+        }
+    }
+
+    private synchronized void drain() {
+        if (closed) {
+            return;
+        }
+
+        try {
+            while (outputStream.isReady()) {
+                byte[] frame = queue.poll();
+                if (frame == null) {
+                    outputStream.flush();
+                    return;
+                }
+                outputStream.write(frame);
+            }
+            // the container calls onWritePossible when the connection is writable again
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Failed to write to event stream: {}", e.getMessage());
+            close();
+        }
+    }
+
+    /**
+     * Closes the connection.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.clear();
+        broadcaster.remove(this);
+        try {
+            asyncContext.complete();
+        } catch (IllegalStateException e) {
+            // already completed by the container
+        }
+    }
+
+    @Override
+    public void onWritePossible() throws IOException {
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        log.debug("Event stream failed: {}", t.getMessage());
+        close();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) throws IOException {
+        close();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) throws IOException {
+        close();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) throws IOException {
+        close();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) throws IOException {
+    }
+
+}
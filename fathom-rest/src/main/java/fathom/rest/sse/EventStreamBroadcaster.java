@@ -0,0 +1,395 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest.sse;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import fathom.exception.FathomException;
+import fathom.rest.Context;
+import fathom.rest.RestServlet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ro.pippo.core.route.RouteHandler;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * EventStreamBroadcaster pushes {@link ServerSentEvent}s to connected {@link EventStream} clients.
+ * <p>
+ * Recently published events are retained in a small ring buffer so that a reconnecting
+ * client which sends {@code Last-Event-ID} receives the events it missed.  Idle
+ * connections receive heartbeat comments to keep intermediaries from closing them.
+ * </p>
+ * <p>
+ * Events may be published directly or bridged from a Guava {@link EventBus}:
+ * </p>
+ * <pre>
+ * broadcaster.subscribe(eventBus, OrderShipped.class, e -&gt; e.isPublic(),
+ *     e -&gt; new ServerSentEvent("shipped", json.toString(e)));
+ *
+ * GET("/events", broadcaster);
+ * </pre>
+ * <p>
+ * A controller may also open a stream with {@link #open(Context, Predicate)}.
+ * </p>
+ *
+ * @author James Moger
+ */
+public class EventStreamBroadcaster implements RouteHandler<Context> {
+
+    public static final String HEADER_LAST_EVENT_ID = "Last-Event-ID";
+
+    public static final String CONTENT_TYPE = "text/event-stream";
+
+    private static final Logger log = LoggerFactory.getLogger(EventStreamBroadcaster.class);
+
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final List<EventStream> streams;
+
+    private final List<Bridge<?>> bridges;
+
+    private ServerSentEvent[] history;
+
+    private long nextId;
+
+    private int queueSize;
+
+    private EventStream.OverflowPolicy overflowPolicy;
+
+    private long heartbeatInterval;
+
+    private long retry;
+
+    private ScheduledExecutorService heartbeatExecutor;
+
+    private EventBus eventBus;
+
+    public EventStreamBroadcaster() {
+        this.streams = new CopyOnWriteArrayList<>();
+        this.bridges = new CopyOnWriteArrayList<>();
+        this.history = new ServerSentEvent[100];
+        this.queueSize = 256;
+        this.overflowPolicy = EventStream.OverflowPolicy.DISCONNECT;
+        this.heartbeatInterval = TimeUnit.SECONDS.toMillis(15);
+        this.retry = TimeUnit.SECONDS.toMillis(3);
+    }
+
+    /**
+     * Sets the number of recent events retained for Last-Event-ID replay.
+     *
+     * @param replaySize
+     */
+    public synchronized void setReplaySize(int replaySize) {
+        Preconditions.checkArgument(replaySize >= 0, "Replay size must be >= 0");
+        List<ServerSentEvent> retained = getEventsSince(-1);
+        history = new ServerSentEvent[replaySize];
+        if (replaySize > 0) {
+            for (ServerSentEvent event : retained.subList(Math.max(0, retained.size() - replaySize), retained.size())) {
+                history[(int) (event.getId() % replaySize)] = event;
+            }
+        }
+    }
+
+    /**
+     * Sets the number of frames queued per client before the overflow policy applies.
+     *
+     * @param queueSize
+     */
+    public void setQueueSize(int queueSize) {
+        Preconditions.checkArgument(queueSize > 0, "Queue size must be > 0");
+        this.queueSize = queueSize;
+    }
+
+    public void setOverflowPolicy(EventStream.OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = Preconditions.checkNotNull(overflowPolicy);
+    }
+
+    /**
+     * Sets the heartbeat interval in milliseconds, 0 disables heartbeats.
+     *
+     * @param heartbeatInterval
+     */
+    public void setHeartbeatInterval(long heartbeatInterval) {
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    /**
+     * Sets the reconnection delay, in milliseconds, advised to clients.
+     *
+     * @param retry
+     */
+    public void setRetry(long retry) {
+        this.retry = retry;
+    }
+
+    public int getClientCount() {
+        return streams.size();
+    }
+
+    /**
+     * Bridges events of the specified type from the EventBus.  The event is sent with
+     * the simple class name as the event name and its {@code toString()} value as data.
+     *
+     * @param eventBus
+     * @param eventType
+     */
+    public <T> void subscribe(EventBus eventBus, Class<T> eventType) {
+        subscribe(eventBus, eventType, null, e -> new ServerSentEvent(eventType.getSimpleName(), e.toString()));
+    }
+
+    /**
+     * Bridges events of the specified type from the EventBus.
+     * <p>
+     * The broadcaster subscribes to all EventBus events, so bridged EventBus instances
+     * no longer report unhandled events as {@link com.google.common.eventbus.DeadEvent}s.
+     * </p>
+     *
+     * @param eventBus
+     * @param eventType the type of events to bridge, including subtypes
+     * @param filter    optional filter of the events to bridge
+     * @param mapper    converts an EventBus event to a ServerSentEvent, a null result is not published
+     */
+    public synchronized <T> void subscribe(EventBus eventBus, Class<T> eventType, Predicate<? super T> filter,
+                                           Function<? super T, ServerSentEvent> mapper) {
+        if (this.eventBus == null) {
+            this.eventBus = eventBus;
+            eventBus.register(this);
+        } else if (this.eventBus != eventBus) {
+            throw new FathomException("EventStreamBroadcaster is already subscribed to another EventBus!");
+        }
+        bridges.add(new Bridge<>(eventType, filter, mapper));
+    }
+
+    /**
+     * Receives every EventBus event and publishes those which match a bridge.
+     *
+     * @param event
+     */
+    @Subscribe
+    @AllowConcurrentEvents
+    public void onEvent(Object event) {
+        for (Bridge<?> bridge : bridges) {
+            ServerSentEvent sse = bridge.apply(event);
+            if (sse != null) {
+                publish(sse);
+            }
+        }
+    }
+
+    /**
+     * Publishes an event to all connected clients.
+     *
+     * @param event
+     * @return the published event with its assigned id
+     */
+    public synchronized ServerSentEvent publish(ServerSentEvent event) {
+        ServerSentEvent published = event.withId(nextId++);
+        if (history.length > 0) {
+            history[(int) (published.getId() % history.length)] = published;
+        }
+
+        byte[] frame = published.getFrame();
+        for (EventStream stream : streams) {
+            if (stream.accepts(published)) {
+                stream.send(frame);
+            }
+        }
+        return published;
+    }
+
+    /**
+     * Returns the retained events published after the specified id.
+     *
+     * @param lastEventId
+     * @return the events in publication order
+     */
+    synchronized List<ServerSentEvent> getEventsSince(long lastEventId) {
+        List<ServerSentEvent> events = new ArrayList<>();
+        for (long id = Math.max(lastEventId + 1, nextId - history.length); id < nextId; id++) {
+            ServerSentEvent event = history[(int) (id % history.length)];
+            if (event != null && event.getId() == id) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    @Override
+    public void handle(Context context) {
+        open(context, null);
+    }
+
+    /**
+     * Opens an event stream for the request.  The response is committed and the request
+     * continues asynchronously until the client disconnects or the broadcaster is closed.
+     *
+     * @param context
+     * @param filter  optional filter of the events sent to this client
+     * @return the event stream
+     */
+    public EventStream open(Context context, Predicate<ServerSentEvent> filter) {
+        HttpServletRequest request = context.getRequest().getHttpServletRequest();
+        HttpServletResponse response = context.getResponse().getHttpServletResponse();
+
+        EventStream stream;
+        try {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(CONTENT_TYPE);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            response.setHeader("Cache-Control", "no-cache");
+            response.setHeader("X-Accel-Buffering", "no");
+
+            AsyncContext asyncContext = RestServlet.startAsync(request);
+            asyncContext.setTimeout(0);
+
+            ServletOutputStream outputStream = response.getOutputStream();
+            if (retry > 0) {
+                outputStream.write(("retry: " + retry + "\n\n").getBytes(StandardCharsets.UTF_8));
+            }
+            response.flushBuffer();
+
+            stream = new EventStream(this, asyncContext, outputStream, filter, queueSize, overflowPolicy);
+            asyncContext.addListener(stream);
+            // the stream outlives this request handler & completes the request when closed
+            request.setAttribute(RestServlet.ASYNC_OWNER_ATTRIBUTE, stream);
+        } catch (IOException e) {
+            throw new FathomException(e, "Failed to open event stream");
+        }
+
+        // non-blocking writes must be enabled before the first frame is drained,
+        // the container then calls onWritePossible whenever the connection is writable
+        try {
+            response.getOutputStream().setWriteListener(stream);
+        } catch (IOException | IllegalStateException e) {
+            stream.close();
+            throw new FathomException(e, "Failed to open event stream");
+        }
+
+        long lastEventId = getLastEventId(request);
+        synchronized (this) {
+            // replay & register atomically so that no event is missed or repeated
+            if (lastEventId > -1) {
+                for (ServerSentEvent event : getEventsSince(lastEventId)) {
+                    if (stream.accepts(event)) {
+                        stream.send(event.getFrame());
+                    }
+                }
+            }
+            if (!stream.isClosed()) {
+                streams.add(stream);
+                startHeartbeat();
+            }
+        }
+
+        log.debug("Opened event stream for {} ({} clients)", request.getRemoteAddr(), streams.size());
+        return stream;
+    }
+
+    /**
+     * Closes all client connections and stops the heartbeat.
+     */
+    public synchronized void close() {
+        if (eventBus != null) {
+            eventBus.unregister(this);
+            eventBus = null;
+        }
+        bridges.clear();
+        for (EventStream stream : streams) {
+            stream.close();
+        }
+        if (heartbeatExecutor != null) {
+            heartbeatExecutor.shutdownNow();
+            heartbeatExecutor = null;
+        }
+    }
+
+    void remove(EventStream stream) {
+        if (streams.remove(stream)) {
+            log.debug("Closed event stream ({} clients)", streams.size());
+        }
+    }
+
+    private void startHeartbeat() {
+        if (heartbeatExecutor != null || heartbeatInterval <= 0) {
+            return;
+        }
+        heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("sse-heartbeat-%d").setDaemon(true).build());
+        heartbeatExecutor.scheduleWithFixedDelay(() -> {
+            for (EventStream stream : streams) {
+                stream.heartbeat(HEARTBEAT);
+            }
+        }, heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);
+    }
+
+    private long getLastEventId(HttpServletRequest request) {
+        String value = request.getHeader(HEADER_LAST_EVENT_ID);
+        if (Strings.isNullOrEmpty(value)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static class Bridge<T> {
+
+        final Class<T> eventType;
+
+        final Predicate<? super T> filter;
+
+        final Function<? super T, ServerSentEvent> mapper;
+
+        Bridge(Class<T> eventType, Predicate<? super T> filter, Function<? super T, ServerSentEvent> mapper) {
+            this.eventType = eventType;
+            this.filter = filter;
+            this.mapper = mapper;
+        }
+
+        ServerSentEvent apply(Object event) {
+            if (!eventType.isInstance(event)) {
+                return null;
+            }
+            T t = eventType.cast(event);
+            if (filter != null && !filter.test(t)) {
+                return null;
+            }
+            return mapper.apply(t);
+        }
+    }
+
+}
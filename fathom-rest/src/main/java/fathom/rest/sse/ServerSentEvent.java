@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest.sse;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An event which is pushed to {@link EventStream} clients.
+ * <p>
+ * The event id is assigned by the {@link EventStreamBroadcaster} when the event is
+ * published.  The wire frame is encoded once and shared by all clients.
+ * </p>
+ *
+ * @author James Moger
+ */
+public final class ServerSentEvent {
+
+    private final long id;
+
+    private final String event;
+
+    private final String data;
+
+    private final byte[] frame;
+
+    public ServerSentEvent(String data) {
+        this(null, data);
+    }
+
+    public ServerSentEvent(String event, String data) {
+        this(-1, event, data);
+    }
+
+    private ServerSentEvent(long id, String event, String data) {
+        this.id = id;
+        this.event = event;
+        this.data = data == null ? "" : data;
+        this.frame = id < 0 ? null : encode(id, event, this.data);
+    }
+
+    /**
+     * Returns the id assigned by the broadcaster or -1 if the event has not been published.
+     *
+     * @return the event id
+     */
+    public long getId() {
+        return id;
+    }
+
+    public String getEvent() {
+        return event;
+    }
+
+    public String getData() {
+        return data;
+    }
+
+    ServerSentEvent withId(long id) {
+        return new ServerSentEvent(id, event, data);
+    }
+
+    byte[] getFrame() {
+        return frame == null ? encode(id, event, data) : frame;
+    }
+
+    static byte[] encode(long id, String event, String data) {
+        StringBuilder sb = new StringBuilder(data.length() + 32);
+        if (id >= 0) {
+            sb.append("id: ").append(id).append('\n');
+        }
+        if (event != null && !event.isEmpty()) {
+            sb.append("event: ").append(event).append('\n');
+        }
+        int start = 0;
+        int length = data.length();
+        while (start <= length) {
+            int end = data.indexOf('\n', start);
+            if (end < 0) {
+                end = length;
+            }
+            int lineEnd = end > start && data.charAt(end - 1) == '\r' ? end - 1 : end;
+            sb.append("data: ").append(data, start, lineEnd).append('\n');
+            start = end + 1;
+        }
+        sb.append('\n');
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return "ServerSentEvent{" +
+                "id=" + id +
+                ", event='" + event + '\'' +
+                '}';
+    }
+
+}
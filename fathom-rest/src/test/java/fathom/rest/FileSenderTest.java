@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest;
+
+import fathom.rest.MockServlets.CapturingOutputStream;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ro.pippo.core.Application;
+import ro.pippo.core.Response;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests Range header parsing and the methods which honor it.
+ *
+ * @author James Moger
+ */
+public class FileSenderTest extends Assert {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final Application application = MockServlets.application();
+
+    private static String toString(List<FileSender.ByteRange> ranges) {
+        return ranges == null ? null : ranges.toString();
+    }
+
+    @Test
+    public void testSingleRanges() {
+        assertEquals("[0-499]", toString(FileSender.parseRanges("bytes=0-499", 1000)));
+        assertEquals("[500-999]", toString(FileSender.parseRanges("bytes=500-", 1000)));
+        assertEquals("[900-999]", toString(FileSender.parseRanges("bytes=-100", 1000)));
+        assertEquals("[0-999]", toString(FileSender.parseRanges("bytes=-5000", 1000)));
+        assertEquals("[990-999]", toString(FileSender.parseRanges("bytes=990-5000", 1000)));
+    }
+
+    @Test
+    public void testMultipleRanges() {
+        assertEquals("[0-99, 200-299]", toString(FileSender.parseRanges("bytes=0-99, 200-299", 1000)));
+        assertEquals("[0-299]", toString(FileSender.parseRanges("bytes=200-299,0-150,151-199", 1000)));
+    }
+
+    @Test
+    public void testUnsatisfiableRanges() {
+        assertTrue(FileSender.parseRanges("bytes=1000-", 1000).isEmpty());
+        assertTrue(FileSender.parseRanges("bytes=-0", 1000).isEmpty());
+    }
+
+    @Test
+    public void testInvalidRanges() {
+        assertNull(FileSender.parseRanges("items=0-10", 1000));
+        assertNull(FileSender.parseRanges("bytes=10-5", 1000));
+        assertNull(FileSender.parseRanges("bytes=a-b", 1000));
+        assertNull(FileSender.parseRanges("bytes=10", 1000));
+
+        StringBuilder sb = new StringBuilder("bytes=0-0");
+        for (int i = 1; i <= FileSender.MAX_RANGES; i++) {
+            sb.append(',').append(i * 2).append('-').append(i * 2);
+        }
+        assertNull(FileSender.parseRanges(sb.toString(), 1000));
+    }
+
+    @Test
+    public void testRangeOfGet() throws Exception {
+        CapturingOutputStream outputStream = new CapturingOutputStream();
+        HttpServletResponse httpServletResponse = MockServlets.httpServletResponse(outputStream);
+        Response response = send("GET", "bytes=2-4", httpServletResponse);
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+        assertEquals("bytes 2-4/10", response.getHeader(FileSender.HEADER_CONTENT_RANGE));
+        verify(httpServletResponse).setContentLength(3);
+        assertEquals("234", outputStream.toString());
+    }
+
+    @Test
+    public void testRangeIsIgnoredForOtherMethods() throws Exception {
+        for (String method : new String[]{"POST", "PUT", "DELETE"}) {
+            CapturingOutputStream outputStream = new CapturingOutputStream();
+            HttpServletResponse httpServletResponse = MockServlets.httpServletResponse(outputStream);
+            Response response = send(method, "bytes=2-4", httpServletResponse);
+            verifyCompleteFile(httpServletResponse, response);
+            assertEquals(method, "0123456789", outputStream.toString());
+        }
+
+        // a HEAD request describes the complete file
+        CapturingOutputStream outputStream = new CapturingOutputStream();
+        HttpServletResponse httpServletResponse = MockServlets.httpServletResponse(outputStream);
+        Response response = send("HEAD", "bytes=2-4", httpServletResponse);
+        verifyCompleteFile(httpServletResponse, response);
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        assertEquals(0, outputStream.bytes.size());
+
+        // an unsatisfiable range is not answered with 416
+        httpServletResponse = MockServlets.httpServletResponse(new CapturingOutputStream());
+        response = send("POST", "bytes=100-", httpServletResponse);
+        verifyCompleteFile(httpServletResponse, response);
+        verify(httpServletResponse, never()).setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+    }
+
+    private static void verifyCompleteFile(HttpServletResponse httpServletResponse, Response response) {
+        verify(httpServletResponse, never()).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        verify(httpServletResponse).setContentLength(10);
+        assertNull(response.getHeader(FileSender.HEADER_CONTENT_RANGE));
+    }
+
+    private Response send(String method, String range, HttpServletResponse httpServletResponse) throws Exception {
+        File file = temporaryFolder.newFile();
+        Files.write(file.toPath(), "0123456789".getBytes(StandardCharsets.UTF_8));
+
+        Context context = MockServlets.context(application, MockServlets.httpServletRequest(method, "/file",
+                Collections.singletonMap(FileSender.HEADER_RANGE, range)), httpServletResponse);
+        context.getResponse().contentType("text/plain");
+
+        FileSender.send(context, file);
+        return context.getResponse();
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest;
+
+import fathom.conf.Settings;
+import ro.pippo.core.Application;
+import ro.pippo.core.Request;
+import ro.pippo.core.Response;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Builds real Pippo requests and responses over mocked servlet requests and responses.
+ * The Pippo classes are final and can not be mocked themselves.
+ *
+ * @author James Moger
+ */
+public final class MockServlets {
+
+    private MockServlets() {
+    }
+
+    /**
+     * An output stream which captures the response body.
+     */
+    public static class CapturingOutputStream extends ServletOutputStream {
+
+        public final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+        }
+
+        @Override
+        public void write(int b) {
+            bytes.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes.write(b, off, len);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    public static Application application() {
+        return new Application(RestModule.getPippoSettings(new Settings()));
+    }
+
+    /**
+     * Creates a servlet request mock.  The header names are case-insensitive.
+     *
+     * @param method
+     * @param uri
+     * @param headers
+     * @return a request
+     */
+    public static HttpServletRequest httpServletRequest(String method, String uri, Map<String, String> headers) {
+        Map<String, String> headerMap = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headerMap.putAll(headers);
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getMethod()).thenReturn(method);
+        when(request.getRequestURI()).thenReturn(uri);
+        when(request.getPathInfo()).thenReturn(uri);
+        when(request.getContextPath()).thenReturn("");
+        when(request.getServletPath()).thenReturn("");
+        when(request.getCharacterEncoding()).thenReturn("UTF-8");
+        when(request.getParameterNames()).thenAnswer(invocation -> Collections.emptyEnumeration());
+        when(request.getParameterMap()).thenReturn(Collections.emptyMap());
+        when(request.getHeader(anyString())).thenAnswer(invocation -> headerMap.get(invocation.getArguments()[0]));
+        when(request.getHeaderNames()).thenAnswer(invocation -> Collections.enumeration(headerMap.keySet()));
+        when(request.getHeaders(anyString())).thenAnswer(invocation -> {
+            String value = headerMap.get(invocation.getArguments()[0]);
+            return Collections.enumeration(value == null ? Collections.emptyList() : Collections.singletonList(value));
+        });
+        return request;
+    }
+
+    /**
+     * Creates a servlet response mock which writes to the specified stream.
+     *
+     * @param outputStream
+     * @return a response
+     */
+    public static HttpServletResponse httpServletResponse(ServletOutputStream outputStream) throws Exception {
+        String[] contentType = {null};
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        doAnswer(invocation -> contentType[0] = (String) invocation.getArguments()[0])
+                .when(response).setContentType(anyString());
+        when(response.getContentType()).thenAnswer(invocation -> contentType[0]);
+        when(response.getCharacterEncoding()).thenReturn("UTF-8");
+        when(response.getOutputStream()).thenReturn(outputStream);
+        when(response.getWriter()).thenReturn(new PrintWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)));
+        return response;
+    }
+
+    /**
+     * Creates a route context for the servlet request and response.
+     *
+     * @param application
+     * @param httpServletRequest
+     * @param httpServletResponse
+     * @return a context
+     */
+    public static Context context(Application application, HttpServletRequest httpServletRequest,
+                                  HttpServletResponse httpServletResponse) {
+        return new Context(application, new Request(httpServletRequest, application),
+                new Response(httpServletResponse, application), Collections.emptyList());
+    }
+
+}
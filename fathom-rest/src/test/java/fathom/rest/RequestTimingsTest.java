@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest;
+
+import com.codahale.metrics.MetricRegistry;
+import fathom.conf.Settings;
+import org.junit.Assert;
+import org.junit.Test;
+import ro.pippo.core.route.Route;
+
+/**
+ * Tests request timeline recording and aggregation.
+ *
+ * @author James Moger
+ */
+public class RequestTimingsTest extends Assert {
+
+    private RequestTimings timings(boolean enabled) {
+        Settings settings = new Settings();
+        settings.overrideSetting(RequestTimings.SETTING_ENABLED, enabled);
+        settings.overrideSetting(RequestTimings.SETTING_SERVER_TIMING, true);
+        return new RequestTimings(settings, new MetricRegistry());
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        RequestTimings timings = new RequestTimings(new Settings(), new MetricRegistry());
+        assertFalse(timings.isEnabled());
+        assertFalse(timings.isServerTiming());
+        assertNull(timings.getDiagnosticsPath());
+    }
+
+    @Test
+    public void testPhases() throws InterruptedException {
+        RequestTimings timings = timings(true);
+        RequestTimeline timeline = timings.begin();
+        assertSame(timeline, timings.current());
+
+        timeline.mark(RequestTimeline.Phase.ROUTING);
+        Thread.sleep(2);
+        timeline.mark(RequestTimeline.Phase.INVOKE);
+
+        assertTrue(timeline.getDuration(RequestTimeline.Phase.ROUTING) >= 0);
+        assertEquals(-1, timeline.getDuration(RequestTimeline.Phase.EXTRACTION));
+        // skipped phases are attributed to the next marked phase
+        assertTrue(timeline.getDuration(RequestTimeline.Phase.INVOKE) >= 2_000_000);
+
+        String serverTiming = timeline.toServerTiming();
+        assertTrue(serverTiming, serverTiming.matches("route;dur=\\d+\\.\\d{3}, invoke;dur=\\d+\\.\\d{3}, total;dur=\\d+\\.\\d{3}"));
+
+        // timelines are reused per thread
+        assertSame(timeline, timings.begin());
+        assertEquals(-1, timeline.getDuration(RequestTimeline.Phase.ROUTING));
+    }
+
+    @Test
+    public void testRecord() {
+        MetricRegistry metricRegistry = new MetricRegistry();
+        Settings settings = new Settings();
+        settings.overrideSetting(RequestTimings.SETTING_ENABLED, true);
+        RequestTimings timings = new RequestTimings(settings, metricRegistry);
+
+        Route route = new Route("GET", "/api/items", context -> {
+        });
+        for (int i = 0; i < 3; i++) {
+            RequestTimeline timeline = timings.begin();
+            timeline.setRoute(route);
+            timeline.mark(RequestTimeline.Phase.ROUTING);
+            timeline.mark(RequestTimeline.Phase.INVOKE);
+            timings.record(timeline);
+        }
+
+        assertEquals(3, metricRegistry.histogram("fathom.rest.timeline.GET /api/items.route").getCount());
+        assertEquals(3, metricRegistry.histogram("fathom.rest.timeline.GET /api/items.invoke").getCount());
+        assertEquals(0, metricRegistry.histogram("fathom.rest.timeline.GET /api/items.extract").getCount());
+        assertEquals(3, metricRegistry.histogram("fathom.rest.timeline.GET /api/items.total").getCount());
+    }
+
+}
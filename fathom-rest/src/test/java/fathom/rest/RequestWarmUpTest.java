@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.rest;
+
+import com.google.inject.Guice;
+import com.google.inject.servlet.GuiceFilter;
+import com.google.inject.servlet.ServletModule;
+import fathom.conf.Settings;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests parsing, filtering and dispatching of warm-up requests.
+ *
+ * @author James Moger
+ */
+public class RequestWarmUpTest extends Assert {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testRequestLine() {
+        RequestWarmUp.SyntheticRequest request = RequestWarmUp.parse("get /api/items");
+        assertEquals("GET", request.method);
+        assertEquals("/api/items", request.uri);
+        assertTrue(request.parameters.isEmpty());
+    }
+
+    @Test
+    public void testQueryParameters() {
+        RequestWarmUp.SyntheticRequest request = RequestWarmUp.parse("GET /api/items?page=2&tag=a&tag=b%20c&flag");
+        assertEquals("/api/items", request.uri);
+        assertArrayEquals(new String[]{"2"}, request.parameters.get("page"));
+        assertArrayEquals(new String[]{"a", "b c"}, request.parameters.get("tag"));
+        assertArrayEquals(new String[]{""}, request.parameters.get("flag"));
+    }
+
+    @Test
+    public void testAccessLogLine() {
+        RequestWarmUp.SyntheticRequest request = RequestWarmUp.parse(
+                "127.0.0.1 - james [10/Oct/2016:13:55:36 +0000] \"POST /api/items?x=1 HTTP/1.1\" 201 2326");
+        assertEquals("POST", request.method);
+        assertEquals("/api/items", request.uri);
+        assertArrayEquals(new String[]{"1"}, request.parameters.get("x"));
+    }
+
+    @Test
+    public void testIgnoredLines() {
+        assertNull(RequestWarmUp.parse(""));
+        assertNull(RequestWarmUp.parse("   "));
+        assertNull(RequestWarmUp.parse("# comment"));
+        assertNull(RequestWarmUp.parse("GET"));
+        assertNull(RequestWarmUp.parse("GET api/items"));
+        assertNull(RequestWarmUp.parse("127.0.0.1 \"GET /unterminated"));
+    }
+
+    @Test
+    public void testUnsafeMethodsAreSkipped() throws IOException {
+        File file = temporaryFolder.newFile("warmup.log");
+        Files.write(file.toPath(), Arrays.asList(
+                "GET /api/items",
+                "head /api/items/1",
+                "OPTIONS /api/items",
+                "127.0.0.1 - james [10/Oct/2016:13:55:36 +0000] \"POST /api/items HTTP/1.1\" 201 2326",
+                "PUT /api/items/1",
+                "DELETE /api/items/1"), StandardCharsets.UTF_8);
+
+        Settings settings = new Settings();
+        settings.overrideSetting(RequestWarmUp.SETTING_FILE, file.getPath());
+        assertEquals(3, new RequestWarmUp(settings, null).getRequestCount());
+
+        settings.overrideSetting(RequestWarmUp.SETTING_UNSAFE_METHODS, true);
+        assertEquals(6, new RequestWarmUp(settings, null).getRequestCount());
+    }
+
+    @Test
+    public void testDispatchThroughFilters() throws Exception {
+        List<String> filtered = new ArrayList<>();
+        List<String> served = new ArrayList<>();
+
+        GuiceFilter guiceFilter = Guice.createInjector(new ServletModule() {
+            @Override
+            protected void configureServlets() {
+                filter("/*").through(new Filter() {
+                    @Override
+                    public void init(FilterConfig filterConfig) {
+                    }
+
+                    @Override
+                    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+                            throws IOException, ServletException {
+                        filtered.add(((HttpServletRequest) request).getRequestURI());
+                        chain.doFilter(request, response);
+                    }
+
+                    @Override
+                    public void destroy() {
+                    }
+                });
+                serve("/api/*").with(new HttpServlet() {
+                    @Override
+                    protected void service(HttpServletRequest request, HttpServletResponse response) {
+                        assertNull(request.getSession(false));
+                        HttpSession session = request.getSession();
+                        session.setAttribute("page", request.getParameter("page"));
+                        served.add(request.getMethod() + " " + request.getPathInfo() + " "
+                                + request.getSession(false).getAttribute("page"));
+                    }
+                });
+            }
+        }).getInstance(GuiceFilter.class);
+
+        Settings settings = new Settings();
+        settings.overrideSettings(Collections.singletonMap(RequestWarmUp.SETTING_REQUESTS,
+                Arrays.asList("GET /api/items?page=2", "GET /other")));
+        new RequestWarmUp(settings, guiceFilter).warmUp();
+
+        assertEquals(Arrays.asList("/api/items", "/other"), filtered);
+        assertEquals(Collections.singletonList("GET /items 2"), served);
+    }
+
+}
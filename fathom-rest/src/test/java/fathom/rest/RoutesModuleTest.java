@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.rest;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import fathom.conf.Settings;
+import fathom.metrics.Timed;
+import fathom.rest.controller.Controller;
+import fathom.rest.controller.ControllerHandler;
+import fathom.rest.multipart.MultipartStream;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import ro.pippo.core.Application;
+import ro.pippo.core.Languages;
+import ro.pippo.core.Messages;
+import ro.pippo.core.route.Route;
+import ro.pippo.core.route.RouteHandler;
+import ro.pippo.core.route.Router;
+import ro.pippo.core.util.HttpCacheToolkit;
+import ro.pippo.core.util.MimeTypes;
+import ro.pippo.metrics.TimedRouteHandler;
+
+/**
+ * Tests the compilation of route registrations.
+ *
+ * @author James Moger
+ */
+public class RoutesModuleTest extends Assert {
+
+    public static class UploadController extends Controller {
+
+        @Timed
+        public void upload(MultipartStream parts) {
+        }
+
+        public void status() {
+        }
+
+    }
+
+    private Injector injector;
+
+    private Router router;
+
+    @Before
+    public void setup() {
+        Application application = MockServlets.application();
+        router = application.getRouter();
+        injector = Guice.createInjector(new AbstractModule() {
+            @Override
+            public void configure() {
+                bind(Settings.class).toInstance(new Settings());
+                bind(Router.class).toInstance(application.getRouter());
+                bind(MimeTypes.class).toInstance(application.getMimeTypes());
+                bind(HttpCacheToolkit.class).toInstance(application.getHttpCacheToolkit());
+                bind(Languages.class).toInstance(application.getLanguages());
+                bind(Messages.class).toInstance(application.getMessages());
+                bind(MetricRegistry.class).toInstance(new MetricRegistry());
+            }
+        });
+    }
+
+    private Route compile(RoutesModule routesModule) {
+        injector.injectMembers(routesModule);
+        routesModule.init();
+        assertEquals(1, router.getRoutes().size());
+        return router.getRoutes().get(0);
+    }
+
+    @Test
+    public void testTimedStreamingRoute() {
+        Route route = compile(new RoutesModule() {
+            @Override
+            protected void setup() {
+                POST("/upload", UploadController.class, "upload").timed();
+            }
+        });
+
+        assertTrue(route.getRouteHandler() instanceof TimedRouteHandler);
+        RouteHandler handler = RouteRegistration.getRegisteredHandler(route);
+        assertTrue(handler instanceof ControllerHandler);
+        assertTrue(((ControllerHandler) handler).isStreamingMultipart());
+    }
+
+    @Test
+    public void testTimedRoute() {
+        Route route = compile(new RoutesModule() {
+            @Override
+            protected void setup() {
+                GET("/status", UploadController.class, "status").timed();
+            }
+        });
+
+        assertTrue(route.getRouteHandler() instanceof TimedRouteHandler);
+        RouteHandler handler = RouteRegistration.getRegisteredHandler(route);
+        assertTrue(handler instanceof ControllerHandler);
+        assertFalse(((ControllerHandler) handler).isStreamingMultipart());
+    }
+
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.rest.accesslog;
+
+import com.codahale.metrics.MetricRegistry;
+import fathom.conf.Settings;
+import fathom.exception.FathomException;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests access log formatting, buffering and file rollover.
+ *
+ * @author James Moger
+ */
+public class AccessLogTest extends Assert {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final long TIME = 1453903735123L; // 27/Jan/2016:14:08:55.123 UTC
+
+    private AccessLogRecord record(AccessLogFormat format) {
+        AccessLogRecord record = new AccessLogRecord(format.getHeaderNames().length);
+        record.startMillis = TIME;
+        record.durationNanos = TimeUnit.MICROSECONDS.toNanos(1500);
+        record.method = "GET";
+        record.uri = "/api/items";
+        record.query = "page=2";
+        record.protocol = "HTTP/1.1";
+        record.remoteAddr = "127.0.0.1";
+        record.status = 200;
+        record.bytes = 512;
+        return record;
+    }
+
+    private String format(AccessLogFormat format, AccessLogRecord record) {
+        StringBuilder sb = new StringBuilder();
+        format.format(record, sb);
+        return sb.toString();
+    }
+
+    @Test
+    public void testCombinedFormat() {
+        AccessLogFormat format = new AccessLogFormat("combined", ZoneOffset.UTC);
+        assertArrayEquals(new String[]{"Referer", "User-Agent"}, format.getHeaderNames());
+        assertTrue(format.isRemoteUser());
+
+        AccessLogRecord record = record(format);
+        record.headers[1] = "curl/7.47";
+        assertEquals("127.0.0.1 - - [27/Jan/2016:14:08:55 +0000] \"GET /api/items?page=2 HTTP/1.1\" 200 512 \"-\" \"curl/7.47\"",
+                format(format, record));
+    }
+
+    @Test
+    public void testCustomFormat() {
+        AccessLogFormat format = new AccessLogFormat("%m %U%q %s %B %Dus %{HH:mm:ss.SSS}t %{X-Request-Id}i 100%%", ZoneOffset.UTC);
+        assertFalse(format.isRemoteUser());
+
+        AccessLogRecord record = record(format);
+        record.bytes = -1;
+        record.headers[0] = "abc\"\n";
+        assertEquals("GET /api/items?page=2 200 0 1500us [14:08:55.123] abc\\\"\\x0a 100%", format(format, record));
+    }
+
+    @Test(expected = FathomException.class)
+    public void testUnsupportedDirective() {
+        new AccessLogFormat("%h %z", ZoneOffset.UTC);
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        AccessLog accessLog = new AccessLog(new Settings(), new MetricRegistry());
+        assertFalse(accessLog.isEnabled());
+        accessLog.log(request(), response(), TIME, System.nanoTime());
+        assertEquals(0, accessLog.getDroppedCount());
+    }
+
+    @Test
+    public void testDropAndWrite() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "logs/access.log");
+        Settings settings = new Settings();
+        settings.overrideSetting(AccessLog.SETTING_ENABLED, true);
+        settings.overrideSetting(AccessLog.SETTING_FILE, file.getPath());
+        settings.overrideSetting(AccessLog.SETTING_FORMAT, "common");
+        settings.overrideSetting(AccessLog.SETTING_BUFFER_SIZE, 4);
+        MetricRegistry metricRegistry = new MetricRegistry();
+        AccessLog accessLog = new AccessLog(settings, metricRegistry);
+
+        // the writer is not running, the buffer fills up and requests are not blocked
+        for (int i = 0; i < 10; i++) {
+            accessLog.log(request(), response(), TIME, System.nanoTime());
+        }
+        assertEquals(6, accessLog.getDroppedCount());
+        assertEquals(6L, metricRegistry.getGauges().get("fathom.rest.accessLog.dropped").getValue());
+
+        accessLog.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (accessLog.getWrittenCount() < 4 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        accessLog.log(request(), response(), TIME, System.nanoTime());
+        accessLog.stop();
+
+        assertEquals(5, accessLog.getWrittenCount());
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(5, lines.size());
+        assertTrue(lines.get(0), lines.get(0).startsWith("10.0.0.1 - james ["));
+        assertTrue(lines.get(0), lines.get(0).endsWith("] \"POST /api/items HTTP/1.1\" 201 42"));
+    }
+
+    @Test
+    public void testFailedCaptureIsSkipped() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "access.log");
+        Settings settings = new Settings();
+        settings.overrideSetting(AccessLog.SETTING_ENABLED, true);
+        settings.overrideSetting(AccessLog.SETTING_FILE, file.getPath());
+        settings.overrideSetting(AccessLog.SETTING_FORMAT, "common");
+        AccessLog accessLog = new AccessLog(settings, new MetricRegistry());
+        accessLog.start();
+
+        HttpServletRequest failing = (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, (proxy, method, args) -> {
+                    if ("getMethod".equals(method.getName())) {
+                        throw new IllegalStateException("recycled request");
+                    }
+                    return null;
+                });
+        try {
+            accessLog.log(failing, response(), TIME, System.nanoTime());
+            fail("Expected the capture to fail");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        // the failed slot must not stall the records which follow it
+        accessLog.log(request(), response("abc"), TIME, System.nanoTime());
+        accessLog.log(request(), response(), TIME, System.nanoTime());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (accessLog.getWrittenCount() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        accessLog.stop();
+
+        assertEquals(2, accessLog.getWrittenCount());
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0), lines.get(0).endsWith(" 201 -"));
+        assertTrue(lines.get(1), lines.get(1).endsWith(" 201 42"));
+    }
+
+    @Test
+    public void testRollover() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "access.log");
+        MutableClock clock = new MutableClock(TIME);
+        RollingFile rollingFile = new RollingFile(file, 10, clock);
+
+        rollingFile.write(ByteBuffer.wrap("12345678\n".getBytes(StandardCharsets.UTF_8)));
+        // exceeds the maximum size
+        rollingFile.write(ByteBuffer.wrap("abc\n".getBytes(StandardCharsets.UTF_8)));
+        assertTrue(new File(temporaryFolder.getRoot(), "access-2016-01-27.log").exists());
+
+        // next day
+        clock.millis += TimeUnit.DAYS.toMillis(1);
+        rollingFile.write(ByteBuffer.wrap("def\n".getBytes(StandardCharsets.UTF_8)));
+        rollingFile.close();
+
+        assertEquals("12345678\n", read(new File(temporaryFolder.getRoot(), "access-2016-01-27.log")));
+        assertEquals("abc\n", read(new File(temporaryFolder.getRoot(), "access-2016-01-27.1.log")));
+        assertEquals("def\n", read(file));
+    }
+
+    private String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private HttpServletRequest request() {
+        return (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getMethod":
+                            return "POST";
+                        case "getRequestURI":
+                            return "/api/items";
+                        case "getProtocol":
+                            return "HTTP/1.1";
+                        case "getRemoteAddr":
+                            return "10.0.0.1";
+                        case "getRemoteUser":
+                            return "james";
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    private HttpServletResponse response() {
+        return response("42");
+    }
+
+    private HttpServletResponse response(String contentLength) {
+        return (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{HttpServletResponse.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getStatus":
+                            return 201;
+                        case "getHeader":
+                            return "Content-Length".equals(args[0]) ? contentLength : null;
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    private static class MutableClock extends Clock {
+
+        long millis;
+
+        MutableClock(long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.rest.bulkhead;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import fathom.conf.Settings;
+import fathom.exception.FatalException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests bulkhead configuration, saturation and metrics.
+ *
+ * @author James Moger
+ */
+public class BulkheadsTest extends Assert {
+
+    private Bulkheads bulkheads(MetricRegistry metricRegistry) {
+        Settings settings = new Settings();
+        settings.overrideSetting("rest.bulkheads.reports.threads", 1);
+        settings.overrideSetting("rest.bulkheads.reports.queueSize", 1);
+        settings.overrideSetting("rest.bulkheads.exports.rejection", "callerRuns");
+        settings.overrideSetting("rest.bulkheads.invalid.rejection", "discard");
+        return new Bulkheads(settings, metricRegistry);
+    }
+
+    @Test
+    public void testConfiguration() {
+        Bulkheads bulkheads = bulkheads(new MetricRegistry());
+        Bulkhead reports = bulkheads.get("reports");
+        assertSame(reports, bulkheads.get("reports"));
+        assertEquals(1, reports.getThreads());
+        assertEquals(1, reports.getQueueSize());
+        assertEquals(Bulkhead.RejectionPolicy.REJECT, reports.getRejectionPolicy());
+
+        Bulkhead exports = bulkheads.get("exports");
+        assertEquals(10, exports.getThreads());
+        assertEquals(100, exports.getQueueSize());
+        assertEquals(Bulkhead.RejectionPolicy.CALLER_RUNS, exports.getRejectionPolicy());
+        assertEquals(2, bulkheads.getBulkheads().size());
+        bulkheads.shutdown();
+    }
+
+    @Test(expected = FatalException.class)
+    public void testInvalidRejectionPolicy() {
+        bulkheads(new MetricRegistry()).get("invalid");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSaturation() throws Exception {
+        MetricRegistry metricRegistry = new MetricRegistry();
+        Bulkheads bulkheads = bulkheads(metricRegistry);
+        Bulkhead reports = bulkheads.get("reports");
+
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        Runnable blocking = () -> {
+            running.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        };
+
+        // one executing, one queued, the third is rejected
+        assertTrue(reports.execute(blocking));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        assertTrue(reports.execute(done::countDown));
+        assertFalse(reports.execute(() -> fail("rejected task executed")));
+
+        assertEquals(1, reports.getActiveCount());
+        assertEquals(1, reports.getQueuedCount());
+        assertEquals(1, reports.getRejectedCount());
+        Gauge<Double> utilization = metricRegistry.getGauges().get("fathom.rest.bulkhead.reports.utilization");
+        assertEquals(1.0, utilization.getValue(), 0.0);
+        assertEquals(1, metricRegistry.meter("fathom.rest.bulkhead.reports.rejected").getCount());
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, metricRegistry.timer("fathom.rest.bulkhead.reports.wait").getCount());
+        bulkheads.shutdown();
+    }
+
+}
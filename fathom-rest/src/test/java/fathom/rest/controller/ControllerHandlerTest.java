@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest.controller;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import fathom.conf.Settings;
+import fathom.rest.Context;
+import fathom.rest.MockServlets;
+import fathom.rest.MockServlets.CapturingOutputStream;
+import fathom.rest.ObjectWriter;
+import fathom.rest.ResponseBuffer;
+import fathom.rest.RestModule;
+import fathom.rest.StreamingContentTypeEngine;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import ro.pippo.core.Application;
+import ro.pippo.core.ContentTypeEngines;
+import ro.pippo.core.Languages;
+import ro.pippo.core.Messages;
+import ro.pippo.core.PippoSettings;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests sending controller results through the prepared ObjectWriter and the pooled ResponseBuffer.
+ *
+ * @author James Moger
+ */
+public class ControllerHandlerTest extends Assert {
+
+    /**
+     * A result which is serialized as the specified number of bytes.
+     */
+    public static class Payload {
+
+        final int size;
+
+        final byte value;
+
+        public Payload(int size, byte value) {
+            this.size = size;
+            this.value = value;
+        }
+    }
+
+    public static class PayloadController extends Controller {
+
+        @GET("/payload")
+        @Produces(Produces.JSON)
+        @Return(code = 200, description = "Payload", onResult = Payload.class)
+        public Payload get() {
+            return new Payload(0, (byte) 0);
+        }
+    }
+
+    /**
+     * Writes each payload in a single write and remembers the stream it was written to.
+     */
+    static class PayloadEngine implements StreamingContentTypeEngine {
+
+        final AtomicInteger writers = new AtomicInteger();
+
+        final AtomicReference<OutputStream> lastStream = new AtomicReference<>();
+
+        @Override
+        public void init(Application application) {
+        }
+
+        @Override
+        public String getContentType() {
+            return Produces.JSON;
+        }
+
+        @Override
+        public String toString(Object object) {
+            throw new AssertionError("The prepared ObjectWriter should be used");
+        }
+
+        @Override
+        public <T> T fromString(String content, Class<T> classOfT) {
+            return null;
+        }
+
+        @Override
+        public ObjectWriter getObjectWriter(Type type) {
+            if (Payload.class != type) {
+                return null;
+            }
+            writers.incrementAndGet();
+            return (value, outputStream) -> {
+                lastStream.set(outputStream);
+                outputStream.write(bytes((Payload) value));
+            };
+        }
+    }
+
+    private final Application application = MockServlets.application();
+
+    private PayloadEngine engine;
+
+    private ControllerHandler handler;
+
+    private static byte[] bytes(Payload payload) {
+        byte[] bytes = new byte[payload.size];
+        Arrays.fill(bytes, payload.value);
+        return bytes;
+    }
+
+    @Before
+    public void setup() {
+        Settings settings = new Settings();
+        PippoSettings pippoSettings = RestModule.getPippoSettings(settings);
+        engine = new PayloadEngine();
+
+        Injector injector = Guice.createInjector(new AbstractModule() {
+            @Override
+            public void configure() {
+                ContentTypeEngines contentTypeEngines = new ContentTypeEngines();
+                contentTypeEngines.setContentTypeEngine(engine);
+                bind(Messages.class).toInstance(new Messages(new Languages(pippoSettings)));
+                bind(Settings.class).toInstance(settings);
+                bind(MetricRegistry.class).toInstance(new MetricRegistry());
+                bind(ContentTypeEngines.class).toInstance(contentTypeEngines);
+            }
+        });
+
+        handler = new ControllerHandler(injector, PayloadController.class, "get");
+
+        // start each test with a fresh buffer on this thread
+        ResponseBuffer buffer = ResponseBuffer.acquire();
+        buffer.write(new byte[ResponseBuffer.MAX_RETAINED_SIZE + 1], 0, ResponseBuffer.MAX_RETAINED_SIZE + 1);
+        buffer.release();
+    }
+
+    /**
+     * Returns the buffer which the next response on this thread will use.
+     */
+    private static ResponseBuffer nextBuffer() {
+        ResponseBuffer buffer = ResponseBuffer.acquire();
+        buffer.release();
+        return buffer;
+    }
+
+    private CapturingOutputStream send(Payload payload) throws Exception {
+        return send(payload, Produces.JSON);
+    }
+
+    private CapturingOutputStream send(Payload payload, String contentType) throws Exception {
+        CapturingOutputStream outputStream = new CapturingOutputStream();
+        HttpServletResponse httpServletResponse = MockServlets.httpServletResponse(outputStream);
+        Context context = MockServlets.context(application,
+                MockServlets.httpServletRequest("GET", "/payload", Collections.emptyMap()), httpServletResponse);
+        context.getResponse().contentType(contentType);
+
+        handler.sendObject(context, payload);
+
+        verify(httpServletResponse).setContentLength(payload.size);
+        verify(httpServletResponse).flushBuffer();
+        return outputStream;
+    }
+
+    @Test
+    public void testWriterIsPreparedOnce() throws Exception {
+        assertEquals(1, engine.writers.get());
+        send(new Payload(10, (byte) 'a'));
+        send(new Payload(10, (byte) 'b'));
+        assertEquals(1, engine.writers.get());
+    }
+
+    @Test
+    public void testContentTypeParameters() throws Exception {
+        Payload payload = new Payload(10, (byte) 'a');
+        assertArrayEquals(bytes(payload), send(payload, "application/json; charset=utf-8").bytes.toByteArray());
+        assertArrayEquals(bytes(payload), send(payload, "Application/JSON;charset=UTF-8").bytes.toByteArray());
+    }
+
+    @Test
+    public void testBytesWritten() throws Exception {
+        Payload small = new Payload(100, (byte) 'a');
+        assertArrayEquals(bytes(small), send(small).bytes.toByteArray());
+
+        // the reused buffer does not leak bytes of the previous, larger response
+        Payload large = new Payload(64 * 1024, (byte) 'b');
+        assertArrayEquals(bytes(large), send(large).bytes.toByteArray());
+        Payload next = new Payload(10, (byte) 'c');
+        assertArrayEquals(bytes(next), send(next).bytes.toByteArray());
+        assertSame(engine.lastStream.get(), nextBuffer());
+    }
+
+    @Test
+    public void testBufferIsRetained() throws Exception {
+        Payload payload = new Payload(ResponseBuffer.MAX_RETAINED_SIZE, (byte) 'a');
+        assertArrayEquals(bytes(payload), send(payload).bytes.toByteArray());
+        OutputStream used = engine.lastStream.get();
+        assertSame(used, nextBuffer());
+
+        send(new Payload(10, (byte) 'b'));
+        assertSame(used, engine.lastStream.get());
+    }
+
+    @Test
+    public void testOversizedBufferIsDiscarded() throws Exception {
+        Payload payload = new Payload(ResponseBuffer.MAX_RETAINED_SIZE + 1, (byte) 'a');
+        assertArrayEquals(bytes(payload), send(payload).bytes.toByteArray());
+        OutputStream used = engine.lastStream.get();
+        assertNotSame(used, nextBuffer());
+
+        send(new Payload(10, (byte) 'b'));
+        assertNotSame(used, engine.lastStream.get());
+    }
+
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest.controller.extractors;
+
+import fathom.exception.FatalException;
+import org.junit.Assert;
+import org.junit.Test;
+import ro.pippo.core.Param;
+import ro.pippo.core.ParamPattern;
+import ro.pippo.core.ParameterValue;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Tests that the BeanBinder converts values exactly like ParameterValue.
+ *
+ * @author James Moger
+ */
+public class BeanBinderTest extends Assert {
+
+    public enum Color {
+        RED, GREEN, BLUE
+    }
+
+    public static class Base {
+        long id;
+    }
+
+    public static class Form extends Base {
+        static String ignoredStatic;
+        final String ignoredFinal = "final";
+        String name;
+        boolean active;
+        Boolean enabled;
+        byte b;
+        short s;
+        int count;
+        Integer boxedCount;
+        float ratio;
+        double amount;
+        char initial;
+        BigDecimal price;
+        UUID uuid;
+        Color color;
+        List<Integer> numbers;
+        Set<String> tags;
+        TreeSet<String> sorted;
+        int[] array;
+        @Param("e-mail")
+        String email;
+        String missing = "default";
+    }
+
+    public static class Boxed {
+        Boolean enabled = true;
+        Byte b = 1;
+        Short s = 1;
+        Integer count = 1;
+        Long id = 1L;
+        Float ratio = 1f;
+        Double amount = 1d;
+        Character initial = 'x';
+        BigDecimal price = BigDecimal.ONE;
+        UUID uuid = UUID.randomUUID();
+    }
+
+    public static class Dated {
+        @ParamPattern("dd/MM/yyyy")
+        Date date;
+        @ParamPattern("dd/MM/yyyy")
+        java.sql.Date sqlDate;
+        @ParamPattern("dd/MM/yyyy")
+        List<Date> dates;
+    }
+
+    public static class NoDefaultConstructor {
+        public NoDefaultConstructor(String value) {
+        }
+    }
+
+    private Map<String, ParameterValue> getParameters() {
+        Map<String, ParameterValue> parameters = new HashMap<>();
+        parameters.put("id", new ParameterValue("42"));
+        parameters.put("ignoredStatic", new ParameterValue("static"));
+        parameters.put("ignoredFinal", new ParameterValue("changed"));
+        parameters.put("name", new ParameterValue("fathom"));
+        parameters.put("active", new ParameterValue("true"));
+        parameters.put("enabled", new ParameterValue("yes"));
+        parameters.put("b", new ParameterValue("7"));
+        parameters.put("s", new ParameterValue("300"));
+        parameters.put("count", new ParameterValue("12"));
+        parameters.put("boxedCount", new ParameterValue(""));
+        parameters.put("ratio", new ParameterValue("0.5"));
+        parameters.put("amount", new ParameterValue("1234.56"));
+        parameters.put("initial", new ParameterValue("james"));
+        parameters.put("price", new ParameterValue("19.99"));
+        parameters.put("uuid", new ParameterValue("0b6b3a2c-6d59-4c1e-9f3c-2a43f4f0b3a1"));
+        parameters.put("color", new ParameterValue("GREEN"));
+        parameters.put("numbers", new ParameterValue("3", "1", "2"));
+        parameters.put("tags", new ParameterValue("a", "b", "a"));
+        parameters.put("sorted", new ParameterValue("z", "y"));
+        parameters.put("array", new ParameterValue("4", "5", "6"));
+        parameters.put("e-mail", new ParameterValue("james@gitblit.com"));
+        return parameters;
+    }
+
+    @Test
+    public void testConversionParity() {
+        Map<String, ParameterValue> parameters = getParameters();
+        Form form = BeanBinder.of(Form.class).bind(parameters);
+
+        assertEquals(parameters.get("id").toLong(), form.id);
+        assertEquals(parameters.get("name").toString(), form.name);
+        assertEquals(parameters.get("active").toBoolean(), form.active);
+        assertEquals(parameters.get("enabled").to(Boolean.class), form.enabled);
+        assertEquals(parameters.get("b").toByte(), form.b);
+        assertEquals(parameters.get("s").toShort(), form.s);
+        assertEquals(parameters.get("count").toInt(), form.count);
+        assertEquals(parameters.get("boxedCount").to(Integer.class), form.boxedCount);
+        assertEquals(parameters.get("ratio").toFloat(), form.ratio, 0f);
+        assertEquals(parameters.get("amount").toDouble(), form.amount, 0d);
+        assertEquals(parameters.get("initial").to(char.class).charValue(), form.initial);
+        assertEquals(parameters.get("price").to(BigDecimal.class), form.price);
+        assertEquals(parameters.get("uuid").to(UUID.class), form.uuid);
+        assertEquals(parameters.get("color").to(Color.class), form.color);
+        assertEquals(parameters.get("numbers").toList(Integer.class), form.numbers);
+        assertEquals(parameters.get("tags").toSet(String.class), form.tags);
+        assertEquals(parameters.get("sorted").toCollection(TreeSet.class, String.class, null), form.sorted);
+        assertTrue(Arrays.equals(parameters.get("array").to(int[].class), form.array));
+        assertEquals("james@gitblit.com", form.email);
+
+        assertEquals(42L, form.id);
+        assertEquals(Arrays.asList(3, 1, 2), form.numbers);
+        assertEquals(Color.GREEN, form.color);
+        assertEquals("default", form.missing);
+        assertEquals("final", form.ignoredFinal);
+        assertNull(Form.ignoredStatic);
+    }
+
+    @Test
+    public void testParamPatternOnScalars() {
+        Map<String, ParameterValue> parameters = new HashMap<>();
+        parameters.put("date", new ParameterValue("19/10/2016"));
+        parameters.put("sqlDate", new ParameterValue("20/10/2016"));
+        parameters.put("dates", new ParameterValue("21/10/2016", "22/10/2016"));
+
+        Dated dated = BeanBinder.of(Dated.class).bind(parameters);
+
+        assertEquals(parameters.get("date").to(Date.class, "dd/MM/yyyy"), dated.date);
+        assertEquals(parameters.get("sqlDate").to(java.sql.Date.class, "dd/MM/yyyy"), dated.sqlDate);
+        assertEquals(parameters.get("dates").toList(Date.class, "dd/MM/yyyy"), dated.dates);
+        assertNotNull(dated.date);
+    }
+
+    @Test
+    public void testBoxedEmptyValues() {
+        for (ParameterValue value : Arrays.asList(new ParameterValue(""), new ParameterValue())) {
+            Map<String, ParameterValue> parameters = new HashMap<>();
+            for (String name : Arrays.asList("enabled", "b", "s", "count", "id", "ratio", "amount", "initial", "price", "uuid")) {
+                parameters.put(name, value);
+            }
+
+            Boxed boxed = BeanBinder.of(Boxed.class).bind(parameters);
+
+            assertEquals(value.to(Boolean.class), boxed.enabled);
+            assertEquals(value.to(Byte.class), boxed.b);
+            assertEquals(value.to(Short.class), boxed.s);
+            assertEquals(value.to(Integer.class), boxed.count);
+            assertEquals(value.to(Long.class), boxed.id);
+            assertEquals(value.to(Float.class), boxed.ratio);
+            assertEquals(value.to(Double.class), boxed.amount);
+            assertEquals(value.to(Character.class), boxed.initial);
+            assertEquals(value.to(BigDecimal.class), boxed.price);
+            assertEquals(value.to(UUID.class), boxed.uuid);
+            assertEquals(Integer.valueOf(0), boxed.count);
+        }
+    }
+
+    @Test
+    public void testUpdateExistingBean() {
+        Form form = new Form();
+        form.name = "before";
+        form.count = 5;
+
+        Map<String, ParameterValue> parameters = new HashMap<>();
+        parameters.put("name", new ParameterValue("after"));
+
+        BeanBinder.of(Form.class).bind(form, parameters);
+
+        assertEquals("after", form.name);
+        assertEquals(5, form.count);
+    }
+
+    @Test
+    public void testSharedBinder() {
+        assertSame(BeanBinder.of(Form.class), BeanBinder.of(Form.class));
+    }
+
+    @Test(expected = FatalException.class)
+    public void testNoDefaultConstructor() {
+        BeanBinder.of(NoDefaultConstructor.class);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testInvalidNumber() {
+        Map<String, ParameterValue> parameters = new HashMap<>();
+        parameters.put("count", new ParameterValue("twelve"));
+        BeanBinder.of(Form.class).bind(parameters);
+    }
+
+}
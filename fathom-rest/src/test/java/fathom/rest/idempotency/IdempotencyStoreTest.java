@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.rest.idempotency;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the memory idempotency store and response capturing.
+ *
+ * @author James Moger
+ */
+public class IdempotencyStoreTest extends Assert {
+
+    private static final long TTL = TimeUnit.HOURS.toNanos(1);
+
+    private StoredResponse stored(String body) {
+        return new StoredResponse(201, Collections.singletonMap("Location", Collections.singletonList("/items/1")),
+                body.getBytes(StandardCharsets.UTF_8), "fingerprint");
+    }
+
+    @Test
+    public void testReserveAndComplete() throws Exception {
+        MemoryIdempotencyStore store = new MemoryIdempotencyStore(TTL, 10);
+        assertTrue(store.reserve("POST /items a"));
+        assertFalse(store.reserve("POST /items a"));
+        assertTrue(store.reserve("POST /items b"));
+
+        store.complete("POST /items a", stored("created"));
+        assertFalse(store.reserve("POST /items a"));
+
+        StoredResponse response = store.await("POST /items a", 0, TimeUnit.MILLISECONDS);
+        assertEquals(201, response.getStatus());
+        assertEquals("created", new String(response.getBody(), StandardCharsets.UTF_8));
+        assertEquals("/items/1", response.getHeaders().get("Location").get(0));
+    }
+
+    @Test
+    public void testDuplicateWaitsForOriginal() throws Exception {
+        MemoryIdempotencyStore store = new MemoryIdempotencyStore(TTL, 10);
+        assertTrue(store.reserve("key"));
+
+        CompletableFuture<StoredResponse> duplicate = CompletableFuture.supplyAsync(() -> {
+            try {
+                return store.await("key", 10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        Thread.sleep(50);
+        assertFalse(duplicate.isDone());
+        store.complete("key", stored("once"));
+        assertEquals("once", new String(duplicate.get(5, TimeUnit.SECONDS).getBody(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testAwaitTimeout() throws Exception {
+        MemoryIdempotencyStore store = new MemoryIdempotencyStore(TTL, 10);
+        assertTrue(store.reserve("key"));
+        assertNull(store.await("key", 10, TimeUnit.MILLISECONDS));
+        assertNull(store.await("missing", 10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testRelease() throws Exception {
+        MemoryIdempotencyStore store = new MemoryIdempotencyStore(TTL, 10);
+        assertTrue(store.reserve("key"));
+        store.release("key");
+        assertNull(store.await("key", 10, TimeUnit.SECONDS));
+        assertTrue(store.reserve("key"));
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        MemoryIdempotencyStore store = new MemoryIdempotencyStore(0, 10);
+        assertTrue(store.reserve("key"));
+        store.complete("key", stored("expired"));
+        Thread.sleep(1);
+        assertNull(store.await("key", 0, TimeUnit.MILLISECONDS));
+        assertTrue(store.reserve("key"));
+    }
+
+    @Test
+    public void testBounded() throws Exception {
+        MemoryIdempotencyStore store = new MemoryIdempotencyStore(TTL, 2);
+        assertTrue(store.reserve("a"));
+        assertTrue(store.reserve("b"));
+        assertTrue(store.reserve("c"));
+        assertEquals(2, store.size());
+
+        // the oldest reservation was evicted and its duplicates are released
+        assertNull(store.await("a", 10, TimeUnit.SECONDS));
+        assertTrue(store.reserve("a"));
+        assertFalse(store.reserve("c"));
+    }
+
+    @Test
+    public void testCapturingResponse() throws Exception {
+        ByteArrayOutputStream client = new ByteArrayOutputStream();
+        CapturingResponse response = new CapturingResponse(response(client));
+
+        // not capturing until requested
+        response.getOutputStream().write('x');
+        response.capture(8);
+        assertEquals(0, response.getBody().length);
+
+        response.getWriter().write("hello");
+        response.flushBuffer();
+        assertEquals("hello", new String(response.getBody(), StandardCharsets.UTF_8));
+        assertFalse(response.isOverflow());
+
+        response.getOutputStream().write(" world".getBytes(StandardCharsets.UTF_8));
+        assertTrue(response.isOverflow());
+        assertEquals("xhello world", new String(client.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private HttpServletResponse response(ByteArrayOutputStream client) {
+        ServletOutputStream outputStream = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                client.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+        };
+
+        return (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{HttpServletResponse.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getOutputStream":
+                            return outputStream;
+                        case "getCharacterEncoding":
+                            return "UTF-8";
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+}
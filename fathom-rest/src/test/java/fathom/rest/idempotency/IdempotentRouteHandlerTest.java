@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.rest.idempotency;
+
+import fathom.exception.StatusCodeException;
+import fathom.rest.Context;
+import fathom.rest.MockServlets;
+import fathom.rest.MockServlets.CapturingOutputStream;
+import org.junit.Assert;
+import org.junit.Test;
+import ro.pippo.core.Application;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the execution and replay of idempotent routes.
+ *
+ * @author James Moger
+ */
+public class IdempotentRouteHandlerTest extends Assert {
+
+    private final Application application = MockServlets.application();
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    private final IdempotentRouteHandler handler = new IdempotentRouteHandler(context -> {
+        int execution = executions.incrementAndGet();
+        context.getResponse().status(201);
+        context.getResponse().header("Location", "/items/" + execution);
+        context.getResponse().header("Set-Cookie", "visit=" + execution);
+        try {
+            context.getResponse().getOutputStream().write(("created " + execution).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }, new MemoryIdempotencyStore(TimeUnit.HOURS.toNanos(1), 10), 1024, TimeUnit.SECONDS.toNanos(1));
+
+    /**
+     * A servlet response which records its status, headers and body.
+     */
+    private static class RecordedResponse {
+
+        int status;
+
+        final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+        final CapturingOutputStream outputStream = new CapturingOutputStream();
+
+        final HttpServletResponse servletResponse = (HttpServletResponse) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{HttpServletResponse.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "setStatus":
+                            status = (int) args[0];
+                            return null;
+                        case "getStatus":
+                            return status;
+                        case "setHeader":
+                            headers.put((String) args[0], new ArrayList<>(Collections.singletonList((String) args[1])));
+                            return null;
+                        case "addHeader":
+                            headers.computeIfAbsent((String) args[0], name -> new ArrayList<>()).add((String) args[1]);
+                            return null;
+                        case "getHeader":
+                            return headers.containsKey(args[0]) ? headers.get(args[0]).get(0) : null;
+                        case "getHeaders":
+                            return headers.getOrDefault(args[0], Collections.emptyList());
+                        case "getHeaderNames":
+                            return new ArrayList<>(headers.keySet());
+                        case "containsHeader":
+                            return headers.containsKey(args[0]);
+                        case "getOutputStream":
+                            return outputStream;
+                        case "getCharacterEncoding":
+                            return "UTF-8";
+                        case "isCommitted":
+                            return false;
+                        default:
+                            return null;
+                    }
+                });
+
+        String getHeader(String name) {
+            return headers.containsKey(name) ? headers.get(name).get(0) : null;
+        }
+    }
+
+    private RecordedResponse post(String key, String authorization, String body) throws Exception {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(IdempotentRouteHandler.HEADER, key);
+        headers.put("Content-Type", "application/json");
+        if (authorization != null) {
+            headers.put("Authorization", authorization);
+        }
+        HttpServletRequest request = MockServlets.httpServletRequest("POST", "/items", headers);
+        when(request.getContentType()).thenReturn("application/json");
+        ByteArrayInputStream bytes = new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+        when(request.getInputStream()).thenReturn(new ServletInputStream() {
+            @Override
+            public boolean isFinished() {
+                return bytes.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+            }
+
+            @Override
+            public int read() {
+                return bytes.read();
+            }
+        });
+
+        RecordedResponse response = new RecordedResponse();
+        Context context = MockServlets.context(application, request, new CapturingResponse(response.servletResponse));
+        handler.handle(context);
+        return response;
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        RecordedResponse original = post("a", null, "{\"name\":\"fathom\"}");
+        RecordedResponse duplicate = post("a", null, "{\"name\":\"fathom\"}");
+
+        assertEquals(1, executions.get());
+        assertEquals(201, duplicate.status);
+        assertEquals("/items/1", duplicate.getHeader("Location"));
+        assertEquals("true", duplicate.getHeader(IdempotentRouteHandler.REPLAYED_HEADER));
+        assertEquals(original.outputStream.toString(), duplicate.outputStream.toString());
+    }
+
+    @Test
+    public void testCookiesAreNotReplayed() throws Exception {
+        RecordedResponse original = post("a", null, "{}");
+        RecordedResponse duplicate = post("a", null, "{}");
+
+        assertEquals("visit=1", original.getHeader("Set-Cookie"));
+        assertNull(duplicate.getHeader("Set-Cookie"));
+    }
+
+    @Test
+    public void testDifferentPayload() throws Exception {
+        post("a", null, "{\"name\":\"fathom\"}");
+        try {
+            post("a", null, "{\"name\":\"pippo\"}");
+            fail("Expected the reused key to be rejected");
+        } catch (StatusCodeException e) {
+            assertEquals(422, e.getStatusCode());
+        }
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    public void testKeysAreScopedToTheCaller() throws Exception {
+        post("a", "Bearer alice", "{}");
+        RecordedResponse other = post("a", "Bearer bob", "{}");
+        RecordedResponse duplicate = post("a", "Bearer alice", "{}");
+
+        assertEquals(2, executions.get());
+        assertEquals("created 2", other.outputStream.toString());
+        assertNull(other.getHeader(IdempotentRouteHandler.REPLAYED_HEADER));
+        assertEquals("created 1", duplicate.outputStream.toString());
+    }
+
+}
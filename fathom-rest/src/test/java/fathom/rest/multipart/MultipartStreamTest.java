@@ -0,0 +1,282 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest.multipart;
+
+import com.google.common.io.ByteStreams;
+import fathom.exception.StatusCodeException;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Tests the streaming multipart parser.
+ *
+ * @author James Moger
+ */
+public class MultipartStreamTest extends Assert {
+
+    private static final String BOUNDARY = "----fathom7MA4YWxkTrZu0gW";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static byte[] body(byte[] fileContent) {
+        String head = "preamble\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"title\"\r\n"
+                + "\r\n"
+                + "Hello Fathom\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"upload\"; filename=\"data.bin\"\r\n"
+                + "Content-Type: application/octet-stream\r\n"
+                + "\r\n";
+        String tail = "\r\n--" + BOUNDARY + "--\r\nepilogue";
+
+        byte[] h = head.getBytes(StandardCharsets.ISO_8859_1);
+        byte[] t = tail.getBytes(StandardCharsets.ISO_8859_1);
+        byte[] body = new byte[h.length + fileContent.length + t.length];
+        System.arraycopy(h, 0, body, 0, h.length);
+        System.arraycopy(fileContent, 0, body, h.length, fileContent.length);
+        System.arraycopy(t, 0, body, h.length + fileContent.length, t.length);
+        return body;
+    }
+
+    private static byte[] content(int size) {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        // include a near-miss of the delimiter
+        byte[] nearMiss = ("\r\n--" + BOUNDARY.substring(0, BOUNDARY.length() - 1)).getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(nearMiss, 0, content, size / 2, nearMiss.length);
+        return content;
+    }
+
+    /**
+     * Returns at most 7 bytes per read to exercise the buffer boundaries.
+     */
+    private static InputStream trickle(byte[] body) {
+        return new FilterInputStream(new ByteArrayInputStream(body)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 7));
+            }
+        };
+    }
+
+    @Test
+    public void testParts() throws IOException {
+        byte[] content = content(100 * 1024);
+        MultipartStream stream = new MultipartStream(trickle(body(content)), BOUNDARY, -1, -1, 1024);
+
+        assertTrue(stream.hasNext());
+        StreamingPart title = stream.next();
+        assertEquals("title", title.getName());
+        assertTrue(title.isFormField());
+        assertEquals("Hello Fathom", title.getString());
+
+        assertTrue(stream.hasNext());
+        StreamingPart upload = stream.next();
+        assertEquals("upload", upload.getName());
+        assertEquals("data.bin", upload.getSubmittedFileName());
+        assertEquals("application/octet-stream", upload.getContentType());
+        assertArrayEquals(content, ByteStreams.toByteArray(upload.getInputStream()));
+
+        assertFalse(stream.hasNext());
+    }
+
+    @Test
+    public void testUnreadPartIsSkipped() throws IOException {
+        MultipartStream stream = new MultipartStream(new ByteArrayInputStream(body(content(4096))), BOUNDARY, -1, -1, 1024);
+
+        StreamingPart title = stream.next();
+        StreamingPart upload = stream.next();
+        assertEquals("upload", upload.getName());
+        assertEquals(-1, title.getInputStream().read());
+        assertFalse(stream.hasNext());
+    }
+
+    @Test
+    public void testSpoolToMemory() throws IOException {
+        byte[] content = content(512);
+        MultipartStream stream = new MultipartStream(new ByteArrayInputStream(body(content)), BOUNDARY, -1, -1, 1024);
+        stream.next();
+
+        SpooledPart part = stream.next().spool();
+        assertTrue(part.isInMemory());
+        assertEquals(content.length, part.getSize());
+        assertArrayEquals(content, ByteStreams.toByteArray(part.getInputStream()));
+    }
+
+    @Test
+    public void testSpoolToDisk() throws IOException {
+        byte[] content = content(64 * 1024);
+        MultipartStream stream = new MultipartStream(new ByteArrayInputStream(body(content)), BOUNDARY, -1, -1, 1024);
+        stream.next();
+
+        SpooledPart part = stream.next().spool();
+        try {
+            assertFalse(part.isInMemory());
+            assertEquals(content.length, part.getSize());
+            try (InputStream is = part.getInputStream()) {
+                assertArrayEquals(content, ByteStreams.toByteArray(is));
+            }
+        } finally {
+            part.delete();
+        }
+    }
+
+    @Test
+    public void testSpoolToUploadLocation() throws IOException {
+        File uploads = new File(temporaryFolder.getRoot(), "uploads");
+        byte[] content = content(64 * 1024);
+        MultipartStream stream = new MultipartStream(new ByteArrayInputStream(body(content)), BOUNDARY, -1, -1, 1024, uploads);
+        stream.next();
+
+        SpooledPart part = stream.next().spool();
+        assertFalse(part.isInMemory());
+        assertEquals(1, uploads.list().length);
+
+        // closing the stream deletes the temporary file
+        stream.close();
+        assertEquals(0, uploads.list().length);
+    }
+
+    @Test
+    public void testWrittenPartIsRetained() throws IOException {
+        File uploads = temporaryFolder.newFolder("uploads");
+        File target = new File(temporaryFolder.getRoot(), "data.bin");
+        byte[] content = content(64 * 1024);
+        MultipartStream stream = new MultipartStream(new ByteArrayInputStream(body(content)), BOUNDARY, -1, -1, 1024, uploads);
+        stream.next();
+
+        SpooledPart part = stream.next().spool();
+        part.write(target.getPath());
+        stream.close();
+
+        assertEquals(0, uploads.list().length);
+        assertEquals(content.length, target.length());
+    }
+
+    @Test
+    public void testWriteRelativeToUploadLocation() throws IOException {
+        File uploads = temporaryFolder.newFolder("uploads");
+        byte[] content = content(64 * 1024);
+        MultipartStream stream = new MultipartStream(new ByteArrayInputStream(body(content)), BOUNDARY, -1, -1, 1024, uploads);
+        stream.next();
+
+        SpooledPart part = stream.next().spool();
+        part.write("data.bin");
+        stream.close();
+
+        File target = new File(uploads, "data.bin");
+        assertEquals(content.length, target.length());
+        assertArrayEquals(new String[]{"data.bin"}, uploads.list());
+    }
+
+    @Test
+    public void testFailedSpoolIsDeleted() throws IOException {
+        File uploads = temporaryFolder.newFolder("uploads");
+        MultipartStream stream = new MultipartStream(new ByteArrayInputStream(body(content(64 * 1024))), BOUNDARY, -1, 16 * 1024, 1024, uploads);
+        stream.next();
+        try {
+            stream.next().spool();
+            fail("Expected the part size to be rejected");
+        } catch (StatusCodeException e) {
+            assertEquals(413, e.getStatusCode());
+        }
+        assertEquals(0, uploads.list().length);
+    }
+
+    @Test
+    public void testMaxPartSize() throws IOException {
+        MultipartStream stream = new MultipartStream(new ByteArrayInputStream(body(content(8192))), BOUNDARY, -1, 4096, 1024);
+        stream.next();
+        try {
+            ByteStreams.toByteArray(stream.next().getInputStream());
+            fail("Expected the part size to be rejected");
+        } catch (StatusCodeException e) {
+            assertEquals(413, e.getStatusCode());
+        }
+    }
+
+    @Test
+    public void testMaxPartSizeOnSkip() throws IOException {
+        MultipartStream stream = new MultipartStream(new ByteArrayInputStream(body(content(8192))), BOUNDARY, -1, 4096, 1024);
+        stream.next();
+        try {
+            stream.next().getInputStream().skip(Long.MAX_VALUE);
+            fail("Expected the part size to be rejected");
+        } catch (StatusCodeException e) {
+            assertEquals(413, e.getStatusCode());
+        }
+    }
+
+    @Test
+    public void testMaxPartSizeOfUnreadPart() throws IOException {
+        MultipartStream stream = new MultipartStream(new ByteArrayInputStream(body(content(8192))), BOUNDARY, -1, 4096, 1024);
+        stream.next();
+        stream.next();
+        try {
+            stream.hasNext();
+            fail("Expected the part size to be rejected");
+        } catch (StatusCodeException e) {
+            assertEquals(413, e.getStatusCode());
+        }
+    }
+
+    @Test
+    public void testSingleByteRead() throws IOException {
+        byte[] content = content(512);
+        MultipartStream stream = new MultipartStream(new ByteArrayInputStream(body(content)), BOUNDARY, -1, -1, 1024);
+        stream.next();
+
+        InputStream is = stream.next().getInputStream();
+        for (byte b : content) {
+            assertEquals(b & 0xff, is.read());
+        }
+        assertEquals(-1, is.read());
+    }
+
+    @Test
+    public void testMaxRequestSize() {
+        MultipartStream stream = new MultipartStream(new ByteArrayInputStream(body(content(64 * 1024))), BOUNDARY, 16 * 1024, -1, 1024);
+        try {
+            while (stream.hasNext()) {
+                stream.next();
+            }
+            fail("Expected the request size to be rejected");
+        } catch (StatusCodeException e) {
+            assertEquals(413, e.getStatusCode());
+        }
+    }
+
+    @Test
+    public void testBoundary() {
+        assertEquals(BOUNDARY, MultipartStream.getBoundary("multipart/form-data; boundary=" + BOUNDARY));
+        assertEquals("quoted", MultipartStream.getBoundary("multipart/form-data; charset=UTF-8; boundary=\"quoted\""));
+        assertNull(MultipartStream.getBoundary("multipart/form-data"));
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest.paging;
+
+import fathom.exception.StatusCodeException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Tests the cursor codec, page assembly and keyset predicates.
+ *
+ * @author James Moger
+ */
+public class KeysetPagingTest extends Assert {
+
+    private final CursorCodec codec = new CursorCodec("secret");
+
+    private static Object[] keys(Integer row) {
+        return new Object[]{row};
+    }
+
+    private static List<Integer> range(int from, int to, int step) {
+        List<Integer> list = new ArrayList<>();
+        for (int i = from; step > 0 ? i <= to : i >= to; i += step) {
+            list.add(i);
+        }
+        return list;
+    }
+
+    @Test
+    public void testCursorRoundTrip() {
+        Cursor cursor = new Cursor(Cursor.Direction.PREV, "a, b&c=é", 42, 7L, 1.5d, new BigDecimal("19.99"),
+                UUID.fromString("0b6b3a2c-6d59-4c1e-9f3c-2a43f4f0b3a1"), new Timestamp(1234567890L),
+                Instant.parse("2016-01-02T03:04:05.678Z"));
+
+        String token = codec.encode(cursor);
+        assertTrue(token.matches("[A-Za-z0-9_\\-]+\\.[0-9a-f]+"));
+        assertEquals(cursor, codec.decode(token));
+    }
+
+    @Test(expected = StatusCodeException.class)
+    public void testTamperedCursor() {
+        String token = codec.encode(new Cursor(Cursor.Direction.NEXT, 10));
+        String forged = codec.encode(new Cursor(Cursor.Direction.NEXT, 1000));
+        codec.decode(forged.substring(0, forged.indexOf('.')) + token.substring(token.indexOf('.')));
+    }
+
+    @Test(expected = StatusCodeException.class)
+    public void testForeignSecret() {
+        String token = new CursorCodec("other").encode(new Cursor(Cursor.Direction.NEXT, 10));
+        codec.decode(token);
+    }
+
+    @Test
+    public void testForwardPaging() {
+        PageRequest first = new PageRequest(null, 3, codec);
+        Page<Integer> page = first.toPage(range(1, 4, 1), KeysetPagingTest::keys);
+        assertEquals(Arrays.asList(1, 2, 3), page.getItems());
+        assertNull(page.getPrev());
+        assertNotNull(page.getNext());
+
+        PageRequest second = new PageRequest(codec.decode(page.getNext()), 3, codec);
+        assertEquals(new Cursor(Cursor.Direction.NEXT, 3), second.getCursor());
+        Page<Integer> last = second.toPage(range(4, 5, 1), KeysetPagingTest::keys);
+        assertEquals(Arrays.asList(4, 5), last.getItems());
+        assertNull(last.getNext());
+        assertEquals(new Cursor(Cursor.Direction.PREV, 4), codec.decode(last.getPrev()));
+    }
+
+    @Test
+    public void testBackwardPaging() {
+        // rows before 7, read in reverse order
+        PageRequest request = new PageRequest(new Cursor(Cursor.Direction.PREV, 7), 3, codec);
+        Page<Integer> page = request.toPage(range(6, 3, -1), KeysetPagingTest::keys);
+        assertEquals(Arrays.asList(4, 5, 6), page.getItems());
+        assertEquals(new Cursor(Cursor.Direction.NEXT, 6), codec.decode(page.getNext()));
+        assertEquals(new Cursor(Cursor.Direction.PREV, 4), codec.decode(page.getPrev()));
+
+        // the first rows, read in reverse order
+        Page<Integer> first = request.toPage(range(3, 1, -1), KeysetPagingTest::keys);
+        assertEquals(Arrays.asList(1, 2, 3), first.getItems());
+        assertNull(first.getPrev());
+        assertNotNull(first.getNext());
+    }
+
+    @Test
+    public void testKeysetPredicate() {
+        Keyset keyset = Keyset.of("created DESC", "id");
+
+        PageRequest first = new PageRequest(null, 10, codec);
+        assertTrue(keyset.where(first).isEmpty());
+        assertEquals("created DESC, id ASC", keyset.orderBy(first));
+
+        PageRequest next = new PageRequest(new Cursor(Cursor.Direction.NEXT, 100L, 5), 10, codec);
+        Keyset.Predicate where = keyset.where(next);
+        assertEquals("(created <= ? AND (created < ? OR id > ?))", where.getSql());
+        assertEquals(Arrays.<Object>asList(100L, 100L, 5), where.getParameters());
+        assertEquals("created DESC, id ASC", keyset.orderBy(next));
+
+        PageRequest prev = new PageRequest(new Cursor(Cursor.Direction.PREV, 100L, 5), 10, codec);
+        assertEquals("(created >= ? AND (created > ? OR id < ?))", keyset.where(prev).getSql());
+        assertEquals("created ASC, id DESC", keyset.orderBy(prev));
+
+        // mixed sort directions can not be expressed as a row value comparison
+        assertEquals("(created <= ? AND (created < ? OR id > ?))", keyset.useRowValues().where(next).getSql());
+    }
+
+    @Test
+    public void testKeysetPredicateColumns() {
+        PageRequest next = new PageRequest(new Cursor(Cursor.Direction.NEXT, 1), 10, codec);
+        assertEquals("(id > ?)", Keyset.of("id").where(next).getSql());
+
+        next = new PageRequest(new Cursor(Cursor.Direction.NEXT, "a", 2, 3), 10, codec);
+        Keyset.Predicate where = Keyset.of("name", "created", "id").where(next);
+        assertEquals("(name >= ? AND (name > ? OR (created >= ? AND (created > ? OR id > ?))))", where.getSql());
+        assertEquals(Arrays.<Object>asList("a", "a", 2, 2, 3), where.getParameters());
+    }
+
+    @Test
+    public void testKeysetRowValues() {
+        Keyset keyset = Keyset.of("created DESC", "id DESC").useRowValues();
+
+        PageRequest next = new PageRequest(new Cursor(Cursor.Direction.NEXT, 100L, 5), 10, codec);
+        Keyset.Predicate where = keyset.where(next);
+        assertEquals("(created, id) < (?, ?)", where.getSql());
+        assertEquals(Arrays.<Object>asList(100L, 5), where.getParameters());
+
+        PageRequest prev = new PageRequest(new Cursor(Cursor.Direction.PREV, 100L, 5), 10, codec);
+        assertEquals("(created, id) > (?, ?)", keyset.where(prev).getSql());
+    }
+
+    @Test(expected = StatusCodeException.class)
+    public void testKeysetMismatch() {
+        Keyset.of("id").where(new PageRequest(new Cursor(Cursor.Direction.NEXT, 1, 2), 10, codec));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidColumn() {
+        Keyset.of("id; DROP TABLE item");
+    }
+
+}
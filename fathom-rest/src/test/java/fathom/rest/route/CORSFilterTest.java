@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest.route;
+
+import fathom.rest.Context;
+import fathom.rest.MockServlets;
+import org.junit.Assert;
+import org.junit.Test;
+import ro.pippo.core.Application;
+import ro.pippo.core.Request;
+import ro.pippo.core.Response;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests the preflight decisions and response headers of the CORSFilter.
+ *
+ * @author James Moger
+ */
+public class CORSFilterTest extends Assert {
+
+    private static final String ORIGIN = "http://mydomain.com";
+
+    /**
+     * Counts the evaluations which are not answered by the decision cache.
+     */
+    static class CountingCORSFilter extends CORSFilter {
+
+        int evaluations;
+
+        CountingCORSFilter() {
+            setAllowOrigin(ORIGIN);
+            setAllowMethods("GET", "PUT");
+            setAllowHeaders("X-Api-Key", "Csrf-Token");
+            setPreflightMaxAge(600);
+        }
+
+        @Override
+        protected boolean isValidRequest(Context context, String origin, String method, Set<String> headers) {
+            evaluations++;
+            return super.isValidRequest(context, origin, method, headers);
+        }
+    }
+
+    /**
+     * A context over mocked servlet objects which records the calls of the next handler.
+     */
+    static class TestContext extends Context {
+
+        final HttpServletResponse httpServletResponse;
+
+        int next;
+
+        TestContext(Application application, HttpServletRequest httpServletRequest,
+                    HttpServletResponse httpServletResponse) {
+            super(application, new Request(httpServletRequest, application),
+                    new Response(httpServletResponse, application), Collections.emptyList());
+            this.httpServletResponse = httpServletResponse;
+        }
+
+        @Override
+        public void next() {
+            next++;
+        }
+    }
+
+    private static final Application application = MockServlets.application();
+
+    private static TestContext context(String method, Map<String, String> headers) {
+        try {
+            return new TestContext(application, MockServlets.httpServletRequest(method, "/api", headers),
+                    MockServlets.httpServletResponse(new MockServlets.CapturingOutputStream()));
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static TestContext preflight(String origin, String method, String headers) {
+        Map<String, String> map = new HashMap<>();
+        if (origin != null) {
+            map.put(CORSFilter.HEADER_ORIGIN, origin);
+        }
+        if (method != null) {
+            map.put(CORSFilter.HEADER_REQUEST_METHOD, method);
+        }
+        if (headers != null) {
+            map.put(CORSFilter.HEADER_REQUEST_HEADERS, headers);
+        }
+        return context("OPTIONS", map);
+    }
+
+    private static TestContext request(String origin, String method) {
+        Map<String, String> map = new HashMap<>();
+        if (origin != null) {
+            map.put(CORSFilter.HEADER_ORIGIN, origin);
+        }
+        return context(method, map);
+    }
+
+    private static void verifyAllowed(TestContext context) {
+        Response response = context.getResponse();
+        assertEquals(ORIGIN, response.getHeader(CORSFilter.HEADER_ALLOW_ORIGIN));
+        assertEquals(CORSFilter.HEADER_ORIGIN, response.getHeader(CORSFilter.HEADER_VARY));
+        assertEquals("600", response.getHeader(CORSFilter.HEADER_MAX_AGE));
+        verify(context.httpServletResponse).setStatus(200);
+        assertEquals(0, context.next);
+    }
+
+    private static void verifyRejected(TestContext context, int status) {
+        Response response = context.getResponse();
+        assertNull(response.getHeader(CORSFilter.HEADER_ALLOW_ORIGIN));
+        assertNull(response.getHeader(CORSFilter.HEADER_ALLOW_METHODS));
+        verify(context.httpServletResponse).setStatus(status);
+        assertEquals(0, context.next);
+    }
+
+    @Test
+    public void testCachedPreflight() {
+        CountingCORSFilter filter = new CountingCORSFilter();
+
+        TestContext first = preflight(ORIGIN, "PUT", "X-Api-Key, Content-Type");
+        filter.handle(first);
+        verifyAllowed(first);
+        assertEquals(1, filter.evaluations);
+
+        // the repeated preflight is answered from the cache with the same headers
+        TestContext second = preflight(ORIGIN, "PUT", "X-Api-Key, Content-Type");
+        filter.handle(second);
+        verifyAllowed(second);
+        assertEquals(1, filter.evaluations);
+
+        // a rejected preflight is remembered too
+        TestContext third = preflight(ORIGIN, "DELETE", null);
+        filter.handle(third);
+        TestContext fourth = preflight(ORIGIN, "DELETE", null);
+        filter.handle(fourth);
+        verifyRejected(third, 200);
+        verifyRejected(fourth, 200);
+        assertEquals(2, filter.evaluations);
+    }
+
+    @Test
+    public void testUncachedPreflight() {
+        CountingCORSFilter cached = new CountingCORSFilter();
+        CountingCORSFilter uncached = new CountingCORSFilter();
+        uncached.setPreflightCacheSize(0);
+
+        String[][] preflights = {
+                {ORIGIN, "GET", null},
+                {ORIGIN, "PUT", "csrf-token"},
+                {ORIGIN, "PUT", "X-Other"},
+                {"http://evil.com", "GET", null},
+        };
+        for (int i = 0; i < 2; i++) {
+            for (String[] preflight : preflights) {
+                Context a = preflight(preflight[0], preflight[1], preflight[2]);
+                Context b = preflight(preflight[0], preflight[1], preflight[2]);
+                assertEquals(cached.isValidPreflight(a, preflight[0], preflight[1], preflight[2]),
+                        uncached.isValidPreflight(b, preflight[0], preflight[1], preflight[2]));
+            }
+        }
+        assertEquals(preflights.length, cached.evaluations);
+        assertEquals(preflights.length * 2, uncached.evaluations);
+    }
+
+    @Test
+    public void testChangedSettingsClearTheCache() {
+        CountingCORSFilter filter = new CountingCORSFilter();
+        assertFalse(filter.isValidPreflight(preflight(ORIGIN, "DELETE", null), ORIGIN, "DELETE", null));
+
+        filter.setAllowMethods("GET", "PUT", "DELETE");
+        assertTrue(filter.isValidPreflight(preflight(ORIGIN, "DELETE", null), ORIGIN, "DELETE", null));
+        assertEquals(2, filter.evaluations);
+    }
+
+    @Test
+    public void testVaryOnSimpleRequest() {
+        CountingCORSFilter filter = new CountingCORSFilter();
+
+        TestContext context = request(ORIGIN, "GET");
+        filter.handle(context);
+        assertEquals(ORIGIN, context.getResponse().getHeader(CORSFilter.HEADER_ALLOW_ORIGIN));
+        assertEquals(CORSFilter.HEADER_ORIGIN, context.getResponse().getHeader(CORSFilter.HEADER_VARY));
+        assertEquals(1, context.next);
+
+        // without an Origin the configured origins are sent and the response does not vary
+        TestContext sameOrigin = request(null, "GET");
+        filter.handle(sameOrigin);
+        assertEquals(ORIGIN, sameOrigin.getResponse().getHeader(CORSFilter.HEADER_ALLOW_ORIGIN));
+        assertNull(sameOrigin.getResponse().getHeader(CORSFilter.HEADER_VARY));
+        assertEquals(1, sameOrigin.next);
+    }
+
+    @Test
+    public void testDisallowedPreflight() {
+        CountingCORSFilter filter = new CountingCORSFilter();
+        filter.setCorsErrorStatus(403);
+
+        TestContext origin = preflight("http://evil.com", "GET", null);
+        filter.handle(origin);
+        verifyRejected(origin, 403);
+
+        TestContext method = preflight(ORIGIN, "DELETE", null);
+        filter.handle(method);
+        verifyRejected(method, 403);
+
+        TestContext header = preflight(ORIGIN, "GET", "X-Api-Key, X-Other");
+        filter.handle(header);
+        verifyRejected(header, 403);
+
+        TestContext request = request("http://evil.com", "GET");
+        filter.handle(request);
+        verifyRejected(request, 403);
+    }
+
+    @Test
+    public void testCacheSizeBound() {
+        CountingCORSFilter filter = new CountingCORSFilter();
+        filter.setPreflightCacheSize(2);
+
+        filter.handle(preflight(ORIGIN, "GET", "x-api-key"));
+        filter.handle(preflight(ORIGIN, "GET", "csrf-token"));
+        filter.handle(preflight(ORIGIN, "PUT", null));
+        assertEquals(3, filter.evaluations);
+        assertTrue(filter.preflightDecisions.size() <= 2);
+
+        // the eldest decision was evicted and is evaluated again
+        filter.handle(preflight(ORIGIN, "GET", "x-api-key"));
+        assertEquals(4, filter.evaluations);
+        assertTrue(filter.preflightDecisions.size() <= 2);
+    }
+
+}
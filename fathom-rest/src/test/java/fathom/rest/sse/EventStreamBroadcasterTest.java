@@ -0,0 +1,328 @@
+/*
+ * Copyright (C) 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.rest.sse;
+
+import com.google.common.eventbus.EventBus;
+import fathom.rest.Context;
+import fathom.rest.MockServlets;
+import fathom.rest.RestServlet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests event encoding, replay, overflow policies, heartbeats and EventBus bridging.
+ *
+ * @author James Moger
+ */
+public class EventStreamBroadcasterTest extends Assert {
+
+    public static class Shipped {
+        final int order;
+
+        Shipped(int order) {
+            this.order = order;
+        }
+
+        @Override
+        public String toString() {
+            return "order " + order;
+        }
+    }
+
+    /**
+     * Behaves like Undertow: isReady() fails until a WriteListener is registered.
+     */
+    static class TestOutputStream extends ServletOutputStream {
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        volatile boolean ready = true;
+
+        volatile WriteListener listener;
+
+        @Override
+        public boolean isReady() {
+            if (listener == null) {
+                throw new IllegalStateException("No WriteListener");
+            }
+            return ready;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            this.listener = writeListener;
+            try {
+                writeListener.onWritePossible();
+            } catch (IOException e) {
+                writeListener.onError(e);
+            }
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            bytes.write(b);
+        }
+
+        void writable() throws IOException {
+            ready = true;
+            listener.onWritePossible();
+        }
+
+        synchronized String text() {
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String frame(ServerSentEvent event) {
+        return new String(event.getFrame(), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static EventStream newStream(TestOutputStream outputStream, int queueSize,
+                                         EventStream.OverflowPolicy overflowPolicy) {
+        EventStream stream = new EventStream(new EventStreamBroadcaster(), mock(AsyncContext.class), outputStream,
+                null, queueSize, overflowPolicy);
+        outputStream.setWriteListener(stream);
+        return stream;
+    }
+
+    private static Context newContext(TestOutputStream outputStream, String lastEventId) throws Exception {
+        Map<String, String> headers = new HashMap<>();
+        if (lastEventId != null) {
+            headers.put(EventStreamBroadcaster.HEADER_LAST_EVENT_ID, lastEventId);
+        }
+        HttpServletRequest httpRequest = MockServlets.httpServletRequest("GET", "/events", headers);
+        when(httpRequest.startAsync()).thenReturn(mock(AsyncContext.class));
+        HttpServletResponse httpResponse = MockServlets.httpServletResponse(outputStream);
+
+        return MockServlets.context(MockServlets.application(), httpRequest, httpResponse);
+    }
+
+    @Test
+    public void testFrame() {
+        assertEquals("data: hello\n\n", frame(new ServerSentEvent("hello")));
+        assertEquals("event: greeting\ndata: line 1\ndata: line 2\n\n", frame(new ServerSentEvent("greeting", "line 1\r\nline 2")));
+        assertEquals("data: \n\n", frame(new ServerSentEvent(null)));
+    }
+
+    @Test
+    public void testPublishAssignsIds() {
+        EventStreamBroadcaster broadcaster = new EventStreamBroadcaster();
+        assertEquals(0, broadcaster.publish(new ServerSentEvent("a")).getId());
+        ServerSentEvent b = broadcaster.publish(new ServerSentEvent("b"));
+        assertEquals(1, b.getId());
+        assertEquals("id: 1\ndata: b\n\n", frame(b));
+    }
+
+    @Test
+    public void testReplay() {
+        EventStreamBroadcaster broadcaster = new EventStreamBroadcaster();
+        broadcaster.setReplaySize(3);
+        for (int i = 0; i < 5; i++) {
+            broadcaster.publish(new ServerSentEvent(String.valueOf(i)));
+        }
+
+        List<ServerSentEvent> events = broadcaster.getEventsSince(2);
+        assertEquals(2, events.size());
+        assertEquals(3, events.get(0).getId());
+        assertEquals(4, events.get(1).getId());
+
+        // events older than the ring buffer can not be replayed
+        assertEquals(3, broadcaster.getEventsSince(-1).size());
+        assertTrue(broadcaster.getEventsSince(4).isEmpty());
+
+        broadcaster.setReplaySize(2);
+        events = broadcaster.getEventsSince(-1);
+        assertEquals(2, events.size());
+        assertEquals(3, events.get(0).getId());
+
+        broadcaster.setReplaySize(0);
+        broadcaster.publish(new ServerSentEvent("5"));
+        assertTrue(broadcaster.getEventsSince(-1).isEmpty());
+    }
+
+    @Test
+    public void testEventBusBridge() {
+        EventBus eventBus = new EventBus();
+        EventStreamBroadcaster broadcaster = new EventStreamBroadcaster();
+        broadcaster.subscribe(eventBus, Shipped.class, e -> e.order % 2 == 0,
+                e -> new ServerSentEvent("shipped", String.valueOf(e.order)));
+
+        eventBus.post(new Shipped(1));
+        eventBus.post(new Shipped(2));
+        eventBus.post("ignored");
+
+        List<ServerSentEvent> events = broadcaster.getEventsSince(-1);
+        assertEquals(1, events.size());
+        assertEquals("shipped", events.get(0).getEvent());
+        assertEquals("2", events.get(0).getData());
+
+        broadcaster.close();
+        eventBus.post(new Shipped(4));
+        assertEquals(1, broadcaster.getEventsSince(-1).size());
+    }
+
+    @Test
+    public void testOpenReplaysLastEventId() throws Exception {
+        EventStreamBroadcaster broadcaster = new EventStreamBroadcaster();
+        broadcaster.setRetry(0);
+        broadcaster.setHeartbeatInterval(0);
+        for (int i = 0; i < 3; i++) {
+            broadcaster.publish(new ServerSentEvent(String.valueOf(i)));
+        }
+
+        TestOutputStream outputStream = new TestOutputStream();
+        EventStream stream = broadcaster.open(newContext(outputStream, "0"), null);
+        assertFalse(stream.isClosed());
+        assertEquals(1, broadcaster.getClientCount());
+        assertEquals("id: 1\ndata: 1\n\nid: 2\ndata: 2\n\n", outputStream.text());
+
+        broadcaster.publish(new ServerSentEvent("3"));
+        assertTrue(outputStream.text().endsWith("id: 3\ndata: 3\n\n"));
+
+        broadcaster.close();
+        assertTrue(stream.isClosed());
+        assertEquals(0, broadcaster.getClientCount());
+    }
+
+    @Test
+    public void testOpenOnBulkhead() throws Exception {
+        EventStreamBroadcaster broadcaster = new EventStreamBroadcaster();
+        broadcaster.setRetry(0);
+        broadcaster.setHeartbeatInterval(0);
+
+        // the bulkhead has already started asynchronous processing of the request
+        TestOutputStream outputStream = new TestOutputStream();
+        Context context = newContext(outputStream, null);
+        HttpServletRequest httpRequest = context.getRequest().getHttpServletRequest();
+        AsyncContext asyncContext = mock(AsyncContext.class);
+        when(httpRequest.isAsyncStarted()).thenReturn(true);
+        when(httpRequest.getAsyncContext()).thenReturn(asyncContext);
+
+        EventStream stream = broadcaster.open(context, null);
+        verify(httpRequest, never()).startAsync();
+        verify(asyncContext).addListener(stream);
+        verify(httpRequest).setAttribute(RestServlet.ASYNC_OWNER_ATTRIBUTE, stream);
+
+        broadcaster.close();
+        verify(asyncContext).complete();
+    }
+
+    @Test
+    public void testDropOldest() throws IOException {
+        TestOutputStream outputStream = new TestOutputStream();
+        EventStream stream = newStream(outputStream, 2, EventStream.OverflowPolicy.DROP_OLDEST);
+        outputStream.ready = false;
+        stream.send(bytes("a"));
+        stream.send(bytes("b"));
+        stream.send(bytes("c"));
+        assertEquals(1, stream.getDroppedCount());
+        assertFalse(stream.isClosed());
+
+        outputStream.writable();
+        assertEquals("bc", outputStream.text());
+    }
+
+    @Test
+    public void testDropNewest() throws IOException {
+        TestOutputStream outputStream = new TestOutputStream();
+        EventStream stream = newStream(outputStream, 2, EventStream.OverflowPolicy.DROP_NEWEST);
+        outputStream.ready = false;
+        stream.send(bytes("a"));
+        stream.send(bytes("b"));
+        stream.send(bytes("c"));
+        assertEquals(1, stream.getDroppedCount());
+        assertFalse(stream.isClosed());
+
+        outputStream.writable();
+        assertEquals("ab", outputStream.text());
+    }
+
+    @Test
+    public void testDisconnect() {
+        TestOutputStream outputStream = new TestOutputStream();
+        AsyncContext asyncContext = mock(AsyncContext.class);
+        EventStream stream = new EventStream(new EventStreamBroadcaster(), asyncContext, outputStream,
+                null, 2, EventStream.OverflowPolicy.DISCONNECT);
+        outputStream.setWriteListener(stream);
+        outputStream.ready = false;
+        stream.send(bytes("a"));
+        stream.send(bytes("b"));
+        assertFalse(stream.isClosed());
+
+        stream.send(bytes("c"));
+        assertTrue(stream.isClosed());
+        verify(asyncContext).complete();
+
+        // a closed stream ignores further frames
+        stream.send(bytes("d"));
+        assertEquals("", outputStream.text());
+    }
+
+    @Test
+    public void testHeartbeatOnlyWhenIdle() throws IOException {
+        TestOutputStream outputStream = new TestOutputStream();
+        EventStream stream = newStream(outputStream, 4, EventStream.OverflowPolicy.DROP_NEWEST);
+        stream.heartbeat(bytes(":\n\n"));
+        assertEquals(":\n\n", outputStream.text());
+
+        outputStream.ready = false;
+        stream.send(bytes("a"));
+        stream.heartbeat(bytes(":\n\n"));
+        outputStream.writable();
+        assertEquals(":\n\na", outputStream.text());
+    }
+
+    @Test
+    public void testHeartbeatSchedule() throws Exception {
+        EventStreamBroadcaster broadcaster = new EventStreamBroadcaster();
+        broadcaster.setRetry(0);
+        broadcaster.setHeartbeatInterval(10);
+
+        TestOutputStream outputStream = new TestOutputStream();
+        broadcaster.open(newContext(outputStream, null), null);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!outputStream.text().startsWith(":\n\n") && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        broadcaster.close();
+        assertTrue(outputStream.text().startsWith(":\n\n"));
+    }
+
+}
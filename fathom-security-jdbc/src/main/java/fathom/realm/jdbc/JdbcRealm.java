@@ -24,6 +24,7 @@ import com.typesafe.config.Config;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import fathom.authc.StandardCredentials;
+import fathom.authz.AuthorizationPool;
 import fathom.authz.Role;
 import fathom.exception.FathomException;
 import fathom.realm.Account;
@@ -281,7 +282,7 @@ public class JdbcRealm extends CachingRealm {
             }
 
             StandardCredentials requestCredentials = new StandardCredentials(username, password);
-            if (validatePassword(requestCredentials, storedCredentials)) {
+            if (verifyPassword(requestCredentials, storedCredentials)) {
                 log.debug("Authentication succeeded for '{}' against '{}'", username, getRealmName());
 
                 setAuthorizationsByQuery(conn, account);
@@ -322,6 +323,7 @@ public class JdbcRealm extends CachingRealm {
                 account = getAccount(conn, username);
                 if (account != null) {
                     setAuthorizationsByQuery(conn, account);
+                    cacheAccount(account);
                 }
             } catch (SQLException e) {
                 log.error("There was an SQL error while getting account '{}'", username, e);
@@ -331,6 +333,22 @@ public class JdbcRealm extends CachingRealm {
         return account;
     }
 
+    @Override
+    protected boolean supportsReload() {
+        return true;
+    }
+
+    @Override
+    protected Account reloadAccount(String username) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            Account account = getAccount(conn, username);
+            if (account != null) {
+                setAuthorizationsByQuery(conn, account);
+            }
+            return account;
+        }
+    }
+
     protected Account getAccount(Connection conn, String username) throws SQLException {
         Account account = null;
         try (PreparedStatement ps = conn.prepareStatement(accountQuery)) {
@@ -432,10 +450,7 @@ public class JdbcRealm extends CachingRealm {
                     if (Strings.isNullOrEmpty(name) || permissions.isEmpty()) {
                         log.warn("Skipping defined role '{}':'{}' because of null/empty values", name, value);
                     } else {
-                        Role role = new Role(name);
-                        for (String permission : permissions) {
-                            role.addPermission(permission);
-                        }
+                        Role role = AuthorizationPool.role(name, permissions.toArray(new String[permissions.size()]));
                         declaredRoles.put(name, role);
                         log.debug("Added defined role '{}':'{}'", name, value);
                     }
@@ -23,6 +23,7 @@ import com.google.common.cache.CacheBuilder;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigValue;
 import fathom.authc.AuthenticationToken;
+import fathom.authz.AuthorizationPool;
 import fathom.authz.Role;
 import fathom.exception.FathomException;
 import fathom.realm.Account;
@@ -142,7 +143,7 @@ public class KeycloakRealm implements Realm, UserSessionManagement {
             for (Map.Entry<String, ConfigValue> entry : roleConfig.entrySet()) {
                 String name = entry.getKey();
                 List<String> permissions = roleConfig.getStringList(name);
-                Role role = new Role(name, permissions.toArray(new String[permissions.size()]));
+                Role role = AuthorizationPool.role(name, permissions.toArray(new String[permissions.size()]));
                 roleMap.put(role.getName(), role);
             }
         }
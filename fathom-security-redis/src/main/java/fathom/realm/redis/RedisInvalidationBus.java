@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.realm.redis;
+
+import com.google.common.base.Strings;
+import com.typesafe.config.Config;
+import fathom.exception.FathomException;
+import fathom.security.Invalidation;
+import fathom.security.InvalidationBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * RedisInvalidationBus broadcasts account and role invalidations with Redis pub/sub.
+ * <p>
+ * Each node publishes on, and subscribes to, the same channel.  The subscription is
+ * re-established after a connection failure.  Invalidations published while a node is
+ * disconnected are lost, so every resubscription first delivers an invalidation of all
+ * accounts to the listeners before the channel's messages are delivered again.
+ * </p>
+ * <pre>
+ * invalidation {
+ *   type = "fathom.realm.redis.RedisInvalidationBus"
+ *   url = "redis://localhost:6379"
+ *   channel = "fathom:invalidations"
+ *   reconnectDelay = 5 seconds
+ * }
+ * </pre>
+ *
+ * @author James Moger
+ */
+public class RedisInvalidationBus implements InvalidationBus {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisInvalidationBus.class);
+
+    /**
+     * The origin of the invalidations which flush the caches after a resubscription.
+     */
+    static final String RESUBSCRIBE_ORIGIN = "redis-resubscribe";
+
+    private final List<Consumer<Invalidation>> listeners = new CopyOnWriteArrayList<>();
+
+    private String redisUrl = "redis://localhost:6379";
+
+    private String channel = "fathom:invalidations";
+
+    private long reconnectDelayMillis = TimeUnit.SECONDS.toMillis(5);
+
+    private JedisPool pool;
+
+    private volatile boolean running;
+
+    private volatile JedisPubSub subscriber;
+
+    private Thread subscriberThread;
+
+    @Override
+    public void setup(Config config) {
+        if (config.hasPath("url")) {
+            redisUrl = Strings.emptyToNull(config.getString("url"));
+        }
+
+        if (config.hasPath("channel")) {
+            channel = Strings.emptyToNull(config.getString("channel"));
+        }
+
+        if (config.hasPath("reconnectDelay")) {
+            reconnectDelayMillis = config.getDuration("reconnectDelay", TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (redisUrl == null || channel == null) {
+            throw new FathomException("The Redis invalidation bus requires a 'url' and a 'channel'!");
+        }
+
+        log.debug("Broadcasting invalidations on '{}' channel '{}'", redisUrl, channel);
+        try {
+            pool = new JedisPool(URI.create(redisUrl));
+        } catch (JedisException e) {
+            throw new FathomException("Failed to create a Redis pool!", e);
+        }
+
+        running = true;
+        subscriberThread = new Thread(this::subscribe, "fathom-invalidations");
+        subscriberThread.setDaemon(true);
+        subscriberThread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+
+        JedisPubSub pubSub = subscriber;
+        if (pubSub != null && pubSub.isSubscribed()) {
+            try {
+                pubSub.unsubscribe();
+            } catch (JedisException e) {
+                log.debug("Failed to unsubscribe from '{}'", channel, e);
+            }
+        }
+
+        if (subscriberThread != null) {
+            subscriberThread.interrupt();
+            subscriberThread = null;
+        }
+
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+    @Override
+    public void publish(Invalidation invalidation) {
+        try {
+            publish(invalidation.encode());
+        } catch (JedisConnectionException e) {
+            // the pooled connection may have been dropped, retry once with a new connection
+            try {
+                publish(invalidation.encode());
+            } catch (JedisException x) {
+                log.error("Failed to publish {} to '{}'", invalidation, channel, x);
+            }
+        } catch (JedisException e) {
+            log.error("Failed to publish {} to '{}'", invalidation, channel, e);
+        }
+    }
+
+    private void publish(String message) {
+        try (Jedis jedis = pool.getResource()) {
+            jedis.publish(channel, message);
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<Invalidation> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Returns true if the subscription to the channel is established.
+     *
+     * @return true if subscribed
+     */
+    public boolean isSubscribed() {
+        JedisPubSub pubSub = subscriber;
+        return pubSub != null && pubSub.isSubscribed();
+    }
+
+    /**
+     * Maintains the channel subscription until the bus is stopped.
+     */
+    private void subscribe() {
+        boolean[] subscribedBefore = {false};
+        while (running) {
+            try (Jedis jedis = new Jedis(URI.create(redisUrl))) {
+                subscriber = new JedisPubSub() {
+                    @Override
+                    public void onSubscribe(String channel, int subscribedChannels) {
+                        if (!running) {
+                            // stopped before the subscription was established
+                            unsubscribe();
+                        } else if (subscribedBefore[0]) {
+                            // invalidations may have been missed while disconnected
+                            log.info("Resubscribed to '{}', invalidating all cached accounts", channel);
+                            deliver(Invalidation.all(RESUBSCRIBE_ORIGIN));
+                        }
+                        subscribedBefore[0] = true;
+                    }
+
+                    @Override
+                    public void onMessage(String channel, String message) {
+                        deliver(message);
+                    }
+                };
+                // blocks until unsubscribed or disconnected
+                jedis.subscribe(subscriber, channel);
+            } catch (JedisException e) {
+                if (running) {
+                    log.warn("Lost the subscription to '{}', reconnecting in {} msecs", channel, reconnectDelayMillis, e);
+                }
+            }
+
+            if (running) {
+                try {
+                    Thread.sleep(reconnectDelayMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void deliver(String message) {
+        Invalidation invalidation = Invalidation.decode(message);
+        if (invalidation == null) {
+            log.warn("Ignoring malformed invalidation '{}' on '{}'", message, channel);
+            return;
+        }
+        deliver(invalidation);
+    }
+
+    private void deliver(Invalidation invalidation) {
+        for (Consumer<Invalidation> listener : listeners) {
+            try {
+                listener.accept(invalidation);
+            } catch (Exception e) {
+                log.error("Failed to apply {}", invalidation, e);
+            }
+        }
+    }
+
+}
@@ -165,7 +165,7 @@ public class RedisRealm extends CachingRealm {
 
             StandardCredentials requestCredentials = new StandardCredentials(username, password);
             StandardCredentials storedCredentials = new StandardCredentials(username, storedPassword);
-            if (validatePassword(requestCredentials, storedCredentials)) {
+            if (verifyPassword(requestCredentials, storedCredentials)) {
                 log.debug("Authentication succeeded for '{}' against '{}'", username, getRealmName());
 
                 String name = null;
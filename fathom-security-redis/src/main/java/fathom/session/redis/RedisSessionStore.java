@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.session.redis;
+
+import com.google.common.base.Strings;
+import fathom.conf.Settings;
+import fathom.exception.FathomException;
+import fathom.session.SessionStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * RedisSessionStore keeps serialized sessions in Redis so that sessions survive
+ * restarts and are shared by all nodes of a cluster.
+ * <p>
+ * Sessions are stored with {@code PSETEX} so that Redis expires idle sessions.
+ * </p>
+ * <pre>
+ * undertow.sessionStore = fathom.session.redis.RedisSessionStore
+ * sessions.redis {
+ *   url = "redis://localhost:6379/0"
+ *   prefix = "fathom:session:"
+ * }
+ * </pre>
+ *
+ * @author James Moger
+ */
+public class RedisSessionStore implements SessionStore {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisSessionStore.class);
+
+    private final String redisUrl;
+
+    private final String prefix;
+
+    private JedisPool pool;
+
+    public RedisSessionStore(Settings settings) {
+        this(settings.getString("sessions.redis.url", "redis://localhost:6379/0"),
+                settings.getString("sessions.redis.prefix", "fathom:session:"));
+    }
+
+    public RedisSessionStore(String redisUrl, String prefix) {
+        this.redisUrl = redisUrl;
+        this.prefix = Strings.nullToEmpty(prefix);
+    }
+
+    @Override
+    public void start() {
+        log.debug("Storing sessions in '{}' with prefix '{}'", redisUrl, prefix);
+        try {
+            pool = new JedisPool(URI.create(redisUrl));
+        } catch (JedisException e) {
+            throw new FathomException("Failed to create a Redis pool!", e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+    @Override
+    public byte[] get(String id) {
+        try (Jedis jedis = pool.getResource()) {
+            return jedis.get(key(id));
+        }
+    }
+
+    @Override
+    public void put(String id, byte[] data, int ttlSeconds) {
+        try (Jedis jedis = pool.getResource()) {
+            if (ttlSeconds > 0) {
+                jedis.psetex(key(id), ttlSeconds * 1000L, data);
+            } else {
+                jedis.set(key(id), data);
+            }
+        }
+    }
+
+    @Override
+    public void remove(String id) {
+        try (Jedis jedis = pool.getResource()) {
+            jedis.del(key(id));
+        }
+    }
+
+    @Override
+    public Set<String> getIds() {
+        Set<String> ids = new HashSet<>();
+        ScanParams params = new ScanParams().match(prefix + "*").count(1000);
+        try (Jedis jedis = pool.getResource()) {
+            String cursor = ScanParams.SCAN_POINTER_START;
+            do {
+                ScanResult<String> result = jedis.scan(cursor, params);
+                for (String key : result.getResult()) {
+                    ids.add(key.substring(prefix.length()));
+                }
+                cursor = result.getStringCursor();
+            } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+        }
+        return ids;
+    }
+
+    private byte[] key(String id) {
+        return (prefix + id).getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.realm.redis;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import fathom.security.Invalidation;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the RedisInvalidationBus against an embedded Redis stand-in.
+ *
+ * @author James Moger
+ */
+public class RedisInvalidationBusTest extends Assert {
+
+    private static final String CHANNEL = "test:invalidations";
+
+    private StandInRedis redis;
+
+    private RedisInvalidationBus node1;
+
+    private RedisInvalidationBus node2;
+
+    private final BlockingQueue<Invalidation> received1 = new LinkedBlockingQueue<>();
+
+    private final BlockingQueue<Invalidation> received2 = new LinkedBlockingQueue<>();
+
+    @Before
+    public void start() throws Exception {
+        redis = new StandInRedis();
+        node1 = createBus(received1);
+        node2 = createBus(received2);
+        awaitSubscribers(2);
+    }
+
+    @After
+    public void stop() throws IOException {
+        node1.stop();
+        node2.stop();
+        redis.close();
+    }
+
+    private RedisInvalidationBus createBus(BlockingQueue<Invalidation> received) {
+        Config config = ConfigFactory.parseString("url = \"redis://127.0.0.1:" + redis.getPort() + "\"\n"
+                + "channel = \"" + CHANNEL + "\"\n"
+                + "reconnectDelay = 50 ms");
+        RedisInvalidationBus bus = new RedisInvalidationBus();
+        bus.setup(config);
+        bus.subscribe(received::add);
+        bus.start();
+        return bus;
+    }
+
+    private void awaitSubscribers(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (redis.getSubscriberCount(CHANNEL) < count) {
+            assertTrue("Timed out waiting for subscribers", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testBroadcast() throws InterruptedException {
+        // the first subscription does not flush
+        assertTrue(received1.isEmpty());
+        assertTrue(received2.isEmpty());
+
+        Invalidation account = Invalidation.account("node1", "james");
+        node1.publish(account);
+        assertEquals(account, received2.poll(5, TimeUnit.SECONDS));
+        assertEquals(account, received1.poll(5, TimeUnit.SECONDS));
+
+        Invalidation role = Invalidation.role("node2", "admin");
+        node2.publish(role);
+        assertEquals(role, received1.poll(5, TimeUnit.SECONDS));
+        assertEquals(role, received2.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testResubscribe() throws InterruptedException {
+        redis.disconnectAll();
+        // let the dropped subscriptions be discarded before waiting for the new ones
+        Thread.sleep(20);
+        awaitSubscribers(2);
+
+        // each node flushes its caches after resubscribing
+        for (BlockingQueue<Invalidation> received : Arrays.asList(received1, received2)) {
+            Invalidation flush = received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(flush);
+            assertEquals(Invalidation.Type.ALL, flush.getType());
+            assertEquals(RedisInvalidationBus.RESUBSCRIBE_ORIGIN, flush.getOrigin());
+        }
+
+        Invalidation all = Invalidation.all("node1");
+        node1.publish(all);
+        assertEquals(all, received2.poll(5, TimeUnit.SECONDS));
+    }
+
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.realm.redis;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * A single-database, in-memory stand-in for Redis which speaks the subset
+ * of the Redis protocol used by the stores, realms, and buses under test.
+ *
+ * @author James Moger
+ */
+public class StandInRedis {
+
+    private final Map<String, byte[]> values = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> expirations = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<OutputStream>> subscribers = new ConcurrentHashMap<>();
+
+    private final Set<Socket> sockets = new CopyOnWriteArraySet<>();
+
+    private final ServerSocket serverSocket;
+
+    public StandInRedis() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                sockets.add(socket);
+                    Thread connection = new Thread(() -> serve(socket));
+                    connection.setDaemon(true);
+                    connection.start();
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public boolean containsKey(String key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Returns the number of connections subscribed to the channel.
+     */
+    public int getSubscriberCount(String channel) {
+        Set<OutputStream> outs = subscribers.get(channel);
+        return outs == null ? 0 : outs.size();
+    }
+
+    /**
+     * Drops all client connections but continues to accept new connections.
+     */
+    public void disconnectAll() {
+        for (Socket socket : sockets) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        serverSocket.close();
+        disconnectAll();
+    }
+
+    private void serve(Socket socket) {
+        Set<String> channels = new LinkedHashSet<>();
+        OutputStream out = null;
+        try (Socket s = socket) {
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            out = s.getOutputStream();
+            List<byte[]> command;
+            while ((command = readCommand(in)) != null) {
+                synchronized (out) {
+                    execute(command, out, channels);
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // connection closed
+        } finally {
+            sockets.remove(socket);
+            for (String channel : channels) {
+                subscribers.get(channel).remove(out);
+            }
+        }
+    }
+
+    private void execute(List<byte[]> command, OutputStream out, Set<String> channels) throws IOException {
+        String name = string(command.get(0)).toUpperCase();
+        switch (name) {
+            case "PING":
+                write(out, "+PONG\r\n");
+                break;
+            case "SELECT":
+            case "QUIT":
+                write(out, "+OK\r\n");
+                break;
+            case "SET":
+                values.put(string(command.get(1)), command.get(2));
+                expirations.remove(string(command.get(1)));
+                write(out, "+OK\r\n");
+                break;
+            case "PSETEX":
+                values.put(string(command.get(1)), command.get(3));
+                expirations.put(string(command.get(1)), System.currentTimeMillis() + Long.parseLong(string(command.get(2))));
+                write(out, "+OK\r\n");
+                break;
+            case "GET":
+                byte[] value = get(string(command.get(1)));
+                if (value == null) {
+                    write(out, "$-1\r\n");
+                } else {
+                    writeBulk(out, value);
+                }
+                break;
+            case "DEL":
+                int removed = 0;
+                for (byte[] key : command.subList(1, command.size())) {
+                    if (values.remove(string(key)) != null) {
+                        removed++;
+                    }
+                }
+                write(out, ":" + removed + "\r\n");
+                break;
+            case "SCAN":
+                String prefix = "";
+                for (int i = 2; i < command.size() - 1; i++) {
+                    if ("MATCH".equalsIgnoreCase(string(command.get(i)))) {
+                        prefix = string(command.get(i + 1)).replace("*", "");
+                    }
+                }
+                List<String> keys = new ArrayList<>();
+                for (String key : new ArrayList<>(values.keySet())) {
+                    if (key.startsWith(prefix) && get(key) != null) {
+                        keys.add(key);
+                    }
+                }
+                write(out, "*2\r\n");
+                writeBulk(out, "0".getBytes(StandardCharsets.UTF_8));
+                write(out, "*" + keys.size() + "\r\n");
+                for (String key : keys) {
+                    writeBulk(out, key.getBytes(StandardCharsets.UTF_8));
+                }
+                break;
+            case "SUBSCRIBE":
+                for (byte[] channel : command.subList(1, command.size())) {
+                    channels.add(string(channel));
+                    subscribers.computeIfAbsent(string(channel), key -> new CopyOnWriteArraySet<>()).add(out);
+                    writeSubscription(out, "subscribe", channel, channels.size());
+                }
+                break;
+            case "UNSUBSCRIBE":
+                List<String> unsubscribe = new ArrayList<>(channels);
+                if (command.size() > 1) {
+                    unsubscribe.clear();
+                    for (byte[] channel : command.subList(1, command.size())) {
+                        unsubscribe.add(string(channel));
+                    }
+                }
+                for (String channel : unsubscribe) {
+                    channels.remove(channel);
+                    Set<OutputStream> outs = subscribers.get(channel);
+                    if (outs != null) {
+                        outs.remove(out);
+                    }
+                    writeSubscription(out, "unsubscribe", channel.getBytes(StandardCharsets.UTF_8), channels.size());
+                }
+                break;
+            case "PUBLISH":
+                String channel = string(command.get(1));
+                Set<OutputStream> outs = subscribers.get(channel);
+                int received = 0;
+                if (outs != null) {
+                    for (OutputStream subscriber : outs) {
+                        synchronized (subscriber) {
+                            write(subscriber, "*3\r\n");
+                            writeBulk(subscriber, "message".getBytes(StandardCharsets.UTF_8));
+                            writeBulk(subscriber, command.get(1));
+                            writeBulk(subscriber, command.get(2));
+                            subscriber.flush();
+                        }
+                        received++;
+                    }
+                }
+                write(out, ":" + received + "\r\n");
+                break;
+            default:
+                write(out, "-ERR unknown command '" + name + "'\r\n");
+        }
+    }
+
+    private byte[] get(String key) {
+        Long expires = expirations.get(key);
+        if (expires != null && expires < System.currentTimeMillis()) {
+            values.remove(key);
+            expirations.remove(key);
+            return null;
+        }
+        return values.get(key);
+    }
+
+    private static List<byte[]> readCommand(InputStream in) throws IOException {
+        String header = readLine(in);
+        if (header == null) {
+            return null;
+        }
+        int count = Integer.parseInt(header.substring(1));
+        List<byte[]> args = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = Integer.parseInt(readLine(in).substring(1));
+            byte[] arg = new byte[length];
+            int read = 0;
+            while (read < length) {
+                int n = in.read(arg, read, length - read);
+                if (n < 0) {
+                    return null;
+                }
+                read += n;
+            }
+            readLine(in);
+            args.add(arg);
+        }
+        return args;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\r') {
+                in.read();
+                return line.toString("UTF-8");
+            }
+            line.write(b);
+        }
+        return null;
+    }
+
+    private static void writeSubscription(OutputStream out, String kind, byte[] channel, int count) throws IOException {
+        write(out, "*3\r\n");
+        writeBulk(out, kind.getBytes(StandardCharsets.UTF_8));
+        writeBulk(out, channel);
+        write(out, ":" + count + "\r\n");
+    }
+
+    private static void writeBulk(OutputStream out, byte[] value) throws IOException {
+        write(out, "$" + value.length + "\r\n");
+        out.write(value);
+        write(out, "\r\n");
+    }
+
+    private static void write(OutputStream out, String value) throws IOException {
+        out.write(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String string(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
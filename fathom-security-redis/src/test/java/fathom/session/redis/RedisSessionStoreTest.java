@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.session.redis;
+
+import fathom.realm.redis.StandInRedis;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * Tests the RedisSessionStore against an embedded stand-in which speaks
+ * the subset of the Redis protocol used by the store.
+ *
+ * @author James Moger
+ */
+public class RedisSessionStoreTest extends Assert {
+
+    private StandInRedis redis;
+
+    private RedisSessionStore store;
+
+    @Before
+    public void start() throws IOException {
+        redis = new StandInRedis();
+        store = new RedisSessionStore("redis://127.0.0.1:" + redis.getPort() + "/2", "test:session:");
+        store.start();
+    }
+
+    @After
+    public void stop() throws IOException {
+        store.stop();
+        redis.close();
+    }
+
+    @Test
+    public void testStoreAndRemove() {
+        byte[] data = {0, 1, 2, (byte) 0xff};
+        assertNull(store.get("abc"));
+
+        store.put("abc", data, 60);
+        assertArrayEquals(data, store.get("abc"));
+        assertTrue(redis.containsKey("test:session:abc"));
+
+        store.put("def", new byte[]{42}, 0);
+        assertEquals(new HashSet<>(Arrays.asList("abc", "def")), store.getIds());
+
+        store.remove("abc");
+        assertNull(store.get("abc"));
+        assertEquals(new HashSet<>(Arrays.asList("def")), store.getIds());
+    }
+
+    @Test
+    public void testExpiration() throws InterruptedException {
+        store.put("abc", new byte[]{1}, 1);
+        assertNotNull(store.get("abc"));
+        Thread.sleep(1100);
+        assertNull(store.get("abc"));
+    }
+
+}
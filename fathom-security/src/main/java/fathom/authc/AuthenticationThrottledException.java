@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.authc;
+
+import fathom.exception.StatusCodeException;
+
+/**
+ * Thrown when authentication attempts are rejected because of too many recent failures.
+ *
+ * @author James Moger
+ */
+public class AuthenticationThrottledException extends StatusCodeException {
+
+    private final long retryAfter;
+
+    public AuthenticationThrottledException(long retryAfter, String message, Object... args) {
+        super(429, message, args);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Returns the number of seconds to wait before trying again.
+     *
+     * @return seconds to wait
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.authz;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * AuthorizationPool shares canonical {@link Permission} and {@link Role} instances
+ * between accounts and realms.
+ * <p>
+ * Permissions are interned per permission type, so a {@link DomainPermission} is never
+ * substituted for a plain Permission.  Roles are canonical per name and permission set
+ * and are immutable; their permissions are compiled once per role definition rather than
+ * once per account.  The pool only holds weak references so unused definitions are
+ * reclaimed by the garbage collector.
+ * </p>
+ *
+ * @author James Moger
+ */
+public final class AuthorizationPool {
+
+    private static final ClassValue<Interner<Permission>> permissions = new ClassValue<Interner<Permission>>() {
+        @Override
+        protected Interner<Permission> computeValue(Class<?> type) {
+            return Interners.newWeakInterner();
+        }
+    };
+
+    private static final Cache<RoleKey, Role> roles = CacheBuilder.newBuilder().weakValues().build();
+
+    private AuthorizationPool() {
+    }
+
+    /**
+     * Returns the canonical, parsed form of a permission string.
+     *
+     * @param permission
+     * @return the canonical permission
+     */
+    public static Permission permission(String permission) {
+        return intern(new Permission(permission));
+    }
+
+    /**
+     * Returns the canonical instance of a permission.
+     *
+     * @param permission
+     * @return the canonical permission
+     */
+    @SuppressWarnings("unchecked")
+    public static <P extends Permission> P intern(P permission) {
+        return (P) permissions.get(permission.getClass()).intern(permission);
+    }
+
+    /**
+     * Returns the canonical, immutable role with the specified name and permissions.
+     *
+     * @param name
+     * @param permissions
+     * @return the canonical role
+     */
+    public static Role role(String name, String... permissions) {
+        Set<Permission> set = new LinkedHashSet<>();
+        for (String permission : permissions) {
+            set.add(permission(permission));
+        }
+        return role(name, set);
+    }
+
+    /**
+     * Returns the canonical, immutable role with the same name and permissions as the
+     * specified role.
+     *
+     * @param role
+     * @return the canonical role
+     */
+    public static Role role(Role role) {
+        if (role.isImmutable()) {
+            // immutable roles are only created by the pool
+            return role;
+        }
+        return role(role.getName(), role.getPermissions());
+    }
+
+    private static Role role(String name, Collection<Permission> permissions) {
+        Set<Permission> set = new LinkedHashSet<>();
+        for (Permission permission : permissions) {
+            set.add(intern(permission));
+        }
+
+        final Set<Permission> canonicalPermissions = set.isEmpty()
+                ? Collections.emptySet() : Collections.unmodifiableSet(set);
+        final String canonicalName = name.trim();
+        try {
+            return roles.get(new RoleKey(canonicalName, canonicalPermissions),
+                    () -> new Role(canonicalName, canonicalPermissions, true));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw new IllegalStateException("Failed to create role " + name, e.getCause());
+        }
+    }
+
+    /**
+     * Identifies a role definition by its name and its permissions.
+     */
+    private static final class RoleKey {
+
+        final String name;
+
+        final Set<Permission> permissions;
+
+        final int hashCode;
+
+        RoleKey(String name, Set<Permission> permissions) {
+            this.name = name;
+            this.permissions = permissions;
+            this.hashCode = Arrays.hashCode(new Object[]{name, permissions});
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof RoleKey)) {
+                return false;
+            }
+            RoleKey key = (RoleKey) o;
+            return name.equals(key.name) && permissions.equals(key.permissions);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+}
@@ -19,11 +19,9 @@
 package fathom.authz;
 
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
-import java.util.List;
 import java.util.Set;
 
 /**
@@ -46,6 +44,10 @@ public final class Authorizations implements Serializable, Cloneable {
 
     protected transient Collection<Permission> aggregatePermissions;
 
+    protected transient PermissionTrie compiledPermissions;
+
+    protected transient DecisionCache decisions;
+
     public Authorizations() {
         this(new LinkedHashSet<>());
     }
@@ -91,7 +93,7 @@ public final class Authorizations implements Serializable, Cloneable {
      */
     public Authorizations setRoles(Set<Role> roles) {
         this.roles.clear();
-        this.aggregatePermissions = null;
+        invalidate();
         addRoles(roles);
 
         return this;
@@ -104,7 +106,7 @@ public final class Authorizations implements Serializable, Cloneable {
      */
     public Authorizations addRoles(String... roles) {
         for (String role : roles) {
-            addRole(new Role(role));
+            addRole(role);
         }
 
         return this;
@@ -117,7 +119,7 @@ public final class Authorizations implements Serializable, Cloneable {
      */
     public Authorizations addRoles(Collection<Role> roles) {
         this.roles.addAll(roles);
-        this.aggregatePermissions = null;
+        invalidate();
 
         return this;
     }
@@ -128,7 +130,7 @@ public final class Authorizations implements Serializable, Cloneable {
      * @param role the role to add to those associated with the Account.
      */
     public Authorizations addRole(String role) {
-        this.addRole(new Role(role));
+        this.addRole(AuthorizationPool.role(role));
 
         return this;
     }
@@ -141,7 +143,7 @@ public final class Authorizations implements Serializable, Cloneable {
      */
     public Authorizations addRole(Role role) {
         this.roles.add(role);
-        this.aggregatePermissions = null;
+        invalidate();
 
         return this;
     }
@@ -167,8 +169,8 @@ public final class Authorizations implements Serializable, Cloneable {
      * @param permission the permission to add to those directly assigned to the Account.
      */
     public Authorizations addPermission(String permission) {
-        this.permissions.add(new Permission(permission));
-        this.aggregatePermissions = null;
+        this.permissions.add(AuthorizationPool.permission(permission));
+        invalidate();
 
         return this;
     }
@@ -181,7 +183,7 @@ public final class Authorizations implements Serializable, Cloneable {
      */
     public Authorizations addPermissions(Collection<Permission> permissions) {
         this.permissions.addAll(permissions);
-        this.aggregatePermissions = null;
+        invalidate();
 
         return this;
     }
@@ -206,7 +208,7 @@ public final class Authorizations implements Serializable, Cloneable {
      */
     public void setPermissions(Collection<Permission> permissions) {
         this.permissions.clear();
-        this.aggregatePermissions = null;
+        invalidate();
         this.addPermissions(permissions);
     }
 
@@ -221,7 +223,13 @@ public final class Authorizations implements Serializable, Cloneable {
      * @return true if this Account is permitted, false otherwise.
      */
     public boolean isPermitted(String permission) {
-        return isPermitted(new Permission(permission));
+        DecisionCache cache = getDecisions();
+        Boolean permitted = permission == null ? null : cache.getPermission(permission);
+        if (permitted == null) {
+            permitted = isPermitted(PermissionTrie.parse(permission));
+            cache.putPermission(permission, permitted);
+        }
+        return permitted;
     }
 
     /**
@@ -240,8 +248,7 @@ public final class Authorizations implements Serializable, Cloneable {
     public boolean[] isPermitted(String... permissions) {
         boolean[] rights = new boolean[permissions.length];
         for (int i = 0; i < permissions.length; i++) {
-            Permission permission = new Permission(permissions[i]);
-            rights[i] = isPermitted(permission);
+            rights[i] = isPermitted(permissions[i]);
         }
         return rights;
     }
@@ -283,12 +290,7 @@ public final class Authorizations implements Serializable, Cloneable {
     }
 
     protected boolean isPermitted(Permission permission) {
-        for (Permission perm : getAggregatePermissions()) {
-            if (perm.implies(permission)) {
-                return true;
-            }
-        }
-        return false;
+        return getCompiledPermissions().implies(permission);
     }
 
     /**
@@ -298,7 +300,13 @@ public final class Authorizations implements Serializable, Cloneable {
      * @return {@code true} if this Account has the specified role, {@code false} otherwise.
      */
     public boolean hasRole(String roleIdentifier) {
-        return roles.contains(new Role(roleIdentifier));
+        DecisionCache cache = getDecisions();
+        Boolean hasRole = roleIdentifier == null ? null : cache.getRole(roleIdentifier);
+        if (hasRole == null) {
+            hasRole = roles.contains(new Role(roleIdentifier));
+            cache.putRole(roleIdentifier, hasRole);
+        }
+        return hasRole;
     }
 
     /**
@@ -308,11 +316,12 @@ public final class Authorizations implements Serializable, Cloneable {
      * @return {@code true} if this Account has all the specified roles, {@code false} otherwise.
      */
     public boolean hasRoles(String... roleIdentifiers) {
-        List<Role> requiredRoles = new ArrayList<>();
         for (String roleIdentifier : roleIdentifiers) {
-            requiredRoles.add(new Role(roleIdentifier));
+            if (!hasRole(roleIdentifier)) {
+                return false;
+            }
         }
-        return roles.containsAll(requiredRoles);
+        return true;
     }
 
     /**
@@ -322,11 +331,12 @@ public final class Authorizations implements Serializable, Cloneable {
      * @return {@code true} if this Account has all the specified roles, {@code false} otherwise.
      */
     public boolean hasRoles(Collection<String> roleIdentifiers) {
-        List<Role> requiredRoles = new ArrayList<>();
         for (String roleIdentifier : roleIdentifiers) {
-            requiredRoles.add(new Role(roleIdentifier));
+            if (!hasRole(roleIdentifier)) {
+                return false;
+            }
         }
-        return roles.containsAll(requiredRoles);
+        return true;
     }
 
     /**
@@ -352,6 +362,65 @@ public final class Authorizations implements Serializable, Cloneable {
         return aggregatePermissions;
     }
 
+    /**
+     * Gets the aggregate permissions compiled into a trie for fast permission checks.
+     *
+     * @return the compiled aggregate permissions
+     */
+    protected PermissionTrie getCompiledPermissions() {
+        PermissionTrie trie = compiledPermissions;
+        if (trie == null) {
+            Role grantingRole = null;
+            int grantingRoles = 0;
+            for (Role role : roles) {
+                if (!role.getPermissions().isEmpty()) {
+                    grantingRole = role;
+                    grantingRoles++;
+                }
+            }
+
+            if (permissions.isEmpty() && grantingRoles == 1) {
+                // share the compiled permissions of the role definition
+                trie = grantingRole.getCompiledPermissions();
+            } else {
+                Collection<Permission> perms = getAggregatePermissions();
+                trie = perms.isEmpty() ? PermissionTrie.EMPTY : new PermissionTrie(perms);
+            }
+            compiledPermissions = trie;
+        }
+        return trie;
+    }
+
+    /**
+     * Gets the decision cache of these Authorizations.  If the caches of all accounts have been
+     * invalidated, because a shared Role was changed or a Realm reloaded, the aggregate permissions
+     * are also recomputed.
+     *
+     * @return the current decision cache
+     */
+    protected DecisionCache getDecisions() {
+        DecisionCache cache = decisions;
+        if (cache == null || !cache.isCurrent()) {
+            if (cache != null) {
+                this.aggregatePermissions = null;
+                this.compiledPermissions = null;
+            }
+            cache = new DecisionCache();
+            decisions = cache;
+        }
+        return cache;
+    }
+
+    /**
+     * Discards the aggregate and compiled permissions and the cached decisions after a change of
+     * roles or permissions.
+     */
+    protected void invalidate() {
+        this.aggregatePermissions = null;
+        this.compiledPermissions = null;
+        this.decisions = null;
+    }
+
     @Override
     public Authorizations clone() {
         Authorizations clone = new Authorizations(roles, permissions);
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.authz;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DecisionCache memoizes the permission and role decisions of one {@link Authorizations}.
+ * <p>
+ * A cache is discarded whenever its Authorizations are mutated.  Because Roles are
+ * shared between accounts, and realms rebuild their accounts when they reload, all
+ * caches are also discarded by {@link #invalidateAll()}.  Each cache is bounded by
+ * {@link #getMaxEntries()} decisions and is simply cleared when it is full.
+ * </p>
+ *
+ * @author James Moger
+ */
+public final class DecisionCache {
+
+    private static final AtomicLong generation = new AtomicLong();
+
+    private static final LongAdder hits = new LongAdder();
+
+    private static final LongAdder misses = new LongAdder();
+
+    private static volatile int maxEntries = 256;
+
+    private final long cacheGeneration;
+
+    private final Map<String, Boolean> permissions = new ConcurrentHashMap<>();
+
+    private final Map<String, Boolean> roles = new ConcurrentHashMap<>();
+
+    DecisionCache() {
+        this.cacheGeneration = generation.get();
+    }
+
+    /**
+     * Discards the cached decisions of all accounts.  This must be called when shared
+     * Roles are changed or when a Realm reloads its accounts.
+     */
+    public static void invalidateAll() {
+        generation.incrementAndGet();
+    }
+
+    public static int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Sets the maximum number of decisions cached per account.  Zero disables caching.
+     *
+     * @param entries
+     */
+    public static void setMaxEntries(int entries) {
+        maxEntries = Math.max(0, entries);
+        invalidateAll();
+    }
+
+    public static long getHits() {
+        return hits.sum();
+    }
+
+    public static long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the ratio of cache hits to lookups.
+     *
+     * @return the hit ratio, between 0 and 1
+     */
+    public static double getHitRatio() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0d : h / (double) total;
+    }
+
+    boolean isCurrent() {
+        return cacheGeneration == generation.get();
+    }
+
+    Boolean getPermission(String permission) {
+        return get(permissions, permission);
+    }
+
+    void putPermission(String permission, boolean permitted) {
+        put(permissions, permission, permitted);
+    }
+
+    Boolean getRole(String role) {
+        return get(roles, role);
+    }
+
+    void putRole(String role, boolean hasRole) {
+        put(roles, role, hasRole);
+    }
+
+    private static Boolean get(Map<String, Boolean> decisions, String key) {
+        if (maxEntries == 0) {
+            return null;
+        }
+        Boolean decision = decisions.get(key);
+        if (decision == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return decision;
+    }
+
+    private static void put(Map<String, Boolean> decisions, String key, boolean decision) {
+        int max = maxEntries;
+        if (max == 0) {
+            return;
+        }
+        if (decisions.size() >= max) {
+            decisions.clear();
+        }
+        decisions.put(key, decision);
+    }
+
+}
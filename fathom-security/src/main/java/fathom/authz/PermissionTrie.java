@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.authz;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * PermissionTrie is an immutable, compiled form of a collection of granted permissions.
+ * <p>
+ * Each level of the trie corresponds to a part of a permission and each node is keyed by
+ * the complete set of values of that part, so multi-value parts like {@code "read,write"}
+ * are a single node.  Nodes index their children by value and separately list the children
+ * which contain the wildcard.  A check walks the trie one part at a time and is therefore
+ * proportional to the number of parts in the checked permission rather than the number of
+ * granted permissions.  The result is identical to testing {@link Permission#implies(Permission)}
+ * for each granted permission.
+ * </p>
+ * <p>
+ * Permission types which override {@code implies} can not be compiled and are checked
+ * individually.
+ * </p>
+ *
+ * @author James Moger
+ */
+final class PermissionTrie {
+
+    static final PermissionTrie EMPTY = new PermissionTrie(Collections.emptyList());
+
+    private static final int MAX_QUERIES = 10000;
+
+    private static final LoadingCache<String, Permission> queries = CacheBuilder.newBuilder()
+            .maximumSize(MAX_QUERIES)
+            .build(new CacheLoader<String, Permission>() {
+                @Override
+                public Permission load(String permission) {
+                    return AuthorizationPool.permission(permission);
+                }
+            });
+
+    private final Node root;
+
+    private final List<Permission> uncompiled;
+
+    PermissionTrie(Collection<Permission> permissions) {
+        Builder rootBuilder = new Builder(null);
+        List<Permission> others = new ArrayList<>();
+        for (Permission permission : permissions) {
+            if (isCompilable(permission)) {
+                Builder builder = rootBuilder;
+                for (Set<String> part : permission.getParts()) {
+                    builder = builder.child(part);
+                }
+                builder.terminal = true;
+            } else {
+                others.add(permission);
+            }
+        }
+
+        this.root = rootBuilder.build();
+        this.uncompiled = others.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(others);
+    }
+
+    /**
+     * Returns the shared, parsed form of a permission string.  Parsed permissions are kept
+     * in a bounded cache because applications check the same few permission strings repeatedly.
+     *
+     * @param permission
+     * @return the parsed permission
+     */
+    static Permission parse(String permission) {
+        if (permission == null) {
+            // preserve the validation message of the Permission constructor
+            return new Permission(permission);
+        }
+        try {
+            return queries.getUnchecked(permission);
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static boolean isCompilable(Permission permission) {
+        Class<?> type = permission.getClass();
+        if (type == Permission.class) {
+            return true;
+        }
+        try {
+            return type.getMethod("implies", Permission.class).getDeclaringClass() == Permission.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns true if any of the compiled permissions implies the specified permission.
+     *
+     * @param permission
+     * @return true if the permission is implied
+     */
+    boolean implies(Permission permission) {
+        if (walk(root, permission.getParts(), 0)) {
+            return true;
+        }
+        for (Permission granted : uncompiled) {
+            if (granted.implies(permission)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean walk(Node node, List<Set<String>> parts, int depth) {
+        if (node.terminal) {
+            // a granted permission ends here, all remaining parts are implied
+            return true;
+        }
+
+        if (depth == parts.size()) {
+            // the checked permission ends here, remaining granted parts must be wildcards
+            return node.impliesEnd;
+        }
+
+        Set<String> part = parts.get(depth);
+        for (Node child : node.wildcards) {
+            if (walk(child, parts, depth + 1)) {
+                return true;
+            }
+        }
+
+        List<Node> candidates = node.children.get(part.iterator().next());
+        if (candidates != null) {
+            for (Node child : candidates) {
+                if ((part.size() == 1 || child.values.containsAll(part)) && walk(child, parts, depth + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static final class Node {
+
+        final Set<String> values;
+
+        final boolean isWildcard;
+
+        final boolean terminal;
+
+        final boolean impliesEnd;
+
+        final Map<String, List<Node>> children;
+
+        final List<Node> wildcards;
+
+        Node(Set<String> values, boolean terminal, Map<String, List<Node>> children, List<Node> wildcards) {
+            this.values = values;
+            this.isWildcard = values != null && values.contains(Permission.WILDCARD_TOKEN);
+            this.terminal = terminal;
+            this.children = children;
+            this.wildcards = wildcards;
+
+            boolean end = terminal;
+            for (Node wildcard : wildcards) {
+                end |= wildcard.impliesEnd;
+            }
+            this.impliesEnd = end;
+        }
+    }
+
+    private static final class Builder {
+
+        final Set<String> values;
+
+        final Map<Set<String>, Builder> children = new LinkedHashMap<>();
+
+        boolean terminal;
+
+        Builder(Set<String> values) {
+            this.values = values;
+        }
+
+        Builder child(Set<String> part) {
+            return children.computeIfAbsent(part, Builder::new);
+        }
+
+        Node build() {
+            if (terminal) {
+                // everything below a terminal node is implied
+                return new Node(values, true, Collections.emptyMap(), Collections.emptyList());
+            }
+
+            Map<String, List<Node>> index = new HashMap<>();
+            List<Node> wildcards = new ArrayList<>();
+            for (Builder builder : children.values()) {
+                Node child = builder.build();
+                if (child.isWildcard) {
+                    wildcards.add(child);
+                } else {
+                    for (String value : child.values) {
+                        index.computeIfAbsent(value, k -> new ArrayList<>(1)).add(child);
+                    }
+                }
+            }
+            return new Node(values, false, index.isEmpty() ? Collections.emptyMap() : index,
+                    wildcards.isEmpty() ? Collections.emptyList() : wildcards);
+        }
+    }
+
+}
@@ -36,6 +36,8 @@ public class Role implements Serializable {
 
     protected final String name;
     protected final Set<Permission> permissions;
+    private final boolean immutable;
+    private transient PermissionTrie compiledPermissions;
 
     public Role(String name) {
         this(name, new String[0]);
@@ -44,13 +46,28 @@ public class Role implements Serializable {
     public Role(String name, String... permissions) {
         this.name = name.trim();
         this.permissions = new LinkedHashSet<>();
-        addPermissions(permissions);
+        this.immutable = false;
+        for (String permission : permissions) {
+            this.permissions.add(AuthorizationPool.permission(permission));
+        }
     }
 
     public Role(String name, Set<Permission> permissions) {
         this.name = name.trim();
         this.permissions = new LinkedHashSet<>();
-        addPermissions(permissions);
+        this.immutable = false;
+        if (permissions != null) {
+            this.permissions.addAll(permissions);
+        }
+    }
+
+    /**
+     * Creates a canonical role for the {@link AuthorizationPool}.
+     */
+    Role(String name, Set<Permission> permissions, boolean immutable) {
+        this.name = name;
+        this.permissions = permissions;
+        this.immutable = immutable;
     }
 
     public String getName() {
@@ -61,50 +78,94 @@ public class Role implements Serializable {
         return permissions;
     }
 
+    /**
+     * Returns true if this is a canonical role from the {@link AuthorizationPool}.
+     * The permissions of an immutable role can not be changed.
+     *
+     * @return true if this role is immutable
+     */
+    public boolean isImmutable() {
+        return immutable;
+    }
+
+    private void checkMutable() {
+        if (immutable) {
+            throw new UnsupportedOperationException("Role '" + name + "' is immutable");
+        }
+    }
+
     public void setPermissions(Set<Permission> permissions) {
+        checkMutable();
+        this.compiledPermissions = null;
         this.permissions.clear();
         this.permissions.addAll(permissions);
+        DecisionCache.invalidateAll();
     }
 
     public Role addPermission(String permission) {
-        permissions.add(new Permission(permission));
+        checkMutable();
+        compiledPermissions = null;
+        permissions.add(AuthorizationPool.permission(permission));
+        DecisionCache.invalidateAll();
 
         return this;
     }
 
     public Role addPermission(Permission permission) {
+        checkMutable();
+        compiledPermissions = null;
         permissions.add(permission);
+        DecisionCache.invalidateAll();
 
         return this;
     }
 
     public Role addPermissions(String... perms) {
+        checkMutable();
+        if (perms.length == 0) {
+            return this;
+        }
+        compiledPermissions = null;
         for (String permission : perms) {
-            permissions.add(new Permission(permission));
+            permissions.add(AuthorizationPool.permission(permission));
         }
+        DecisionCache.invalidateAll();
 
         return this;
     }
 
     public Role addPermissions(Collection<Permission> perms) {
+        checkMutable();
         if (perms != null && !perms.isEmpty()) {
+            compiledPermissions = null;
             permissions.addAll(perms);
+            DecisionCache.invalidateAll();
         }
 
         return this;
     }
 
     public boolean isPermitted(String permission) {
-        return isPermitted(new Permission(permission));
+        return isPermitted(PermissionTrie.parse(permission));
     }
 
     public boolean isPermitted(Permission permission) {
-        for (Permission perm : permissions) {
-            if (perm.implies(permission)) {
-                return true;
-            }
+        return getCompiledPermissions().implies(permission);
+    }
+
+    /**
+     * Gets the permissions of this role compiled into a trie.  The trie is built once per role
+     * and is shared by every account which only holds this role.
+     *
+     * @return the compiled permissions
+     */
+    PermissionTrie getCompiledPermissions() {
+        PermissionTrie trie = compiledPermissions;
+        if (trie == null) {
+            trie = permissions.isEmpty() ? PermissionTrie.EMPTY : new PermissionTrie(permissions);
+            compiledPermissions = trie;
         }
-        return false;
+        return trie;
     }
 
     public int hashCode() {
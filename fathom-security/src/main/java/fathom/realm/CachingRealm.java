@@ -18,23 +18,59 @@ package fathom.realm;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.typesafe.config.Config;
+import com.typesafe.config.ConfigValueType;
+import fathom.authz.DecisionCache;
+import fathom.authz.Role;
 import fathom.utils.Util;
 import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * A CachingRealm maintains an expiring Guava Cache of Accounts.
+ * <p>
+ * Accounts expire {@code cacheTtl} minutes after their last access and no later than
+ * {@code cacheExpire} after they were loaded.  The cache is limited to {@code cacheMax}
+ * accounts, or if {@code cacheMaxWeight} is specified, to a total weight where each account
+ * weighs one plus the number of its roles and permissions.
+ * </p>
+ * <p>
+ * Realms which can reload an account without the user's password may support refresh-ahead by
+ * overriding {@link #supportsReload()} and {@link #reloadAccount(String)}.  An account which is accessed more than
+ * {@code cacheRefresh} after it was loaded is reloaded in the background on a bounded
+ * executor of {@code cacheReloadThreads} threads while the cached account continues to be served.
+ * </p>
+ * <p>
+ * {@code cacheExpire} and {@code cacheRefresh} may be specified as minutes or as durations, e.g. {@code 90s}.
+ * </p>
  *
  * @author James Moger
  */
 public abstract class CachingRealm extends StandardCredentialsRealm {
 
+    private static final Logger log = LoggerFactory.getLogger(CachingRealm.class);
+
     int cacheTtl;
     int cacheMax;
+    long cacheExpireNanos;
+    long cacheRefreshNanos;
+    long cacheMaxWeight;
+    int cacheReloadThreads = 2;
     private String realmName;
-    private Cache<String, Account> accountCache;
+    private Cache<String, CachedAccount> accountCache;
+    private ThreadPoolExecutor reloadExecutor;
+    private final LongAdder reloads = new LongAdder();
+    private final LongAdder reloadFailures = new LongAdder();
+    private final LongAdder reloadNanos = new LongAdder();
 
     @Override
     public String getRealmName() {
@@ -57,12 +93,50 @@ public abstract class CachingRealm extends StandardCredentialsRealm {
             cacheMax = config.getInt("cacheMax");
         }
 
-        if (cacheTtl > 0 && cacheMax > 0) {
-            accountCache = CacheBuilder
+        if (config.hasPath("cacheExpire")) {
+            cacheExpireNanos = getNanos(config, "cacheExpire");
+        }
+
+        if (config.hasPath("cacheRefresh")) {
+            cacheRefreshNanos = getNanos(config, "cacheRefresh");
+        }
+
+        if (config.hasPath("cacheMaxWeight")) {
+            cacheMaxWeight = config.getLong("cacheMaxWeight");
+        }
+
+        if (config.hasPath("cacheReloadThreads")) {
+            cacheReloadThreads = config.getInt("cacheReloadThreads");
+        }
+
+        if (cacheTtl > 0 && (cacheMax > 0 || cacheMaxWeight > 0)) {
+            CacheBuilder<Object, Object> builder = CacheBuilder
                     .newBuilder()
                     .expireAfterAccess(cacheTtl, TimeUnit.MINUTES)
-                    .maximumSize(cacheMax)
-                    .build();
+                    .recordStats();
+
+            if (cacheExpireNanos > 0) {
+                builder.expireAfterWrite(cacheExpireNanos, TimeUnit.NANOSECONDS);
+            }
+
+            if (cacheMaxWeight > 0) {
+                accountCache = builder
+                        .maximumWeight(cacheMaxWeight)
+                        .weigher((String username, CachedAccount cached) -> cached.weight)
+                        .build();
+            } else {
+                accountCache = builder
+                        .maximumSize(cacheMax)
+                        .build();
+            }
+
+            if (cacheRefreshNanos > 0 && cacheReloadThreads > 0) {
+                if (supportsReload()) {
+                    reloadExecutor = createReloadExecutor();
+                } else {
+                    log.warn("'{}' does not support reloading accounts, ignoring cacheRefresh", realmName);
+                }
+            }
         }
     }
 
@@ -70,29 +144,160 @@ public abstract class CachingRealm extends StandardCredentialsRealm {
         Util.logSetting(log, "caching", accountCache != null);
         Util.logSetting(log, "cacheTtl (mins)", cacheTtl);
         Util.logSetting(log, "cacheMax (accounts)", cacheMax);
+        Util.logSetting(log, "cacheMaxWeight", cacheMaxWeight);
+        Util.logSetting(log, "cacheExpire (secs)", TimeUnit.NANOSECONDS.toSeconds(cacheExpireNanos));
+        Util.logSetting(log, "cacheRefresh (secs)", TimeUnit.NANOSECONDS.toSeconds(cacheRefreshNanos));
+    }
+
+    /**
+     * Reads a duration which is specified either as a number of minutes or as a duration string.
+     */
+    private static long getNanos(Config config, String path) {
+        if (config.getValue(path).valueType() == ConfigValueType.NUMBER) {
+            return TimeUnit.MINUTES.toNanos(config.getLong(path));
+        }
+        return config.getDuration(path, TimeUnit.NANOSECONDS);
+    }
+
+    private ThreadPoolExecutor createReloadExecutor() {
+        final AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(cacheReloadThreads, cacheReloadThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(16 * cacheReloadThreads), runnable -> {
+            Thread thread = new Thread(runnable, realmName + "-reload-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     @Override
     public boolean hasAccount(String username) {
-        return accountCache != null && accountCache.getIfPresent(username) != null;
+        return getCachedAccount(username) != null;
     }
 
     @Override
     public Account getAccount(String username) {
-        if (accountCache != null) {
-            Account account = accountCache.getIfPresent(username);
-            return account;
+        return getCachedAccount(username);
+    }
+
+    private Account getCachedAccount(String username) {
+        if (accountCache == null) {
+            return null;
+        }
+
+        CachedAccount cached = accountCache.getIfPresent(username);
+        if (cached == null) {
+            return null;
         }
 
-        return null;
+        if (reloadExecutor != null && System.nanoTime() - cached.loaded > cacheRefreshNanos) {
+            scheduleReload(username, cached);
+        }
+
+        return cached.account;
+    }
+
+    /**
+     * Reloads the account in the background unless it is already being reloaded.
+     * If the reload executor is saturated the reload is attempted on a later access.
+     */
+    private void scheduleReload(String username, CachedAccount cached) {
+        if (!cached.reloading.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            reloadExecutor.execute(() -> {
+                long start = System.nanoTime();
+                try {
+                    Account account = reloadAccount(username);
+                    if (account == null) {
+                        log.debug("Account '{}' no longer exists in '{}'", username, getRealmName());
+                        accountCache.asMap().remove(username, cached);
+                    } else {
+                        // do not resurrect an account which was invalidated during the reload
+                        accountCache.asMap().replace(username, cached, new CachedAccount(account));
+                    }
+                    reloads.increment();
+                } catch (Exception e) {
+                    reloadFailures.increment();
+                    cached.reloading.set(false);
+                    log.warn("Failed to reload account '{}' in '{}'", username, getRealmName(), e);
+                } finally {
+                    reloadNanos.add(System.nanoTime() - start);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            cached.reloading.set(false);
+        }
+    }
+
+    /**
+     * Returns true if this realm implements {@link #reloadAccount(String)}.  Refresh-ahead is
+     * only enabled for realms which support reloading, otherwise cached accounts are only
+     * replaced when they expire.
+     *
+     * @return true if accounts can be reloaded
+     */
+    protected boolean supportsReload() {
+        return false;
+    }
+
+    /**
+     * Reloads an account from the backing store for refresh-ahead caching.
+     * <p>
+     * Realms which can retrieve an account without the user's password should override
+     * this method and {@link #supportsReload()}.  The default implementation evicts the
+     * cached account and looks it up again with {@link #getAccount(String)} which returns
+     * null for realms that only learn of an account when the user authenticates.
+     * </p>
+     *
+     * @param username
+     * @return the current account or null if the account no longer exists
+     */
+    protected Account reloadAccount(String username) throws Exception {
+        invalidateAccount(username);
+        return getAccount(username);
     }
 
     protected void cacheAccount(Account account) {
         if (accountCache != null) {
-            accountCache.put(account.getUsername(), account);
+            accountCache.put(account.getUsername(), new CachedAccount(account));
         }
     }
 
+    /**
+     * Returns the hit and miss statistics of the account cache.
+     *
+     * @return the cache statistics or null if caching is disabled
+     */
+    public CacheStats getCacheStats() {
+        return accountCache == null ? null : accountCache.stats();
+    }
+
+    public long getCacheSize() {
+        return accountCache == null ? 0 : accountCache.size();
+    }
+
+    public long getReloadCount() {
+        return reloads.sum();
+    }
+
+    public long getReloadFailureCount() {
+        return reloadFailures.sum();
+    }
+
+    /**
+     * Returns the average duration of a background reload.
+     *
+     * @return the average reload time in milliseconds
+     */
+    public double getAverageReloadTime() {
+        long count = reloads.sum() + reloadFailures.sum();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(reloadNanos.sum()) / 1000d / count;
+    }
+
     /**
      * Clears this Realm's account cache.
      */
@@ -100,6 +305,49 @@ public abstract class CachingRealm extends StandardCredentialsRealm {
         if (accountCache != null) {
             accountCache.invalidateAll();
         }
+        DecisionCache.invalidateAll();
+    }
+
+    /**
+     * Evicts the cached account of the username.
+     *
+     * @param username
+     */
+    public void invalidateAccount(String username) {
+        if (accountCache != null) {
+            accountCache.invalidate(username);
+        }
+    }
+
+    /**
+     * Evicts all cached accounts which have been granted the role.
+     *
+     * @param role
+     */
+    public void invalidateRole(String role) {
+        if (accountCache != null) {
+            Role invalidRole = new Role(role);
+            accountCache.asMap().values().removeIf(cached -> cached.account.getAuthorizations().getRoles().contains(invalidRole));
+        }
+    }
+
+    private static class CachedAccount {
+
+        final Account account;
+
+        final long loaded;
+
+        final int weight;
+
+        final AtomicBoolean reloading;
+
+        CachedAccount(Account account) {
+            this.account = account;
+            this.loaded = System.nanoTime();
+            this.weight = 1 + account.getAuthorizations().getRoles().size()
+                    + account.getAuthorizations().getPermissions().size();
+            this.reloading = new AtomicBoolean();
+        }
     }
 
 }
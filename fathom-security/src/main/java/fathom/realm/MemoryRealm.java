@@ -23,6 +23,8 @@ import com.typesafe.config.ConfigValue;
 import fathom.authc.AuthenticationToken;
 import fathom.authc.StandardCredentials;
 import fathom.authc.TokenCredentials;
+import fathom.authz.DecisionCache;
+import fathom.authz.AuthorizationPool;
 import fathom.authz.Role;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -89,6 +91,8 @@ public class MemoryRealm extends StandardCredentialsRealm {
             }
         }
 
+        // discard permission decisions made against the previous definitions
+        DecisionCache.invalidateAll();
     }
 
     @Override
@@ -176,7 +180,7 @@ public class MemoryRealm extends StandardCredentialsRealm {
             for (Map.Entry<String, ConfigValue> entry : roleConfig.entrySet()) {
                 String name = entry.getKey();
                 List<String> permissions = roleConfig.getStringList(name);
-                Role role = new Role(name, permissions.toArray(new String[permissions.size()]));
+                Role role = AuthorizationPool.role(name, permissions.toArray(new String[permissions.size()]));
                 roleMap.put(role.getName(), role);
             }
         }
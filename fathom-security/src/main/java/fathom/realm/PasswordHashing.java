@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.realm;
+
+import fathom.authc.AuthenticationUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * PasswordHashing runs password verification on a bounded executor so that
+ * CPU-heavy hashing (e.g. BCrypt) can not occupy every request thread.
+ * <p>
+ * The executor has a fixed number of threads and a bounded queue.  When both are
+ * exhausted verification is rejected immediately with an
+ * {@link AuthenticationUnavailableException} instead of queueing more work.
+ * A request thread waits for a verification at most for the configured timeout;
+ * a verification which does not complete in time fails.
+ * Until the executor is configured, and after it is shutdown, tasks run on the calling thread.
+ * </p>
+ *
+ * @author James Moger
+ */
+public final class PasswordHashing {
+
+    private static final Logger log = LoggerFactory.getLogger(PasswordHashing.class);
+
+    private static final ThreadLocal<Boolean> worker = new ThreadLocal<>();
+
+    private static final LongAdder rejected = new LongAdder();
+
+    private static final LongAdder timedOut = new LongAdder();
+
+    private static final long DEFAULT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private static volatile ThreadPoolExecutor executor;
+
+    private static volatile long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+    private PasswordHashing() {
+    }
+
+    /**
+     * Configures the hashing executor, replacing any previously configured executor.
+     * A thread count of 0 disables the executor.
+     *
+     * @param threads   the number of hashing threads
+     * @param queueSize the number of verifications which may wait for a thread
+     */
+    public static void configure(int threads, int queueSize) {
+        configure(threads, queueSize, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Configures the hashing executor, replacing any previously configured executor.
+     * A thread count of 0 disables the executor.
+     *
+     * @param threads       the number of hashing threads
+     * @param queueSize     the number of verifications which may wait for a thread
+     * @param timeoutMillis the longest time a caller waits for a verification
+     */
+    public static synchronized void configure(int threads, int queueSize, long timeoutMillis) {
+        shutdown();
+        PasswordHashing.timeoutMillis = timeoutMillis;
+        if (threads <= 0) {
+            log.debug("Passwords will be verified on the request threads");
+            return;
+        }
+
+        final AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(() -> {
+                worker.set(true);
+                runnable.run();
+            }, "security-hashing-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        executor = pool;
+        log.debug("Passwords will be verified on {} hashing threads", threads);
+    }
+
+    /**
+     * Stops the hashing executor.  Subsequent tasks run on the calling thread.
+     */
+    public static synchronized void shutdown() {
+        ThreadPoolExecutor pool = executor;
+        executor = null;
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Runs the task on the hashing executor and waits for the result.  Tasks submitted
+     * from a hashing thread are run directly.
+     *
+     * @param task
+     * @return the result of the task
+     * @throws AuthenticationUnavailableException if the executor is saturated or the
+     *                                            task does not complete within the timeout
+     */
+    public static <T> T call(Callable<T> task) {
+        return call(task, () -> {
+            throw new AuthenticationUnavailableException(1, "Timed out verifying a password");
+        });
+    }
+
+    /**
+     * Verifies a password on the hashing executor and waits for the result.  A verification
+     * which does not complete within the timeout fails.
+     *
+     * @param verification
+     * @return true if the password was verified
+     * @throws AuthenticationUnavailableException if the executor is saturated
+     */
+    public static boolean verify(Callable<Boolean> verification) {
+        return call(verification, () -> false);
+    }
+
+    private static <T> T call(Callable<T> task, Supplier<T> onTimeout) {
+        ThreadPoolExecutor pool = executor;
+        if (pool == null || isHashingThread()) {
+            try {
+                return task.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        Future<T> future;
+        try {
+            future = pool.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw reject();
+        }
+
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timedOut.increment();
+            log.warn("Password verification did not complete within {} msecs", timeoutMillis);
+            return onTimeout.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AuthenticationUnavailableException(1, "Interrupted while verifying a password");
+        }
+    }
+
+    /**
+     * Runs the task on the hashing executor without waiting for the result.  If the
+     * executor is not configured the task is run directly.
+     *
+     * @param task
+     * @return a future which completes with the result of the task, or exceptionally
+     * with an {@link AuthenticationUnavailableException} if the executor is saturated
+     */
+    public static <T> CompletableFuture<T> supply(Supplier<T> task) {
+        ThreadPoolExecutor pool = executor;
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (pool == null) {
+            try {
+                future.complete(task.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+            return future;
+        }
+
+        try {
+            return CompletableFuture.supplyAsync(task, pool);
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(reject());
+            return future;
+        }
+    }
+
+    /**
+     * Returns true if the current thread is a hashing thread.
+     *
+     * @return true if the current thread belongs to the hashing executor
+     */
+    public static boolean isHashingThread() {
+        return worker.get() != null;
+    }
+
+    public static int getActiveCount() {
+        ThreadPoolExecutor pool = executor;
+        return pool == null ? 0 : pool.getActiveCount();
+    }
+
+    public static int getQueuedCount() {
+        ThreadPoolExecutor pool = executor;
+        return pool == null ? 0 : pool.getQueue().size();
+    }
+
+    public static long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public static long getTimedOutCount() {
+        return timedOut.sum();
+    }
+
+    private static AuthenticationUnavailableException reject() {
+        rejected.increment();
+        log.debug("Rejected password verification, all hashing threads are busy");
+        return new AuthenticationUnavailableException(1, "Too many concurrent authentication attempts");
+    }
+
+}
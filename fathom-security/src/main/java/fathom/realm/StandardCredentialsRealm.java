@@ -69,7 +69,7 @@ public abstract class StandardCredentialsRealm implements Realm {
                 return null;
             }
 
-            if (validatePassword(requestCredentials, storedCredentials)) {
+            if (verifyPassword(requestCredentials, storedCredentials)) {
                 log.debug("Authentication succeeded for '{}' against '{}'",
                         requestCredentials.getUsername(), getRealmName());
                 return storedAccount;
@@ -84,6 +84,19 @@ public abstract class StandardCredentialsRealm implements Realm {
         return null;
     }
 
+    /**
+     * Validates a password on the bounded {@link PasswordHashing} executor.
+     *
+     * @param requestCredentials
+     * @param storedCredentials
+     * @return true if the request password matches the stored password, false if it does
+     * not match or the verification timed out
+     * @throws fathom.authc.AuthenticationUnavailableException if all hashing threads are busy
+     */
+    protected boolean verifyPassword(StandardCredentials requestCredentials, StandardCredentials storedCredentials) {
+        return PasswordHashing.verify(() -> validatePassword(requestCredentials, storedCredentials));
+    }
+
     /**
      * Validate a password.
      * <p>
@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.security;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.typesafe.config.Config;
+import fathom.authc.AuthenticationThrottledException;
+import fathom.authc.AuthenticationToken;
+import fathom.authc.StandardCredentials;
+import fathom.authc.TokenCredentials;
+import fathom.utils.CryptoUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AuthenticationThrottle rejects authentication attempts before any Realm is consulted.
+ * <p>
+ * Recent failures are remembered by username and a hash of the secret so that repeating
+ * the same invalid credentials does not reach the realms again.  Failures are also
+ * counted in a sliding window per username and per client address; once a limit is
+ * reached further attempts are rejected until enough failures have left the window.
+ * </p>
+ * <pre>
+ * throttle {
+ *   enabled = true
+ *   failureCacheTtl = 1m
+ *   failureCacheMax = 10000
+ *   window = 5m
+ *   maxUsernameFailures = 10
+ *   maxAddressFailures = 50
+ * }
+ * </pre>
+ *
+ * @author James Moger
+ */
+class AuthenticationThrottle {
+
+    private static final Logger log = LoggerFactory.getLogger(AuthenticationThrottle.class);
+
+    private final Cache<String, Boolean> failures;
+
+    private final Cache<String, FailureWindow> windows;
+
+    private final long windowNanos;
+
+    private final int maxUsernameFailures;
+
+    private final int maxAddressFailures;
+
+    private final Meter rejected;
+
+    private final Meter knownFailures;
+
+    private final Meter failed;
+
+    AuthenticationThrottle(Config config, MetricRegistry metricRegistry) {
+        this(config.hasPath("failureCacheTtl") ? config.getDuration("failureCacheTtl", TimeUnit.NANOSECONDS) : TimeUnit.MINUTES.toNanos(1),
+                config.hasPath("failureCacheMax") ? config.getInt("failureCacheMax") : 10000,
+                config.hasPath("window") ? config.getDuration("window", TimeUnit.NANOSECONDS) : TimeUnit.MINUTES.toNanos(5),
+                config.hasPath("maxUsernameFailures") ? config.getInt("maxUsernameFailures") : 10,
+                config.hasPath("maxAddressFailures") ? config.getInt("maxAddressFailures") : 50,
+                metricRegistry);
+    }
+
+    AuthenticationThrottle(long failureCacheTtlNanos, int failureCacheMax, long windowNanos,
+                           int maxUsernameFailures, int maxAddressFailures, MetricRegistry metricRegistry) {
+        this.failures = CacheBuilder.newBuilder()
+                .expireAfterWrite(failureCacheTtlNanos, TimeUnit.NANOSECONDS)
+                .maximumSize(failureCacheMax)
+                .build();
+        this.windows = CacheBuilder.newBuilder()
+                .expireAfterAccess(windowNanos, TimeUnit.NANOSECONDS)
+                .maximumSize(10L * failureCacheMax)
+                .build();
+        this.windowNanos = windowNanos;
+        this.maxUsernameFailures = maxUsernameFailures;
+        this.maxAddressFailures = maxAddressFailures;
+
+        String prefix = "fathom.security.throttle";
+        this.rejected = metricRegistry.meter(prefix + ".rejected");
+        this.knownFailures = metricRegistry.meter(prefix + ".knownFailures");
+        this.failed = metricRegistry.meter(prefix + ".failures");
+    }
+
+    /**
+     * Rejects the attempt if the username or the address has failed too often.
+     *
+     * @param authenticationToken
+     * @param remoteAddress       the client address, may be null
+     * @throws AuthenticationThrottledException if the attempt is rejected
+     */
+    void check(AuthenticationToken authenticationToken, String remoteAddress) {
+        long now = System.nanoTime();
+        String username = getUsername(authenticationToken);
+        if (username != null) {
+            check(now, "u:" + username, maxUsernameFailures, "username '" + username + "'");
+        }
+        if (!Strings.isNullOrEmpty(remoteAddress)) {
+            check(now, "a:" + remoteAddress, maxAddressFailures, "address " + remoteAddress);
+        }
+    }
+
+    private void check(long now, String key, int maxFailures, String description) {
+        FailureWindow window = windows.getIfPresent(key);
+        if (window == null || maxFailures <= 0) {
+            return;
+        }
+        long retryAfterNanos = window.getRetryAfter(now, windowNanos);
+        if (retryAfterNanos > 0) {
+            rejected.mark();
+            long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos));
+            log.debug("Throttled authentication of {}, retry after {} seconds", description, retryAfter);
+            throw new AuthenticationThrottledException(retryAfter,
+                    "Too many failed authentication attempts, retry after {} seconds", retryAfter);
+        }
+    }
+
+    /**
+     * Returns true if these exact credentials have recently failed.  A known failure
+     * counts as another failed attempt.
+     *
+     * @param authenticationToken
+     * @param remoteAddress
+     * @return true if the credentials are known to be invalid
+     */
+    boolean isKnownFailure(AuthenticationToken authenticationToken, String remoteAddress) {
+        String key = getFailureKey(authenticationToken);
+        if (key != null && failures.getIfPresent(key) != null) {
+            knownFailures.mark();
+            countFailure(authenticationToken, remoteAddress);
+            return true;
+        }
+        return false;
+    }
+
+    void failure(AuthenticationToken authenticationToken, String remoteAddress) {
+        failed.mark();
+        String key = getFailureKey(authenticationToken);
+        if (key != null) {
+            failures.put(key, Boolean.TRUE);
+        }
+        countFailure(authenticationToken, remoteAddress);
+    }
+
+    void success(AuthenticationToken authenticationToken) {
+        String username = getUsername(authenticationToken);
+        if (username != null) {
+            windows.invalidate("u:" + username);
+        }
+    }
+
+    void clear() {
+        failures.invalidateAll();
+        windows.invalidateAll();
+    }
+
+    private void countFailure(AuthenticationToken authenticationToken, String remoteAddress) {
+        long now = System.nanoTime();
+        String username = getUsername(authenticationToken);
+        if (username != null && maxUsernameFailures > 0) {
+            getWindow("u:" + username, maxUsernameFailures).add(now);
+        }
+        if (!Strings.isNullOrEmpty(remoteAddress) && maxAddressFailures > 0) {
+            getWindow("a:" + remoteAddress, maxAddressFailures).add(now);
+        }
+    }
+
+    private FailureWindow getWindow(String key, int capacity) {
+        try {
+            return windows.get(key, () -> new FailureWindow(capacity));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static String getUsername(AuthenticationToken authenticationToken) {
+        if (authenticationToken instanceof StandardCredentials) {
+            return ((StandardCredentials) authenticationToken).getUsername().toLowerCase();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the negative cache key of the token.  Secrets are only kept as a hash.
+     */
+    private static String getFailureKey(AuthenticationToken authenticationToken) {
+        if (authenticationToken instanceof StandardCredentials) {
+            StandardCredentials credentials = (StandardCredentials) authenticationToken;
+            return "s:" + credentials.getUsername() + ":" + CryptoUtil.getHashSHA256(Strings.nullToEmpty(credentials.getPassword()));
+        } else if (authenticationToken instanceof TokenCredentials) {
+            return "t:" + CryptoUtil.getHashSHA256(((TokenCredentials) authenticationToken).getToken());
+        }
+        return null;
+    }
+
+    /**
+     * A ring of the most recent failure times.
+     */
+    private static final class FailureWindow {
+
+        private final long[] times;
+
+        private int next;
+
+        private int count;
+
+        FailureWindow(int capacity) {
+            this.times = new long[capacity];
+        }
+
+        synchronized void add(long now) {
+            times[next] = now;
+            next = (next + 1) % times.length;
+            count = Math.min(count + 1, times.length);
+        }
+
+        /**
+         * Returns the nanoseconds until the oldest failure leaves the window, or zero if
+         * the window is not full.
+         */
+        synchronized long getRetryAfter(long now, long windowNanos) {
+            if (count < times.length) {
+                return 0;
+            }
+            return times[next] + windowNanos - now;
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.security;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * An Invalidation identifies cached accounts which must be evicted on every node.
+ *
+ * @author James Moger
+ */
+public class Invalidation {
+
+    public enum Type {
+        ACCOUNT, ROLE, ALL
+    }
+
+    private final Type type;
+
+    private final String origin;
+
+    private final String name;
+
+    public Invalidation(Type type, String origin, String name) {
+        Preconditions.checkNotNull(type, "Invalidation type is null!");
+        Preconditions.checkArgument(type == Type.ALL || name != null, "Invalidation name is null!");
+        this.type = type;
+        this.origin = origin == null ? "" : origin;
+        this.name = type == Type.ALL ? "" : name;
+    }
+
+    public static Invalidation account(String origin, String username) {
+        return new Invalidation(Type.ACCOUNT, origin, username);
+    }
+
+    public static Invalidation role(String origin, String role) {
+        return new Invalidation(Type.ROLE, origin, role);
+    }
+
+    public static Invalidation all(String origin) {
+        return new Invalidation(Type.ALL, origin, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the identifier of the node which published this invalidation.
+     *
+     * @return the origin
+     */
+    public String getOrigin() {
+        return origin;
+    }
+
+    /**
+     * Returns the username or role name which is invalidated.
+     *
+     * @return the name, empty for {@link Type#ALL}
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Encodes this invalidation as a message for a transport.
+     *
+     * @return the encoded invalidation
+     */
+    public String encode() {
+        return type.name() + "|" + origin + "|" + name;
+    }
+
+    /**
+     * Decodes an invalidation message.
+     *
+     * @param message
+     * @return the invalidation or null if the message is malformed
+     */
+    public static Invalidation decode(String message) {
+        if (message == null) {
+            return null;
+        }
+        String[] parts = message.split("\\|", 3);
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            return new Invalidation(Type.valueOf(parts[0]), parts[1], parts[2]);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Invalidation that = (Invalidation) o;
+        return type == that.type && origin.equals(that.origin) && name.equals(that.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * type.hashCode() + origin.hashCode()) + name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "Invalidation{" +
+                "type=" + type +
+                ", origin='" + origin + '\'' +
+                ", name='" + name + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.security;
+
+import com.typesafe.config.Config;
+
+import java.util.function.Consumer;
+
+/**
+ * An InvalidationBus broadcasts account and role invalidations to every node
+ * so that the SecurityManager and CachingRealm caches can evict precisely.
+ * <p>
+ * A bus is defined in the {@code invalidation} block of the Realms file and
+ * is created and configured like a Realm.
+ * </p>
+ * <pre>
+ * invalidation {
+ *   type = "fathom.realm.redis.RedisInvalidationBus"
+ *   url = "redis://localhost:6379"
+ *   channel = "fathom:invalidations"
+ * }
+ * </pre>
+ *
+ * @author James Moger
+ */
+public interface InvalidationBus {
+
+    void setup(Config config);
+
+    void start();
+
+    void stop();
+
+    /**
+     * Broadcasts an invalidation to all subscribers, including those of this node.
+     *
+     * @param invalidation
+     */
+    void publish(Invalidation invalidation);
+
+    /**
+     * Registers a listener for invalidations received from the bus.
+     *
+     * @param listener
+     */
+    void subscribe(Consumer<Invalidation> listener);
+
+}
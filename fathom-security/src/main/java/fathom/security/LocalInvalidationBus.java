@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.security;
+
+import com.typesafe.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * An in-process InvalidationBus which delivers invalidations synchronously to
+ * all started buses of the same channel within this JVM.
+ * <p>
+ * This is intended for tests and single-node deployments.
+ * </p>
+ * <pre>
+ * invalidation {
+ *   type = "fathom.security.LocalInvalidationBus"
+ *   channel = "fathom"
+ * }
+ * </pre>
+ *
+ * @author James Moger
+ */
+public class LocalInvalidationBus implements InvalidationBus {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalInvalidationBus.class);
+
+    private static final Map<String, List<LocalInvalidationBus>> channels = new ConcurrentHashMap<>();
+
+    private final List<Consumer<Invalidation>> listeners = new CopyOnWriteArrayList<>();
+
+    private String channel = "fathom";
+
+    public LocalInvalidationBus() {
+    }
+
+    public LocalInvalidationBus(String channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void setup(Config config) {
+        if (config.hasPath("channel")) {
+            channel = config.getString("channel");
+        }
+    }
+
+    @Override
+    public void start() {
+        channels.computeIfAbsent(channel, key -> new CopyOnWriteArrayList<>()).add(this);
+    }
+
+    @Override
+    public void stop() {
+        channels.computeIfPresent(channel, (key, buses) -> {
+            buses.remove(this);
+            return buses.isEmpty() ? null : buses;
+        });
+    }
+
+    @Override
+    public void publish(Invalidation invalidation) {
+        List<LocalInvalidationBus> buses = channels.get(channel);
+        if (buses == null) {
+            return;
+        }
+        for (LocalInvalidationBus bus : buses) {
+            bus.deliver(invalidation);
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<Invalidation> listener) {
+        listeners.add(listener);
+    }
+
+    private void deliver(Invalidation invalidation) {
+        for (Consumer<Invalidation> listener : listeners) {
+            try {
+                listener.accept(invalidation);
+            } catch (Exception e) {
+                log.error("Failed to apply {}", invalidation, e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.security;
+
+import com.typesafe.config.Config;
+import fathom.authc.AuthenticationToken;
+import fathom.realm.Account;
+import fathom.realm.Realm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ParallelRealms queries Realms concurrently on a bounded executor.
+ * <p>
+ * Every realm call is bounded by a timeout.  A realm which fails or times out
+ * {@code failureThreshold} consecutive times is skipped for {@code retryAfter}, after which
+ * a single call is allowed through to test if the realm has recovered.
+ * </p>
+ * <pre>
+ * parallel {
+ *   enabled = true
+ *   threads = 8
+ *   timeout = 5s
+ *   failureThreshold = 5
+ *   retryAfter = 30s
+ * }
+ * </pre>
+ *
+ * @author James Moger
+ */
+class ParallelRealms {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelRealms.class);
+
+    private final ThreadPoolExecutor executor;
+
+    private final long timeoutNanos;
+
+    private final int failureThreshold;
+
+    private final long retryAfterNanos;
+
+    private final Map<Realm, Breaker> breakers;
+
+    ParallelRealms(Collection<Realm> realms, Config config) {
+        this(realms,
+                config.hasPath("threads") ? config.getInt("threads") : 2 * Math.max(1, realms.size()),
+                config.hasPath("timeout") ? config.getDuration("timeout", TimeUnit.NANOSECONDS) : TimeUnit.SECONDS.toNanos(5),
+                config.hasPath("failureThreshold") ? config.getInt("failureThreshold") : 5,
+                config.hasPath("retryAfter") ? config.getDuration("retryAfter", TimeUnit.NANOSECONDS) : TimeUnit.SECONDS.toNanos(30));
+    }
+
+    ParallelRealms(Collection<Realm> realms, int threads, long timeoutNanos, int failureThreshold, long retryAfterNanos) {
+        this.timeoutNanos = timeoutNanos;
+        this.failureThreshold = failureThreshold;
+        this.retryAfterNanos = retryAfterNanos;
+
+        this.breakers = new IdentityHashMap<>();
+        for (Realm realm : realms) {
+            breakers.put(realm, new Breaker());
+        }
+
+        final AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "security-realm-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        // when the queue is full the caller queries the realm itself
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * 4), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Authenticates the token against all capable realms concurrently and returns the
+     * account of the first realm, in configured order, which authenticates the token.
+     *
+     * @param realms
+     * @param authenticationToken
+     * @return the authenticated, enabled account or null
+     */
+    Account authenticate(Collection<Realm> realms, AuthenticationToken authenticationToken) {
+        List<Realm> candidates = new ArrayList<>();
+        List<Future<Account>> futures = new ArrayList<>();
+        for (Realm realm : realms) {
+            if (realm.canAuthenticate(authenticationToken) && isAvailable(realm)) {
+                candidates.add(realm);
+                futures.add(executor.submit(() -> realm.authenticate(authenticationToken)));
+            }
+        }
+
+        long deadline = System.nanoTime() + timeoutNanos;
+        Account authenticated = null;
+        int i = 0;
+        for (; i < futures.size() && authenticated == null; i++) {
+            Account account = await(candidates.get(i), futures.get(i), deadline, "authenticate");
+            if (account != null && !account.isDisabled()) {
+                authenticated = account;
+            }
+        }
+
+        // lower priority realms are no longer needed
+        for (; i < futures.size(); i++) {
+            futures.get(i).cancel(true);
+        }
+
+        return authenticated;
+    }
+
+    /**
+     * Retrieves the enabled accounts of the username from all realms concurrently.
+     *
+     * @param realms
+     * @param username
+     * @return the accounts, in configured realm order
+     */
+    List<Account> getAccounts(Collection<Realm> realms, String username) {
+        List<Realm> candidates = new ArrayList<>();
+        List<Future<Account>> futures = new ArrayList<>();
+        for (Realm realm : realms) {
+            if (isAvailable(realm)) {
+                candidates.add(realm);
+                futures.add(executor.submit(() -> realm.hasAccount(username) ? realm.getAccount(username) : null));
+            }
+        }
+
+        long deadline = System.nanoTime() + timeoutNanos;
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            Account account = await(candidates.get(i), futures.get(i), deadline, "getAccount");
+            if (account != null && account.isEnabled()) {
+                accounts.add(account);
+            }
+        }
+
+        return accounts;
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Account await(Realm realm, Future<Account> future, long deadline, String operation) {
+        Breaker breaker = breakers.get(realm);
+        try {
+            Account account = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            success(breaker);
+            return account;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            log.warn("Realm '{}' did not {} within {} ms", realm.getRealmName(), operation,
+                    TimeUnit.NANOSECONDS.toMillis(timeoutNanos));
+            failure(realm, breaker);
+        } catch (ExecutionException e) {
+            log.error("Realm '{}' failed to {}", realm.getRealmName(), operation, e.getCause());
+            failure(realm, breaker);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    boolean isAvailable(Realm realm) {
+        Breaker breaker = breakers.get(realm);
+        if (breaker == null) {
+            return true;
+        }
+        synchronized (breaker) {
+            if (breaker.openUntil == 0) {
+                return true;
+            }
+            long now = System.nanoTime();
+            if (now - breaker.openUntil >= 0) {
+                // allow a single trial call through
+                breaker.openUntil = now + retryAfterNanos;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private void success(Breaker breaker) {
+        if (breaker != null) {
+            synchronized (breaker) {
+                breaker.failures = 0;
+                breaker.openUntil = 0;
+            }
+        }
+    }
+
+    private void failure(Realm realm, Breaker breaker) {
+        if (breaker != null) {
+            synchronized (breaker) {
+                breaker.failures++;
+                if (breaker.failures >= failureThreshold) {
+                    if (breaker.openUntil == 0) {
+                        log.warn("Skipping realm '{}' for {} seconds after {} consecutive failures", realm.getRealmName(),
+                                TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos), breaker.failures);
+                    }
+                    breaker.openUntil = System.nanoTime() + retryAfterNanos;
+                }
+            }
+        }
+    }
+
+    private static class Breaker {
+
+        int failures;
+
+        long openUntil;
+
+    }
+
+}
@@ -16,6 +16,8 @@
 
 package fathom.security;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.cache.Cache;
@@ -28,11 +30,15 @@ import com.typesafe.config.ConfigFactory;
 import fathom.Constants;
 import fathom.Service;
 import fathom.authc.AuthenticationException;
+import fathom.authc.AuthenticationThrottledException;
 import fathom.authc.AuthenticationToken;
+import fathom.authz.DecisionCache;
+import fathom.authz.Role;
 import fathom.conf.Settings;
 import fathom.exception.FathomException;
 import fathom.realm.Account;
 import fathom.realm.CachingRealm;
+import fathom.realm.PasswordHashing;
 import fathom.realm.Realm;
 import fathom.utils.ClassUtil;
 import fathom.utils.RequireUtil;
@@ -46,7 +52,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * SecurityManager manages the Realms and handles authentication.
@@ -64,10 +75,23 @@ public class SecurityManager implements Service {
     @Inject
     private Settings settings;
 
+    @Inject
+    private MetricRegistry metricRegistry;
+
     private Collection<Realm> allRealms;
 
     private Cache<AuthenticationToken, Account> accountCache;
 
+    private ParallelRealms parallelRealms;
+
+    private AuthenticationThrottle throttle;
+
+    private InvalidationBus invalidationBus;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final List<Consumer<Invalidation>> invalidationListeners = new CopyOnWriteArrayList<>();
+
     @Override
     public int getPreferredStartOrder() {
         return 50;
@@ -95,6 +119,19 @@ public class SecurityManager implements Service {
 
         allRealms = parseDefinedRealms(config);
 
+        // configure the per-account permission & role decision caches
+        DecisionCache.setMaxEntries(settings.getInteger("security.decisionCache.maxEntries", 256));
+        registerDecisionCacheMetrics();
+
+        // verify passwords on a bounded executor, isolated from the request threads
+        int hashingThreads = settings.getInteger("security.passwordHashing.threads", Runtime.getRuntime().availableProcessors());
+        int hashingQueue = settings.getInteger("security.passwordHashing.queueSize", 16 * Math.max(1, hashingThreads));
+        long hashingTimeout = settings.getDuration("security.passwordHashing.timeout", TimeUnit.MILLISECONDS,
+                TimeUnit.SECONDS.toMillis(10));
+        PasswordHashing.configure(hashingThreads, hashingQueue, hashingTimeout);
+        registerPasswordHashingMetrics();
+        registerRealmCacheMetrics();
+
         // configure an expiring account cache
         int cacheTtl = 0;
         if (config.hasPath("cacheTtl")) {
@@ -114,6 +151,23 @@ public class SecurityManager implements Service {
                     .build();
         }
 
+        // optionally reject repeated failures before querying the realms
+        if (config.hasPath("throttle.enabled") && config.getBoolean("throttle.enabled")) {
+            throttle = new AuthenticationThrottle(config.getConfig("throttle"), metricRegistry);
+            log.info("Authentication failures will be throttled");
+        }
+
+        // optionally query the realms concurrently
+        if (config.hasPath("parallel.enabled") && config.getBoolean("parallel.enabled") && allRealms.size() > 1) {
+            parallelRealms = new ParallelRealms(allRealms, config.getConfig("parallel"));
+            log.info("Realms will be queried in parallel");
+        }
+
+        // optionally broadcast account & role invalidations to other nodes
+        if (config.hasPath("invalidation.type")) {
+            invalidationBus = createInvalidationBus(config.getConfig("invalidation"));
+        }
+
         String border = Strings.padEnd("", Constants.MIN_BORDER_LENGTH, '-');
         log.info(border);
         log.info("Starting realms");
@@ -129,6 +183,14 @@ public class SecurityManager implements Service {
                 log.error("Failed to start realm '{}'", realm.getRealmName(), e);
             }
         }
+
+        if (invalidationBus != null) {
+            try {
+                invalidationBus.start();
+            } catch (Exception e) {
+                log.error("Failed to start invalidation bus '{}'", invalidationBus.getClass().getName(), e);
+            }
+        }
     }
 
     @Override
@@ -138,8 +200,24 @@ public class SecurityManager implements Service {
 
     @Override
     public void stop() {
+        if (invalidationBus != null) {
+            try {
+                invalidationBus.stop();
+            } catch (Exception e) {
+                log.error("Failed to stop invalidation bus '{}'", invalidationBus.getClass().getName(), e);
+            }
+            invalidationBus = null;
+        }
+
         clearCache();
 
+        if (parallelRealms != null) {
+            parallelRealms.shutdown();
+            parallelRealms = null;
+        }
+
+        PasswordHashing.shutdown();
+
         for (Realm realm : allRealms) {
             try {
                 log.debug("Stopping realm '{}'", realm.getRealmName());
@@ -150,6 +228,47 @@ public class SecurityManager implements Service {
         }
     }
 
+    protected void registerDecisionCacheMetrics() {
+        String prefix = "fathom.security.decisionCache";
+        if (metricRegistry.getNames().contains(prefix + ".hitRatio")) {
+            return;
+        }
+        metricRegistry.register(prefix + ".hits", (Gauge<Long>) DecisionCache::getHits);
+        metricRegistry.register(prefix + ".misses", (Gauge<Long>) DecisionCache::getMisses);
+        metricRegistry.register(prefix + ".hitRatio", (Gauge<Double>) DecisionCache::getHitRatio);
+    }
+
+    protected void registerPasswordHashingMetrics() {
+        String prefix = "fathom.security.passwordHashing";
+        if (metricRegistry.getNames().contains(prefix + ".rejected")) {
+            return;
+        }
+        metricRegistry.register(prefix + ".active", (Gauge<Integer>) PasswordHashing::getActiveCount);
+        metricRegistry.register(prefix + ".queued", (Gauge<Integer>) PasswordHashing::getQueuedCount);
+        metricRegistry.register(prefix + ".rejected", (Gauge<Long>) PasswordHashing::getRejectedCount);
+        metricRegistry.register(prefix + ".timedOut", (Gauge<Long>) PasswordHashing::getTimedOutCount);
+    }
+
+    protected void registerRealmCacheMetrics() {
+        for (CachingRealm realm : getRealms(CachingRealm.class)) {
+            if (realm.getCacheStats() == null) {
+                continue;
+            }
+            String prefix = "fathom.security.realm." + realm.getRealmName() + ".cache";
+            if (metricRegistry.getNames().contains(prefix + ".hitRatio")) {
+                continue;
+            }
+            metricRegistry.register(prefix + ".hits", (Gauge<Long>) () -> realm.getCacheStats().hitCount());
+            metricRegistry.register(prefix + ".misses", (Gauge<Long>) () -> realm.getCacheStats().missCount());
+            metricRegistry.register(prefix + ".hitRatio", (Gauge<Double>) () -> realm.getCacheStats().hitRate());
+            metricRegistry.register(prefix + ".evictions", (Gauge<Long>) () -> realm.getCacheStats().evictionCount());
+            metricRegistry.register(prefix + ".size", (Gauge<Long>) realm::getCacheSize);
+            metricRegistry.register(prefix + ".reloads", (Gauge<Long>) realm::getReloadCount);
+            metricRegistry.register(prefix + ".reloadFailures", (Gauge<Long>) realm::getReloadFailureCount);
+            metricRegistry.register(prefix + ".reloadTime", (Gauge<Double>) realm::getAverageReloadTime);
+        }
+    }
+
     /**
      * Tries to authenticate an AuthenticationToken.
      *
@@ -171,6 +290,35 @@ public class SecurityManager implements Service {
      * @return an Account instance if authentication is successful
      */
     public Account authenticate(AuthenticationToken authenticationToken) {
+        return authenticate(authenticationToken, null);
+    }
+
+    /**
+     * Tries to authenticate an AuthenticationToken from a client address.
+     *
+     * @param authenticationToken
+     * @param remoteAddress       the client address used for throttling, may be null
+     * @return an Account instance if authentication is successful
+     * @throws AuthenticationThrottledException if there have been too many recent failures
+     */
+    public Account authenticate(AuthenticationToken authenticationToken, String remoteAddress) {
+        return authenticate(authenticationToken, remoteAddress, throttle);
+    }
+
+    /**
+     * Tries to authenticate an AuthenticationToken without consulting or updating the
+     * failure throttle and the negative cache.  This is used by the {@link SecurityWarmUp}
+     * so that its deliberately failing logins always reach the realms.
+     *
+     * @param authenticationToken
+     * @return an Account instance if authentication is successful
+     */
+    Account authenticateUnthrottled(AuthenticationToken authenticationToken) {
+        return authenticate(authenticationToken, null, null);
+    }
+
+    private Account authenticate(AuthenticationToken authenticationToken, String remoteAddress,
+                                 AuthenticationThrottle failureThrottle) {
 
         if (accountCache != null) {
             Account account = accountCache.getIfPresent(authenticationToken);
@@ -179,39 +327,42 @@ public class SecurityManager implements Service {
             }
         }
 
+        if (failureThrottle != null) {
+            failureThrottle.check(authenticationToken, remoteAddress);
+            if (failureThrottle.isKnownFailure(authenticationToken, remoteAddress)) {
+                return null;
+            }
+        }
+
         Account authenticatedAccount = null;
-        for (Realm realm : allRealms) {
-            if (realm.canAuthenticate(authenticationToken)) {
-                Account account = realm.authenticate(authenticationToken);
-                if (account != null && !account.isDisabled()) {
-                    // create a sanitized copy of this account
-                    authenticatedAccount = new Account(account.getName(), account.getCredentials().sanitize());
-                    break;
+        if (parallelRealms == null) {
+            for (Realm realm : allRealms) {
+                if (realm.canAuthenticate(authenticationToken)) {
+                    Account account = realm.authenticate(authenticationToken);
+                    if (account != null && !account.isDisabled()) {
+                        authenticatedAccount = account;
+                        break;
+                    }
                 }
             }
+        } else {
+            authenticatedAccount = parallelRealms.authenticate(allRealms, authenticationToken);
         }
 
         // no authentication
         if (authenticatedAccount == null) {
+            if (failureThrottle != null) {
+                failureThrottle.failure(authenticationToken, remoteAddress);
+            }
             return null;
         }
 
-        // aggregate metadata, roles, & permissions
-        final Account aggregateAccount = authenticatedAccount;
-        allRealms.stream()
-                .filter(realm -> realm.hasAccount(aggregateAccount.getUsername()))
-                .map(realm -> realm.getAccount(aggregateAccount.getUsername()))
-                .filter(account -> account.isEnabled())
-                .forEach(account -> {
-                    if (Strings.isNullOrEmpty(aggregateAccount.getName())) {
-                        aggregateAccount.setName(account.getName());
-                    }
-                    aggregateAccount.addEmailAddresses(account.getEmailAddresses());
-                    aggregateAccount.addTokens(account.getTokens());
-                    aggregateAccount.getAuthorizations()
-                            .addRoles(account.getAuthorizations().getRoles())
-                            .addPermissions(account.getAuthorizations().getPermissions());
-                });
+        if (failureThrottle != null) {
+            failureThrottle.success(authenticationToken);
+        }
+
+        // create a sanitized, aggregate copy of this account
+        final Account aggregateAccount = aggregate(authenticatedAccount);
 
         if (accountCache != null) {
             // cache this assembled account
@@ -222,13 +373,110 @@ public class SecurityManager implements Service {
     }
 
     /**
-     * Clears the SecurityManager account cache and any CachingRealm's cache.
-     * MemoryRealms are not affected by this call.
+     * Retrieves the aggregate Account of a username without authentication.
+     * <p>
+     * This is used to restore the Account of a previously authenticated identity,
+     * e.g. from a signed session token.
+     * </p>
+     *
+     * @param username
+     * @return the enabled Account or null if no realm has an enabled account for the username
+     */
+    public Account getAccount(String username) {
+        if (Strings.isNullOrEmpty(username)) {
+            return null;
+        }
+
+        for (Realm realm : allRealms) {
+            if ((parallelRealms == null || parallelRealms.isAvailable(realm)) && realm.hasAccount(username)) {
+                Account account = realm.getAccount(username);
+                if (account != null && account.isEnabled()) {
+                    return aggregate(account);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Creates a sanitized copy of the account and aggregates the metadata, roles,
+     * and permissions of the username from all realms.
+     *
+     * @param primaryAccount
+     * @return the aggregate account
+     */
+    protected Account aggregate(Account primaryAccount) {
+        final Account aggregateAccount = new Account(primaryAccount.getName(),
+                primaryAccount.getCredentials().sanitize());
+
+        // aggregate metadata, roles, & permissions
+        final List<Account> accounts;
+        if (parallelRealms == null) {
+            accounts = allRealms.stream()
+                    .filter(realm -> realm.hasAccount(aggregateAccount.getUsername()))
+                    .map(realm -> realm.getAccount(aggregateAccount.getUsername()))
+                    .filter(account -> account.isEnabled())
+                    .collect(Collectors.toList());
+        } else {
+            accounts = parallelRealms.getAccounts(allRealms, aggregateAccount.getUsername());
+        }
+
+        accounts.forEach(account -> {
+            if (Strings.isNullOrEmpty(aggregateAccount.getName())) {
+                aggregateAccount.setName(account.getName());
+            }
+            aggregateAccount.addEmailAddresses(account.getEmailAddresses());
+            aggregateAccount.addTokens(account.getTokens());
+            aggregateAccount.getAuthorizations()
+                    .addRoles(account.getAuthorizations().getRoles())
+                    .addPermissions(account.getAuthorizations().getPermissions());
+        });
+
+        return aggregateAccount;
+    }
+
+    /**
+     * Asynchronously authenticates an AuthenticationToken.
+     *
+     * @param authenticationToken
+     * @return a future Account which is null if authentication failed
+     */
+    public CompletableFuture<Account> authenticateAsync(AuthenticationToken authenticationToken) {
+        return authenticateAsync(authenticationToken, null);
+    }
+
+    /**
+     * Asynchronously authenticates an AuthenticationToken from a client address.
+     * <p>
+     * The whole authentication, the realm queries and the password verification, runs on
+     * the password hashing executor so the calling thread is never blocked.  If that
+     * executor is saturated the future completes exceptionally with an
+     * {@link fathom.authc.AuthenticationUnavailableException}.  If password hashing is
+     * disabled the authentication runs on the calling thread and the future is complete
+     * when it is returned.
+     * </p>
+     *
+     * @param authenticationToken
+     * @param remoteAddress       the client address used for throttling, may be null
+     * @return a future Account which is null if authentication failed
+     */
+    public CompletableFuture<Account> authenticateAsync(AuthenticationToken authenticationToken, String remoteAddress) {
+        return PasswordHashing.supply(() -> authenticate(authenticationToken, remoteAddress));
+    }
+
+    /**
+     * Clears the SecurityManager account cache, the cached authentication failures,
+     * any CachingRealm's cache, and all cached permission decisions.  MemoryRealms are not affected by this call.
      */
     public void clearCache() {
         if (accountCache != null) {
             accountCache.invalidateAll();
         }
+        if (throttle != null) {
+            throttle.clear();
+        }
+        DecisionCache.invalidateAll();
         for (Realm realm : allRealms) {
             if (realm instanceof CachingRealm) {
                 CachingRealm cachingRealm = (CachingRealm) realm;
@@ -237,6 +485,100 @@ public class SecurityManager implements Service {
         }
     }
 
+    /**
+     * Evicts the cached accounts of the username on this node and on all nodes
+     * connected by the invalidation bus.
+     *
+     * @param username
+     */
+    public void invalidateAccount(String username) {
+        invalidate(Invalidation.account(nodeId, username));
+    }
+
+    /**
+     * Evicts the cached accounts which have been granted the role on this node and
+     * on all nodes connected by the invalidation bus.
+     *
+     * @param role
+     */
+    public void invalidateRole(String role) {
+        invalidate(Invalidation.role(nodeId, role));
+    }
+
+    /**
+     * Evicts all cached accounts on this node and on all nodes connected by the invalidation bus.
+     */
+    public void invalidateAll() {
+        invalidate(Invalidation.all(nodeId));
+    }
+
+    /**
+     * Registers a listener which is notified of every applied invalidation, whether it
+     * originated on this node or was received from the invalidation bus.
+     *
+     * @param listener
+     */
+    public void addInvalidationListener(Consumer<Invalidation> listener) {
+        invalidationListeners.add(listener);
+    }
+
+    public InvalidationBus getInvalidationBus() {
+        return invalidationBus;
+    }
+
+    protected void invalidate(Invalidation invalidation) {
+        applyInvalidation(invalidation);
+        if (invalidationBus != null) {
+            try {
+                invalidationBus.publish(invalidation);
+            } catch (Exception e) {
+                log.error("Failed to publish {}", invalidation, e);
+            }
+        }
+    }
+
+    protected void onInvalidation(Invalidation invalidation) {
+        if (nodeId.equals(invalidation.getOrigin())) {
+            // already applied when published
+            return;
+        }
+        log.debug("Received {}", invalidation);
+        applyInvalidation(invalidation);
+    }
+
+    protected void applyInvalidation(Invalidation invalidation) {
+        switch (invalidation.getType()) {
+            case ACCOUNT:
+                String username = invalidation.getName();
+                if (accountCache != null) {
+                    accountCache.asMap().values().removeIf(account -> username.equals(account.getUsername()));
+                }
+                getRealms(CachingRealm.class).forEach(realm -> realm.invalidateAccount(username));
+                break;
+            case ROLE:
+                Role role = new Role(invalidation.getName());
+                if (accountCache != null) {
+                    accountCache.asMap().values().removeIf(account -> account.getAuthorizations().getRoles().contains(role));
+                }
+                getRealms(CachingRealm.class).forEach(realm -> realm.invalidateRole(role.getName()));
+                break;
+            default:
+                if (accountCache != null) {
+                    accountCache.invalidateAll();
+                }
+                getRealms(CachingRealm.class).forEach(CachingRealm::clearCache);
+                break;
+        }
+
+        for (Consumer<Invalidation> listener : invalidationListeners) {
+            try {
+                listener.accept(invalidation);
+            } catch (Exception e) {
+                log.error("Failed to apply {}", invalidation, e);
+            }
+        }
+    }
+
     public <X> List<X> getRealms(Class<X> realmClass) {
         List<X> list = new ArrayList<>();
         for (Realm realm : allRealms) {
@@ -247,6 +589,28 @@ public class SecurityManager implements Service {
         return list;
     }
 
+    /**
+     * Creates the InvalidationBus defined by the Config object.
+     *
+     * @param config the invalidation config
+     * @return the configured InvalidationBus
+     */
+    protected InvalidationBus createInvalidationBus(Config config) {
+        String busType = Strings.emptyToNull(config.getString("type"));
+        Preconditions.checkNotNull(busType, "Invalidation bus 'type' is null!");
+
+        if (!ClassUtil.doesClassExist(busType)) {
+            throw new FathomException("Unknown invalidation bus type '{}'!", busType);
+        }
+
+        Class<? extends InvalidationBus> busClass = ClassUtil.getClass(busType);
+        InvalidationBus bus = injector.getInstance(busClass);
+        bus.setup(config);
+        bus.subscribe(this::onInvalidation);
+        log.info("Account invalidations will be broadcast by '{}'", busType);
+        return bus;
+    }
+
     /**
      * Parse the Realms from the Config object.
      *
@@ -17,6 +17,7 @@
 package fathom.security;
 
 import fathom.Module;
+import fathom.WarmUp;
 import org.kohsuke.MetaInfServices;
 
 
@@ -33,6 +34,8 @@ public class SecurityModule extends Module {
 
         bind(SecurityManager.class);
 
+        multibind(WarmUp.class, SecurityWarmUp.class);
+
     }
 
 }
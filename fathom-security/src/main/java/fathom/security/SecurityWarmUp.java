@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package fathom.security;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import fathom.WarmUp;
+import fathom.authc.StandardCredentials;
+import fathom.conf.Settings;
+import fathom.realm.Account;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * SecurityWarmUp exercises the authentication path of every realm with an unknown
+ * account.  This initializes lazily connected realms, e.g. LDAP or JDBC, without
+ * caching an account.
+ * <p>
+ * The accounts listed in {@code security.warmup.accounts} are then looked up to prime
+ * the caches of the CachingRealms which can load an account without its password.
+ * </p>
+ * <pre>
+ * security.warmup.accounts = [ "james", "frank" ]
+ * </pre>
+ *
+ * @author James Moger
+ */
+@Singleton
+public class SecurityWarmUp implements WarmUp {
+
+    public static final String SETTING_ACCOUNTS = "security.warmup.accounts";
+
+    private static final Logger log = LoggerFactory.getLogger(SecurityWarmUp.class);
+
+    private static final StandardCredentials UNKNOWN = new StandardCredentials("fathom-warmup", "fathom-warmup");
+
+    private final SecurityManager securityManager;
+
+    private final List<String> accounts;
+
+    @Inject
+    public SecurityWarmUp(SecurityManager securityManager, Settings settings) {
+        this.securityManager = securityManager;
+        this.accounts = settings.getStrings(SETTING_ACCOUNTS);
+    }
+
+    /**
+     * The warm-up connects the realms and primes their caches, repeating it would
+     * only send failed logins to the realms.
+     *
+     * @return false
+     */
+    @Override
+    public boolean isRepeated() {
+        return false;
+    }
+
+    @Override
+    public void warmUp() {
+        // bypass the throttle, the unknown account would otherwise be a known failure
+        securityManager.authenticateUnthrottled(UNKNOWN);
+
+        int primed = 0;
+        for (String username : accounts) {
+            Account account = securityManager.getAccount(username);
+            if (account == null) {
+                log.debug("Warm-up account '{}' was not found", username);
+            } else {
+                primed++;
+            }
+        }
+        if (!accounts.isEmpty()) {
+            log.debug("Primed {} of {} warm-up accounts", primed, accounts.size());
+        }
+    }
+
+}
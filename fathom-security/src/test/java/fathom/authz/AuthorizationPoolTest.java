@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.authz;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the canonical Permission and Role instances of the AuthorizationPool.
+ *
+ * @author James Moger
+ */
+public class AuthorizationPoolTest extends Assert {
+
+    @Test
+    public void testPermissionsAreShared() {
+        assertSame(AuthorizationPool.permission("document:read"), AuthorizationPool.permission("document:read"));
+        assertSame(AuthorizationPool.permission("document:read"), AuthorizationPool.permission("DOCUMENT:READ"));
+        assertSame(AuthorizationPool.permission("document:read"), AuthorizationPool.intern(new Permission("document:read")));
+    }
+
+    @Test
+    public void testPermissionTypesAreKept() {
+        Permission plain = AuthorizationPool.permission("domain:read:1");
+        DomainPermission domain = AuthorizationPool.intern(new DomainPermission("read", "1"));
+        assertEquals(plain, domain);
+        assertSame(DomainPermission.class, domain.getClass());
+        assertSame(domain, AuthorizationPool.intern(new DomainPermission("read", "1")));
+    }
+
+    @Test
+    public void testRolesAreShared() {
+        Role role = AuthorizationPool.role("editor", "document:read", "document:write");
+        assertSame(role, AuthorizationPool.role("editor", "document:read", "document:write"));
+        assertSame(role, AuthorizationPool.role(new Role("editor", "document:read", "document:write")));
+        assertSame(role, AuthorizationPool.role(role));
+        assertTrue(role.isImmutable());
+
+        // same name, different definition
+        Role other = AuthorizationPool.role("editor", "document:read");
+        assertNotSame(role, other);
+        assertTrue(role.isPermitted("document:write"));
+        assertFalse(other.isPermitted("document:write"));
+
+        // permissions are shared between role definitions
+        assertSame(role.getPermissions().iterator().next(), other.getPermissions().iterator().next());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRolesAreImmutable() {
+        AuthorizationPool.role("viewer", "document:read").addPermission("document:write");
+    }
+
+    @Test
+    public void testAccountsShareRoleExpansion() {
+        Role role = AuthorizationPool.role("auditor", "report:*");
+        Authorizations a = new Authorizations().addRole(role);
+        Authorizations b = new Authorizations().addRole(role).addRole("guest");
+        assertTrue(a.isPermitted("report:view"));
+        assertTrue(b.isPermitted("report:view"));
+        assertSame(role.getCompiledPermissions(), a.getCompiledPermissions());
+        assertSame(role.getCompiledPermissions(), b.getCompiledPermissions());
+
+        b.addPermission("document:read");
+        assertNotSame(role.getCompiledPermissions(), b.getCompiledPermissions());
+        assertTrue(b.isPermitted("report:view"));
+        assertTrue(b.isPermitted("document:read"));
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.authz;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+
+/**
+ * Tests memoization and invalidation of Authorizations decisions.
+ *
+ * @author James Moger
+ */
+public class DecisionCacheTest extends Assert {
+
+    @Test
+    public void testMemoization() {
+        Authorizations authorizations = new Authorizations();
+        authorizations.addPermission("document:read");
+
+        long hits = DecisionCache.getHits();
+        assertTrue(authorizations.isPermitted("document:read"));
+        assertTrue(authorizations.isPermitted("document:read"));
+        assertFalse(authorizations.isPermitted("document:write"));
+        assertFalse(authorizations.isPermitted("document:write"));
+        assertTrue(DecisionCache.getHits() - hits >= 2);
+        assertTrue(DecisionCache.getHitRatio() > 0);
+    }
+
+    @Test
+    public void testMutationInvalidates() {
+        Authorizations authorizations = new Authorizations();
+        assertFalse(authorizations.isPermitted("document:write"));
+        assertFalse(authorizations.hasRole("editor"));
+
+        authorizations.addRole(new Role("editor", "document:*"));
+        assertTrue(authorizations.isPermitted("document:write"));
+        assertTrue(authorizations.hasRole("editor"));
+        assertTrue(authorizations.hasRoles("editor"));
+
+        authorizations.setRoles(Collections.emptySet());
+        assertFalse(authorizations.isPermitted("document:write"));
+        assertFalse(authorizations.hasRole("editor"));
+    }
+
+    @Test
+    public void testSharedRoleChangeInvalidates() {
+        Role role = new Role("editor", "document:read");
+        Authorizations authorizations = new Authorizations();
+        authorizations.addRole(role);
+        assertFalse(authorizations.isPermitted("document:write"));
+
+        role.addPermission("document:write");
+        assertTrue(authorizations.isPermitted("document:write"));
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        Authorizations authorizations = new Authorizations();
+        authorizations.addPermission("document:read");
+        assertTrue(authorizations.isPermitted("document:read"));
+
+        DecisionCache cache = authorizations.getDecisions();
+        DecisionCache.invalidateAll();
+        assertNotSame(cache, authorizations.getDecisions());
+        assertTrue(authorizations.isPermitted("document:read"));
+    }
+
+    @Test
+    public void testBounded() {
+        int max = DecisionCache.getMaxEntries();
+        try {
+            DecisionCache.setMaxEntries(2);
+            Authorizations authorizations = new Authorizations();
+            authorizations.addPermission("document:*");
+            for (int i = 0; i < 10; i++) {
+                assertTrue(authorizations.isPermitted("document:" + i));
+            }
+            assertTrue(authorizations.getDecisions().getPermission("document:9"));
+
+            DecisionCache.setMaxEntries(0);
+            assertTrue(authorizations.isPermitted("document:1"));
+            assertNull(authorizations.getDecisions().getPermission("document:1"));
+        } finally {
+            DecisionCache.setMaxEntries(max);
+        }
+    }
+
+}
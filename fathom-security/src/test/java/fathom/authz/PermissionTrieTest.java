@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.authz;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests that the compiled PermissionTrie agrees with Permission.implies.
+ *
+ * @author James Moger
+ */
+public class PermissionTrieTest extends Assert {
+
+    private static final String[] VALUES = {"a", "b", "c", "*", "a,b", "b,c", "a,*"};
+
+    private static boolean linear(Collection<Permission> granted, Permission permission) {
+        for (Permission p : granted) {
+            if (p.implies(permission)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String randomPermission(Random random) {
+        int parts = 1 + random.nextInt(4);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < parts; i++) {
+            if (i > 0) {
+                sb.append(':');
+            }
+            sb.append(VALUES[random.nextInt(VALUES.length)]);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testEquivalence() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            List<Permission> granted = new ArrayList<>();
+            int count = 1 + random.nextInt(8);
+            for (int i = 0; i < count; i++) {
+                granted.add(new Permission(randomPermission(random)));
+            }
+
+            PermissionTrie trie = new PermissionTrie(granted);
+            for (int i = 0; i < 50; i++) {
+                Permission permission = new Permission(randomPermission(random));
+                assertEquals(granted + " implies " + permission, linear(granted, permission), trie.implies(permission));
+            }
+        }
+    }
+
+    @Test
+    public void testMultiValueParts() {
+        PermissionTrie trie = new PermissionTrie(Arrays.asList(
+                new Permission("newsletter:view,edit:12,13"),
+                new Permission("newsletter:create:*"),
+                new Permission("report:*:*")));
+
+        assertTrue(trie.implies(new Permission("newsletter:edit:13")));
+        assertTrue(trie.implies(new Permission("newsletter:view,edit:12")));
+        assertFalse(trie.implies(new Permission("newsletter:view,create:12")));
+        assertFalse(trie.implies(new Permission("newsletter:edit:14")));
+        assertTrue(trie.implies(new Permission("newsletter:create")));
+        assertTrue(trie.implies(new Permission("report")));
+        assertFalse(trie.implies(new Permission("newsletter")));
+        assertTrue(trie.implies(new Permission("NEWSLETTER:EDIT:12")));
+    }
+
+    @Test
+    public void testEmpty() {
+        assertFalse(PermissionTrie.EMPTY.implies(new Permission("*")));
+        assertFalse(new Authorizations().isPermitted("a:b"));
+    }
+
+    @Test
+    public void testDomainPermissions() {
+        Authorizations authorizations = new Authorizations();
+        authorizations.addPermissions(Collections.singleton(new DomainPermission("read", "1,2")));
+        assertTrue(authorizations.isPermitted("domain:read:2"));
+        assertFalse(authorizations.isPermitted("domain:write:2"));
+    }
+
+    @Test
+    public void testInvalidation() {
+        Authorizations authorizations = new Authorizations();
+        authorizations.addPermission("document:read");
+        assertFalse(authorizations.isPermitted("document:write"));
+
+        authorizations.addPermission("document:write");
+        assertTrue(authorizations.isPermitted("document:write"));
+
+        authorizations.addRole(new Role("admin", "*"));
+        assertTrue(authorizations.isPermitted("billing:delete"));
+
+        authorizations.setRoles(Collections.emptySet());
+        assertFalse(authorizations.isPermitted("billing:delete"));
+    }
+
+    @Test
+    public void testParsedQueriesAreShared() {
+        assertSame(PermissionTrie.parse("document:read:1"), PermissionTrie.parse("document:read:1"));
+    }
+
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.realm;
+
+import com.typesafe.config.ConfigFactory;
+import fathom.authc.StandardCredentials;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the expiration, eviction, invalidation, and refresh-ahead of the CachingRealm.
+ *
+ * @author James Moger
+ */
+public class CachingRealmTest extends Assert {
+
+    private TestRealm createRealm(Object... settings) {
+        Map<String, Object> map = createSettings();
+        for (int i = 0; i < settings.length; i += 2) {
+            map.put((String) settings[i], settings[i + 1]);
+        }
+        TestRealm realm = new TestRealm();
+        realm.setup(ConfigFactory.parseMap(map));
+        return realm;
+    }
+
+    private static Map<String, Object> createSettings() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("cacheTtl", 10);
+        map.put("cacheMax", 100);
+        return map;
+    }
+
+    private static Account account(String username, String role) {
+        Account account = new Account(null, new StandardCredentials(username, "secret"));
+        account.getAuthorizations().addRole(role);
+        return account;
+    }
+
+    private static void await(TestRealm realm, long reloads) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (realm.getReloadCount() < reloads && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(reloads, realm.getReloadCount());
+    }
+
+    @Test
+    public void testRefreshAhead() throws Exception {
+        TestRealm realm = createRealm("cacheRefresh", "50ms");
+        realm.cacheAccount(account("james", "user"));
+        realm.backend.put("james", account("james", "admin"));
+
+        assertTrue(realm.getAccount("james").hasRole("user"));
+        assertEquals(0, realm.getReloadCount());
+
+        Thread.sleep(80);
+
+        // the stale account is served while it is reloaded
+        assertTrue(realm.getAccount("james").hasRole("user"));
+        await(realm, 1);
+        assertTrue(realm.getAccount("james").hasRole("admin"));
+        assertEquals(1, realm.getReloadCount());
+        assertTrue(realm.getCacheStats().hitCount() >= 3);
+    }
+
+    @Test
+    public void testRefreshRemovesDeletedAccount() throws Exception {
+        TestRealm realm = createRealm("cacheRefresh", "10ms");
+        realm.cacheAccount(account("james", "user"));
+
+        Thread.sleep(30);
+        assertTrue(realm.hasAccount("james"));
+        await(realm, 1);
+        assertFalse(realm.hasAccount("james"));
+    }
+
+    @Test
+    public void testRefreshRequiresReloadSupport() throws Exception {
+        Map<String, Object> map = new HashMap<>();
+        map.put("cacheTtl", 10);
+        map.put("cacheMax", 100);
+        map.put("cacheRefresh", "10ms");
+        TestRealm realm = new TestRealm() {
+            @Override
+            protected boolean supportsReload() {
+                return false;
+            }
+        };
+        realm.setup(ConfigFactory.parseMap(map));
+        realm.cacheAccount(account("james", "user"));
+
+        Thread.sleep(30);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(realm.getAccount("james").hasRole("user"));
+        }
+        Thread.sleep(20);
+        assertEquals(0, realm.getReloadCount());
+        assertEquals(0, realm.getReloadFailureCount());
+    }
+
+    @Test
+    public void testExpireAfterWrite() throws Exception {
+        TestRealm realm = createRealm("cacheExpire", "100ms");
+        realm.cacheAccount(account("james", "user"));
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(150);
+        while (System.nanoTime() < deadline) {
+            // constant access does not prolong the life of the account
+            realm.getAccount("james");
+            Thread.sleep(10);
+        }
+        assertNull(realm.getAccount("james"));
+        assertEquals(0, realm.getReloadCount());
+    }
+
+    @Test
+    public void testWeightedEviction() {
+        TestRealm realm = createRealm("cacheMaxWeight", 12);
+        for (int i = 0; i < 20; i++) {
+            Account account = account("user" + i, "role");
+            account.getAuthorizations().addPermissions("a:" + i, "b:" + i);
+            realm.cacheAccount(account);
+        }
+        assertTrue(realm.getCacheSize() < 20);
+        assertTrue(realm.getCacheStats().evictionCount() > 0);
+    }
+
+    @Test
+    public void testInvalidation() {
+        TestRealm realm = createRealm();
+        realm.cacheAccount(account("james", "admin"));
+        realm.cacheAccount(account("frank", "user"));
+        realm.cacheAccount(account("jane", "admin"));
+
+        realm.invalidateAccount("james");
+        assertFalse(realm.hasAccount("james"));
+        assertTrue(realm.hasAccount("jane"));
+
+        realm.invalidateRole("admin");
+        assertFalse(realm.hasAccount("jane"));
+        assertTrue(realm.hasAccount("frank"));
+    }
+
+    @Test
+    public void testDefaultReload() throws Exception {
+        LookupRealm realm = new LookupRealm();
+        realm.setup(ConfigFactory.parseMap(createSettings()));
+        realm.cacheAccount(account("james", "user"));
+        realm.backend.put("james", account("james", "admin"));
+
+        // the cached account is evicted and looked up again
+        assertTrue(realm.reloadAccount("james").hasRole("admin"));
+        assertTrue(realm.getAccount("james").hasRole("admin"));
+
+        // an account which is only known after authentication is evicted
+        realm.cacheAccount(account("frank", "user"));
+        assertNull(realm.reloadAccount("frank"));
+        assertEquals(1, realm.getCacheSize());
+    }
+
+    /**
+     * A realm which looks up uncached accounts and relies on the default reload.
+     */
+    private static class LookupRealm extends CachingRealm {
+
+        final Map<String, Account> backend = new ConcurrentHashMap<>();
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public Account authenticate(String username, String password) {
+            return null;
+        }
+
+        @Override
+        public Account getAccount(String username) {
+            Account account = super.getAccount(username);
+            if (account == null && backend.containsKey(username)) {
+                account = backend.get(username);
+                cacheAccount(account);
+            }
+            return account;
+        }
+    }
+
+    private static class TestRealm extends CachingRealm {
+
+        final Map<String, Account> backend = new ConcurrentHashMap<>();
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public Account authenticate(String username, String password) {
+            return null;
+        }
+
+        @Override
+        protected boolean supportsReload() {
+            return true;
+        }
+
+        @Override
+        protected Account reloadAccount(String username) {
+            return backend.get(username);
+        }
+    }
+
+}
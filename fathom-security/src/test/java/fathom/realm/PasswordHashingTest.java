@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.realm;
+
+import fathom.authc.AuthenticationUnavailableException;
+import fathom.authc.StandardCredentials;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests verification of passwords on the bounded hashing executor.
+ *
+ * @author James Moger
+ */
+public class PasswordHashingTest extends Assert {
+
+    @After
+    public void shutdown() {
+        PasswordHashing.shutdown();
+    }
+
+    @Test
+    public void testInlineWhenNotConfigured() {
+        Thread caller = Thread.currentThread();
+        assertSame(caller, PasswordHashing.call(Thread::currentThread));
+        assertSame(caller, PasswordHashing.supply(Thread::currentThread).join());
+    }
+
+    @Test
+    public void testVerifiedOnHashingThread() {
+        PasswordHashing.configure(2, 4);
+        assertTrue(PasswordHashing.call(PasswordHashing::isHashingThread));
+        assertFalse(PasswordHashing.isHashingThread());
+
+        // nested calls run directly on the hashing thread
+        assertTrue(PasswordHashing.supply(() -> PasswordHashing.call(PasswordHashing::isHashingThread)).join());
+
+        MemoryRealm realm = new MemoryRealm();
+        realm.addAccount("james", "{BF}" + BCrypt.hashpw("secret", BCrypt.gensalt(4)));
+        assertNotNull(realm.authenticate(new StandardCredentials("james", "secret")));
+        assertNull(realm.authenticate(new StandardCredentials("james", "wrong")));
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        PasswordHashing.configure(1, 1, 50);
+        CountDownLatch release = new CountDownLatch(1);
+        long timedOut = PasswordHashing.getTimedOutCount();
+
+        // a verification which does not complete in time fails
+        assertFalse(PasswordHashing.verify(() -> release.await(10, TimeUnit.SECONDS)));
+
+        try {
+            PasswordHashing.call(() -> release.await(10, TimeUnit.SECONDS));
+            fail("Expected a timeout");
+        } catch (AuthenticationUnavailableException e) {
+            assertEquals(503, e.getStatusCode());
+        }
+        assertEquals(timedOut + 2, PasswordHashing.getTimedOutCount());
+
+        release.countDown();
+        assertTrue(PasswordHashing.verify(() -> true));
+    }
+
+    @Test
+    public void testFastRejection() throws Exception {
+        PasswordHashing.configure(1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // occupy the only thread and the only queue slot
+        CompletableFuture<Boolean> busy = PasswordHashing.supply(() -> {
+            started.countDown();
+            try {
+                return release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> queued = PasswordHashing.supply(() -> true);
+
+        long rejected = PasswordHashing.getRejectedCount();
+        try {
+            PasswordHashing.call(() -> true);
+            fail("Expected rejection");
+        } catch (AuthenticationUnavailableException e) {
+            assertEquals(503, e.getStatusCode());
+        }
+
+        try {
+            PasswordHashing.supply(() -> true).get();
+            fail("Expected rejection");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof AuthenticationUnavailableException);
+        }
+        assertEquals(rejected + 2, PasswordHashing.getRejectedCount());
+
+        release.countDown();
+        assertTrue(busy.get(10, TimeUnit.SECONDS));
+        assertTrue(queued.get(10, TimeUnit.SECONDS));
+    }
+
+}
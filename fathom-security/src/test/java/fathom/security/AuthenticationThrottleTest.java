@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.security;
+
+import com.codahale.metrics.MetricRegistry;
+import fathom.authc.AuthenticationThrottledException;
+import fathom.authc.StandardCredentials;
+import fathom.authc.TokenCredentials;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the negative authentication cache and the sliding window throttling.
+ *
+ * @author James Moger
+ */
+public class AuthenticationThrottleTest extends Assert {
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    private AuthenticationThrottle create(long windowMillis, int maxUsernameFailures, int maxAddressFailures) {
+        return new AuthenticationThrottle(TimeUnit.MINUTES.toNanos(1), 100, TimeUnit.MILLISECONDS.toNanos(windowMillis),
+                maxUsernameFailures, maxAddressFailures, metricRegistry);
+    }
+
+    @Test
+    public void testKnownFailures() {
+        AuthenticationThrottle throttle = create(60000, 100, 100);
+        StandardCredentials bad = new StandardCredentials("james", "wrong");
+        assertFalse(throttle.isKnownFailure(bad, null));
+
+        throttle.failure(bad, null);
+        assertTrue(throttle.isKnownFailure(new StandardCredentials("james", "wrong"), null));
+        assertFalse(throttle.isKnownFailure(new StandardCredentials("james", "right"), null));
+
+        throttle.failure(new TokenCredentials("abc"), null);
+        assertTrue(throttle.isKnownFailure(new TokenCredentials("abc"), null));
+
+        throttle.clear();
+        assertFalse(throttle.isKnownFailure(bad, null));
+        assertEquals(2, metricRegistry.meter("fathom.security.throttle.knownFailures").getCount());
+    }
+
+    @Test
+    public void testUsernameThrottling() {
+        AuthenticationThrottle throttle = create(60000, 3, 100);
+        for (int i = 0; i < 3; i++) {
+            StandardCredentials credentials = new StandardCredentials("james", "guess" + i);
+            throttle.check(credentials, "10.0.0.1");
+            throttle.failure(credentials, "10.0.0.1");
+        }
+
+        try {
+            throttle.check(new StandardCredentials("JAMES", "guess"), "10.0.0.2");
+            fail("Expected throttling");
+        } catch (AuthenticationThrottledException e) {
+            assertEquals(429, e.getStatusCode());
+            assertTrue(e.getRetryAfter() > 0 && e.getRetryAfter() <= 60);
+        }
+
+        // other users are unaffected
+        throttle.check(new StandardCredentials("frank", "guess"), "10.0.0.2");
+
+        // a successful login resets the username window
+        throttle.success(new StandardCredentials("james", "secret"));
+        throttle.check(new StandardCredentials("james", "guess"), "10.0.0.2");
+    }
+
+    @Test(expected = AuthenticationThrottledException.class)
+    public void testAddressThrottling() {
+        AuthenticationThrottle throttle = create(60000, 100, 2);
+        throttle.failure(new StandardCredentials("a", "x"), "10.0.0.1");
+        throttle.failure(new StandardCredentials("b", "x"), "10.0.0.1");
+        throttle.check(new StandardCredentials("c", "x"), "10.0.0.1");
+    }
+
+    @Test
+    public void testSlidingWindow() throws InterruptedException {
+        AuthenticationThrottle throttle = create(100, 2, 100);
+        throttle.failure(new StandardCredentials("james", "a"), null);
+        throttle.failure(new StandardCredentials("james", "b"), null);
+        try {
+            throttle.check(new StandardCredentials("james", "c"), null);
+            fail("Expected throttling");
+        } catch (AuthenticationThrottledException e) {
+            // expected
+        }
+
+        Thread.sleep(150);
+        throttle.check(new StandardCredentials("james", "c"), null);
+    }
+
+}
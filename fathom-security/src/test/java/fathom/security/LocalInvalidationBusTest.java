@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.security;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests the in-process InvalidationBus and the encoding of Invalidations.
+ *
+ * @author James Moger
+ */
+public class LocalInvalidationBusTest extends Assert {
+
+    @Test
+    public void testEncoding() {
+        for (Invalidation invalidation : Arrays.asList(
+                Invalidation.account("node", "james"),
+                Invalidation.role("node", "team|admin"),
+                Invalidation.all("node"))) {
+            assertEquals(invalidation, Invalidation.decode(invalidation.encode()));
+        }
+        assertNull(Invalidation.decode("EVERYTHING|node|"));
+        assertNull(Invalidation.decode("ACCOUNT"));
+    }
+
+    @Test
+    public void testBroadcast() {
+        List<Invalidation> received1 = new ArrayList<>();
+        List<Invalidation> received2 = new ArrayList<>();
+        List<Invalidation> other = new ArrayList<>();
+
+        LocalInvalidationBus node1 = new LocalInvalidationBus("test");
+        node1.subscribe(received1::add);
+        node1.start();
+
+        LocalInvalidationBus node2 = new LocalInvalidationBus("test");
+        node2.subscribe(received2::add);
+        node2.start();
+
+        LocalInvalidationBus node3 = new LocalInvalidationBus("other");
+        node3.subscribe(other::add);
+        node3.start();
+
+        try {
+            Invalidation invalidation = Invalidation.account("node1", "james");
+            node1.publish(invalidation);
+            assertEquals(Collections.singletonList(invalidation), received1);
+            assertEquals(Collections.singletonList(invalidation), received2);
+            assertTrue(other.isEmpty());
+
+            node2.stop();
+            node1.publish(Invalidation.role("node1", "admin"));
+            assertEquals(2, received1.size());
+            assertEquals(1, received2.size());
+        } finally {
+            node1.stop();
+            node2.stop();
+            node3.stop();
+        }
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.security;
+
+import com.typesafe.config.Config;
+import fathom.authc.AuthenticationToken;
+import fathom.authc.StandardCredentials;
+import fathom.realm.Account;
+import fathom.realm.Realm;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests concurrent realm authentication and the skipping of failing realms.
+ *
+ * @author James Moger
+ */
+public class ParallelRealmsTest extends Assert {
+
+    private ParallelRealms parallelRealms;
+
+    @After
+    public void shutdown() {
+        if (parallelRealms != null) {
+            parallelRealms.shutdown();
+        }
+    }
+
+    static class TestRealm implements Realm {
+
+        final String name;
+
+        final long delayMillis;
+
+        final boolean fails;
+
+        final Account account;
+
+        final AtomicInteger calls = new AtomicInteger();
+
+        TestRealm(String name, long delayMillis, boolean fails, String username) {
+            this.name = name;
+            this.delayMillis = delayMillis;
+            this.fails = fails;
+            this.account = username == null ? null : new Account(name, new StandardCredentials(username, "secret"));
+        }
+
+        private Account call() {
+            calls.incrementAndGet();
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                return null;
+            }
+            if (fails) {
+                throw new IllegalStateException(name + " is down");
+            }
+            return account;
+        }
+
+        @Override
+        public void setup(Config config) {
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public String getRealmName() {
+            return name;
+        }
+
+        @Override
+        public boolean canAuthenticate(AuthenticationToken authenticationToken) {
+            return true;
+        }
+
+        @Override
+        public Account authenticate(AuthenticationToken authenticationToken) {
+            return call();
+        }
+
+        @Override
+        public boolean hasAccount(String username) {
+            return call() != null;
+        }
+
+        @Override
+        public Account getAccount(String username) {
+            return account;
+        }
+    }
+
+    private ParallelRealms create(List<Realm> realms, long timeoutMillis, int failureThreshold) {
+        parallelRealms = new ParallelRealms(realms, 4, TimeUnit.MILLISECONDS.toNanos(timeoutMillis),
+                failureThreshold, TimeUnit.MINUTES.toNanos(1));
+        return parallelRealms;
+    }
+
+    @Test
+    public void testPriorityOrder() {
+        TestRealm slow = new TestRealm("slow", 200, false, "james");
+        TestRealm fast = new TestRealm("fast", 0, false, "james");
+        List<Realm> realms = Arrays.asList(slow, fast);
+
+        Account account = create(realms, 1000, 5).authenticate(realms, new StandardCredentials("james", "secret"));
+        assertEquals("slow", account.getName());
+    }
+
+    @Test
+    public void testConcurrentLatency() {
+        List<Realm> realms = Arrays.asList(
+                new TestRealm("a", 200, false, null),
+                new TestRealm("b", 200, false, null),
+                new TestRealm("c", 200, false, "james"));
+
+        long start = System.nanoTime();
+        ParallelRealms parallel = create(realms, 2000, 5);
+        assertNotNull(parallel.authenticate(realms, new StandardCredentials("james", "secret")));
+        assertEquals(1, parallel.getAccounts(realms, "james").size());
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("elapsed " + elapsed, elapsed < 1000);
+    }
+
+    @Test
+    public void testTimeoutAndBreaker() {
+        TestRealm hung = new TestRealm("hung", 5000, false, "james");
+        TestRealm failing = new TestRealm("failing", 0, true, "james");
+        TestRealm ok = new TestRealm("ok", 0, false, "james");
+        List<Realm> realms = Arrays.asList(hung, failing, ok);
+
+        ParallelRealms parallel = create(realms, 100, 2);
+        StandardCredentials credentials = new StandardCredentials("james", "secret");
+        assertEquals("ok", parallel.authenticate(realms, credentials).getName());
+        assertEquals("ok", parallel.authenticate(realms, credentials).getName());
+        assertFalse(parallel.isAvailable(hung));
+        assertFalse(parallel.isAvailable(failing));
+
+        // broken realms are skipped without being called
+        int hungCalls = hung.calls.get();
+        long start = System.nanoTime();
+        assertEquals("ok", parallel.authenticate(realms, credentials).getName());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 100);
+        assertEquals(hungCalls, hung.calls.get());
+    }
+
+}
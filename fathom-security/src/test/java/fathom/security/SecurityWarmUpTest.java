@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package fathom.security;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.Multiset;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import fathom.authc.AuthenticationThrottledException;
+import fathom.authc.StandardCredentials;
+import fathom.conf.Settings;
+import fathom.realm.Account;
+import fathom.realm.CachingRealm;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Tests the security warm-up together with the authentication throttle and negative cache.
+ *
+ * @author James Moger
+ */
+public class SecurityWarmUpTest extends Assert {
+
+    private static final String WARMUP_USERNAME = "fathom-warmup";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Settings settings;
+
+    private SecurityManager securityManager;
+
+    private CountingRealm realm;
+
+    /**
+     * A realm which loads accounts without their password and counts the lookups.
+     */
+    public static class CountingRealm extends CachingRealm {
+
+        final Multiset<String> lookups = ConcurrentHashMultiset.create();
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public Account authenticate(String username, String password) {
+            return null;
+        }
+
+        @Override
+        public boolean hasAccount(String username) {
+            return getAccount(username) != null;
+        }
+
+        @Override
+        public Account getAccount(String username) {
+            Account account = super.getAccount(username);
+            if (account == null) {
+                lookups.add(username);
+                if ("james".equals(username)) {
+                    account = new Account("James", new StandardCredentials(username, "secret"));
+                    cacheAccount(account);
+                }
+            }
+            return account;
+        }
+    }
+
+    @Before
+    public void start() throws IOException {
+        File realms = temporaryFolder.newFile("realms.conf");
+        Files.write(realms.toPath(), Arrays.asList(
+                "throttle {",
+                "  enabled = true",
+                "  maxUsernameFailures = 3",
+                "}",
+                "realms: [",
+                "  {",
+                "    type: \"" + CountingRealm.class.getName() + "\"",
+                "    cacheTtl: 10",
+                "    cacheMax: 100",
+                "  }",
+                "]"), StandardCharsets.UTF_8);
+
+        settings = new Settings();
+        settings.overrideSetting("security.configurationFile", "file:" + realms.toURI().toURL());
+        settings.overrideSettings(Collections.singletonMap(SecurityWarmUp.SETTING_ACCOUNTS, Arrays.asList("james", "nobody")));
+
+        securityManager = Guice.createInjector(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(Settings.class).toInstance(settings);
+                bind(MetricRegistry.class).toInstance(new MetricRegistry());
+            }
+        }).getInstance(SecurityManager.class);
+        securityManager.start();
+        realm = securityManager.getRealms(CountingRealm.class).get(0);
+    }
+
+    @After
+    public void stop() {
+        securityManager.stop();
+    }
+
+    @Test
+    public void testWarmUpBypassesThrottle() throws Exception {
+        SecurityWarmUp warmUp = new SecurityWarmUp(securityManager, settings);
+        assertFalse(warmUp.isRepeated());
+
+        // every run reaches the realm, it is neither a known failure nor throttled
+        for (int i = 0; i < 20; i++) {
+            warmUp.warmUp();
+        }
+        assertEquals(20, realm.lookups.count(WARMUP_USERNAME));
+
+        // the warm-up did not record failures for real clients
+        assertNull(securityManager.authenticate(new StandardCredentials(WARMUP_USERNAME, WARMUP_USERNAME), "10.0.0.1"));
+        assertEquals(21, realm.lookups.count(WARMUP_USERNAME));
+    }
+
+    @Test
+    public void testWarmUpPrimesRealmCache() throws Exception {
+        new SecurityWarmUp(securityManager, settings).warmUp();
+        assertEquals(1, realm.getCacheSize());
+        assertEquals(1, realm.lookups.count("james"));
+        assertEquals(1, realm.lookups.count("nobody"));
+
+        // served from the primed cache
+        assertNotNull(securityManager.getAccount("james"));
+        assertEquals(1, realm.lookups.count("james"));
+    }
+
+    @Test
+    public void testThrottleAfterWarmUp() throws Exception {
+        new SecurityWarmUp(securityManager, settings).warmUp();
+
+        // the warm-up failures do not count against real clients
+        StandardCredentials bad = new StandardCredentials("frank", "guess");
+        assertNull(securityManager.authenticate(bad, "10.0.0.1"));
+        // a repeated failure is answered by the negative cache and counts as another failure
+        assertNull(securityManager.authenticate(bad, "10.0.0.1"));
+        assertEquals(1, realm.lookups.count("frank"));
+
+        // the third failure fills the window of maxUsernameFailures = 3
+        assertNull(securityManager.authenticate(new StandardCredentials("frank", "guess2"), "10.0.0.1"));
+        try {
+            securityManager.authenticate(new StandardCredentials("frank", "guess3"), "10.0.0.1");
+            fail("Expected throttling");
+        } catch (AuthenticationThrottledException e) {
+            assertEquals(429, e.getStatusCode());
+        }
+
+        // the warm-up still reaches the realm
+        int lookups = realm.lookups.count(WARMUP_USERNAME);
+        new SecurityWarmUp(securityManager, settings).warmUp();
+        assertEquals(lookups + 1, realm.lookups.count(WARMUP_USERNAME));
+    }
+
+}
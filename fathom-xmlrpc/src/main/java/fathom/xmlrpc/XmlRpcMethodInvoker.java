@@ -88,8 +88,8 @@ class XmlRpcMethodInvoker {
 
         log.debug("Locating @XmlRpc '{}' {}", xmlrpcMethod, argsTypeList);
         for (Method method : targetClass.getMethods()) {
-            if (method.isAnnotationPresent(XmlRpc.class)) {
-                XmlRpc xmlRpc = ClassUtil.getAnnotation(method, XmlRpc.class);
+            XmlRpc xmlRpc = ClassUtil.getDeclaredAnnotation(method, XmlRpc.class);
+            if (xmlRpc != null) {
                 String name = Optional.fromNullable(Strings.emptyToNull(xmlRpc.value())).or(method.getName());
                 if (methodName.equals(name) && Arrays.equals(argClasses, method.getParameterTypes())) {
                     methodCache.put(methodKey, method);
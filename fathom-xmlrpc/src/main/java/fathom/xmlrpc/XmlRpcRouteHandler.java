@@ -25,6 +25,7 @@ import fathom.exception.StatusCodeException;
 import fathom.realm.Account;
 import fathom.rest.Context;
 import fathom.rest.security.AuthConstants;
+import fathom.rest.security.ContextAuthentication;
 import fathom.security.SecurityManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -102,7 +103,7 @@ public abstract class XmlRpcRouteHandler implements RouteHandler<Context> {
                 if (authorization.toLowerCase().startsWith("token")) {
                     String packet = authorization.substring("token".length()).trim();
                     TokenCredentials credentials = new TokenCredentials(packet);
-                    account = securityManager.authenticate(credentials);
+                    account = ContextAuthentication.authenticate(securityManager, context, credentials);
                 } else if (authorization.toLowerCase().startsWith("basic")) {
                     String packet = authorization.substring("basic".length()).trim();
                     String credentials1 = new String(Base64.getDecoder().decode(packet), StandardCharsets.UTF_8);
@@ -110,7 +111,7 @@ public abstract class XmlRpcRouteHandler implements RouteHandler<Context> {
                     String username = values1[0];
                     String password = values1[1];
                     StandardCredentials authenticationToken = new StandardCredentials(username, password);
-                    account = securityManager.authenticate(authenticationToken);
+                    account = ContextAuthentication.authenticate(securityManager, context, authenticationToken);
                 }
             }
         }